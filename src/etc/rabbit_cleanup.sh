@@ -7,6 +7,11 @@ rabbitmqadmin delete queue name='promsapp_bookings_queue'
 rabbitmqadmin delete queue name='promsapp_plans_queue'
 rabbitmqadmin delete queue name='promsapp_care_events_queue'
 rabbitmqadmin delete queue name='promsapp_actions_queue'
+rabbitmqadmin delete queue name='promsapp_bookings_queue_dlq'
+rabbitmqadmin delete queue name='promsapp_plans_queue_dlq'
+rabbitmqadmin delete queue name='promsapp_care_events_queue_dlq'
+rabbitmqadmin delete queue name='promsapp_actions_queue_dlq'
+rabbitmqadmin delete exchange name='promsapp_dead_letter_exchange'
 echo "Deleted promsapp queues"
 echo "Rabbitmq queues after delete"
 rabbitmqadmin list queues name
@@ -26,6 +26,9 @@ package com.noesisinformatica.northumbriaproms.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Properties specific to Northumbriaproms.
  * <p>
@@ -35,4 +38,746 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 @ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
 public class ApplicationProperties {
 
+    private final BulkImport bulkImport = new BulkImport();
+
+    private final Pipeline pipeline = new Pipeline();
+
+    private final StatusTransition statusTransition = new StatusTransition();
+
+    private final Reindex reindex = new Reindex();
+
+    private final IndexWriter indexWriter = new IndexWriter();
+
+    private final Search search = new Search();
+
+    private final Export export = new Export();
+
+    private final Persistence persistence = new Persistence();
+
+    private final ReadReplica readReplica = new ReadReplica();
+
+    public BulkImport getBulkImport() {
+        return bulkImport;
+    }
+
+    public Pipeline getPipeline() {
+        return pipeline;
+    }
+
+    public StatusTransition getStatusTransition() {
+        return statusTransition;
+    }
+
+    public Reindex getReindex() {
+        return reindex;
+    }
+
+    public IndexWriter getIndexWriter() {
+        return indexWriter;
+    }
+
+    public Search getSearch() {
+        return search;
+    }
+
+    public Export getExport() {
+        return export;
+    }
+
+    public Persistence getPersistence() {
+        return persistence;
+    }
+
+    public ReadReplica getReadReplica() {
+        return readReplica;
+    }
+
+    /**
+     * Settings for the bulk {@link com.noesisinformatica.northumbriaproms.domain.ProcedureBooking} import.
+     */
+    public static class BulkImport {
+
+        /** Number of rows written, indexed and published together */
+        private int chunkSize = 500;
+
+        /** Upper bound for the chunk size a client may request */
+        private int maxChunkSize = 5000;
+
+        /** How long to wait for the broker to confirm a published chunk */
+        private long publishConfirmTimeout = 10000;
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        public int getMaxChunkSize() {
+            return maxChunkSize;
+        }
+
+        public void setMaxChunkSize(int maxChunkSize) {
+            this.maxChunkSize = maxChunkSize;
+        }
+
+        public long getPublishConfirmTimeout() {
+            return publishConfirmTimeout;
+        }
+
+        public void setPublishConfirmTimeout(long publishConfirmTimeout) {
+            this.publishConfirmTimeout = publishConfirmTimeout;
+        }
+    }
+
+    /**
+     * Settings for generating followup plans from procedure bookings.
+     */
+    public static class Pipeline {
+
+        /**
+         * How followup plans, care events and followup actions are created for a saved booking
+         */
+        public enum Mode {
+            /** Asynchronously, one message queue per step */
+            QUEUE,
+            /** In the same transaction as the booking, in a single pass */
+            DIRECT
+        }
+
+        private Mode mode = Mode.QUEUE;
+
+        /** Number of processed message ids remembered to skip redelivered messages */
+        private int dedupeCacheSize = 10000;
+
+        /** Number of locks used to process the messages of one booking in order */
+        private int lockStripes = 64;
+
+        /** Milliseconds a batch waits for the lock of a booking before rolling back, to be redelivered */
+        private long lockTimeout = 5000;
+
+        private final Retry retry = new Retry();
+
+        private final Outbox outbox = new Outbox();
+
+        private final Backpressure backpressure = new Backpressure();
+
+        private final InMemory inMemory = new InMemory();
+
+        private final Listener bookings = new Listener(1, 2, 5, 1);
+
+        private final Listener plans = new Listener(5, 2, 5, 1);
+
+        private final Listener careEvents = new Listener(10, 3, 10, 1);
+
+        private final Listener actions = new Listener(250, 3, 10, 50);
+
+        public Mode getMode() {
+            return mode;
+        }
+
+        public void setMode(Mode mode) {
+            this.mode = mode;
+        }
+
+        public boolean isDirect() {
+            return mode == Mode.DIRECT;
+        }
+
+        public int getDedupeCacheSize() {
+            return dedupeCacheSize;
+        }
+
+        public void setDedupeCacheSize(int dedupeCacheSize) {
+            this.dedupeCacheSize = dedupeCacheSize;
+        }
+
+        public int getLockStripes() {
+            return lockStripes;
+        }
+
+        public void setLockStripes(int lockStripes) {
+            this.lockStripes = lockStripes;
+        }
+
+        public long getLockTimeout() {
+            return lockTimeout;
+        }
+
+        public void setLockTimeout(long lockTimeout) {
+            this.lockTimeout = lockTimeout;
+        }
+
+        public Retry getRetry() {
+            return retry;
+        }
+
+        public Outbox getOutbox() {
+            return outbox;
+        }
+
+        public Backpressure getBackpressure() {
+            return backpressure;
+        }
+
+        public InMemory getInMemory() {
+            return inMemory;
+        }
+
+        public Listener getBookings() {
+            return bookings;
+        }
+
+        public Listener getPlans() {
+            return plans;
+        }
+
+        public Listener getCareEvents() {
+            return careEvents;
+        }
+
+        public Listener getActions() {
+            return actions;
+        }
+
+        /**
+         * Get the consumer settings of a pipeline queue.
+         *
+         * @param queue the name of the queue
+         * @return the settings of its consumers
+         */
+        public Listener getListener(String queue) {
+            switch (queue) {
+                case Constants.BOOKINGS_QUEUE:
+                    return bookings;
+                case Constants.PLANS_QUEUE:
+                    return plans;
+                case Constants.CARE_EVENTS_QUEUE:
+                    return careEvents;
+                case Constants.ACTIONS_QUEUE:
+                    return actions;
+                default:
+                    throw new IllegalArgumentException("Not a pipeline queue : " + queue);
+            }
+        }
+
+        /**
+         * Retries of a failing message before it is moved to its dead letter queue.
+         */
+        public static class Retry {
+
+            private int maxAttempts = 3;
+
+            private long initialInterval = 1000;
+
+            private double multiplier = 2.0;
+
+            private long maxInterval = 10000;
+
+            public int getMaxAttempts() {
+                return maxAttempts;
+            }
+
+            public void setMaxAttempts(int maxAttempts) {
+                this.maxAttempts = maxAttempts;
+            }
+
+            public long getInitialInterval() {
+                return initialInterval;
+            }
+
+            public void setInitialInterval(long initialInterval) {
+                this.initialInterval = initialInterval;
+            }
+
+            public double getMultiplier() {
+                return multiplier;
+            }
+
+            public void setMultiplier(double multiplier) {
+                this.multiplier = multiplier;
+            }
+
+            public long getMaxInterval() {
+                return maxInterval;
+            }
+
+            public void setMaxInterval(long maxInterval) {
+                this.maxInterval = maxInterval;
+            }
+        }
+
+        /**
+         * Relay of the messages recorded in the outbox table to the pipeline queues.
+         */
+        public static class Outbox {
+
+            /** Maximum number of messages sent per transaction */
+            private int batchSize = 500;
+
+            /** Delay between polls of the outbox table, for messages not relayed on commit */
+            private long pollInterval = 5000;
+
+            private long publishConfirmTimeout = 10000;
+
+            public int getBatchSize() {
+                return batchSize;
+            }
+
+            public void setBatchSize(int batchSize) {
+                this.batchSize = batchSize;
+            }
+
+            public long getPollInterval() {
+                return pollInterval;
+            }
+
+            public void setPollInterval(long pollInterval) {
+                this.pollInterval = pollInterval;
+            }
+
+            public long getPublishConfirmTimeout() {
+                return publishConfirmTimeout;
+            }
+
+            public void setPublishConfirmTimeout(long publishConfirmTimeout) {
+                this.publishConfirmTimeout = publishConfirmTimeout;
+            }
+        }
+
+        /**
+         * Scaling of the queue consumers, and throttling of bulk imports, by the depth of the pipeline queues.
+         */
+        public static class Backpressure {
+
+            /** Delay between samples of the queue depths, in milliseconds */
+            private long sampleInterval = 5000;
+
+            /** Number of waiting messages per consumer above which another consumer is started */
+            private int backlogPerConsumer = 500;
+
+            /** Total depth of the queues above which bulk imports wait */
+            private long highWaterMark = 50000;
+
+            /** Total depth of the queues below which waiting bulk imports resume */
+            private long lowWaterMark = 10000;
+
+            /** Longest time a bulk import chunk waits for the queues to drain, in milliseconds */
+            private long maxThrottleWait = 300000;
+
+            public long getSampleInterval() {
+                return sampleInterval;
+            }
+
+            public void setSampleInterval(long sampleInterval) {
+                this.sampleInterval = sampleInterval;
+            }
+
+            public int getBacklogPerConsumer() {
+                return backlogPerConsumer;
+            }
+
+            public void setBacklogPerConsumer(int backlogPerConsumer) {
+                this.backlogPerConsumer = backlogPerConsumer;
+            }
+
+            public long getHighWaterMark() {
+                return highWaterMark;
+            }
+
+            public void setHighWaterMark(long highWaterMark) {
+                this.highWaterMark = highWaterMark;
+            }
+
+            public long getLowWaterMark() {
+                return lowWaterMark;
+            }
+
+            public void setLowWaterMark(long lowWaterMark) {
+                this.lowWaterMark = lowWaterMark;
+            }
+
+            public long getMaxThrottleWait() {
+                return maxThrottleWait;
+            }
+
+            public void setMaxThrottleWait(long maxThrottleWait) {
+                this.maxThrottleWait = maxThrottleWait;
+            }
+        }
+
+        /**
+         * Queues of the in process transport, used instead of RabbitMQ with the in-memory-pipeline profile.
+         */
+        public static class InMemory {
+
+            /** Maximum number of messages waiting in each queue; senders wait when it is full */
+            private int queueCapacity = 10000;
+
+            /** Maximum number of failed messages kept for each queue to be replayed; the oldest are dropped */
+            private int deadLetterCapacity = 1000;
+
+            public int getQueueCapacity() {
+                return queueCapacity;
+            }
+
+            public void setQueueCapacity(int queueCapacity) {
+                this.queueCapacity = queueCapacity;
+            }
+
+            public int getDeadLetterCapacity() {
+                return deadLetterCapacity;
+            }
+
+            public void setDeadLetterCapacity(int deadLetterCapacity) {
+                this.deadLetterCapacity = deadLetterCapacity;
+            }
+        }
+
+        /**
+         * Container settings of the consumers of one pipeline queue.
+         */
+        public static class Listener {
+
+            /** Number of unacknowledged messages a consumer may hold */
+            private int prefetch;
+
+            private int concurrentConsumers;
+
+            private int maxConcurrentConsumers;
+
+            /** Number of messages processed, and acknowledged, in one database transaction */
+            private int txSize;
+
+            public Listener() {
+            }
+
+            public Listener(int prefetch, int concurrentConsumers, int maxConcurrentConsumers, int txSize) {
+                this.prefetch = prefetch;
+                this.concurrentConsumers = concurrentConsumers;
+                this.maxConcurrentConsumers = maxConcurrentConsumers;
+                this.txSize = txSize;
+            }
+
+            public int getPrefetch() {
+                return prefetch;
+            }
+
+            public void setPrefetch(int prefetch) {
+                this.prefetch = prefetch;
+            }
+
+            public int getConcurrentConsumers() {
+                return concurrentConsumers;
+            }
+
+            public void setConcurrentConsumers(int concurrentConsumers) {
+                this.concurrentConsumers = concurrentConsumers;
+            }
+
+            public int getMaxConcurrentConsumers() {
+                return maxConcurrentConsumers;
+            }
+
+            public void setMaxConcurrentConsumers(int maxConcurrentConsumers) {
+                this.maxConcurrentConsumers = maxConcurrentConsumers;
+            }
+
+            public int getTxSize() {
+                return txSize;
+            }
+
+            public void setTxSize(int txSize) {
+                this.txSize = txSize;
+            }
+
+            public boolean isBatch() {
+                return txSize > 1;
+            }
+        }
+    }
+
+    /**
+     * Settings for the scheduled start of {@link com.noesisinformatica.northumbriaproms.domain.FollowupAction}s
+     * that have become due.
+     */
+    public static class StatusTransition {
+
+        /** When due actions are started */
+        private String cron = "0 5 * * * ?";
+
+        /** Number of actions updated and indexed together */
+        private int chunkSize = 1000;
+
+        public String getCron() {
+            return cron;
+        }
+
+        public void setCron(String cron) {
+            this.cron = cron;
+        }
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+    }
+
+    /**
+     * Settings for rebuilding the Elasticsearch indices from the database.
+     */
+    public static class Reindex {
+
+        /** Number of rows read and indexed together */
+        private int chunkSize = 1000;
+
+        /** Number of bulk requests sent at the same time */
+        private int parallelism = 4;
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+    }
+
+    public static class IndexWriter {
+
+        /** Whether documents are written straight away, on the calling thread, rather than queued */
+        private boolean synchronous = false;
+
+        /** Maximum number of documents written in one bulk request */
+        private int batchSize = 500;
+
+        /** Milliseconds between writes of the queued documents */
+        private long flushInterval = 1000;
+
+        /** Number of times a document is written before giving up on it */
+        private int maxAttempts = 5;
+
+        /** Maximum number of documents updated when an entity copied into them changes */
+        private int maxFanOut = 10000;
+
+        public boolean isSynchronous() {
+            return synchronous;
+        }
+
+        public void setSynchronous(boolean synchronous) {
+            this.synchronous = synchronous;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public long getFlushInterval() {
+            return flushInterval;
+        }
+
+        public void setFlushInterval(long flushInterval) {
+            this.flushInterval = flushInterval;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public int getMaxFanOut() {
+            return maxFanOut;
+        }
+
+        public void setMaxFanOut(int maxFanOut) {
+            this.maxFanOut = maxFanOut;
+        }
+    }
+
+    public static class Search {
+
+        /** Whether followup actions are searched in their flat documents, rather than in their nested index */
+        private boolean flatFollowupActions = true;
+
+        /** Milliseconds the facets of a search are cached for, 0 to not cache them */
+        private long facetCacheTtl = 30000;
+
+        /** Maximum number of searches whose facets are cached */
+        private int facetCacheSize = 1000;
+
+        public boolean isFlatFollowupActions() {
+            return flatFollowupActions;
+        }
+
+        public void setFlatFollowupActions(boolean flatFollowupActions) {
+            this.flatFollowupActions = flatFollowupActions;
+        }
+
+        public long getFacetCacheTtl() {
+            return facetCacheTtl;
+        }
+
+        public void setFacetCacheTtl(long facetCacheTtl) {
+            this.facetCacheTtl = facetCacheTtl;
+        }
+
+        public int getFacetCacheSize() {
+            return facetCacheSize;
+        }
+
+        public void setFacetCacheSize(int facetCacheSize) {
+            this.facetCacheSize = facetCacheSize;
+        }
+    }
+
+    /**
+     * Settings for the followup action exports run in the background.
+     */
+    public static class Export {
+
+        /** Directory the files of the exports are written to, created readable by the application's user only */
+        private String directory = System.getProperty("user.home") + "/.northumbriaproms/exports";
+
+        /** Milliseconds a finished export is kept, and reused by identical requests, for */
+        private long ttl = 3600000;
+
+        /** Milliseconds between removals of the expired exports */
+        private long cleanupInterval = 60000;
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public long getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(long ttl) {
+            this.ttl = ttl;
+        }
+
+        public long getCleanupInterval() {
+            return cleanupInterval;
+        }
+
+        public void setCleanupInterval(long cleanupInterval) {
+            this.cleanupInterval = cleanupInterval;
+        }
+    }
+
+    /**
+     * Settings for the Hibernate statistics published as metrics.
+     */
+    public static class Persistence {
+
+        /** Milliseconds a query has to run for to be recorded as a slow query sample */
+        private long slowQueryThreshold = 500;
+
+        /** Number of the most recent slow query samples kept */
+        private int slowQuerySamples = 20;
+
+        public long getSlowQueryThreshold() {
+            return slowQueryThreshold;
+        }
+
+        public void setSlowQueryThreshold(long slowQueryThreshold) {
+            this.slowQueryThreshold = slowQueryThreshold;
+        }
+
+        public int getSlowQuerySamples() {
+            return slowQuerySamples;
+        }
+
+        public void setSlowQuerySamples(int slowQuerySamples) {
+            this.slowQuerySamples = slowQuerySamples;
+        }
+    }
+
+    /**
+     * Settings for the replicas of the database the read-only transactions are sent to.
+     */
+    public static class ReadReplica {
+
+        /** JDBC urls of the replicas, none to send every transaction to the primary */
+        private List<String> urls = new ArrayList<>();
+
+        /** User of the replicas, null to use the user of the primary */
+        private String username;
+
+        /** Password of the replicas, null to use the password of the primary */
+        private String password;
+
+        /** Maximum number of connections to each replica */
+        private int maximumPoolSize = 10;
+
+        /**
+         * Milliseconds after a write that read-only transactions are still sent to the primary, above the
+         * replication lag. Only the writes of the same instance count, so the replicas should only be used by a
+         * single instance of the application.
+         */
+        private long maxReplicationLag = 1000;
+
+        public List<String> getUrls() {
+            return urls;
+        }
+
+        public void setUrls(List<String> urls) {
+            this.urls = urls;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        public int getMaximumPoolSize() {
+            return maximumPoolSize;
+        }
+
+        public void setMaximumPoolSize(int maximumPoolSize) {
+            this.maximumPoolSize = maximumPoolSize;
+        }
+
+        public long getMaxReplicationLag() {
+            return maxReplicationLag;
+        }
+
+        public void setMaxReplicationLag(long maxReplicationLag) {
+            this.maxReplicationLag = maxReplicationLag;
+        }
+    }
 }
@@ -24,6 +24,8 @@ package com.noesisinformatica.northumbriaproms.config;
  * #L%
  */
 
+import com.noesisinformatica.northumbriaproms.repository.ProcedureTimepointRepository;
+import com.noesisinformatica.northumbriaproms.repository.ProcedurelinkRepository;
 import io.github.jhipster.config.JHipsterConstants;
 import io.github.jhipster.config.JHipsterProperties;
 
@@ -96,6 +98,9 @@ public class CacheConfiguration {
         }
         config.getMapConfigs().put("default", initializeDefaultMapConfig());
         config.getMapConfigs().put("com.noesisinformatica.northumbriaproms.domain.*", initializeDomainMapConfig(jHipsterProperties));
+        // lookups used when generating followup plans are evicted on change, the time to live is a safety net
+        config.getMapConfigs().put(ProcedureTimepointRepository.TIMEPOINTS_BY_PROCEDURE_CACHE, initializeDomainMapConfig(jHipsterProperties));
+        config.getMapConfigs().put(ProcedurelinkRepository.QUESTIONNAIRES_BY_PROCEDURE_CACHE, initializeDomainMapConfig(jHipsterProperties));
         return Hazelcast.newHazelcastInstance(config);
     }
 
@@ -24,6 +24,10 @@ package com.noesisinformatica.northumbriaproms.config;
  * #L%
  */
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Application constants.
  */
@@ -39,6 +43,12 @@ public final class Constants {
     public static final String PLANS_QUEUE = "promsapp_plans_queue";
     public static final String ACTIONS_QUEUE = "promsapp_actions_queue";
     public static final String CARE_EVENTS_QUEUE = "promsapp_care_events_queue";
+    public static final List<String> PIPELINE_QUEUES = Collections.unmodifiableList(
+        Arrays.asList(BOOKINGS_QUEUE, PLANS_QUEUE, CARE_EVENTS_QUEUE, ACTIONS_QUEUE));
+    // Profile replacing the RabbitMQ broker with in process queues
+    public static final String SPRING_PROFILE_IN_MEMORY_PIPELINE = "in-memory-pipeline";
+    public static final String DEAD_LETTER_EXCHANGE = "promsapp_dead_letter_exchange";
+    public static final String DEAD_LETTER_QUEUE_SUFFIX = "_dlq";
 
     private Constants() {
     }
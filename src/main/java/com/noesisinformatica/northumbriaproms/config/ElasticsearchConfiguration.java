@@ -26,6 +26,8 @@ package com.noesisinformatica.northumbriaproms.config;
 
 import java.io.IOException;
 
+import com.noesisinformatica.northumbriaproms.service.search.ChangeLoggingElasticsearchTemplate;
+import com.noesisinformatica.northumbriaproms.service.search.IndexChangeLog;
 import org.elasticsearch.client.Client;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -40,8 +42,13 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 public class ElasticsearchConfiguration {
 
     @Bean
-    public ElasticsearchTemplate elasticsearchTemplate(Client client, Jackson2ObjectMapperBuilder jackson2ObjectMapperBuilder) {
-        return new ElasticsearchTemplate(client, new CustomEntityMapper(jackson2ObjectMapperBuilder.createXmlMapper(false).build()));
+    public EntityMapper entityMapper(Jackson2ObjectMapperBuilder jackson2ObjectMapperBuilder) {
+        return new CustomEntityMapper(jackson2ObjectMapperBuilder.createXmlMapper(false).build());
+    }
+
+    @Bean
+    public ElasticsearchTemplate elasticsearchTemplate(Client client, EntityMapper entityMapper, IndexChangeLog indexChangeLog) {
+        return new ChangeLoggingElasticsearchTemplate(client, entityMapper, indexChangeLog);
     }
 
     public class CustomEntityMapper implements EntityMapper {
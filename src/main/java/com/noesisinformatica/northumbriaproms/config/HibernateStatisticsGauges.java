@@ -0,0 +1,125 @@
+package com.noesisinformatica.northumbriaproms.config;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * Publishes the Hibernate statistics as metrics: the loads, fetches and writes of each entity, the hit
+ * ratio of each second level cache region, and the execution times and slow samples of queries.
+ * <p>
+ * The gauges read the counters Hibernate keeps anyway, so they cost nothing until they are reported.
+ * Nothing is registered unless {@code hibernate.generate_statistics} is on.
+ */
+@Component
+public class HibernateStatisticsGauges {
+
+    private final Logger log = LoggerFactory.getLogger(HibernateStatisticsGauges.class);
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final MetricRegistry metricRegistry;
+
+    private final ApplicationProperties applicationProperties;
+
+    public HibernateStatisticsGauges(EntityManagerFactory entityManagerFactory, MetricRegistry metricRegistry,
+                                     ApplicationProperties applicationProperties) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.metricRegistry = metricRegistry;
+        this.applicationProperties = applicationProperties;
+    }
+
+    @PostConstruct
+    public void registerGauges() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        if (!statistics.isStatisticsEnabled()) {
+            log.debug("Hibernate statistics are disabled, not registering their metrics");
+            return;
+        }
+        for (String entityName : statistics.getEntityNames()) {
+            registerEntity(statistics, entityName);
+        }
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            registerRegion(statistics, region);
+        }
+        metricRegistry.register("hibernate.queries.executions", (Gauge<Long>) statistics::getQueryExecutionCount);
+        metricRegistry.register("hibernate.queries.max-time", (Gauge<Long>) statistics::getQueryExecutionMaxTime);
+        metricRegistry.register("hibernate.queries.slowest", (Gauge<String>) statistics::getQueryExecutionMaxTimeQueryString);
+        if (statistics instanceof MeteredStatistics) {
+            MeteredStatistics meteredStatistics = (MeteredStatistics) statistics;
+            ApplicationProperties.Persistence persistence = applicationProperties.getPersistence();
+            meteredStatistics.setSlowQueryThreshold(persistence.getSlowQueryThreshold());
+            meteredStatistics.setSlowQuerySamples(persistence.getSlowQuerySamples());
+            metricRegistry.register("hibernate.queries.time", meteredStatistics.getQueryTimer());
+            metricRegistry.register("hibernate.queries.slow",
+                (Gauge<List<MeteredStatistics.SlowQuery>>) meteredStatistics::getSlowQueries);
+        } else {
+            log.debug("Hibernate statistics are not metered, query times are not published");
+        }
+    }
+
+    private void registerEntity(Statistics statistics, String entityName) {
+        String prefix = MetricRegistry.name("hibernate.entities", entityName.substring(entityName.lastIndexOf('.') + 1));
+        registerEntityCount(statistics, entityName, prefix + ".loads", EntityStatistics::getLoadCount);
+        registerEntityCount(statistics, entityName, prefix + ".fetches", EntityStatistics::getFetchCount);
+        registerEntityCount(statistics, entityName, prefix + ".inserts", EntityStatistics::getInsertCount);
+        registerEntityCount(statistics, entityName, prefix + ".updates", EntityStatistics::getUpdateCount);
+        registerEntityCount(statistics, entityName, prefix + ".deletes", EntityStatistics::getDeleteCount);
+    }
+
+    private void registerEntityCount(Statistics statistics, String entityName, String name,
+                                     ToLongFunction<EntityStatistics> count) {
+        metricRegistry.register(name, (Gauge<Long>) () -> count.applyAsLong(statistics.getEntityStatistics(entityName)));
+    }
+
+    private void registerRegion(Statistics statistics, String region) {
+        String prefix = MetricRegistry.name("hibernate.cache", region);
+        metricRegistry.register(prefix + ".hits",
+            (Gauge<Long>) () -> statistics.getSecondLevelCacheStatistics(region).getHitCount());
+        metricRegistry.register(prefix + ".misses",
+            (Gauge<Long>) () -> statistics.getSecondLevelCacheStatistics(region).getMissCount());
+        metricRegistry.register(prefix + ".hit-ratio", new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                SecondLevelCacheStatistics cache = statistics.getSecondLevelCacheStatistics(region);
+                return Ratio.of(cache.getHitCount(), cache.getHitCount() + cache.getMissCount());
+            }
+        });
+    }
+}
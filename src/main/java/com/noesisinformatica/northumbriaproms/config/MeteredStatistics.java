@@ -0,0 +1,190 @@
+package com.noesisinformatica.northumbriaproms.config;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.codahale.metrics.Timer;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.internal.ConcurrentStatisticsImpl;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hibernate statistics which also time every query execution, and keep the most recent
+ * executions slower than a threshold as samples.
+ * <p>
+ * Only queries above the threshold take a lock, so the overhead on top of Hibernate's own
+ * counters is a timer update per query.
+ */
+public class MeteredStatistics extends ConcurrentStatisticsImpl {
+
+    private final Timer queryTimer = new Timer();
+
+    private final Deque<SlowQuery> slowQueries = new ArrayDeque<>();
+
+    private volatile long slowQueryThreshold = 500;
+
+    private volatile int slowQuerySamples = 20;
+
+    public MeteredStatistics(SessionFactoryImplementor sessionFactory) {
+        super(sessionFactory);
+    }
+
+    @Override
+    public void queryExecuted(String query, int rows, long time) {
+        super.queryExecuted(query, rows, time);
+        queryTimer.update(time, TimeUnit.MILLISECONDS);
+        if (time >= slowQueryThreshold) {
+            SlowQuery slowQuery = new SlowQuery(query, rows, time, countBindParameters(query));
+            synchronized (slowQueries) {
+                slowQueries.addFirst(slowQuery);
+                while (slowQueries.size() > slowQuerySamples) {
+                    slowQueries.removeLast();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        // also called by the super constructor, before the samples are initialised
+        if (slowQueries != null) {
+            synchronized (slowQueries) {
+                slowQueries.clear();
+            }
+        }
+    }
+
+    public Timer getQueryTimer() {
+        return queryTimer;
+    }
+
+    /**
+     * Get the most recent slow queries.
+     *
+     * @return the samples, most recent first
+     */
+    public List<SlowQuery> getSlowQueries() {
+        synchronized (slowQueries) {
+            return new ArrayList<>(slowQueries);
+        }
+    }
+
+    public void setSlowQueryThreshold(long slowQueryThreshold) {
+        this.slowQueryThreshold = slowQueryThreshold;
+    }
+
+    public void setSlowQuerySamples(int slowQuerySamples) {
+        this.slowQuerySamples = slowQuerySamples;
+    }
+
+    /**
+     * Count the positional ({@code ?}, {@code ?1}) and named ({@code :name}) parameters of a query,
+     * ignoring any inside string literals.
+     *
+     * @param query the HQL or SQL query
+     * @return the number of parameter markers
+     */
+    static int countBindParameters(String query) {
+        if (query == null) {
+            return 0;
+        }
+        int count = 0;
+        boolean quoted = false;
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (quoted) {
+                continue;
+            } else if (c == '?') {
+                count++;
+            } else if (c == ':' && i + 1 < query.length()
+                && Character.isJavaIdentifierStart(query.charAt(i + 1))
+                && (i == 0 || query.charAt(i - 1) != ':')) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * A query execution slower than the threshold.
+     */
+    public static class SlowQuery {
+
+        private final String query;
+
+        private final int rows;
+
+        private final long time;
+
+        private final int bindParameters;
+
+        private final Instant executedAt = Instant.now();
+
+        SlowQuery(String query, int rows, long time, int bindParameters) {
+            this.query = query;
+            this.rows = rows;
+            this.time = time;
+            this.bindParameters = bindParameters;
+        }
+
+        public String getQuery() {
+            return query;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public int getBindParameters() {
+            return bindParameters;
+        }
+
+        public Instant getExecutedAt() {
+            return executedAt;
+        }
+
+        @Override
+        public String toString() {
+            return "SlowQuery{" +
+                "time=" + time +
+                ", rows=" + rows +
+                ", bindParameters=" + bindParameters +
+                ", query='" + query + "'" +
+                "}";
+        }
+    }
+}
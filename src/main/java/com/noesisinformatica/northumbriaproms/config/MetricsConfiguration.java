@@ -67,6 +67,8 @@ public class MetricsConfiguration extends MetricsConfigurerAdapter {
 
     private HikariDataSource hikariDataSource;
 
+    private ReplicaRoutingDataSource replicaRoutingDataSource;
+
     public MetricsConfiguration(JHipsterProperties jHipsterProperties) {
         this.jHipsterProperties = jHipsterProperties;
     }
@@ -76,6 +78,11 @@ public class MetricsConfiguration extends MetricsConfigurerAdapter {
         this.hikariDataSource = hikariDataSource;
     }
 
+    @Autowired(required = false)
+    public void setReplicaRoutingDataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        this.replicaRoutingDataSource = replicaRoutingDataSource;
+    }
+
     @Override
     @Bean
     public MetricRegistry getMetricRegistry() {
@@ -101,6 +108,12 @@ public class MetricsConfiguration extends MetricsConfigurerAdapter {
             log.debug("Monitoring the datasource");
             hikariDataSource.setMetricRegistry(metricRegistry);
         }
+        if (replicaRoutingDataSource != null) {
+            log.debug("Monitoring the replicas of the datasource");
+            replicaRoutingDataSource.getReplicas().stream()
+                .filter(HikariDataSource.class::isInstance)
+                .forEach(replica -> ((HikariDataSource) replica).setMetricRegistry(metricRegistry));
+        }
         if (jHipsterProperties.getMetrics().getJmx().isEnabled()) {
             log.debug("Initializing Metrics JMX reporting");
             JmxReporter jmxReporter = JmxReporter.forRegistry(metricRegistry).build();
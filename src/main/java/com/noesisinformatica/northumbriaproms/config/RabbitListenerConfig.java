@@ -24,17 +24,36 @@ package com.noesisinformatica.northumbriaproms.config;
  * #L%
  */
 
-import org.springframework.amqp.core.Queue;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.noesisinformatica.northumbriaproms.service.messaging.MeteredMessageConverter;
+import com.noesisinformatica.northumbriaproms.service.messaging.PipelineRetry;
+import org.aopalliance.aop.Advice;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.*;
 import org.springframework.amqp.rabbit.annotation.EnableRabbit;
 import org.springframework.amqp.rabbit.annotation.RabbitListenerConfigurer;
 import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.config.RetryInterceptorBuilder;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistrar;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.rabbit.retry.MissingMessageIdAdvice;
+import org.springframework.amqp.rabbit.retry.RepublishMessageRecoverer;
+import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import org.springframework.messaging.converter.MappingJackson2MessageConverter;
 import org.springframework.messaging.handler.annotation.support.DefaultMessageHandlerMethodFactory;
+import org.springframework.retry.policy.MapRetryContextCache;
+import org.springframework.retry.policy.RetryContextCache;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
 
 /**
  * A custom rabbit listener implementation
@@ -42,20 +61,158 @@ import org.springframework.messaging.handler.annotation.support.DefaultMessageHa
 
 @EnableRabbit
 @Configuration
+@Profile("!" + Constants.SPRING_PROFILE_IN_MEMORY_PIPELINE)
 public class RabbitListenerConfig implements RabbitListenerConfigurer {
 
+    private final Logger log = LoggerFactory.getLogger(RabbitListenerConfig.class);
+
     @Autowired
     public ConnectionFactory connectionFactory;
 
+    @Autowired
+    public MetricRegistry metricRegistry;
+
+    /**
+     * Default container factory, for listeners that do not name a queue specific one.
+     */
     @Bean
-    public SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory() {
+    public SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory(RabbitTemplate rabbitTemplate,
+                                                                               ApplicationProperties applicationProperties) {
         SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
         factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(pipelineMessageConverter());
         factory.setConcurrentConsumers(3);
         factory.setMaxConcurrentConsumers(10);
+        // never requeue a failed message, it is retried in place and then dead lettered
+        factory.setDefaultRequeueRejected(false);
+        factory.setAdviceChain(retryInterceptor(rabbitTemplate, applicationProperties.getPipeline().getRetry()));
         return factory;
     }
 
+    @Bean
+    public SimpleRabbitListenerContainerFactory bookingsContainerFactory(RabbitTemplate rabbitTemplate,
+                                                                         PlatformTransactionManager transactionManager,
+                                                                         ApplicationProperties applicationProperties) {
+        return pipelineContainerFactory(applicationProperties.getPipeline().getBookings(), rabbitTemplate,
+            transactionManager, applicationProperties.getPipeline().getRetry());
+    }
+
+    @Bean
+    public SimpleRabbitListenerContainerFactory plansContainerFactory(RabbitTemplate rabbitTemplate,
+                                                                      PlatformTransactionManager transactionManager,
+                                                                      ApplicationProperties applicationProperties) {
+        return pipelineContainerFactory(applicationProperties.getPipeline().getPlans(), rabbitTemplate,
+            transactionManager, applicationProperties.getPipeline().getRetry());
+    }
+
+    @Bean
+    public SimpleRabbitListenerContainerFactory careEventsContainerFactory(RabbitTemplate rabbitTemplate,
+                                                                           PlatformTransactionManager transactionManager,
+                                                                           ApplicationProperties applicationProperties) {
+        return pipelineContainerFactory(applicationProperties.getPipeline().getCareEvents(), rabbitTemplate,
+            transactionManager, applicationProperties.getPipeline().getRetry());
+    }
+
+    @Bean
+    public SimpleRabbitListenerContainerFactory actionsContainerFactory(RabbitTemplate rabbitTemplate,
+                                                                        PlatformTransactionManager transactionManager,
+                                                                        ApplicationProperties applicationProperties) {
+        return pipelineContainerFactory(applicationProperties.getPipeline().getActions(), rabbitTemplate,
+            transactionManager, applicationProperties.getPipeline().getRetry());
+    }
+
+    /**
+     * A container factory for the consumers of one pipeline queue.
+     * <p>
+     * With a transaction size above one, each consumer receives that many messages in one database transaction,
+     * which commits, and acknowledges the messages, once for the batch. A failing message then rolls back the
+     * whole batch, so its messages are requeued and the failing one is retried on redelivery (stateful retry)
+     * rather than in place, before being dead lettered.
+     */
+    private SimpleRabbitListenerContainerFactory pipelineContainerFactory(ApplicationProperties.Pipeline.Listener listener,
+                                                                          RabbitTemplate rabbitTemplate,
+                                                                          PlatformTransactionManager transactionManager,
+                                                                          ApplicationProperties.Pipeline.Retry retry) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(pipelineMessageConverter());
+        factory.setPrefetchCount(Math.max(listener.getPrefetch(), listener.getTxSize()));
+        factory.setConcurrentConsumers(listener.getConcurrentConsumers());
+        factory.setMaxConcurrentConsumers(Math.max(listener.getConcurrentConsumers(), listener.getMaxConcurrentConsumers()));
+        if (listener.isBatch()) {
+            factory.setTxSize(listener.getTxSize());
+            factory.setChannelTransacted(true);
+            factory.setTransactionManager(transactionManager);
+            // the messages of a rolled back batch go back on the queue, exhausted ones are dead lettered
+            factory.setDefaultRequeueRejected(true);
+            MapRetryContextCache retryContextCache = new MapRetryContextCache();
+            factory.setAdviceChain(new MissingMessageIdAdvice(retryContextCache),
+                statefulRetryInterceptor(rabbitTemplate, retry, retryContextCache));
+        } else {
+            factory.setDefaultRequeueRejected(false);
+            factory.setAdviceChain(retryInterceptor(rabbitTemplate, retry));
+        }
+        return factory;
+    }
+
+    /**
+     * Retry a failing message with exponential backoff, then republish it with the exception to the dead letter
+     * exchange, which routes it to the dead letter queue of its queue. Messages that cannot be converted are
+     * dead lettered straight away.
+     */
+    private Advice retryInterceptor(RabbitTemplate rabbitTemplate, ApplicationProperties.Pipeline.Retry properties) {
+        return RetryInterceptorBuilder.stateless()
+            .retryOperations(retryTemplate(properties))
+            .recoverer(deadLetterRecoverer(rabbitTemplate))
+            .build();
+    }
+
+    /**
+     * As {@link #retryInterceptor}, but the failure is rethrown so that the transaction rolls back, and the
+     * attempts of a message are counted across its redeliveries, by message id.
+     */
+    private Advice statefulRetryInterceptor(RabbitTemplate rabbitTemplate, ApplicationProperties.Pipeline.Retry properties,
+                                            RetryContextCache retryContextCache) {
+        RetryTemplate retryTemplate = retryTemplate(properties);
+        retryTemplate.setRetryContextCache(retryContextCache);
+        return RetryInterceptorBuilder.stateful()
+            .retryOperations(retryTemplate)
+            .recoverer(deadLetterRecoverer(rabbitTemplate))
+            .build();
+    }
+
+    private RetryTemplate retryTemplate(ApplicationProperties.Pipeline.Retry properties) {
+        return PipelineRetry.retryTemplate(properties, metricRegistry);
+    }
+
+    private RepublishMessageRecoverer deadLetterRecoverer(RabbitTemplate rabbitTemplate) {
+        Meter deadLettered = metricRegistry.meter("pipeline.messages.dead-lettered");
+
+        RepublishMessageRecoverer recoverer = new RepublishMessageRecoverer(rabbitTemplate, Constants.DEAD_LETTER_EXCHANGE) {
+            @Override
+            public void recover(Message message, Throwable cause) {
+                log.error("Moving message from {} to dead letter queue : {}",
+                    message.getMessageProperties().getConsumerQueue(), cause.getMessage());
+                deadLettered.mark();
+                super.recover(message, cause);
+            }
+        };
+        // keep the original routing key, i.e. the name of the queue
+        recoverer.setErrorRoutingKeyPrefix("");
+        return recoverer;
+    }
+
+    /**
+     * Converts pipeline messages to and from JSON. Also used by the {@link org.springframework.amqp.rabbit.core.RabbitTemplate}.
+     */
+    @Bean
+    public MessageConverter pipelineMessageConverter() {
+        Jackson2JsonMessageConverter converter = new Jackson2JsonMessageConverter();
+        // ids are the keys of the retry state of messages processed in batches
+        converter.setCreateMessageIds(true);
+        return new MeteredMessageConverter(converter, metricRegistry);
+    }
+
     @Bean
     public MappingJackson2MessageConverter jackson2Converter() {
         return new MappingJackson2MessageConverter();
@@ -75,22 +232,84 @@ public class RabbitListenerConfig implements RabbitListenerConfigurer {
 
     @Bean
     public Queue bookingsQueue() {
-        return new Queue(Constants.BOOKINGS_QUEUE);
+        return pipelineQueue(Constants.BOOKINGS_QUEUE);
     }
 
     @Bean
     public Queue careEventsQueue() {
-        return new Queue(Constants.CARE_EVENTS_QUEUE);
+        return pipelineQueue(Constants.CARE_EVENTS_QUEUE);
     }
 
 
     @Bean
     public Queue plansQueue() {
-        return new Queue(Constants.PLANS_QUEUE);
+        return pipelineQueue(Constants.PLANS_QUEUE);
     }
 
     @Bean
     public Queue actionsQueue() {
-        return new Queue(Constants.ACTIONS_QUEUE);
+        return pipelineQueue(Constants.ACTIONS_QUEUE);
+    }
+
+    @Bean
+    public DirectExchange deadLetterExchange() {
+        return new DirectExchange(Constants.DEAD_LETTER_EXCHANGE);
+    }
+
+    @Bean
+    public Queue bookingsDeadLetterQueue() {
+        return deadLetterQueue(Constants.BOOKINGS_QUEUE);
+    }
+
+    @Bean
+    public Queue careEventsDeadLetterQueue() {
+        return deadLetterQueue(Constants.CARE_EVENTS_QUEUE);
+    }
+
+    @Bean
+    public Queue plansDeadLetterQueue() {
+        return deadLetterQueue(Constants.PLANS_QUEUE);
+    }
+
+    @Bean
+    public Queue actionsDeadLetterQueue() {
+        return deadLetterQueue(Constants.ACTIONS_QUEUE);
+    }
+
+    @Bean
+    public Binding bookingsDeadLetterBinding() {
+        return deadLetterBinding(bookingsDeadLetterQueue(), Constants.BOOKINGS_QUEUE);
+    }
+
+    @Bean
+    public Binding careEventsDeadLetterBinding() {
+        return deadLetterBinding(careEventsDeadLetterQueue(), Constants.CARE_EVENTS_QUEUE);
+    }
+
+    @Bean
+    public Binding plansDeadLetterBinding() {
+        return deadLetterBinding(plansDeadLetterQueue(), Constants.PLANS_QUEUE);
+    }
+
+    @Bean
+    public Binding actionsDeadLetterBinding() {
+        return deadLetterBinding(actionsDeadLetterQueue(), Constants.ACTIONS_QUEUE);
+    }
+
+    /**
+     * A pipeline queue; messages rejected by its consumers are routed through the dead letter exchange.
+     */
+    private Queue pipelineQueue(String name) {
+        return QueueBuilder.durable(name)
+            .withArgument("x-dead-letter-exchange", Constants.DEAD_LETTER_EXCHANGE)
+            .build();
+    }
+
+    private Queue deadLetterQueue(String queue) {
+        return QueueBuilder.durable(queue + Constants.DEAD_LETTER_QUEUE_SUFFIX).build();
+    }
+
+    private Binding deadLetterBinding(Queue deadLetterQueue, String queue) {
+        return BindingBuilder.bind(deadLetterQueue).to(deadLetterExchange()).with(queue);
     }
 }
@@ -0,0 +1,103 @@
+package com.noesisinformatica.northumbriaproms.config;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends the read-only transactions to the replicas of the database when their urls are configured, each through
+ * its own Hikari pool configured like the pool of the primary.
+ *
+ * @see ReplicaRoutingDataSource
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "application.read-replica", name = "urls")
+public class ReplicaDataSourceConfiguration {
+
+    private final Logger log = LoggerFactory.getLogger(ReplicaDataSourceConfiguration.class);
+
+    /**
+     * The pool of the primary, configured as Spring Boot would have without the replicas.
+     */
+    @Bean
+    @ConfigurationProperties(prefix = "spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+        return (HikariDataSource) dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource,
+                                                             ApplicationProperties applicationProperties) {
+        ApplicationProperties.ReadReplica readReplica = applicationProperties.getReadReplica();
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (String url : readReplica.getUrls()) {
+            HikariDataSource replica = new HikariDataSource();
+            primaryDataSource.copyState(replica);
+            replica.setPoolName("replica-" + (replicas.size() + 1));
+            replica.setJdbcUrl(url);
+            if (readReplica.getUsername() != null) {
+                replica.setUsername(readReplica.getUsername());
+            }
+            if (readReplica.getPassword() != null) {
+                replica.setPassword(readReplica.getPassword());
+            }
+            replica.setMaximumPoolSize(readReplica.getMaximumPoolSize());
+            replica.setReadOnly(true);
+            replicas.add(replica);
+        }
+        log.debug("Sending read-only transactions to {} replicas", replicas.size());
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, readReplica.getMaxReplicationLag());
+    }
+
+    /**
+     * The data source of the application, which only asks for a connection once the transaction has begun and
+     * whether it is read-only is known.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    @Bean
+    public ReplicaWriteListener replicaWriteListener(EntityManagerFactory entityManagerFactory,
+                                                     ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new ReplicaWriteListener(entityManagerFactory, replicaRoutingDataSource);
+    }
+}
@@ -0,0 +1,158 @@
+package com.noesisinformatica.northumbriaproms.config;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Sends the read-only transactions to the replicas of the database, in turn, and everything else to the primary.
+ * <p>
+ * Read-only transactions are still sent to the primary for a while after each write, so that what was just written,
+ * by a request or by the pipeline, is read back even though the replicas lag behind. Only the writes of this instance
+ * are recorded, so this only holds when a single instance of the application writes to the primary; readers which
+ * must see every write, such as the index writer, read through {@link #readFromPrimary(Supplier)} instead. A
+ * read-only transaction also falls back to the primary when its replica cannot give a connection.
+ * <p>
+ * Whether a transaction is read-only is only known once it has begun, so the connections should be asked for
+ * lazily, through a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final String PRIMARY = "primary";
+
+    private static final ThreadLocal<Boolean> READING_FROM_PRIMARY = ThreadLocal.withInitial(() -> false);
+
+    private final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private final DataSource primary;
+
+    private final List<DataSource> replicas;
+
+    private final long maxReplicationLag;
+
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    private volatile long lastWrite;
+
+    /**
+     * @param primary the primary database, which every write goes to
+     * @param replicas the replicas of the primary
+     * @param maxReplicationLag the milliseconds after a write that read-only transactions are still sent to the primary
+     */
+    public ReplicaRoutingDataSource(DataSource primary, List<? extends DataSource> replicas, long maxReplicationLag) {
+        this.primary = primary;
+        this.replicas = new ArrayList<>(replicas);
+        this.maxReplicationLag = maxReplicationLag;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < this.replicas.size(); i++) {
+            targets.put(i, this.replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (replicas.isEmpty() || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+            || READING_FROM_PRIMARY.get()
+            || System.currentTimeMillis() - lastWrite < maxReplicationLag) {
+            return PRIMARY;
+        }
+        return Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        DataSource target = determineTargetDataSource();
+        try {
+            return target.getConnection();
+        } catch (SQLException e) {
+            if (target == primary) {
+                throw e;
+            }
+            log.warn("Unable to connect to a replica, reading from the primary : {}", e.getMessage());
+            return primary.getConnection();
+        }
+    }
+
+    /**
+     * Read from the primary, even in read-only transactions, for readers which must not see a stale replica.
+     * The transactions must begin within the reads, as the connections are asked for once they have begun.
+     *
+     * @param reads the reads, usually a read-only transaction
+     * @return what the reads returned
+     */
+    public static <T> T readFromPrimary(Supplier<T> reads) {
+        boolean outer = READING_FROM_PRIMARY.get();
+        READING_FROM_PRIMARY.set(true);
+        try {
+            return reads.get();
+        } finally {
+            READING_FROM_PRIMARY.set(outer);
+        }
+    }
+
+    /**
+     * Record that something was written to the primary, which the replicas may not have yet.
+     */
+    public void recordWrite() {
+        lastWrite = System.currentTimeMillis();
+    }
+
+    /**
+     * Close the pools of the replicas.
+     */
+    public void close() {
+        for (DataSource replica : replicas) {
+            if (replica instanceof Closeable) {
+                try {
+                    ((Closeable) replica).close();
+                } catch (IOException e) {
+                    log.warn("Unable to close a replica : {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    public List<DataSource> getReplicas() {
+        return replicas;
+    }
+}
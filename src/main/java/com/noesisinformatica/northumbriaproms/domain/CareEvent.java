@@ -29,6 +29,8 @@ import com.noesisinformatica.northumbriaproms.domain.enumeration.ActionStatus;
 import com.noesisinformatica.northumbriaproms.domain.enumeration.EventType;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import org.springframework.data.elasticsearch.annotations.Document;
 
 import javax.persistence.*;
@@ -43,6 +45,19 @@ import java.util.Set;
  * A CareEvent.
  */
 @Entity
+@NamedEntityGraphs({
+    @NamedEntityGraph(name = "CareEvent.list", attributeNodes = {
+        @NamedAttributeNode(value = "followupPlan", subgraph = "followupPlan"),
+        @NamedAttributeNode("timepoint"),
+        @NamedAttributeNode("patient")
+    }, subgraphs = @NamedSubgraph(name = "followupPlan", attributeNodes = @NamedAttributeNode("procedureBooking"))),
+    @NamedEntityGraph(name = "CareEvent.pipeline", attributeNodes = {
+        @NamedAttributeNode(value = "followupPlan", subgraph = "followupPlan"),
+        @NamedAttributeNode("timepoint"),
+        @NamedAttributeNode("patient"),
+        @NamedAttributeNode("followupActions")
+    }, subgraphs = @NamedSubgraph(name = "followupPlan", attributeNodes = @NamedAttributeNode("procedureBooking")))
+})
 @Table(name = "care_event")
 @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 @Document(indexName = "careevent")
@@ -51,7 +66,12 @@ public class CareEvent extends AbstractAuditingEntity implements Serializable {
     private static final long serialVersionUID = 1L;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "careEventIdGenerator")
+    @GenericGenerator(name = "careEventIdGenerator", strategy = "org.hibernate.id.enhanced.TableGenerator", parameters = {
+        @Parameter(name = "segment_value", value = "care_event"),
+        @Parameter(name = "increment_size", value = "50"),
+        @Parameter(name = "optimizer", value = "pooled")
+    })
     private Long id;
 
     @NotNull
@@ -66,7 +86,7 @@ public class CareEvent extends AbstractAuditingEntity implements Serializable {
     @NotNull
     private Patient patient;
 
-    @OneToMany(mappedBy = "careEvent", cascade = {CascadeType.ALL}, orphanRemoval = true, fetch = FetchType.EAGER)
+    @OneToMany(mappedBy = "careEvent", cascade = {CascadeType.ALL}, orphanRemoval = true, fetch = FetchType.LAZY)
     @JsonIgnore
     @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
     private Set<FollowupAction> followupActions = new HashSet<>();
@@ -208,7 +228,6 @@ public class CareEvent extends AbstractAuditingEntity implements Serializable {
             ", status='" + getStatus() + "'" +
             ", patient='" + getPatient() + "'" +
             ", timepoint='" + getTimepoint() + "'" +
-            ", actions='" + getFollowupActions() + "'" +
             "}";
     }
 }
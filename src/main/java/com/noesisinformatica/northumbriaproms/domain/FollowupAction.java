@@ -29,6 +29,8 @@ import com.noesisinformatica.northumbriaproms.domain.enumeration.ActionStatus;
 import com.noesisinformatica.northumbriaproms.domain.enumeration.ActionType;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import org.springframework.data.elasticsearch.annotations.Document;
 
 import javax.persistence.*;
@@ -44,6 +46,31 @@ import java.util.Set;
  * A FollowupAction.
  */
 @Entity
+@NamedEntityGraphs({
+    @NamedEntityGraph(name = "FollowupAction.list", attributeNodes = {
+        @NamedAttributeNode(value = "careEvent", subgraph = "careEvent"),
+        @NamedAttributeNode("patient"),
+        @NamedAttributeNode("questionnaire")
+    }, subgraphs = {
+        @NamedSubgraph(name = "careEvent", attributeNodes = {
+            @NamedAttributeNode(value = "followupPlan", subgraph = "followupPlan"),
+            @NamedAttributeNode("timepoint")
+        }),
+        @NamedSubgraph(name = "followupPlan", attributeNodes = @NamedAttributeNode("procedureBooking"))
+    }),
+    @NamedEntityGraph(name = "FollowupAction.detail", attributeNodes = {
+        @NamedAttributeNode(value = "careEvent", subgraph = "careEvent"),
+        @NamedAttributeNode("patient"),
+        @NamedAttributeNode("questionnaire"),
+        @NamedAttributeNode("responseItems")
+    }, subgraphs = {
+        @NamedSubgraph(name = "careEvent", attributeNodes = {
+            @NamedAttributeNode(value = "followupPlan", subgraph = "followupPlan"),
+            @NamedAttributeNode("timepoint")
+        }),
+        @NamedSubgraph(name = "followupPlan", attributeNodes = @NamedAttributeNode("procedureBooking"))
+    })
+})
 @Table(name = "followup_action")
 @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 @Document(indexName = "followupaction")
@@ -52,7 +79,12 @@ public class FollowupAction extends AbstractAuditingEntity implements Serializab
     private static final long serialVersionUID = 1L;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "followupActionIdGenerator")
+    @GenericGenerator(name = "followupActionIdGenerator", strategy = "org.hibernate.id.enhanced.TableGenerator", parameters = {
+        @Parameter(name = "segment_value", value = "followup_action"),
+        @Parameter(name = "increment_size", value = "50"),
+        @Parameter(name = "optimizer", value = "pooled")
+    })
     private Long id;
 
     @Enumerated(EnumType.STRING)
@@ -94,7 +126,7 @@ public class FollowupAction extends AbstractAuditingEntity implements Serializab
     @ManyToOne
     private Questionnaire questionnaire;
 
-    @OneToMany(mappedBy = "followupAction", cascade = {CascadeType.ALL}, orphanRemoval = true, fetch = FetchType.EAGER)
+    @OneToMany(mappedBy = "followupAction", cascade = {CascadeType.ALL}, orphanRemoval = true, fetch = FetchType.LAZY)
     @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
     private Set<ResponseItem> responseItems = new HashSet<>();
 
@@ -293,7 +325,6 @@ public class FollowupAction extends AbstractAuditingEntity implements Serializab
             ", scheduledDate='" + getScheduledDate() + "'" +
             ", name='" + getName() + "'" +
             ", type='" + getType() + "'" +
-            ", responseItems=" + getResponseItems() +
             ", outcomeScore=" + getOutcomeScore() +
             ", outcomeComment='" + getOutcomeComment() + "'" +
             ", completedDate='" + getCompletedDate() + "'" +
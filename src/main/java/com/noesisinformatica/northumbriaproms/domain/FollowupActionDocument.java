@@ -0,0 +1,267 @@
+package com.noesisinformatica.northumbriaproms.domain;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.noesisinformatica.northumbriaproms.domain.enumeration.ActionPhase;
+import com.noesisinformatica.northumbriaproms.domain.enumeration.ActionStatus;
+import com.noesisinformatica.northumbriaproms.domain.enumeration.ActionType;
+import com.noesisinformatica.northumbriaproms.domain.enumeration.GenderType;
+import com.noesisinformatica.northumbriaproms.domain.enumeration.Laterality;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.elasticsearch.annotations.Document;
+import org.springframework.data.elasticsearch.annotations.Mapping;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * The search document of a FollowupAction, flattened from the action, its care event, booking and patient.
+ * <p>
+ * Facet fields are not analysed, so that they are aggregated and filtered on their whole value; the mapping is
+ * explicit, in the file of the {@link Mapping}. Documents are built by the
+ * {@link com.noesisinformatica.northumbriaproms.service.search.FollowupActionProjection}.
+ */
+@Document(indexName = "followupactiondocument")
+@Mapping(mappingPath = "/config/elasticsearch/followupactiondocument-mapping.json")
+public class FollowupActionDocument implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    private Long id;
+
+    private String name;
+
+    private ActionType type;
+
+    private ActionPhase phase;
+
+    private ActionStatus status;
+
+    private LocalDate scheduledDate;
+
+    private LocalDate completedDate;
+
+    private Integer outcomeScore;
+
+    private Long careEventId;
+
+    private Long procedureBookingId;
+
+    private Long patientId;
+
+    private String patientNhsNumber;
+
+    private GenderType patientGender;
+
+    private Integer patientAge;
+
+    private String patientAddress;
+
+    private String primaryProcedure;
+
+    private String consultantName;
+
+    private String hospitalSite;
+
+    private Laterality side;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public ActionType getType() {
+        return type;
+    }
+
+    public void setType(ActionType type) {
+        this.type = type;
+    }
+
+    public ActionPhase getPhase() {
+        return phase;
+    }
+
+    public void setPhase(ActionPhase phase) {
+        this.phase = phase;
+    }
+
+    public ActionStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(ActionStatus status) {
+        this.status = status;
+    }
+
+    public LocalDate getScheduledDate() {
+        return scheduledDate;
+    }
+
+    public void setScheduledDate(LocalDate scheduledDate) {
+        this.scheduledDate = scheduledDate;
+    }
+
+    public LocalDate getCompletedDate() {
+        return completedDate;
+    }
+
+    public void setCompletedDate(LocalDate completedDate) {
+        this.completedDate = completedDate;
+    }
+
+    public Integer getOutcomeScore() {
+        return outcomeScore;
+    }
+
+    public void setOutcomeScore(Integer outcomeScore) {
+        this.outcomeScore = outcomeScore;
+    }
+
+    public Long getCareEventId() {
+        return careEventId;
+    }
+
+    public void setCareEventId(Long careEventId) {
+        this.careEventId = careEventId;
+    }
+
+    public Long getProcedureBookingId() {
+        return procedureBookingId;
+    }
+
+    public void setProcedureBookingId(Long procedureBookingId) {
+        this.procedureBookingId = procedureBookingId;
+    }
+
+    public Long getPatientId() {
+        return patientId;
+    }
+
+    public void setPatientId(Long patientId) {
+        this.patientId = patientId;
+    }
+
+    public String getPatientNhsNumber() {
+        return patientNhsNumber;
+    }
+
+    public void setPatientNhsNumber(String patientNhsNumber) {
+        this.patientNhsNumber = patientNhsNumber;
+    }
+
+    public GenderType getPatientGender() {
+        return patientGender;
+    }
+
+    public void setPatientGender(GenderType patientGender) {
+        this.patientGender = patientGender;
+    }
+
+    public Integer getPatientAge() {
+        return patientAge;
+    }
+
+    public void setPatientAge(Integer patientAge) {
+        this.patientAge = patientAge;
+    }
+
+    public String getPatientAddress() {
+        return patientAddress;
+    }
+
+    public void setPatientAddress(String patientAddress) {
+        this.patientAddress = patientAddress;
+    }
+
+    public String getPrimaryProcedure() {
+        return primaryProcedure;
+    }
+
+    public void setPrimaryProcedure(String primaryProcedure) {
+        this.primaryProcedure = primaryProcedure;
+    }
+
+    public String getConsultantName() {
+        return consultantName;
+    }
+
+    public void setConsultantName(String consultantName) {
+        this.consultantName = consultantName;
+    }
+
+    public String getHospitalSite() {
+        return hospitalSite;
+    }
+
+    public void setHospitalSite(String hospitalSite) {
+        this.hospitalSite = hospitalSite;
+    }
+
+    public Laterality getSide() {
+        return side;
+    }
+
+    public void setSide(Laterality side) {
+        this.side = side;
+    }
+
+    @Override
+    public String toString() {
+        return "FollowupActionDocument{" +
+            "id=" + id +
+            ", name='" + name + "'" +
+            ", type=" + type +
+            ", phase=" + phase +
+            ", status=" + status +
+            ", scheduledDate=" + scheduledDate +
+            ", completedDate=" + completedDate +
+            ", outcomeScore=" + outcomeScore +
+            ", careEventId=" + careEventId +
+            ", procedureBookingId=" + procedureBookingId +
+            ", patientId=" + patientId +
+            ", patientNhsNumber='" + patientNhsNumber + "'" +
+            ", patientGender=" + patientGender +
+            ", patientAge=" + patientAge +
+            ", patientAddress='" + patientAddress + "'" +
+            ", primaryProcedure='" + primaryProcedure + "'" +
+            ", consultantName='" + consultantName + "'" +
+            ", hospitalSite='" + hospitalSite + "'" +
+            ", side=" + side +
+            "}";
+    }
+}
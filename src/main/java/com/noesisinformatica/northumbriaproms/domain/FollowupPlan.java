@@ -27,6 +27,8 @@ package com.noesisinformatica.northumbriaproms.domain;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import org.springframework.data.elasticsearch.annotations.Document;
 
 import javax.persistence.*;
@@ -41,6 +43,20 @@ import java.util.Set;
  * A FollowupPlan.
  */
 @Entity
+@NamedEntityGraphs({
+    @NamedEntityGraph(name = "FollowupPlan.list", attributeNodes = {
+        @NamedAttributeNode("procedureBooking"),
+        @NamedAttributeNode("patient")
+    }),
+    @NamedEntityGraph(name = "FollowupPlan.pipeline", attributeNodes = {
+        @NamedAttributeNode("procedureBooking"),
+        @NamedAttributeNode("patient"),
+        @NamedAttributeNode(value = "careEvents", subgraph = "careEvents")
+    }, subgraphs = @NamedSubgraph(name = "careEvents", attributeNodes = {
+        @NamedAttributeNode("timepoint"),
+        @NamedAttributeNode("followupActions")
+    }))
+})
 @Table(name = "followup_plan")
 @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 @Document(indexName = "followupplan")
@@ -49,7 +65,12 @@ public class FollowupPlan implements Serializable {
     private static final long serialVersionUID = 1L;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "followupPlanIdGenerator")
+    @GenericGenerator(name = "followupPlanIdGenerator", strategy = "org.hibernate.id.enhanced.TableGenerator", parameters = {
+        @Parameter(name = "segment_value", value = "followup_plan"),
+        @Parameter(name = "increment_size", value = "50"),
+        @Parameter(name = "optimizer", value = "pooled")
+    })
     private Long id;
 
     @OneToOne(mappedBy = "followupPlan", fetch = FetchType.EAGER)
@@ -59,7 +80,7 @@ public class FollowupPlan implements Serializable {
     @NotNull
     private Patient patient;
 
-    @OneToMany(mappedBy = "followupPlan", cascade = {CascadeType.ALL}, orphanRemoval = true, fetch = FetchType.EAGER)
+    @OneToMany(mappedBy = "followupPlan", cascade = {CascadeType.ALL}, orphanRemoval = true, fetch = FetchType.LAZY)
     @JsonIgnore
     @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
     private Set<CareEvent> careEvents = new HashSet<>();
@@ -0,0 +1,154 @@
+package com.noesisinformatica.northumbriaproms.domain;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * The position up to which a scheduled job has processed its rows, so that the next run only processes the rows
+ * that have changed since.
+ */
+@Entity
+@Table(name = "job_checkpoint")
+public class JobCheckpoint implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "name", length = 100)
+    private String name;
+
+    @Column(name = "checkpoint_date")
+    private LocalDate checkpointDate;
+
+    @Column(name = "checkpoint_id")
+    private Long checkpointId;
+
+    @Column(name = "checkpoint_value")
+    private String checkpointValue;
+
+    @Column(name = "last_run_date")
+    private Instant lastRunDate;
+
+    public String getName() {
+        return name;
+    }
+
+    public JobCheckpoint name(String name) {
+        this.name = name;
+        return this;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public LocalDate getCheckpointDate() {
+        return checkpointDate;
+    }
+
+    public JobCheckpoint checkpointDate(LocalDate checkpointDate) {
+        this.checkpointDate = checkpointDate;
+        return this;
+    }
+
+    public void setCheckpointDate(LocalDate checkpointDate) {
+        this.checkpointDate = checkpointDate;
+    }
+
+    public Long getCheckpointId() {
+        return checkpointId;
+    }
+
+    public JobCheckpoint checkpointId(Long checkpointId) {
+        this.checkpointId = checkpointId;
+        return this;
+    }
+
+    public void setCheckpointId(Long checkpointId) {
+        this.checkpointId = checkpointId;
+    }
+
+    public String getCheckpointValue() {
+        return checkpointValue;
+    }
+
+    public JobCheckpoint checkpointValue(String checkpointValue) {
+        this.checkpointValue = checkpointValue;
+        return this;
+    }
+
+    public void setCheckpointValue(String checkpointValue) {
+        this.checkpointValue = checkpointValue;
+    }
+
+    public Instant getLastRunDate() {
+        return lastRunDate;
+    }
+
+    public JobCheckpoint lastRunDate(Instant lastRunDate) {
+        this.lastRunDate = lastRunDate;
+        return this;
+    }
+
+    public void setLastRunDate(Instant lastRunDate) {
+        this.lastRunDate = lastRunDate;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        JobCheckpoint jobCheckpoint = (JobCheckpoint) o;
+        if (jobCheckpoint.getName() == null || getName() == null) {
+            return false;
+        }
+        return Objects.equals(getName(), jobCheckpoint.getName());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(getName());
+    }
+
+    @Override
+    public String toString() {
+        return "JobCheckpoint{" +
+            "name='" + getName() + "'" +
+            ", checkpointDate='" + getCheckpointDate() + "'" +
+            ", checkpointId=" + getCheckpointId() +
+            ", checkpointValue='" + getCheckpointValue() + "'" +
+            ", lastRunDate='" + getLastRunDate() + "'" +
+            "}";
+    }
+}
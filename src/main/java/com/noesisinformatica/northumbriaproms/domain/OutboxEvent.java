@@ -0,0 +1,199 @@
+package com.noesisinformatica.northumbriaproms.domain;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+
+import javax.persistence.*;
+import javax.validation.constraints.*;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * A message to send to a pipeline queue, recorded in the transaction of the change it announces and relayed to
+ * the broker once that transaction has committed.
+ */
+@Entity
+@Table(name = "outbox_event")
+public class OutboxEvent implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @NotNull
+    @Column(name = "queue_name", nullable = false)
+    private String queueName;
+
+    @NotNull
+    @Column(name = "message_id", length = 36, nullable = false)
+    private String messageId;
+
+    @NotNull
+    @Column(name = "event_type", length = 32, nullable = false)
+    private String eventType;
+
+    @Column(name = "entity_id")
+    private Long entityId;
+
+    @Column(name = "booking_id")
+    private Long bookingId;
+
+    @Column(name = "message_version", nullable = false)
+    private long messageVersion;
+
+    @Column(name = "created_date", nullable = false)
+    private Instant createdDate = Instant.now();
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getQueueName() {
+        return queueName;
+    }
+
+    public OutboxEvent queueName(String queueName) {
+        this.queueName = queueName;
+        return this;
+    }
+
+    public void setQueueName(String queueName) {
+        this.queueName = queueName;
+    }
+
+    public String getMessageId() {
+        return messageId;
+    }
+
+    public OutboxEvent messageId(String messageId) {
+        this.messageId = messageId;
+        return this;
+    }
+
+    public void setMessageId(String messageId) {
+        this.messageId = messageId;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public OutboxEvent eventType(String eventType) {
+        this.eventType = eventType;
+        return this;
+    }
+
+    public void setEventType(String eventType) {
+        this.eventType = eventType;
+    }
+
+    public Long getEntityId() {
+        return entityId;
+    }
+
+    public OutboxEvent entityId(Long entityId) {
+        this.entityId = entityId;
+        return this;
+    }
+
+    public void setEntityId(Long entityId) {
+        this.entityId = entityId;
+    }
+
+    public Long getBookingId() {
+        return bookingId;
+    }
+
+    public OutboxEvent bookingId(Long bookingId) {
+        this.bookingId = bookingId;
+        return this;
+    }
+
+    public void setBookingId(Long bookingId) {
+        this.bookingId = bookingId;
+    }
+
+    public long getMessageVersion() {
+        return messageVersion;
+    }
+
+    public OutboxEvent messageVersion(long messageVersion) {
+        this.messageVersion = messageVersion;
+        return this;
+    }
+
+    public void setMessageVersion(long messageVersion) {
+        this.messageVersion = messageVersion;
+    }
+
+    public Instant getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(Instant createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        OutboxEvent outboxEvent = (OutboxEvent) o;
+        if (outboxEvent.getId() == null || getId() == null) {
+            return false;
+        }
+        return Objects.equals(getId(), outboxEvent.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(getId());
+    }
+
+    @Override
+    public String toString() {
+        return "OutboxEvent{" +
+            "id=" + getId() +
+            ", queueName='" + getQueueName() + "'" +
+            ", messageId='" + getMessageId() + "'" +
+            ", eventType='" + getEventType() + "'" +
+            ", entityId=" + getEntityId() +
+            ", bookingId=" + getBookingId() +
+            ", messageVersion=" + getMessageVersion() +
+            ", createdDate='" + getCreatedDate() + "'" +
+            "}";
+    }
+}
@@ -25,10 +25,16 @@ package com.noesisinformatica.northumbriaproms.repository;
  */
 
 import com.noesisinformatica.northumbriaproms.domain.CareEvent;
+import com.noesisinformatica.northumbriaproms.domain.enumeration.ActionStatus;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import org.springframework.data.jpa.repository.*;
 
+import java.util.Collection;
 import java.util.List;
 
 
@@ -39,7 +45,37 @@ import java.util.List;
 @Repository
 public interface CareEventRepository extends JpaRepository<CareEvent, Long>, JpaSpecificationExecutor<CareEvent> {
 
+    @Override
+    @EntityGraph("CareEvent.list")
+    Page<CareEvent> findAll(Pageable pageable);
+
+    @Override
+    @EntityGraph("CareEvent.list")
+    List<CareEvent> findAll(Specification<CareEvent> spec);
+
+    @Override
+    @EntityGraph("CareEvent.list")
+    Page<CareEvent> findAll(Specification<CareEvent> spec, Pageable pageable);
+
+    /**
+     * Get a care event with the followup actions the pipeline processes.
+     */
+    @EntityGraph("CareEvent.pipeline")
+    CareEvent findOneWithFollowupActionsById(Long id);
+
     List<CareEvent> findAllByFollowupPlanId(Long planId);
 
     List<CareEvent> findAllByPatientId(Long patientId);
+
+    @Query("select careEvent.id from CareEvent careEvent join careEvent.followupPlan plan " +
+        "join plan.procedureBooking booking where booking.id = :bookingId")
+    List<Long> findIdsByProcedureBookingId(@Param("bookingId") Long bookingId);
+
+    @Query("select careEvent.id from CareEvent careEvent where careEvent.patient.id = :patientId")
+    List<Long> findIdsByPatientId(@Param("patientId") Long patientId);
+
+    @Modifying
+    @Query("update CareEvent careEvent set careEvent.status = :status where careEvent.id in :ids and careEvent.status = :from")
+    int updateStatus(@Param("ids") Collection<Long> ids, @Param("from") ActionStatus from,
+                     @Param("status") ActionStatus status);
 }
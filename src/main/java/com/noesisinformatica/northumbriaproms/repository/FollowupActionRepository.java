@@ -25,10 +25,22 @@ package com.noesisinformatica.northumbriaproms.repository;
  */
 
 import com.noesisinformatica.northumbriaproms.domain.FollowupAction;
+import com.noesisinformatica.northumbriaproms.domain.enumeration.ActionStatus;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
 
 /**
  * Spring Data JPA repository for the FollowupAction entity.
@@ -38,4 +50,74 @@ import org.springframework.stereotype.Repository;
 public interface FollowupActionRepository extends JpaRepository<FollowupAction, Long>, JpaSpecificationExecutor<FollowupAction> {
 
 //    Page<FollowupAction> findAllByPatientId(Long patientId);
+
+    @Override
+    @EntityGraph("FollowupAction.list")
+    Page<FollowupAction> findAll(Pageable pageable);
+
+    @Override
+    @EntityGraph("FollowupAction.list")
+    List<FollowupAction> findAll(Specification<FollowupAction> spec);
+
+    @Override
+    @EntityGraph("FollowupAction.list")
+    Page<FollowupAction> findAll(Specification<FollowupAction> spec, Pageable pageable);
+
+    /**
+     * Get the actions with the given ids, with the associations shown in a list of actions.
+     */
+    @EntityGraph("FollowupAction.list")
+    List<FollowupAction> findAllByIdIn(Collection<Long> ids);
+
+    /**
+     * Get an action with the associations shown in the details of an action, including its response items.
+     */
+    @EntityGraph("FollowupAction.detail")
+    FollowupAction findOneWithDetailById(Long id);
+
+    /**
+     * Get the actions with the given status scheduled up to a date, in order of scheduled date and id, starting
+     * after the given scheduled date and id. Each row holds the id, scheduled date, care event id and the
+     * performed date of the procedure booking of an action.
+     */
+    @Query("select action.id, action.scheduledDate, careEvent.id, booking.performedDate from FollowupAction action " +
+        "join action.careEvent careEvent join careEvent.followupPlan plan left join plan.procedureBooking booking " +
+        "where action.status = :status and action.scheduledDate <= :until " +
+        "and (action.scheduledDate > :afterDate or (action.scheduledDate = :afterDate and action.id > :afterId)) " +
+        "order by action.scheduledDate, action.id")
+    List<Object[]> findScheduledAfter(@Param("status") ActionStatus status, @Param("until") LocalDate until,
+                                      @Param("afterDate") LocalDate afterDate, @Param("afterId") Long afterId,
+                                      Pageable pageable);
+
+    /**
+     * Get the ids of the actions of the followup plan of a procedure booking.
+     */
+    @Query("select action.id from FollowupAction action join action.careEvent careEvent " +
+        "join careEvent.followupPlan plan join plan.procedureBooking booking where booking.id = :bookingId")
+    List<Long> findIdsByProcedureBookingId(@Param("bookingId") Long bookingId);
+
+    @Query("select action.id from FollowupAction action where action.patient.id = :patientId")
+    List<Long> findIdsByPatientId(@Param("patientId") Long patientId);
+
+    @Query("select action.id from FollowupAction action where action.careEvent.id = :careEventId")
+    List<Long> findIdsByCareEventId(@Param("careEventId") Long careEventId);
+
+    /**
+     * Get the exported values of the actions with the given ids, without reading the entities. Each row holds the id,
+     * patient family name, given name, NHS number and gender, booking patient age, consultant name, hospital site,
+     * primary procedure and performed date, action name, timepoint name, outcome score, completed date, phase and
+     * outcome comment of an action.
+     */
+    @Query("select action.id, patient.familyName, patient.givenName, patient.nhsNumber, patient.gender, " +
+        "booking.patientAge, booking.consultantName, booking.hospitalSite, booking.primaryProcedure, " +
+        "booking.performedDate, action.name, timepoint.name, action.outcomeScore, action.completedDate, " +
+        "action.phase, action.outcomeComment from FollowupAction action join action.patient patient " +
+        "join action.careEvent careEvent join careEvent.followupPlan plan left join plan.procedureBooking booking " +
+        "left join careEvent.timepoint timepoint where action.id in :ids")
+    List<Object[]> findExportValuesByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("update FollowupAction action set action.status = :status where action.id in :ids and action.status = :from")
+    int updateStatus(@Param("ids") Collection<Long> ids, @Param("from") ActionStatus from,
+                     @Param("status") ActionStatus status);
 }
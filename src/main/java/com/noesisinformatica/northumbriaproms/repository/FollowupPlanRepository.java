@@ -25,10 +25,13 @@ package com.noesisinformatica.northumbriaproms.repository;
  */
 
 import com.noesisinformatica.northumbriaproms.domain.FollowupPlan;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import org.springframework.data.jpa.repository.*;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 
@@ -40,4 +43,20 @@ import java.util.Optional;
 public interface FollowupPlanRepository extends JpaRepository<FollowupPlan, Long> {
 
     Optional<FollowupPlan> findOneByProcedureBookingId(Long id);
+
+    /**
+     * Get the plans of the given procedure bookings, with the care events and followup actions the pipeline
+     * materialises.
+     */
+    @EntityGraph("FollowupPlan.pipeline")
+    List<FollowupPlan> findAllByProcedureBookingIdIn(Collection<Long> ids);
+
+    /**
+     * Get a plan with the care events and followup actions the pipeline processes.
+     */
+    @EntityGraph("FollowupPlan.pipeline")
+    FollowupPlan findOneWithCareEventsById(Long id);
+
+    @Query("select plan.id from FollowupPlan plan where plan.patient.id = :patientId")
+    List<Long> findIdsByPatientId(@Param("patientId") Long patientId);
 }
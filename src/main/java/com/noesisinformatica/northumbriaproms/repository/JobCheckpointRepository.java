@@ -0,0 +1,48 @@
+package com.noesisinformatica.northumbriaproms.repository;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.noesisinformatica.northumbriaproms.domain.JobCheckpoint;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+
+
+/**
+ * Spring Data JPA repository for the JobCheckpoint entity.
+ */
+@Repository
+public interface JobCheckpointRepository extends JpaRepository<JobCheckpoint, String> {
+
+    /**
+     * Get the checkpoint of a job, locking it until the end of the transaction so that the job does not run on
+     * several instances at once.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select jobCheckpoint from JobCheckpoint jobCheckpoint where jobCheckpoint.name = :name")
+    JobCheckpoint findOneForUpdate(@Param("name") String name);
+}
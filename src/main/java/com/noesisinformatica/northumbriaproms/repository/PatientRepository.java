@@ -25,10 +25,16 @@ package com.noesisinformatica.northumbriaproms.repository;
  */
 
 import com.noesisinformatica.northumbriaproms.domain.Patient;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Repository;
 
 import org.springframework.data.jpa.repository.*;
 
+import java.util.Collection;
+import java.util.List;
+
 
 /**
  * Spring Data JPA repository for the Patient entity.
@@ -37,4 +43,13 @@ import org.springframework.data.jpa.repository.*;
 @Repository
 public interface PatientRepository extends JpaRepository<Patient, Long>, JpaSpecificationExecutor<Patient> {
 
+    @Override
+    @EntityGraph("Patient.list")
+    List<Patient> findAll(Specification<Patient> spec);
+
+    @Override
+    @EntityGraph("Patient.list")
+    Page<Patient> findAll(Specification<Patient> spec, Pageable pageable);
+
+    List<Patient> findAllByNhsNumberIn(Collection<Long> nhsNumbers);
 }
@@ -34,6 +34,8 @@ import org.springframework.stereotype.Repository;
 
 import org.springframework.data.jpa.repository.*;
 
+import javax.persistence.LockModeType;
+import java.util.List;
 import java.util.Optional;
 
 
@@ -49,4 +51,11 @@ public interface ProcedureBookingRepository extends JpaRepository<ProcedureBooki
     @Query("select procedurebooking.followupPlan from ProcedureBooking procedurebooking where procedurebooking.primaryProcedure = :code and procedurebooking.patient.id = :patientId")
     Optional<FollowupPlan> findOneByPatientIdAndPrimaryProcedure(@Param("patientId") Long patientId, @Param("code") String primaryProcedureCode);
 
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select procedurebooking from ProcedureBooking procedurebooking where procedurebooking.id = :id")
+    ProcedureBooking findOneForUpdate(@Param("id") Long id);
+
+    @Query("select procedurebooking.id from ProcedureBooking procedurebooking where procedurebooking.patient.id = :patientId")
+    List<Long> findIdsByPatientId(@Param("patientId") Long patientId);
+
 }
@@ -27,6 +27,7 @@ package com.noesisinformatica.northumbriaproms.repository;
 import com.noesisinformatica.northumbriaproms.domain.ProcedureTimepoint;
 import com.noesisinformatica.northumbriaproms.domain.Questionnaire;
 import com.noesisinformatica.northumbriaproms.domain.Timepoint;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -42,6 +43,9 @@ import java.util.List;
 @Repository
 public interface ProcedureTimepointRepository extends JpaRepository<ProcedureTimepoint, Long> {
 
+    String TIMEPOINTS_BY_PROCEDURE_CACHE = "timepointsByProcedureLocalCode";
+
+    @Cacheable(cacheNames = TIMEPOINTS_BY_PROCEDURE_CACHE)
     @Query("select proceduretimepoint.timepoint from ProcedureTimepoint proceduretimepoint where proceduretimepoint.procedure.localCode = :localCode")
     List<Timepoint> findAllTimepointsByProcedureLocalCode(@Param("localCode") Integer localCode);
 }
@@ -27,6 +27,7 @@ package com.noesisinformatica.northumbriaproms.repository;
 import com.noesisinformatica.northumbriaproms.domain.Procedure;
 import com.noesisinformatica.northumbriaproms.domain.Procedurelink;
 import com.noesisinformatica.northumbriaproms.domain.Questionnaire;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -43,11 +44,14 @@ import java.util.Optional;
 @Repository
 public interface ProcedurelinkRepository extends JpaRepository<Procedurelink, Long> {
 
+    String QUESTIONNAIRES_BY_PROCEDURE_CACHE = "questionnairesByProcedureLocalCode";
+
     List<Procedurelink> findAllByProcedure(Procedure procedure);
 
     @Query("select procedurelink.questionnaire from Procedurelink procedurelink where procedurelink.procedure.id = :procedureId")
     List<Questionnaire> findAllQuestionnairesByProcedureId(@Param("procedureId") Long procedureId);
 
+    @Cacheable(cacheNames = QUESTIONNAIRES_BY_PROCEDURE_CACHE)
     @Query("select procedurelink.questionnaire from Procedurelink procedurelink where procedurelink.procedure.localCode = :localCode")
     List<Questionnaire> findAllQuestionnairesByProcedureLocalCode(@Param("localCode") Integer localCode);
 
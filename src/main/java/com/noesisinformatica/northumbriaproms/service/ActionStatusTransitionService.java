@@ -0,0 +1,48 @@
+package com.noesisinformatica.northumbriaproms.service;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import java.time.LocalDate;
+
+/**
+ * Service Interface for starting the FollowupActions, and their CareEvents, that have become due since they
+ * were planned.
+ */
+public interface ActionStatusTransitionService {
+
+    /**
+     * Start the actions that have become due by today. Run on the configured schedule.
+     */
+    void startDueActions();
+
+    /**
+     * Start the actions scheduled up to a date that have not been started yet, leaving out those scheduled
+     * before the previous run.
+     *
+     * @param today the date up to which actions are due
+     * @return the number of actions started
+     */
+    int startDueActions(LocalDate today);
+}
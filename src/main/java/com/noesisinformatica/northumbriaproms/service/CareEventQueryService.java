@@ -25,7 +25,10 @@ package com.noesisinformatica.northumbriaproms.service;
  */
 
 
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,13 +38,14 @@ import org.springframework.data.jpa.domain.Specifications;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import io.github.jhipster.service.QueryService;
+import javax.persistence.EntityManager;
 
 import com.noesisinformatica.northumbriaproms.domain.CareEvent;
 import com.noesisinformatica.northumbriaproms.domain.*; // for static metamodels
 import com.noesisinformatica.northumbriaproms.repository.CareEventRepository;
 import com.noesisinformatica.northumbriaproms.repository.search.CareEventSearchRepository;
 import com.noesisinformatica.northumbriaproms.service.dto.CareEventCriteria;
+import com.noesisinformatica.northumbriaproms.service.search.CursorPage;
 
 import com.noesisinformatica.northumbriaproms.domain.enumeration.EventType;
 
@@ -53,7 +57,11 @@ import com.noesisinformatica.northumbriaproms.domain.enumeration.EventType;
  */
 @Service
 @Transactional(readOnly = true)
-public class CareEventQueryService extends QueryService<CareEvent> {
+public class CareEventQueryService extends KeysetQueryService<CareEvent> {
+
+    /** The fields the care events can be paged through by after a cursor */
+    private static final Set<String> KEYSET_SORT_FIELDS = new HashSet<>(Arrays.asList(
+        "id", "type", "status"));
 
     private final Logger log = LoggerFactory.getLogger(CareEventQueryService.class);
 
@@ -62,7 +70,9 @@ public class CareEventQueryService extends QueryService<CareEvent> {
 
     private final CareEventSearchRepository careEventSearchRepository;
 
-    public CareEventQueryService(CareEventRepository careEventRepository, CareEventSearchRepository careEventSearchRepository) {
+    public CareEventQueryService(CareEventRepository careEventRepository, CareEventSearchRepository careEventSearchRepository,
+                                 EntityManager entityManager) {
+        super(entityManager, CareEvent.class, KEYSET_SORT_FIELDS);
         this.careEventRepository = careEventRepository;
         this.careEventSearchRepository = careEventSearchRepository;
     }
@@ -70,7 +80,7 @@ public class CareEventQueryService extends QueryService<CareEvent> {
     /**
      * Return a {@link List} of {@link CareEvent} which matches the criteria from the database
      * @param criteria The object which holds all the filters, which the entities should match.
-     * @return the matching entities.
+     * @return the matching entities, read with the "CareEvent.list" fetch plan of the repository.
      */
     @Transactional(readOnly = true)
     public List<CareEvent> findByCriteria(CareEventCriteria criteria) {
@@ -83,7 +93,7 @@ public class CareEventQueryService extends QueryService<CareEvent> {
      * Return a {@link Page} of {@link CareEvent} which matches the criteria from the database
      * @param criteria The object which holds all the filters, which the entities should match.
      * @param page The page, which should be returned.
-     * @return the matching entities.
+     * @return the matching entities, read with the "CareEvent.list" fetch plan of the repository.
      */
     @Transactional(readOnly = true)
     public Page<CareEvent> findByCriteria(CareEventCriteria criteria, Pageable page) {
@@ -92,6 +102,22 @@ public class CareEventQueryService extends QueryService<CareEvent> {
         return careEventRepository.findAll(specification, page);
     }
 
+    /**
+     * Return a page of {@link CareEvent} which matches the criteria from the database, after the cursor of the previous page.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param cursor The cursor returned with the previous page, or null for the first page.
+     * @param page The size of the page, and the sort of the first page.
+     * @param count Whether to count all the matching entities.
+     * @return the matching entities, read with the "CareEvent.list" fetch plan, and the cursor of the next page.
+     * @throws IllegalArgumentException if the cursor is invalid
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<CareEvent> findByCriteriaAfter(CareEventCriteria criteria, String cursor, Pageable page, boolean count) {
+        log.debug("find by criteria : {}, after: {}", criteria, cursor);
+        final Specifications<CareEvent> specification = createSpecification(criteria);
+        return findAfter(specification, cursor, page, count);
+    }
+
     /**
      * Function to convert CareEventCriteria to a {@link Specifications}
      */
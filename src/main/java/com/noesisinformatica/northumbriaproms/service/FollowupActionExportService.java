@@ -0,0 +1,96 @@
+package com.noesisinformatica.northumbriaproms.service;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.noesisinformatica.northumbriaproms.service.dto.ExportFormat;
+import com.noesisinformatica.northumbriaproms.service.dto.ExportJobDTO;
+import com.noesisinformatica.northumbriaproms.web.rest.util.QueryModel;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Service Interface for exporting FollowupActions.
+ */
+public interface FollowupActionExportService {
+
+    /**
+     * Write all the followupActions corresponding to the query, a batch of rows at a time, so that the memory used
+     * does not grow with the number of actions exported. The stream is flushed but left open.
+     *
+     * @param query the query of the followupAction search
+     * @param format the format to write the actions in
+     * @param out the stream to write the actions to
+     * @param cancelled checked before each row, to stop the export
+     * @return the number of actions written
+     * @throws IOException if the actions could not be written, e.g. because the client went away
+     * @throws CancellationException if the export was cancelled, or its thread interrupted, before it completed
+     */
+    long export(QueryModel query, ExportFormat format, OutputStream out, BooleanSupplier cancelled) throws IOException;
+
+    /**
+     * Start exporting the followupActions corresponding to the query to a file, in the background, for the current
+     * user. An export of an identical query by the same user that is still running, or finished and not expired, is
+     * reused rather than started again.
+     *
+     * @param query the query of the followupAction search
+     * @param format the format to write the actions in
+     * @param gzip whether to compress the file
+     * @return the progress of the export
+     */
+    ExportJobDTO submit(QueryModel query, ExportFormat format, boolean gzip);
+
+    /**
+     * Get the progress of an export.
+     *
+     * @param id the id of the export
+     * @return the progress of the export, or null if it is unknown, has expired or belongs to another user
+     */
+    ExportJobDTO getJob(String id);
+
+    /**
+     * Get the file of a completed export.
+     *
+     * @param id the id of the export
+     * @return the file, or null if the export is unknown, has expired, belongs to another user or has not completed
+     */
+    Path getFile(String id);
+
+    /**
+     * Cancel an export that has not finished yet; a finished export is left as it is.
+     *
+     * @param id the id of the export
+     * @return the progress of the export, or null if it is unknown, has expired or belongs to another user
+     */
+    ExportJobDTO cancel(String id);
+
+    /**
+     * Remove the exports, and the files, that have expired.
+     */
+    void removeExpiredJobs();
+}
@@ -26,7 +26,10 @@ package com.noesisinformatica.northumbriaproms.service;
 
 
 import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,13 +39,14 @@ import org.springframework.data.jpa.domain.Specifications;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import io.github.jhipster.service.QueryService;
+import javax.persistence.EntityManager;
 
 import com.noesisinformatica.northumbriaproms.domain.FollowupAction;
 import com.noesisinformatica.northumbriaproms.domain.*; // for static metamodels
 import com.noesisinformatica.northumbriaproms.repository.FollowupActionRepository;
 import com.noesisinformatica.northumbriaproms.repository.search.FollowupActionSearchRepository;
 import com.noesisinformatica.northumbriaproms.service.dto.FollowupActionCriteria;
+import com.noesisinformatica.northumbriaproms.service.search.CursorPage;
 
 import com.noesisinformatica.northumbriaproms.domain.enumeration.ActionPhase;
 import com.noesisinformatica.northumbriaproms.domain.enumeration.ActionType;
@@ -55,7 +59,11 @@ import com.noesisinformatica.northumbriaproms.domain.enumeration.ActionType;
  */
 @Service
 @Transactional(readOnly = true)
-public class FollowupActionQueryService extends QueryService<FollowupAction> {
+public class FollowupActionQueryService extends KeysetQueryService<FollowupAction> {
+
+    /** The fields the followup actions can be paged through by after a cursor */
+    private static final Set<String> KEYSET_SORT_FIELDS = new HashSet<>(Arrays.asList(
+        "id", "name", "phase", "status", "type", "scheduledDate", "completedDate", "outcomeScore"));
 
     private final Logger log = LoggerFactory.getLogger(FollowupActionQueryService.class);
 
@@ -64,7 +72,9 @@ public class FollowupActionQueryService extends QueryService<FollowupAction> {
 
     private final FollowupActionSearchRepository followupActionSearchRepository;
 
-    public FollowupActionQueryService(FollowupActionRepository followupActionRepository, FollowupActionSearchRepository followupActionSearchRepository) {
+    public FollowupActionQueryService(FollowupActionRepository followupActionRepository, FollowupActionSearchRepository followupActionSearchRepository,
+                                      EntityManager entityManager) {
+        super(entityManager, FollowupAction.class, KEYSET_SORT_FIELDS);
         this.followupActionRepository = followupActionRepository;
         this.followupActionSearchRepository = followupActionSearchRepository;
     }
@@ -72,7 +82,7 @@ public class FollowupActionQueryService extends QueryService<FollowupAction> {
     /**
      * Return a {@link List} of {@link FollowupAction} which matches the criteria from the database
      * @param criteria The object which holds all the filters, which the entities should match.
-     * @return the matching entities.
+     * @return the matching entities, read with the "FollowupAction.list" fetch plan of the repository.
      */
     @Transactional(readOnly = true)
     public List<FollowupAction> findByCriteria(FollowupActionCriteria criteria) {
@@ -85,7 +95,7 @@ public class FollowupActionQueryService extends QueryService<FollowupAction> {
      * Return a {@link Page} of {@link FollowupAction} which matches the criteria from the database
      * @param criteria The object which holds all the filters, which the entities should match.
      * @param page The page, which should be returned.
-     * @return the matching entities.
+     * @return the matching entities, read with the "FollowupAction.list" fetch plan of the repository.
      */
     @Transactional(readOnly = true)
     public Page<FollowupAction> findByCriteria(FollowupActionCriteria criteria, Pageable page) {
@@ -94,6 +104,22 @@ public class FollowupActionQueryService extends QueryService<FollowupAction> {
         return followupActionRepository.findAll(specification, page);
     }
 
+    /**
+     * Return a page of {@link FollowupAction} which matches the criteria from the database, after the cursor of the previous page.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param cursor The cursor returned with the previous page, or null for the first page.
+     * @param page The size of the page, and the sort of the first page.
+     * @param count Whether to count all the matching entities.
+     * @return the matching entities, read with the "FollowupAction.list" fetch plan, and the cursor of the next page.
+     * @throws IllegalArgumentException if the cursor is invalid
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<FollowupAction> findByCriteriaAfter(FollowupActionCriteria criteria, String cursor, Pageable page, boolean count) {
+        log.debug("find by criteria : {}, after: {}", criteria, cursor);
+        final Specifications<FollowupAction> specification = createSpecification(criteria);
+        return findAfter(specification, cursor, page, count);
+    }
+
     /**
      * Function to convert FollowupActionCriteria to a {@link Specifications}
      */
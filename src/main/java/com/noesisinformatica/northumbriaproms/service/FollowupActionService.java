@@ -26,10 +26,13 @@ package com.noesisinformatica.northumbriaproms.service;
 
 import com.noesisinformatica.northumbriaproms.domain.CareEvent;
 import com.noesisinformatica.northumbriaproms.domain.FollowupAction;
+import com.noesisinformatica.northumbriaproms.service.dto.ReindexStatusDTO;
+import com.noesisinformatica.northumbriaproms.service.search.CursorPage;
 import com.noesisinformatica.northumbriaproms.web.rest.util.QueryModel;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.elasticsearch.core.FacetedPage;
+import org.springframework.data.util.CloseableIterator;
 
 /**
  * Service Interface for managing FollowupAction.
@@ -88,11 +91,18 @@ public interface FollowupActionService {
     FacetedPage<FollowupAction> findAllWithCategories(Pageable pageable);
 
     /**
-     *  Index all the followup actions.
+     *  Rebuild the index of all the followup actions in the background, without interrupting search.
      *
-     *  @return the boolean that represents the success of the index action
+     *  @return the progress of the rebuild
      */
-    boolean indexAll();
+    ReindexStatusDTO indexAll();
+
+    /**
+     *  Get the progress of the last rebuild of the index of the followup actions.
+     *
+     *  @return the progress of the rebuild, or null if the index has not been rebuilt
+     */
+    ReindexStatusDTO getIndexStatus();
 
     /**
      * Search for the followupAction corresponding to the query.
@@ -103,4 +113,53 @@ public interface FollowupActionService {
      * @return the list of entities
      */
     FacetedPage<FollowupAction> search(QueryModel query, Pageable pageable);
+
+    /**
+     * Search for the followupAction corresponding to the query, with or without its categories. Leaving them out
+     * saves computing them again for every page of the same search.
+     *
+     * @param query the query of the search
+     * @param pageable the pagination information
+     * @param withCategories whether to return the categories of the search
+     * @return the list of entities
+     */
+    FacetedPage<FollowupAction> search(QueryModel query, Pageable pageable, boolean withCategories);
+
+    /**
+     * Get the categories of the followupActions corresponding to the query, without any of them.
+     *
+     * @param query the query of the search
+     * @return an empty page with the categories and the number of entities found
+     */
+    FacetedPage<FollowupAction> searchCategories(QueryModel query);
+
+    /**
+     * Search for a page of the followupActions corresponding to the query, after a cursor rather than by page number,
+     * so that reading deep into the results stays fast.
+     *
+     * @param query the query of the search
+     * @param cursor the token of the cursor returned with the previous page, or null for the first page
+     * @param pageable the size of the page, and the sort of the first page; later pages keep the sort of their cursor
+     * @return the page of entities, with the cursor of the next page
+     * @throws IllegalArgumentException if the cursor is invalid, or the sort is not on a field the cursor supports
+     */
+    CursorPage<FollowupAction> searchAfter(QueryModel query, String cursor, Pageable pageable);
+
+    /**
+     * Iterate over all the followupActions corresponding to the query, scrolling through the search and reading the
+     * entities a batch at a time. The iterator must be closed once done with.
+     *
+     * @param query the query of the search
+     * @return the entities, in no particular order
+     */
+    CloseableIterator<FollowupAction> streamAll(QueryModel query);
+
+    /**
+     * Iterate over the ids of all the followupActions corresponding to the query, scrolling through the search without
+     * reading the entities. The iterator must be closed once done with.
+     *
+     * @param query the query of the search
+     * @return the ids, in no particular order
+     */
+    CloseableIterator<Long> streamIds(QueryModel query);
 }
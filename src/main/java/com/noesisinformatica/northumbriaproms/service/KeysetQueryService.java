@@ -0,0 +1,149 @@
+package com.noesisinformatica.northumbriaproms.service;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.noesisinformatica.northumbriaproms.service.search.CursorPage;
+import com.noesisinformatica.northumbriaproms.service.util.KeysetCursor;
+import io.github.jhipster.service.QueryService;
+import org.springframework.beans.PropertyAccessor;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+import javax.persistence.EntityGraph;
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Base of the query services which can also page through the entities matching a criteria after a
+ * {@link KeysetCursor}, rather than by page number. A page read after a cursor costs no more the deeper it is,
+ * and the entities are only counted on request, where a {@link Page} always needs an offset and a count query.
+ *
+ * @param <ENTITY> the type of the entities
+ */
+public abstract class KeysetQueryService<ENTITY> extends QueryService<ENTITY> {
+
+    private final EntityManager entityManager;
+
+    private final Class<ENTITY> type;
+
+    private final Set<String> sortFields;
+
+    /**
+     * @param entityManager the entity manager to query with
+     * @param type the type of the entities
+     * @param sortFields the fields the entities can be paged through by, which should be indexed
+     */
+    protected KeysetQueryService(EntityManager entityManager, Class<ENTITY> type, Set<String> sortFields) {
+        this.entityManager = entityManager;
+        this.type = type;
+        this.sortFields = sortFields;
+    }
+
+    /**
+     * Read the page of entities matching a specification after a cursor, with the "list" fetch plan of the
+     * entities if they have one.
+     *
+     * @param specification the specification the entities should match
+     * @param cursor the cursor returned with the previous page, or null for the first page
+     * @param page the size of the page, and the sort of the first page
+     * @param count whether to count all the entities matching the specification
+     * @return the page of entities
+     * @throws IllegalArgumentException if the cursor is invalid, or sorted on a field not allowed
+     */
+    protected CursorPage<ENTITY> findAfter(Specification<ENTITY> specification, String cursor, Pageable page,
+                                           boolean count) {
+        KeysetCursor position = cursor != null ? KeysetCursor.decode(cursor) : KeysetCursor.first(page.getSort());
+        if (!sortFields.contains(position.getSortField())) {
+            throw new IllegalArgumentException("Cannot page through " + type.getSimpleName() + " by "
+                + position.getSortField());
+        }
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ENTITY> query = cb.createQuery(type);
+        Root<ENTITY> root = query.from(type);
+        Path<Comparable> value = root.get(position.getSortField());
+        Path<Long> id = root.get(KeysetCursor.ID);
+        boolean nullable = root.getModel().getSingularAttribute(position.getSortField()).isOptional();
+
+        List<Predicate> predicates = new ArrayList<>();
+        Predicate matching = specification.toPredicate(root, query, cb);
+        if (matching != null) {
+            predicates.add(matching);
+        }
+        Predicate after = position.after(cb, value, id, nullable);
+        if (after != null) {
+            predicates.add(after);
+        }
+        query.select(root)
+            .where(predicates.toArray(new Predicate[predicates.size()]))
+            .orderBy(position.orders(cb, value, id, nullable));
+        // one more than the page, to know whether there is a next page without counting
+        TypedQuery<ENTITY> typedQuery = entityManager.createQuery(query).setMaxResults(page.getPageSize() + 1);
+        EntityGraph<?> listGraph = findListGraph(root.getModel().getName());
+        if (listGraph != null) {
+            typedQuery.setHint("javax.persistence.fetchgraph", listGraph);
+        }
+        List<ENTITY> content = typedQuery.getResultList();
+
+        String nextCursor = null;
+        if (content.size() > page.getPageSize()) {
+            content = new ArrayList<>(content.subList(0, page.getPageSize()));
+            PropertyAccessor last = PropertyAccessorFactory.forDirectFieldAccess(content.get(content.size() - 1));
+            nextCursor = position.after(last.getPropertyValue(position.getSortField()),
+                (Long) last.getPropertyValue(KeysetCursor.ID)).encode();
+        }
+        return new CursorPage<>(content, count ? count(specification) : null, nextCursor);
+    }
+
+    private long count(Specification<ENTITY> specification) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<ENTITY> root = query.from(type);
+        Predicate matching = specification.toPredicate(root, query, cb);
+        if (matching != null) {
+            query.where(matching);
+        }
+        return entityManager.createQuery(query.select(cb.count(root))).getSingleResult();
+    }
+
+    private EntityGraph<?> findListGraph(String entityName) {
+        String graphName = entityName + ".list";
+        for (EntityGraph<?> graph : entityManager.getEntityGraphs(type)) {
+            if (graphName.equals(graph.getName())) {
+                return graph;
+            }
+        }
+        return null;
+    }
+}
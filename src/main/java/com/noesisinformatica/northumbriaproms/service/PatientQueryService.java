@@ -31,7 +31,7 @@ import com.noesisinformatica.northumbriaproms.domain.ProcedureBooking_;
 import com.noesisinformatica.northumbriaproms.repository.PatientRepository;
 import com.noesisinformatica.northumbriaproms.repository.search.PatientSearchRepository;
 import com.noesisinformatica.northumbriaproms.service.dto.PatientCriteria;
-import io.github.jhipster.service.QueryService;
+import com.noesisinformatica.northumbriaproms.service.search.CursorPage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
@@ -40,7 +40,12 @@ import org.springframework.data.jpa.domain.Specifications;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Service for executing complex queries for Patient entities in the database.
@@ -50,7 +55,11 @@ import java.util.List;
  */
 @Service
 @Transactional(readOnly = true)
-public class PatientQueryService extends QueryService<Patient> {
+public class PatientQueryService extends KeysetQueryService<Patient> {
+
+    /** The fields the patients can be paged through by after a cursor */
+    private static final Set<String> KEYSET_SORT_FIELDS = new HashSet<>(Arrays.asList(
+        "id", "familyName", "givenName", "birthDate", "gender", "nhsNumber"));
 
     private final Logger log = LoggerFactory.getLogger(PatientQueryService.class);
 
@@ -59,7 +68,9 @@ public class PatientQueryService extends QueryService<Patient> {
 
     private final PatientSearchRepository patientSearchRepository;
 
-    public PatientQueryService(PatientRepository patientRepository, PatientSearchRepository patientSearchRepository) {
+    public PatientQueryService(PatientRepository patientRepository, PatientSearchRepository patientSearchRepository,
+                               EntityManager entityManager) {
+        super(entityManager, Patient.class, KEYSET_SORT_FIELDS);
         this.patientRepository = patientRepository;
         this.patientSearchRepository = patientSearchRepository;
     }
@@ -67,7 +78,7 @@ public class PatientQueryService extends QueryService<Patient> {
     /**
      * Return a {@link List} of {@link Patient} which matches the criteria from the database
      * @param criteria The object which holds all the filters, which the entities should match.
-     * @return the matching entities.
+     * @return the matching entities, read with the "Patient.list" fetch plan of the repository.
      */
     @Transactional(readOnly = true)
     public List<Patient> findByCriteria(PatientCriteria criteria) {
@@ -80,7 +91,7 @@ public class PatientQueryService extends QueryService<Patient> {
      * Return a {@link Page} of {@link Patient} which matches the criteria from the database
      * @param criteria The object which holds all the filters, which the entities should match.
      * @param page The page, which should be returned.
-     * @return the matching entities.
+     * @return the matching entities, read with the "Patient.list" fetch plan of the repository.
      */
     @Transactional(readOnly = true)
     public Page<Patient> findByCriteria(PatientCriteria criteria, Pageable page) {
@@ -89,6 +100,22 @@ public class PatientQueryService extends QueryService<Patient> {
         return patientRepository.findAll(specification, page);
     }
 
+    /**
+     * Return a page of {@link Patient} which matches the criteria from the database, after the cursor of the previous page.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param cursor The cursor returned with the previous page, or null for the first page.
+     * @param page The size of the page, and the sort of the first page.
+     * @param count Whether to count all the matching entities.
+     * @return the matching entities, read with the "Patient.list" fetch plan, and the cursor of the next page.
+     * @throws IllegalArgumentException if the cursor is invalid
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<Patient> findByCriteriaAfter(PatientCriteria criteria, String cursor, Pageable page, boolean count) {
+        log.debug("find by criteria : {}, after: {}", criteria, cursor);
+        final Specifications<Patient> specification = createSpecification(criteria);
+        return findAfter(specification, cursor, page, count);
+    }
+
     /**
      * Function to convert PatientCriteria to a {@link Specifications}
      */
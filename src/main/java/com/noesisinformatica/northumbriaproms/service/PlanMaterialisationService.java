@@ -0,0 +1,53 @@
+package com.noesisinformatica.northumbriaproms.service;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.noesisinformatica.northumbriaproms.domain.FollowupPlan;
+import com.noesisinformatica.northumbriaproms.domain.ProcedureBooking;
+
+import java.util.List;
+
+/**
+ * Service Interface for generating the FollowupPlan, CareEvents and FollowupActions of a ProcedureBooking
+ * in process, without going through the message queues.
+ */
+public interface PlanMaterialisationService {
+
+    /**
+     * Generate the followup plan of a procedureBooking.
+     *
+     * @param procedureBooking the saved procedureBooking
+     * @return the persisted plan
+     */
+    FollowupPlan materialise(ProcedureBooking procedureBooking);
+
+    /**
+     * Generate the followup plans of a list of procedureBookings in one transaction.
+     *
+     * @param procedureBookings the saved procedureBookings
+     * @return the persisted plans, in the order of the bookings
+     */
+    List<FollowupPlan> materialiseAll(List<ProcedureBooking> procedureBookings);
+}
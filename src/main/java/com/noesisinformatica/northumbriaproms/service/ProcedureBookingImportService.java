@@ -0,0 +1,57 @@
+package com.noesisinformatica.northumbriaproms.service;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.noesisinformatica.northumbriaproms.domain.ProcedureBooking;
+import com.noesisinformatica.northumbriaproms.service.dto.BulkImportResultDTO;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * Service Interface for importing ProcedureBookings in bulk.
+ */
+public interface ProcedureBookingImportService {
+
+    /**
+     * Import a list of new procedureBookings.
+     *
+     * @param procedureBookings the entities to import, each referencing an existing patient
+     * @param chunkSize the number of bookings written together, or null for the configured default
+     * @return the result of the import, with an entry for every row that failed
+     */
+    BulkImportResultDTO importBookings(List<ProcedureBooking> procedureBookings, Integer chunkSize);
+
+    /**
+     * Import procedureBookings from CSV, reading and importing it a chunk at a time.
+     *
+     * @param reader the CSV content, starting with a header row
+     * @param chunkSize the number of bookings written together, or null for the configured default
+     * @return the result of the import, with an entry for every row that failed
+     * @throws IOException if the CSV could not be read
+     */
+    BulkImportResultDTO importCsv(Reader reader, Integer chunkSize) throws IOException;
+}
@@ -26,7 +26,10 @@ package com.noesisinformatica.northumbriaproms.service;
 
 
 import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,13 +39,14 @@ import org.springframework.data.jpa.domain.Specifications;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import io.github.jhipster.service.QueryService;
+import javax.persistence.EntityManager;
 
 import com.noesisinformatica.northumbriaproms.domain.ProcedureBooking;
 import com.noesisinformatica.northumbriaproms.domain.*; // for static metamodels
 import com.noesisinformatica.northumbriaproms.repository.ProcedureBookingRepository;
 import com.noesisinformatica.northumbriaproms.repository.search.ProcedureBookingSearchRepository;
 import com.noesisinformatica.northumbriaproms.service.dto.ProcedureBookingCriteria;
+import com.noesisinformatica.northumbriaproms.service.search.CursorPage;
 
 
 /**
@@ -53,7 +57,11 @@ import com.noesisinformatica.northumbriaproms.service.dto.ProcedureBookingCriter
  */
 @Service
 @Transactional(readOnly = true)
-public class ProcedureBookingQueryService extends QueryService<ProcedureBooking> {
+public class ProcedureBookingQueryService extends KeysetQueryService<ProcedureBooking> {
+
+    /** The fields the procedure bookings can be paged through by after a cursor */
+    private static final Set<String> KEYSET_SORT_FIELDS = new HashSet<>(Arrays.asList(
+        "id", "consultantName", "hospitalSite", "scheduledDate", "performedDate", "primaryProcedure", "side", "patientAge"));
 
     private final Logger log = LoggerFactory.getLogger(ProcedureBookingQueryService.class);
 
@@ -62,7 +70,9 @@ public class ProcedureBookingQueryService extends QueryService<ProcedureBooking>
 
     private final ProcedureBookingSearchRepository procedureBookingSearchRepository;
 
-    public ProcedureBookingQueryService(ProcedureBookingRepository procedureBookingRepository, ProcedureBookingSearchRepository procedureBookingSearchRepository) {
+    public ProcedureBookingQueryService(ProcedureBookingRepository procedureBookingRepository, ProcedureBookingSearchRepository procedureBookingSearchRepository,
+                                        EntityManager entityManager) {
+        super(entityManager, ProcedureBooking.class, KEYSET_SORT_FIELDS);
         this.procedureBookingRepository = procedureBookingRepository;
         this.procedureBookingSearchRepository = procedureBookingSearchRepository;
     }
@@ -92,6 +102,22 @@ public class ProcedureBookingQueryService extends QueryService<ProcedureBooking>
         return procedureBookingRepository.findAll(specification, page);
     }
 
+    /**
+     * Return a page of {@link ProcedureBooking} which matches the criteria from the database, after the cursor of the previous page.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param cursor The cursor returned with the previous page, or null for the first page.
+     * @param page The size of the page, and the sort of the first page.
+     * @param count Whether to count all the matching entities.
+     * @return the matching entities, read with the "ProcedureBooking.list" fetch plan, and the cursor of the next page.
+     * @throws IllegalArgumentException if the cursor is invalid
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<ProcedureBooking> findByCriteriaAfter(ProcedureBookingCriteria criteria, String cursor, Pageable page, boolean count) {
+        log.debug("find by criteria : {}, after: {}", criteria, cursor);
+        final Specifications<ProcedureBooking> specification = createSpecification(criteria);
+        return findAfter(specification, cursor, page, count);
+    }
+
     /**
      * Function to convert ProcedureBookingCriteria to a {@link Specifications}
      */
@@ -0,0 +1,65 @@
+package com.noesisinformatica.northumbriaproms.service;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.noesisinformatica.northumbriaproms.service.dto.ReindexStatusDTO;
+
+import java.util.List;
+
+/**
+ * Service Interface for rebuilding the search indices from the database.
+ */
+public interface ReindexService {
+
+    /**
+     * Get the progress of the last rebuild of the index of each document type.
+     *
+     * @return the progress of each document type, without a state for those not rebuilt yet
+     */
+    List<ReindexStatusDTO> getStatuses();
+
+    /**
+     * Get the progress of the last rebuild of the index of a document type.
+     *
+     * @param documentType the name of the document type or of its index
+     * @return the progress of the rebuild, or null if the type is unknown or has not been rebuilt
+     */
+    ReindexStatusDTO getStatus(String documentType);
+
+    /**
+     * Start rebuilding the index of a document type in the background.
+     *
+     * @param documentType the name of the document type or of its index
+     * @return the progress of the rebuild, or null if the type is unknown
+     */
+    ReindexStatusDTO reindex(String documentType);
+
+    /**
+     * Start rebuilding the indices of all the document types in the background, concurrently.
+     *
+     * @return the progress of each rebuild
+     */
+    List<ReindexStatusDTO> reindexAll();
+}
@@ -0,0 +1,171 @@
+package com.noesisinformatica.northumbriaproms.service.dto;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A DTO summarising the outcome of a bulk import, with the errors of any rejected rows.
+ * Row numbers are 1-based and do not count a CSV header line.
+ */
+public class BulkImportResultDTO {
+
+    private int received;
+
+    private int imported;
+
+    /** Number of bookings handed over for followup plan generation */
+    private int published;
+
+    private int chunks;
+
+    private long durationInMillis;
+
+    private List<RowError> errors = new ArrayList<>();
+
+    public int getReceived() {
+        return received;
+    }
+
+    public void setReceived(int received) {
+        this.received = received;
+    }
+
+    public int getImported() {
+        return imported;
+    }
+
+    public void setImported(int imported) {
+        this.imported = imported;
+    }
+
+    public int getPublished() {
+        return published;
+    }
+
+    public void setPublished(int published) {
+        this.published = published;
+    }
+
+    public int getChunks() {
+        return chunks;
+    }
+
+    public void setChunks(int chunks) {
+        this.chunks = chunks;
+    }
+
+    public long getDurationInMillis() {
+        return durationInMillis;
+    }
+
+    public void setDurationInMillis(long durationInMillis) {
+        this.durationInMillis = durationInMillis;
+    }
+
+    public int getFailed() {
+        return (int) errors.stream().filter(RowError::isRejected).count();
+    }
+
+    public List<RowError> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<RowError> errors) {
+        this.errors = errors;
+    }
+
+    public void addError(int row, String message, boolean rejected) {
+        this.errors.add(new RowError(row, message, rejected));
+    }
+
+    @Override
+    public String toString() {
+        return "BulkImportResultDTO{" +
+            "received=" + received +
+            ", imported=" + imported +
+            ", published=" + published +
+            ", chunks=" + chunks +
+            ", failed=" + getFailed() +
+            ", durationInMillis=" + durationInMillis +
+            "}";
+    }
+
+    /**
+     * An error for a single row. A row that is not {@code rejected} was saved, but a later step
+     * (search indexing or publishing for plan generation) failed for it.
+     */
+    public static class RowError {
+
+        private int row;
+
+        private String message;
+
+        private boolean rejected;
+
+        public RowError() {
+        }
+
+        public RowError(int row, String message, boolean rejected) {
+            this.row = row;
+            this.message = message;
+            this.rejected = rejected;
+        }
+
+        public int getRow() {
+            return row;
+        }
+
+        public void setRow(int row) {
+            this.row = row;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public void setMessage(String message) {
+            this.message = message;
+        }
+
+        public boolean isRejected() {
+            return rejected;
+        }
+
+        public void setRejected(boolean rejected) {
+            this.rejected = rejected;
+        }
+
+        @Override
+        public String toString() {
+            return "RowError{" +
+                "row=" + row +
+                ", message='" + message + "'" +
+                ", rejected=" + rejected +
+                "}";
+        }
+    }
+}
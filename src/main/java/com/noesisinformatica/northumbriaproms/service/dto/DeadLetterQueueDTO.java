@@ -0,0 +1,80 @@
+package com.noesisinformatica.northumbriaproms.service.dto;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+/**
+ * A DTO for a dead letter queue and the pipeline queue its messages came from.
+ */
+public class DeadLetterQueueDTO {
+
+    private String queue;
+
+    private String deadLetterQueue;
+
+    private Integer messageCount;
+
+    public DeadLetterQueueDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public DeadLetterQueueDTO(String queue, String deadLetterQueue, Integer messageCount) {
+        this.queue = queue;
+        this.deadLetterQueue = deadLetterQueue;
+        this.messageCount = messageCount;
+    }
+
+    public String getQueue() {
+        return queue;
+    }
+
+    public void setQueue(String queue) {
+        this.queue = queue;
+    }
+
+    public String getDeadLetterQueue() {
+        return deadLetterQueue;
+    }
+
+    public void setDeadLetterQueue(String deadLetterQueue) {
+        this.deadLetterQueue = deadLetterQueue;
+    }
+
+    public Integer getMessageCount() {
+        return messageCount;
+    }
+
+    public void setMessageCount(Integer messageCount) {
+        this.messageCount = messageCount;
+    }
+
+    @Override
+    public String toString() {
+        return "DeadLetterQueueDTO{" +
+            "queue='" + queue + "'" +
+            ", deadLetterQueue='" + deadLetterQueue + "'" +
+            ", messageCount=" + messageCount +
+            "}";
+    }
+}
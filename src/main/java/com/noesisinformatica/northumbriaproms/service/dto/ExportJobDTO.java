@@ -0,0 +1,164 @@
+package com.noesisinformatica.northumbriaproms.service.dto;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import java.time.Instant;
+
+/**
+ * A DTO for the progress of an export of followup actions run in the background.
+ */
+public class ExportJobDTO {
+
+    public enum State {
+        QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED
+    }
+
+    private String id;
+
+    private State state;
+
+    private ExportFormat format;
+
+    private boolean gzip;
+
+    private long total;
+
+    private long exported;
+
+    private Instant createdDate;
+
+    private Instant startedDate;
+
+    private Instant finishedDate;
+
+    private Instant expiresDate;
+
+    private String error;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public void setState(State state) {
+        this.state = state;
+    }
+
+    public ExportFormat getFormat() {
+        return format;
+    }
+
+    public void setFormat(ExportFormat format) {
+        this.format = format;
+    }
+
+    public boolean isGzip() {
+        return gzip;
+    }
+
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    public long getExported() {
+        return exported;
+    }
+
+    public void setExported(long exported) {
+        this.exported = exported;
+    }
+
+    public Instant getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(Instant createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    public Instant getStartedDate() {
+        return startedDate;
+    }
+
+    public void setStartedDate(Instant startedDate) {
+        this.startedDate = startedDate;
+    }
+
+    public Instant getFinishedDate() {
+        return finishedDate;
+    }
+
+    public void setFinishedDate(Instant finishedDate) {
+        this.finishedDate = finishedDate;
+    }
+
+    public Instant getExpiresDate() {
+        return expiresDate;
+    }
+
+    public void setExpiresDate(Instant expiresDate) {
+        this.expiresDate = expiresDate;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    @Override
+    public String toString() {
+        return "ExportJobDTO{" +
+            "id='" + id + "'" +
+            ", state=" + state +
+            ", format=" + format +
+            ", gzip=" + gzip +
+            ", total=" + total +
+            ", exported=" + exported +
+            ", createdDate='" + createdDate + "'" +
+            ", startedDate='" + startedDate + "'" +
+            ", finishedDate='" + finishedDate + "'" +
+            ", expiresDate='" + expiresDate + "'" +
+            ", error='" + error + "'" +
+            "}";
+    }
+}
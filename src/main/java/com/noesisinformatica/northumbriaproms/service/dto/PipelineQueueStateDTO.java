@@ -0,0 +1,104 @@
+package com.noesisinformatica.northumbriaproms.service.dto;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+/**
+ * A DTO for the depth and consumers of a pipeline queue, as last sampled by the backpressure monitor.
+ */
+public class PipelineQueueStateDTO {
+
+    private String queue;
+
+    private Integer depth;
+
+    private int activeConsumers;
+
+    private int concurrentConsumers;
+
+    private int maxConcurrentConsumers;
+
+    /** The share of the maximum consumers started, which follows the scaling rather than how busy they are */
+    private double consumerScale;
+
+    public String getQueue() {
+        return queue;
+    }
+
+    public void setQueue(String queue) {
+        this.queue = queue;
+    }
+
+    public Integer getDepth() {
+        return depth;
+    }
+
+    public void setDepth(Integer depth) {
+        this.depth = depth;
+    }
+
+    public int getActiveConsumers() {
+        return activeConsumers;
+    }
+
+    public void setActiveConsumers(int activeConsumers) {
+        this.activeConsumers = activeConsumers;
+    }
+
+    public int getConcurrentConsumers() {
+        return concurrentConsumers;
+    }
+
+    public void setConcurrentConsumers(int concurrentConsumers) {
+        this.concurrentConsumers = concurrentConsumers;
+    }
+
+    public int getMaxConcurrentConsumers() {
+        return maxConcurrentConsumers;
+    }
+
+    public void setMaxConcurrentConsumers(int maxConcurrentConsumers) {
+        this.maxConcurrentConsumers = maxConcurrentConsumers;
+    }
+
+    public double getConsumerScale() {
+        return consumerScale;
+    }
+
+    public void setConsumerScale(double consumerScale) {
+        this.consumerScale = consumerScale;
+    }
+
+    @Override
+    public String toString() {
+        return "PipelineQueueStateDTO{" +
+            "queue='" + queue + "'" +
+            ", depth=" + depth +
+            ", activeConsumers=" + activeConsumers +
+            ", concurrentConsumers=" + concurrentConsumers +
+            ", maxConcurrentConsumers=" + maxConcurrentConsumers +
+            ", consumerScale=" + consumerScale +
+            "}";
+    }
+}
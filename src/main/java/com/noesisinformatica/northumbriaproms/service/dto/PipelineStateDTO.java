@@ -0,0 +1,107 @@
+package com.noesisinformatica.northumbriaproms.service.dto;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A DTO for the state of the pipeline backpressure control loop.
+ */
+public class PipelineStateDTO {
+
+    private boolean throttled;
+
+    private long totalDepth;
+
+    private long highWaterMark;
+
+    private long lowWaterMark;
+
+    private Instant sampledAt;
+
+    private List<PipelineQueueStateDTO> queues = new ArrayList<>();
+
+    public boolean isThrottled() {
+        return throttled;
+    }
+
+    public void setThrottled(boolean throttled) {
+        this.throttled = throttled;
+    }
+
+    public long getTotalDepth() {
+        return totalDepth;
+    }
+
+    public void setTotalDepth(long totalDepth) {
+        this.totalDepth = totalDepth;
+    }
+
+    public long getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    public void setHighWaterMark(long highWaterMark) {
+        this.highWaterMark = highWaterMark;
+    }
+
+    public long getLowWaterMark() {
+        return lowWaterMark;
+    }
+
+    public void setLowWaterMark(long lowWaterMark) {
+        this.lowWaterMark = lowWaterMark;
+    }
+
+    public Instant getSampledAt() {
+        return sampledAt;
+    }
+
+    public void setSampledAt(Instant sampledAt) {
+        this.sampledAt = sampledAt;
+    }
+
+    public List<PipelineQueueStateDTO> getQueues() {
+        return queues;
+    }
+
+    public void setQueues(List<PipelineQueueStateDTO> queues) {
+        this.queues = queues;
+    }
+
+    @Override
+    public String toString() {
+        return "PipelineStateDTO{" +
+            "throttled=" + throttled +
+            ", totalDepth=" + totalDepth +
+            ", highWaterMark=" + highWaterMark +
+            ", lowWaterMark=" + lowWaterMark +
+            ", sampledAt='" + sampledAt + "'" +
+            ", queues=" + queues +
+            "}";
+    }
+}
@@ -0,0 +1,202 @@
+package com.noesisinformatica.northumbriaproms.service.impl;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.noesisinformatica.northumbriaproms.config.ApplicationProperties;
+import com.noesisinformatica.northumbriaproms.config.ReplicaRoutingDataSource;
+import com.noesisinformatica.northumbriaproms.domain.CareEvent;
+import com.noesisinformatica.northumbriaproms.domain.FollowupAction;
+import com.noesisinformatica.northumbriaproms.domain.JobCheckpoint;
+import com.noesisinformatica.northumbriaproms.domain.enumeration.ActionStatus;
+import com.noesisinformatica.northumbriaproms.repository.CareEventRepository;
+import com.noesisinformatica.northumbriaproms.repository.FollowupActionRepository;
+import com.noesisinformatica.northumbriaproms.repository.JobCheckpointRepository;
+import com.noesisinformatica.northumbriaproms.service.ActionStatusTransitionService;
+import com.noesisinformatica.northumbriaproms.service.search.BulkIndexer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Service Implementation for starting the FollowupActions that have become due.
+ * <p>
+ * Actions are only started when they are planned if they are already due; the others stay uninitialised. Each
+ * run finds the uninitialised actions scheduled since the previous run up to today, through the index on the
+ * status and scheduled date of actions, and pages through them by scheduled date and id. Each chunk is updated
+ * with one statement per status, like {@link com.noesisinformatica.northumbriaproms.service.util.FollowupActionPlanner}
+ * would have set it, and indexed with a single Elasticsearch bulk request once it commits. The scheduled date
+ * and id of the last action of the chunk are recorded as the checkpoint of the job in the same transaction, so
+ * that the next chunk, or run, starts after it. The updates are bulk statements, which the
+ * {@link com.noesisinformatica.northumbriaproms.config.ReplicaWriteListener} does not see, so each chunk that
+ * commits is recorded as a write with the read replicas, when there are any.
+ */
+@Service
+public class ActionStatusTransitionServiceImpl implements ActionStatusTransitionService {
+
+    static final String CHECKPOINT = "action-status-transition";
+
+    /** Position before any action, used until the job has recorded a checkpoint */
+    private static final LocalDate START_DATE = LocalDate.of(1900, 1, 1);
+
+    private final Logger log = LoggerFactory.getLogger(ActionStatusTransitionServiceImpl.class);
+
+    private final FollowupActionRepository followupActionRepository;
+    private final CareEventRepository careEventRepository;
+    private final JobCheckpointRepository jobCheckpointRepository;
+    private final BulkIndexer bulkIndexer;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationProperties.StatusTransition properties;
+    private ReplicaRoutingDataSource replicaRoutingDataSource;
+
+    public ActionStatusTransitionServiceImpl(FollowupActionRepository followupActionRepository,
+                                             CareEventRepository careEventRepository,
+                                             JobCheckpointRepository jobCheckpointRepository,
+                                             BulkIndexer bulkIndexer,
+                                             EntityManager entityManager,
+                                             PlatformTransactionManager transactionManager,
+                                             ApplicationProperties applicationProperties) {
+        this.followupActionRepository = followupActionRepository;
+        this.careEventRepository = careEventRepository;
+        this.jobCheckpointRepository = jobCheckpointRepository;
+        this.bulkIndexer = bulkIndexer;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = applicationProperties.getStatusTransition();
+    }
+
+    @Autowired(required = false)
+    public void setReplicaRoutingDataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        this.replicaRoutingDataSource = replicaRoutingDataSource;
+    }
+
+    /**
+     * Start the actions that have become due by today.
+     * <p>
+     * This is scheduled to get fired every hour by default, at five minutes past.
+     */
+    @Override
+    @Scheduled(cron = "${application.status-transition.cron:0 5 * * * ?}")
+    public void startDueActions() {
+        startDueActions(LocalDate.now());
+    }
+
+    /**
+     * Start the actions scheduled up to a date, after the checkpoint of the previous run.
+     *
+     * @param today the date up to which actions are due
+     * @return the number of actions started
+     */
+    @Override
+    public int startDueActions(LocalDate today) {
+        log.debug("Request to start actions due by {}", today);
+        int started = 0;
+        int chunk;
+        do {
+            chunk = transactionTemplate.execute(status -> startNextChunk(today));
+            if (chunk > 0 && replicaRoutingDataSource != null) {
+                replicaRoutingDataSource.recordWrite();
+            }
+            started += chunk;
+        } while (chunk == properties.getChunkSize());
+        if (started > 0) {
+            log.info("Started {} actions due by {}", started, today);
+        }
+        return started;
+    }
+
+    /**
+     * Start the next chunk of due actions and move the checkpoint past it. The checkpoint is locked for the
+     * rest of the transaction, so instances running the job at the same time take turns.
+     *
+     * @return the number of due actions in the chunk
+     */
+    private int startNextChunk(LocalDate today) {
+        JobCheckpoint checkpoint = jobCheckpointRepository.findOneForUpdate(CHECKPOINT);
+        if (checkpoint == null) {
+            checkpoint = new JobCheckpoint().name(CHECKPOINT);
+        }
+        LocalDate afterDate = checkpoint.getCheckpointDate() != null ? checkpoint.getCheckpointDate() : START_DATE;
+        Long afterId = checkpoint.getCheckpointId() != null ? checkpoint.getCheckpointId() : 0L;
+        List<Object[]> rows = followupActionRepository.findScheduledAfter(ActionStatus.UNINITIALISED, today,
+            afterDate, afterId, new PageRequest(0, properties.getChunkSize()));
+        checkpoint.setLastRunDate(Instant.now());
+        if (rows.isEmpty()) {
+            jobCheckpointRepository.save(checkpoint);
+            return 0;
+        }
+
+        // as when planned, an action is unknown rather than started if the procedure has not been performed
+        Set<Long> startedActionIds = new HashSet<>();
+        Set<Long> unknownActionIds = new HashSet<>();
+        Set<Long> startedEventIds = new HashSet<>();
+        Set<Long> unknownEventIds = new HashSet<>();
+        for (Object[] row : rows) {
+            if (row[3] != null) {
+                startedActionIds.add((Long) row[0]);
+                startedEventIds.add((Long) row[2]);
+            } else {
+                unknownActionIds.add((Long) row[0]);
+                unknownEventIds.add((Long) row[2]);
+            }
+        }
+        updateStatus(startedActionIds, startedEventIds, ActionStatus.STARTED);
+        updateStatus(unknownActionIds, unknownEventIds, ActionStatus.UNKNOWN);
+
+        Object[] last = rows.get(rows.size() - 1);
+        jobCheckpointRepository.save(checkpoint.checkpointDate((LocalDate) last[1]).checkpointId((Long) last[0]));
+
+        // the updated rows are read back and indexed in bulk once the chunk commits
+        entityManager.flush();
+        entityManager.clear();
+        Set<Long> actionIds = new HashSet<>(startedActionIds);
+        actionIds.addAll(unknownActionIds);
+        Set<Long> eventIds = new HashSet<>(startedEventIds);
+        eventIds.addAll(unknownEventIds);
+        bulkIndexer.indexAll(FollowupAction.class, actionIds);
+        bulkIndexer.indexAll(CareEvent.class, eventIds);
+        log.debug("Started {} and marked as unknown {} actions due by {}", startedActionIds.size(),
+            unknownActionIds.size(), today);
+        return rows.size();
+    }
+
+    private void updateStatus(Set<Long> actionIds, Set<Long> eventIds, ActionStatus status) {
+        if (actionIds.isEmpty()) {
+            return;
+        }
+        followupActionRepository.updateStatus(actionIds, ActionStatus.UNINITIALISED, status);
+        careEventRepository.updateStatus(eventIds, ActionStatus.UNINITIALISED, status);
+    }
+}
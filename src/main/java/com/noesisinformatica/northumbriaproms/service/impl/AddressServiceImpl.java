@@ -28,6 +28,7 @@ import com.noesisinformatica.northumbriaproms.service.AddressService;
 import com.noesisinformatica.northumbriaproms.domain.Address;
 import com.noesisinformatica.northumbriaproms.repository.AddressRepository;
 import com.noesisinformatica.northumbriaproms.repository.search.AddressSearchRepository;
+import com.noesisinformatica.northumbriaproms.service.search.BulkIndexer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
@@ -53,9 +54,12 @@ public class AddressServiceImpl implements AddressService{
 
     private final AddressSearchRepository addressSearchRepository;
 
-    public AddressServiceImpl(AddressRepository addressRepository, AddressSearchRepository addressSearchRepository) {
+    private final BulkIndexer bulkIndexer;
+
+    public AddressServiceImpl(AddressRepository addressRepository, AddressSearchRepository addressSearchRepository, BulkIndexer bulkIndexer) {
         this.addressRepository = addressRepository;
         this.addressSearchRepository = addressSearchRepository;
+        this.bulkIndexer = bulkIndexer;
     }
 
     /**
@@ -68,7 +72,7 @@ public class AddressServiceImpl implements AddressService{
     public Address save(Address address) {
         log.debug("Request to save Address : {}", address);
         Address result = addressRepository.save(address);
-        addressSearchRepository.save(result);
+        bulkIndexer.index(result, result.getId());
         return result;
     }
 
@@ -120,7 +124,7 @@ public class AddressServiceImpl implements AddressService{
     public void delete(Long id) {
         log.debug("Request to delete Address : {}", id);
         addressRepository.delete(id);
-        addressSearchRepository.delete(id);
+        bulkIndexer.delete(Address.class, id);
     }
 
     /**
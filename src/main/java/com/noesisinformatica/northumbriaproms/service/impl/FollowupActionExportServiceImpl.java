@@ -0,0 +1,459 @@
+package com.noesisinformatica.northumbriaproms.service.impl;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.noesisinformatica.northumbriaproms.config.ApplicationProperties;
+import com.noesisinformatica.northumbriaproms.repository.FollowupActionRepository;
+import com.noesisinformatica.northumbriaproms.security.SecurityUtils;
+import com.noesisinformatica.northumbriaproms.service.FollowupActionExportService;
+import com.noesisinformatica.northumbriaproms.service.FollowupActionService;
+import com.noesisinformatica.northumbriaproms.service.dto.ExportFormat;
+import com.noesisinformatica.northumbriaproms.service.dto.ExportJobDTO;
+import com.noesisinformatica.northumbriaproms.service.dto.ExportJobDTO.State;
+import com.noesisinformatica.northumbriaproms.service.mapper.FollowupActionArrowWriter;
+import com.noesisinformatica.northumbriaproms.service.mapper.FollowupActionCsvMapper;
+import com.noesisinformatica.northumbriaproms.service.search.ScrollingIterator;
+import com.noesisinformatica.northumbriaproms.web.rest.util.QueryModel;
+import com.opencsv.CSVWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Service Implementation for exporting FollowupActions.
+ * <p>
+ * The ids of the actions are scrolled from the search index, and the exported values of each batch of ids are read
+ * in a single query, without loading the entities and their eager associations. No transaction spans the export, so
+ * nothing read is held on to once its rows are written.
+ * <p>
+ * Exports run in the background on the task executor, and are written to files in the configured directory, which
+ * only the user running the application can read where the file system supports POSIX permissions. Each export
+ * belongs to the user who submitted it, and is only reused for, shown to and downloaded by that user. The exports
+ * are only known to this instance, and are removed with their files once expired; export files left behind by a
+ * previous run are removed once older than the expiry too, and any other file in the directory is left alone.
+ */
+@Service
+public class FollowupActionExportServiceImpl implements FollowupActionExportService {
+
+    private final Logger log = LoggerFactory.getLogger(FollowupActionExportServiceImpl.class);
+
+    static final int BATCH_SIZE = 500;
+
+    /** Rows in each Arrow record batch, large enough for analytics tools to read the columns efficiently */
+    static final int ARROW_BATCH_SIZE = 10000;
+
+    /** Names of the files of exports, as named by {@link #submit(QueryModel, ExportFormat, boolean)} */
+    private static final Pattern EXPORT_FILE_NAME = Pattern.compile(
+        "[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}("
+            + Arrays.stream(ExportFormat.values()).map(format -> Pattern.quote(format.getExtension()))
+                .collect(Collectors.joining("|"))
+            + ")(\\.gz)?");
+
+    private final FollowupActionService followupActionService;
+    private final FollowupActionRepository followupActionRepository;
+    private final Executor taskExecutor;
+    private final ApplicationProperties.Export properties;
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+
+    public FollowupActionExportServiceImpl(FollowupActionService followupActionService,
+                                           FollowupActionRepository followupActionRepository,
+                                           @Qualifier("taskExecutor") Executor taskExecutor,
+                                           ApplicationProperties applicationProperties) {
+        this.followupActionService = followupActionService;
+        this.followupActionRepository = followupActionRepository;
+        this.taskExecutor = taskExecutor;
+        this.properties = applicationProperties.getExport();
+    }
+
+    @Override
+    public long export(QueryModel query, ExportFormat format, OutputStream out,
+                       BooleanSupplier cancelled) throws IOException {
+        return export(query, format, out, cancelled, count -> { });
+    }
+
+    /**
+     * Write the followupActions corresponding to the query, reporting the number written after each batch.
+     */
+    private long export(QueryModel query, ExportFormat format, OutputStream out, BooleanSupplier cancelled,
+                        LongConsumer progress) throws IOException {
+        log.debug("Request to export Followup Actions for query {} as {}", query, format);
+        long count = 0;
+        try (RowWriter writer = format == ExportFormat.ARROW ? new ArrowRowWriter(out) : new CsvRowWriter(out);
+             CloseableIterator<Object[]> rows = new ScrollingIterator<>(followupActionService.streamIds(query),
+                 Function.identity(), followupActionRepository::findExportValuesByIdIn, BATCH_SIZE)) {
+            while (rows.hasNext()) {
+                if (cancelled.getAsBoolean() || Thread.currentThread().isInterrupted()) {
+                    throw new CancellationException("Export cancelled after " + count + " actions");
+                }
+                writer.write(rows.next());
+                if (++count % BATCH_SIZE == 0) {
+                    writer.flush();
+                    progress.accept(count);
+                }
+            }
+            writer.finish();
+        }
+        progress.accept(count);
+        log.debug("Exported {} Followup Actions for query {}", count, query);
+        return count;
+    }
+
+    @Override
+    public synchronized ExportJobDTO submit(QueryModel query, ExportFormat format, boolean gzip) {
+        QueryModel normalised = query != null ? query.normalised() : new QueryModel();
+        String login = SecurityUtils.getCurrentUserLogin().orElse(null);
+        Instant now = Instant.now();
+        for (ExportJob job : jobs.values()) {
+            if (job.isReusableFor(login, normalised, format, gzip, now)) {
+                log.debug("Reusing export {} for query {}", job.id, normalised);
+                return job.toDTO();
+            }
+        }
+        String id = UUID.randomUUID().toString();
+        ExportJob job = new ExportJob(id, login, normalised, format, gzip, now,
+            Paths.get(properties.getDirectory()).resolve(id + format.getExtension() + (gzip ? ".gz" : "")));
+        jobs.put(job.id, job);
+        log.debug("Request to export Followup Actions for query {} in the background, as {}", normalised, job.id);
+        try {
+            taskExecutor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            log.warn("Unable to start export {} : {}", job.id, e.getMessage());
+            job.finish(State.FAILED, "Too many tasks running, try again later");
+        }
+        return job.toDTO();
+    }
+
+    @Override
+    public ExportJobDTO getJob(String id) {
+        ExportJob job = jobOfCurrentUser(id);
+        return job != null ? job.toDTO() : null;
+    }
+
+    @Override
+    public Path getFile(String id) {
+        ExportJob job = jobOfCurrentUser(id);
+        return job != null && job.state == State.COMPLETED ? job.file : null;
+    }
+
+    @Override
+    public ExportJobDTO cancel(String id) {
+        ExportJob job = jobOfCurrentUser(id);
+        if (job == null) {
+            return null;
+        }
+        log.debug("Request to cancel export {}", id);
+        synchronized (job) {
+            if (job.state == State.QUEUED) {
+                job.finish(State.CANCELLED, null);
+            } else if (job.state == State.RUNNING) {
+                job.cancelled = true;
+            }
+        }
+        return job.toDTO();
+    }
+
+    /**
+     * Get an export if it was submitted by the current user; the exports of other users are treated as unknown.
+     */
+    private ExportJob jobOfCurrentUser(String id) {
+        ExportJob job = jobs.get(id);
+        String login = SecurityUtils.getCurrentUserLogin().orElse(null);
+        return job != null && Objects.equals(job.login, login) ? job : null;
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${application.export.cleanup-interval:60000}")
+    public void removeExpiredJobs() {
+        Instant now = Instant.now();
+        jobs.values().removeIf(job -> {
+            if (job.isExpired(now)) {
+                log.debug("Removing expired export {}", job.id);
+                delete(job.file);
+                return true;
+            }
+            return false;
+        });
+        Path directory = Paths.get(properties.getDirectory());
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        Instant expiredBefore = now.minusMillis(properties.getTtl());
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                if (!isExportFile(file)) {
+                    continue;
+                }
+                boolean orphan = jobs.values().stream().noneMatch(job -> job.file.equals(file));
+                if (orphan && Files.getLastModifiedTime(file).toInstant().isBefore(expiredBefore)) {
+                    log.debug("Removing expired export file {}", file);
+                    delete(file);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Unable to remove expired export files from {} : {}", directory, e.getMessage());
+        }
+    }
+
+    private void run(ExportJob job) {
+        synchronized (job) {
+            if (job.state != State.QUEUED) {
+                return;
+            }
+            job.state = State.RUNNING;
+            job.startedDate = Instant.now();
+        }
+        try {
+            job.total = followupActionService.searchCategories(job.query).getTotalElements();
+            createDirectory(job.file.getParent());
+            try (OutputStream out = open(job)) {
+                export(job.query, job.format, out, () -> job.cancelled, job.exported::set);
+            }
+            job.finish(State.COMPLETED, null);
+            log.info("Export {} completed, {} actions written to {}", job.id, job.exported.get(), job.file);
+        } catch (CancellationException e) {
+            log.info("Export {} cancelled after {} actions", job.id, job.exported.get());
+            delete(job.file);
+            job.finish(State.CANCELLED, null);
+        } catch (Exception e) {
+            log.error("Export {} failed after {} actions", job.id, job.exported.get(), e);
+            delete(job.file);
+            job.finish(State.FAILED, e.getMessage());
+        }
+    }
+
+    private OutputStream open(ExportJob job) throws IOException {
+        Files.createFile(job.file, ownerOnly("rw-------"));
+        OutputStream out = new BufferedOutputStream(Files.newOutputStream(job.file));
+        return job.gzip ? new GZIPOutputStream(out) : out;
+    }
+
+    private static void createDirectory(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            Files.createDirectories(directory, ownerOnly("rwx------"));
+        }
+    }
+
+    /**
+     * The permissions restricting a new file to the user running the application, where the file system has them.
+     */
+    private static FileAttribute<?>[] ownerOnly(String permissions) {
+        if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            return new FileAttribute<?>[0];
+        }
+        return new FileAttribute<?>[]{
+            PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString(permissions))};
+    }
+
+    private static boolean isExportFile(Path file) {
+        return Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)
+            && EXPORT_FILE_NAME.matcher(file.getFileName().toString()).matches();
+    }
+
+    private void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Unable to delete export file {} : {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the rows of an export in one of the formats.
+     */
+    private interface RowWriter extends Closeable {
+
+        void write(Object[] values) throws IOException;
+
+        /** Called once per batch of rows, to push them to the stream and report failures to write them */
+        void flush() throws IOException;
+
+        void finish() throws IOException;
+
+        @Override
+        default void close() {
+        }
+    }
+
+    private static final class CsvRowWriter implements RowWriter {
+
+        private final FollowupActionCsvMapper mapper = new FollowupActionCsvMapper();
+        private final CSVWriter csvWriter;
+
+        CsvRowWriter(OutputStream out) {
+            csvWriter = new CSVWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            csvWriter.writeNext(FollowupActionCsvMapper.HEADER);
+        }
+
+        @Override
+        public void write(Object[] values) {
+            csvWriter.writeNext(mapper.toRow(values));
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // the writer keeps write errors to itself, checking for them flushes it
+            if (csvWriter.checkError()) {
+                throw new IOException("Export stream failed");
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            flush();
+        }
+    }
+
+    private static final class ArrowRowWriter implements RowWriter {
+
+        private final FollowupActionArrowWriter writer;
+
+        ArrowRowWriter(OutputStream out) throws IOException {
+            writer = new FollowupActionArrowWriter(out, ARROW_BATCH_SIZE);
+        }
+
+        @Override
+        public void write(Object[] values) throws IOException {
+            writer.write(values);
+        }
+
+        @Override
+        public void flush() {
+            // batches are written as they fill up
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.finish();
+        }
+
+        @Override
+        public void close() {
+            writer.close();
+        }
+    }
+
+    /**
+     * An export run in the background, and its progress.
+     */
+    private final class ExportJob {
+
+        private final String id;
+        private final String login;
+        private final QueryModel query;
+        private final ExportFormat format;
+        private final boolean gzip;
+        private final Instant createdDate;
+        private final Path file;
+        private final AtomicLong exported = new AtomicLong();
+        private volatile State state = State.QUEUED;
+        private volatile boolean cancelled;
+        private volatile long total;
+        private volatile Instant startedDate;
+        private volatile Instant finishedDate;
+        private volatile String error;
+
+        ExportJob(String id, String login, QueryModel query, ExportFormat format, boolean gzip, Instant createdDate,
+                  Path file) {
+            this.id = id;
+            this.login = login;
+            this.query = query;
+            this.format = format;
+            this.gzip = gzip;
+            this.createdDate = createdDate;
+            this.file = file;
+        }
+
+        synchronized void finish(State state, String error) {
+            this.state = state;
+            this.error = error;
+            this.finishedDate = Instant.now();
+        }
+
+        Instant getExpiresDate() {
+            return finishedDate != null ? finishedDate.plusMillis(properties.getTtl()) : null;
+        }
+
+        boolean isExpired(Instant now) {
+            Instant expiresDate = getExpiresDate();
+            return expiresDate != null && !expiresDate.isAfter(now);
+        }
+
+        boolean isReusableFor(String login, QueryModel query, ExportFormat format, boolean gzip, Instant now) {
+            return Objects.equals(this.login, login) && this.format == format && this.gzip == gzip
+                && this.query.equals(query) && !cancelled
+                && (state == State.QUEUED || state == State.RUNNING || (state == State.COMPLETED && !isExpired(now)));
+        }
+
+        ExportJobDTO toDTO() {
+            ExportJobDTO dto = new ExportJobDTO();
+            dto.setId(id);
+            dto.setState(state);
+            dto.setFormat(format);
+            dto.setGzip(gzip);
+            dto.setTotal(total);
+            dto.setExported(exported.get());
+            dto.setCreatedDate(createdDate);
+            dto.setStartedDate(startedDate);
+            dto.setFinishedDate(finishedDate);
+            dto.setExpiresDate(getExpiresDate());
+            dto.setError(error);
+            return dto;
+        }
+    }
+}
@@ -24,18 +24,28 @@ package com.noesisinformatica.northumbriaproms.service.impl;
  * #L%
  */
 
-import com.noesisinformatica.northumbriaproms.config.Constants;
+import com.noesisinformatica.northumbriaproms.config.ApplicationProperties;
 import com.noesisinformatica.northumbriaproms.domain.CareEvent;
 import com.noesisinformatica.northumbriaproms.domain.FollowupAction;
+import com.noesisinformatica.northumbriaproms.domain.FollowupActionDocument;
 import com.noesisinformatica.northumbriaproms.repository.FollowupActionRepository;
-import com.noesisinformatica.northumbriaproms.repository.search.FollowupActionSearchRepository;
 import com.noesisinformatica.northumbriaproms.service.FollowupActionService;
+import com.noesisinformatica.northumbriaproms.service.dto.ReindexStatusDTO;
+import com.noesisinformatica.northumbriaproms.service.search.BulkIndexer;
+import com.noesisinformatica.northumbriaproms.service.search.CursorPage;
+import com.noesisinformatica.northumbriaproms.service.search.FacetCache;
+import com.noesisinformatica.northumbriaproms.service.search.IndexRebuilder;
+import com.noesisinformatica.northumbriaproms.service.search.ScrollingIterator;
+import com.noesisinformatica.northumbriaproms.service.search.SearchCursor;
 import com.noesisinformatica.northumbriaproms.web.rest.util.QueryModel;
-import org.elasticsearch.index.IndexNotFoundException;
+import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.MultiMatchQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.InternalAggregations;
 import org.elasticsearch.search.aggregations.bucket.terms.Terms;
 import org.elasticsearch.search.aggregations.bucket.terms.TermsBuilder;
 import org.elasticsearch.search.sort.FieldSortBuilder;
@@ -43,19 +53,32 @@ import org.elasticsearch.search.sort.SortBuilders;
 import org.elasticsearch.search.sort.SortOrder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
 import org.springframework.data.elasticsearch.core.FacetedPage;
+import org.springframework.data.elasticsearch.core.aggregation.AggregatedPage;
+import org.springframework.data.elasticsearch.core.aggregation.impl.AggregatedPageImpl;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
 import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
 import org.springframework.data.elasticsearch.core.query.SearchQuery;
+import org.springframework.data.util.CloseableIterator;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Service Implementation for managing FollowupAction.
@@ -69,16 +92,37 @@ public class FollowupActionServiceImpl implements FollowupActionService {
 
     private final Logger log = LoggerFactory.getLogger(FollowupActionServiceImpl.class);
 
+    /** The fields of the flat documents that cursors can page through them by */
+    private static final Set<String> CURSOR_SORT_FIELDS = new HashSet<>(Arrays.asList("id", "name", "type", "phase",
+        "status", "scheduledDate", "completedDate", "outcomeScore", "careEventId", "procedureBookingId", "patientId",
+        "patientNhsNumber", "patientGender", "patientAge", "primaryProcedure", "consultantName", "hospitalSite", "side"));
+
+    /** The fields of the action itself, named alike in the nested index, that cursors can page through it by */
+    private static final Set<String> NESTED_CURSOR_SORT_FIELDS = new HashSet<>(Arrays.asList("id", "name", "type",
+        "phase", "status", "scheduledDate", "completedDate", "outcomeScore"));
+
+    /** The number of actions read from the database at a time when streaming them */
+    private static final int STREAM_BATCH_SIZE = 500;
+
     private final FollowupActionRepository followupActionRepository;
     private final ElasticsearchTemplate elasticsearchTemplate;
-    private final FollowupActionSearchRepository followupActionSearchRepository;
+    private final BulkIndexer bulkIndexer;
+    private final IndexRebuilder indexRebuilder;
+    private final FacetCache facetCache;
+    private final ApplicationProperties applicationProperties;
 
     public FollowupActionServiceImpl(FollowupActionRepository followupActionRepository,
-                                     FollowupActionSearchRepository followupActionSearchRepository,
-                                     ElasticsearchTemplate elasticsearchTemplate) {
+                                     ElasticsearchTemplate elasticsearchTemplate,
+                                     BulkIndexer bulkIndexer,
+                                     IndexRebuilder indexRebuilder,
+                                     FacetCache facetCache,
+                                     ApplicationProperties applicationProperties) {
         this.followupActionRepository = followupActionRepository;
-        this.followupActionSearchRepository = followupActionSearchRepository;
         this.elasticsearchTemplate = elasticsearchTemplate;
+        this.bulkIndexer = bulkIndexer;
+        this.indexRebuilder = indexRebuilder;
+        this.facetCache = facetCache;
+        this.applicationProperties = applicationProperties;
     }
 
     /**
@@ -91,20 +135,20 @@ public class FollowupActionServiceImpl implements FollowupActionService {
     public FollowupAction save(FollowupAction followupAction) {
         log.debug("Request to save FollowupAction : {}", followupAction);
         FollowupAction result = followupActionRepository.save(followupAction);
-        followupActionSearchRepository.save(result);
+        bulkIndexer.index(result, result.getId());
         return result;
     }
 
     /**
-     * Process a followupAction.
+     * Process a followupAction. It is indexed in bulk with the other actions processed in the same transaction,
+     * once the transaction commits.
      *
      * @param followupAction the entity to process
      */
     @Override
-    @RabbitListener(queues = Constants.ACTIONS_QUEUE)
     public void processFollowupAction(FollowupAction followupAction) {
         log.debug("Request to process FollowupAction : {}", followupAction);
-        this.save(followupAction);
+        saveAndIndexOnCommit(followupAction);
     }
 
     /**
@@ -113,10 +157,14 @@ public class FollowupActionServiceImpl implements FollowupActionService {
      * @param careEvent the entity to process
      */
     @Override
-    @RabbitListener(queues = Constants.CARE_EVENTS_QUEUE)
     public void processCareEvent(CareEvent careEvent) {
         log.debug("Request to process CareEvent : {}", careEvent);
-        careEvent.getFollowupActions().forEach(this::save);
+        careEvent.getFollowupActions().forEach(this::saveAndIndexOnCommit);
+    }
+
+    private void saveAndIndexOnCommit(FollowupAction followupAction) {
+        FollowupAction result = followupActionRepository.save(followupAction);
+        bulkIndexer.index(result, result.getId());
     }
 
     /**
@@ -142,7 +190,7 @@ public class FollowupActionServiceImpl implements FollowupActionService {
     @Transactional(readOnly = true)
     public FollowupAction findOne(Long id) {
         log.debug("Request to get FollowupAction : {}", id);
-        return followupActionRepository.findOne(id);
+        return followupActionRepository.findOneWithDetailById(id);
     }
 
     /**
@@ -154,7 +202,7 @@ public class FollowupActionServiceImpl implements FollowupActionService {
     public void delete(Long id) {
         log.debug("Request to delete FollowupAction : {}", id);
         followupActionRepository.delete(id);
-        followupActionSearchRepository.delete(id);
+        bulkIndexer.delete(FollowupAction.class, id);
     }
 
     /**
@@ -167,35 +215,30 @@ public class FollowupActionServiceImpl implements FollowupActionService {
     public FacetedPage<FollowupAction> findAllWithCategories(Pageable pageable) {
         log.debug("Request to search for a page of Trials for page {}", pageable);
         // build and return match all query
-        return getFacetedPageForQuery(QueryBuilders.matchAllQuery(), pageable);
+        return getFacetedPageForQuery(QueryBuilders.matchAllQuery(), new QueryModel(), pageable, true);
     }
 
     /**
-     *  Index all the followup actions.
+     *  Rebuild the index of all the followup actions in the background. The current index keeps serving searches
+     *  until the new one is complete.
      *
-     *  @return the boolean that represents the success of the index action
+     *  @return the progress of the rebuild
      */
     @Override
-    @Transactional(readOnly = true)
-    public boolean indexAll() {
+    public ReindexStatusDTO indexAll() {
         log.debug("Request to index followup actions");
-        boolean result = false;
-
-        // delete existing indices
-        try {
-            elasticsearchTemplate.deleteIndex(FollowupAction.class);
-        } catch (IndexNotFoundException e) {
-            log.error("Error deleting indices. Assuming index does not exist.");
-        }
-
-        try {
-            followupActionRepository.findAll().forEach(followupActionSearchRepository::save);
-            result = true;
-        } catch (Exception e) {
-            log.error("Error indexing followup actions .Nested exception is : ", e);
-        }
+        return indexRebuilder.rebuild(FollowupAction.class);
+    }
 
-        return result;
+    /**
+     *  Get the progress of the last rebuild of the index of the followup actions.
+     *
+     *  @return the progress of the rebuild, or null if the index has not been rebuilt
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public ReindexStatusDTO getIndexStatus() {
+        return indexRebuilder.getStatus(FollowupAction.class);
     }
 
     /**
@@ -208,39 +251,191 @@ public class FollowupActionServiceImpl implements FollowupActionService {
     @Override
     @Transactional(readOnly = true)
     public FacetedPage<FollowupAction> search(QueryModel query, Pageable pageable) {
+        return search(query, pageable, true);
+    }
+
+    /**
+     * Search for the followupAction corresponding to the query, with or without its categories.
+     *
+     * @param query the query of the search
+     * @param pageable the pagination information
+     * @param withCategories whether to return the categories of the search
+     * @return the list of entities
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public FacetedPage<FollowupAction> search(QueryModel query, Pageable pageable, boolean withCategories) {
         log.debug("Request to search for a page of Followup Actions for query {}", query);
+        return getFacetedPageForQuery(buildQuery(query, searchFields()), normalised(query), pageable, withCategories);
+    }
+
+    /**
+     * Get the categories of the followupActions corresponding to the query, from the cache if they are in it.
+     *
+     * @param query the query of the search
+     * @return an empty page with the categories and the number of entities found
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public FacetedPage<FollowupAction> searchCategories(QueryModel query) {
+        log.debug("Request to search for the categories of Followup Actions for query {}", query);
+        SearchFields fields = searchFields();
+        QueryModel key = normalised(query);
+        FacetCache.Facets facets = facetCache.get(fields.documentType, key);
+        if (facets == null) {
+            long stamp = facetCache.stamp(fields.documentType);
+            // a single hit, holding only its id, is read along with the categories
+            NativeSearchQueryBuilder searchQueryBuilder = new NativeSearchQueryBuilder()
+                .withQuery(buildQuery(query, fields))
+                .withPageable(new PageRequest(0, 1))
+                .withSourceFilter(new FetchSourceFilter(new String[]{"id"}, null));
+            addCategories(searchQueryBuilder, fields);
+            AggregatedPage<?> page = elasticsearchTemplate.queryForPage(searchQueryBuilder.build(), fields.documentType);
+            facetCache.put(fields.documentType, key, stamp, page.getAggregations(), page.getTotalElements());
+            return new AggregatedPageImpl<>(Collections.emptyList(), null, page.getTotalElements(), page.getAggregations());
+        }
+        return new AggregatedPageImpl<>(Collections.emptyList(), null, facets.getTotal(), facets.getAggregations());
+    }
 
+    /**
+     * Search for a page of the followupActions corresponding to the query after a cursor. Cursors page through the
+     * flat documents, on any of their fields but the address; or, when they are disabled, through the nested index on
+     * the fields of the action itself.
+     *
+     * @param query the query of the search
+     * @param cursor the token of the cursor returned with the previous page, or null for the first page
+     * @param pageable the size of the page, and the sort of the first page
+     * @return the page of entities, with the cursor of the next page
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<FollowupAction> searchAfter(QueryModel query, String cursor, Pageable pageable) {
+        log.debug("Request to search for a page of Followup Actions for query {} after {}", query, cursor);
+        SearchFields fields = searchFields();
+        SearchCursor position = cursor != null ? SearchCursor.decode(cursor) : firstCursor(pageable, fields);
+        Set<String> sortFields = fields == SearchFields.FLAT ? CURSOR_SORT_FIELDS : NESTED_CURSOR_SORT_FIELDS;
+        if (!sortFields.contains(position.getSortField())) {
+            throw new IllegalArgumentException("Cannot page through followup actions by " + position.getSortField());
+        }
+        ElasticsearchPersistentEntity<?> entity = elasticsearchTemplate.getPersistentEntityFor(fields.documentType);
+        BoolQueryBuilder queryBuilder = QueryBuilders.boolQuery().must(buildQuery(query, fields));
+        QueryBuilder after = position.filter();
+        if (after != null) {
+            queryBuilder.filter(after);
+        }
+        NativeSearchQueryBuilder searchQueryBuilder = new NativeSearchQueryBuilder()
+            .withIndices(entity.getIndexName())
+            .withTypes(entity.getIndexType())
+            .withQuery(queryBuilder)
+            .withPageable(new PageRequest(0, pageable.getPageSize()))
+            .withSourceFilter(new FetchSourceFilter(new String[]{"id", position.getSortField()}, null));
+        position.sorts().forEach(searchQueryBuilder::withSort);
+
+        SearchResponse response = elasticsearchTemplate.query(searchQueryBuilder.build(), searchResponse -> searchResponse);
+        SearchHit[] hits = response.getHits().getHits();
+        List<Long> ids = Arrays.stream(hits).map(hit -> Long.valueOf(hit.getId())).collect(Collectors.toList());
+        String nextCursor = null;
+        if (hits.length == pageable.getPageSize()) {
+            SearchHit last = hits[hits.length - 1];
+            nextCursor = position.after(last.getSource().get(position.getSortField()), Long.valueOf(last.getId())).encode();
+        }
+        return new CursorPage<>(findAllInOrder(ids), response.getHits().getTotalHits(), nextCursor);
+    }
+
+    /**
+     * Iterate over all the followupActions corresponding to the query, scrolling through their flat documents, or
+     * through the nested index when those are disabled.
+     *
+     * @param query the query of the search
+     * @return the entities, in no particular order
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public CloseableIterator<FollowupAction> streamAll(QueryModel query) {
+        log.debug("Request to stream Followup Actions for query {}", query);
+        return new ScrollingIterator<>(streamIds(query), Function.identity(), this::findAllInOrder, STREAM_BATCH_SIZE);
+    }
+
+    /**
+     * Iterate over the ids of all the followupActions corresponding to the query, scrolling through their flat
+     * documents, or through the nested index when those are disabled.
+     *
+     * @param query the query of the search
+     * @return the ids, in no particular order
+     */
+    @Override
+    public CloseableIterator<Long> streamIds(QueryModel query) {
+        log.debug("Request to stream Followup Action ids for query {}", query);
+        SearchFields fields = searchFields();
+        SearchQuery searchQuery = new NativeSearchQueryBuilder()
+            .withQuery(buildQuery(query, fields))
+            .withPageable(new PageRequest(0, STREAM_BATCH_SIZE))
+            .withSourceFilter(new FetchSourceFilter(new String[]{"id"}, null))
+            .build();
+        if (fields == SearchFields.NESTED) {
+            return new ScrollingIterator<>(elasticsearchTemplate.stream(searchQuery, FollowupAction.class),
+                FollowupAction::getId, Function.identity(), STREAM_BATCH_SIZE);
+        }
+        return new ScrollingIterator<>(elasticsearchTemplate.stream(searchQuery, FollowupActionDocument.class),
+            FollowupActionDocument::getId, Function.identity(), STREAM_BATCH_SIZE);
+    }
+
+    private SearchCursor firstCursor(Pageable pageable, SearchFields fields) {
+        Sort.Order order = pageable.getSort() != null && pageable.getSort().iterator().hasNext()
+            ? pageable.getSort().iterator().next() : null;
+        return order != null
+            ? SearchCursor.first(fields.sortField(order.getProperty()), order.isAscending())
+            : SearchCursor.first("name", true);
+    }
+
+    /**
+     * Read the actions with the given ids, in the same order. Actions deleted since they were searched are left out.
+     */
+    private List<FollowupAction> findAllInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, FollowupAction> actions = followupActionRepository.findAllByIdIn(ids).stream()
+            .collect(Collectors.toMap(FollowupAction::getId, Function.identity()));
+        return ids.stream().map(actions::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    private static QueryModel normalised(QueryModel query) {
+        return query != null ? query.normalised() : new QueryModel();
+    }
+
+    private QueryBuilder buildQuery(QueryModel query, SearchFields fields) {
         // if empty query, then just return all follow up actions
         if(query == null || query.isEmpty()) {
             // build and return match all query
-            return getFacetedPageForQuery(QueryBuilders.matchAllQuery(), pageable);
+            return QueryBuilders.matchAllQuery();
         }
 
         BoolQueryBuilder boolQueryBuilder = QueryBuilders.boolQuery();
 
         BoolQueryBuilder proceduresQueryBuilder = QueryBuilders.boolQuery();
         for(String condition : query.getProcedures()) {
-            proceduresQueryBuilder.should(QueryBuilders.matchQuery("careEvent.followupPlan.procedureBooking.primaryProcedure", condition));
+            proceduresQueryBuilder.should(QueryBuilders.matchQuery(fields.primaryProcedure, condition));
         }
 
         BoolQueryBuilder sourcesQueryBuilder = QueryBuilders.boolQuery();
         for(String location : query.getLocations()) {
-            sourcesQueryBuilder.should(QueryBuilders.matchPhraseQuery("careEvent.followupPlan.procedureBooking.hospitalSite", location));
+            sourcesQueryBuilder.should(QueryBuilders.matchPhraseQuery(fields.hospitalSite, location));
         }
 
         BoolQueryBuilder consultantsQueryBuilder = QueryBuilders.boolQuery();
         for(String consultant : query.getConsultants()) {
-            consultantsQueryBuilder.should(QueryBuilders.matchPhraseQuery("careEvent.followupPlan.procedureBooking.consultantName", consultant));
+            consultantsQueryBuilder.should(QueryBuilders.matchPhraseQuery(fields.consultantName, consultant));
         }
 
         BoolQueryBuilder patientIdsQueryBuilder = QueryBuilders.boolQuery();
         for(String id : query.getPatientIds()) {
-            patientIdsQueryBuilder.should(QueryBuilders.matchQuery("patient.id", id));
+            patientIdsQueryBuilder.should(QueryBuilders.matchQuery(fields.patientId, id));
         }
 
         BoolQueryBuilder careEventsQueryBuilder = QueryBuilders.boolQuery();
         for(String id : query.getCareEvents()) {
-            careEventsQueryBuilder.should(QueryBuilders.matchQuery("careEvent.id", id));
+            careEventsQueryBuilder.should(QueryBuilders.matchQuery(fields.careEventId, id));
         }
 
         BoolQueryBuilder phaseQueryBuilder = QueryBuilders.boolQuery();
@@ -255,7 +450,7 @@ public class FollowupActionServiceImpl implements FollowupActionService {
 
         BoolQueryBuilder lateralityQueryBuilder = QueryBuilders.boolQuery();
         for(String phase : query.getSides()) {
-            lateralityQueryBuilder.should(QueryBuilders.matchQuery("careEvent.followupPlan.procedureBooking.side", phase));
+            lateralityQueryBuilder.should(QueryBuilders.matchQuery(fields.side, phase));
         }
 
         BoolQueryBuilder typeQueryBuilder = QueryBuilders.boolQuery();
@@ -265,20 +460,20 @@ public class FollowupActionServiceImpl implements FollowupActionService {
 
         BoolQueryBuilder genderQueryBuilder = QueryBuilders.boolQuery();
         for(String gender : query.getGenders()) {
-            genderQueryBuilder.should(QueryBuilders.matchQuery("careEvent.followupPlan.patient.gender", gender));
+            genderQueryBuilder.should(QueryBuilders.matchQuery(fields.patientGender, gender));
         }
 
         if(query.getMinAge() != null) {
             boolQueryBuilder.must(
-                QueryBuilders.boolQuery().should(QueryBuilders.rangeQuery("careEvent.followupPlan.procedureBooking.patientAge").gte(query.getMinAge()))
-                    .should(QueryBuilders.boolQuery().mustNot(QueryBuilders.existsQuery("careEvent.followupPlan.procedureBooking.patientAge")))
+                QueryBuilders.boolQuery().should(QueryBuilders.rangeQuery(fields.patientAge).gte(query.getMinAge()))
+                    .should(QueryBuilders.boolQuery().mustNot(QueryBuilders.existsQuery(fields.patientAge)))
             );
         }
 
         if(query.getMaxAge() != null) {
             boolQueryBuilder.must(
-                QueryBuilders.boolQuery().should(QueryBuilders.rangeQuery("careEvent.followupPlan.procedureBooking.patientAge").lte(query.getMaxAge()))
-                    .should(QueryBuilders.boolQuery().mustNot(QueryBuilders.existsQuery("careEvent.followupPlan.procedureBooking.patientAge")))
+                QueryBuilders.boolQuery().should(QueryBuilders.rangeQuery(fields.patientAge).lte(query.getMaxAge()))
+                    .should(QueryBuilders.boolQuery().mustNot(QueryBuilders.existsQuery(fields.patientAge)))
             );
         }
 
@@ -348,9 +543,9 @@ public class FollowupActionServiceImpl implements FollowupActionService {
             // try to see if token is number, if it is try as nhs number otherwise try as other fields
             try {
                 Long number = Long.parseLong(token);
-                tokenBuilder.should(QueryBuilders.multiMatchQuery(number, "patient.nhsNumber", "patient.id").type(MultiMatchQueryBuilder.Type.PHRASE_PREFIX));
+                tokenBuilder.should(QueryBuilders.multiMatchQuery(number, fields.patientNhsNumber, fields.patientId).type(MultiMatchQueryBuilder.Type.PHRASE_PREFIX));
             } catch (NumberFormatException e) {
-                tokenBuilder.should(QueryBuilders.multiMatchQuery(token, "patient.address.*").type(MultiMatchQueryBuilder.Type.PHRASE_PREFIX));
+                tokenBuilder.should(QueryBuilders.multiMatchQuery(token, fields.patientAddress).type(MultiMatchQueryBuilder.Type.PHRASE_PREFIX));
             }
 
             boolQueryBuilder.must(tokenBuilder);
@@ -358,29 +553,64 @@ public class FollowupActionServiceImpl implements FollowupActionService {
 
         log.debug("boolQueryBuilder = " + boolQueryBuilder);
         // build and return boolean query
-        return getFacetedPageForQuery(boolQueryBuilder, pageable);
+        return boolQueryBuilder;
     }
 
-    private FacetedPage<FollowupAction> getFacetedPageForQuery(QueryBuilder queryBuilder, Pageable pageable) {
-        SearchQuery searchQuery = new NativeSearchQueryBuilder()
+    /**
+     * Search a page of actions. Its categories are taken from the facet cache when they are in it, and otherwise
+     * computed along with the page and cached.
+     */
+    private FacetedPage<FollowupAction> getFacetedPageForQuery(QueryBuilder queryBuilder, QueryModel key,
+                                                               Pageable pageable, boolean withCategories) {
+        SearchFields fields = searchFields();
+        FacetCache.Facets cached = withCategories ? facetCache.get(fields.documentType, key) : null;
+        boolean aggregate = withCategories && cached == null;
+        long stamp = facetCache.stamp(fields.documentType);
+        NativeSearchQueryBuilder searchQueryBuilder = new NativeSearchQueryBuilder()
             .withQuery(queryBuilder)
-            .withSort(getSortParameters(pageable))
-            .withPageable(pageable)
-            .addAggregation(new TermsBuilder("types").field("type").size(5).order(Terms.Order.term(true)))
-            .addAggregation(new TermsBuilder("procedures").field("careEvent.followupPlan.procedureBooking.primaryProcedure").size(100).order(Terms.Order.term(true)))
-            .addAggregation(new TermsBuilder("consultants").field("careEvent.followupPlan.procedureBooking.consultantName").size(100).order(Terms.Order.term(true)))
-            .addAggregation(new TermsBuilder("locations").field("careEvent.followupPlan.procedureBooking.hospitalSite").size(100).order(Terms.Order.term(true)))
-            .addAggregation(new TermsBuilder("genders").field("careEvent.followupPlan.patient.gender").size(5).order(Terms.Order.term(true)))
-            .addAggregation(new TermsBuilder("phases").field("phase").size(10).order(Terms.Order.term(true)))
-            .build();
+            .withSort(getSortParameters(pageable, fields))
+            .withPageable(pageable);
+        if (aggregate) {
+            addCategories(searchQueryBuilder, fields);
+        }
+
+        AggregatedPage<FollowupAction> page;
+        if (fields == SearchFields.NESTED) {
+            page = elasticsearchTemplate.queryForPage(searchQueryBuilder.build(), FollowupAction.class);
+        } else {
+            // only the ids are read from the flat documents, the actions themselves are read from the database
+            SearchQuery searchQuery = searchQueryBuilder
+                .withSourceFilter(new FetchSourceFilter(new String[]{"id"}, null))
+                .build();
+            AggregatedPage<FollowupActionDocument> documents = elasticsearchTemplate.queryForPage(searchQuery, FollowupActionDocument.class);
+            List<Long> ids = documents.getContent().stream().map(FollowupActionDocument::getId).collect(Collectors.toList());
+            page = new AggregatedPageImpl<>(findAllInOrder(ids), pageable, documents.getTotalElements(), documents.getAggregations());
+        }
 
-        FacetedPage<FollowupAction> page = elasticsearchTemplate.queryForPage(searchQuery, FollowupAction.class);
+        if (aggregate) {
+            facetCache.put(fields.documentType, key, stamp, page.getAggregations(), page.getTotalElements());
+            return page;
+        }
+        Aggregations aggregations = cached != null ? cached.getAggregations() : InternalAggregations.EMPTY;
+        return new AggregatedPageImpl<>(page.getContent(), pageable, page.getTotalElements(), aggregations);
+    }
+
+    private void addCategories(NativeSearchQueryBuilder searchQueryBuilder, SearchFields fields) {
+        searchQueryBuilder
+            .addAggregation(new TermsBuilder("types").field("type").size(5).order(Terms.Order.term(true)))
+            .addAggregation(new TermsBuilder("procedures").field(fields.primaryProcedure).size(100).order(Terms.Order.term(true)))
+            .addAggregation(new TermsBuilder("consultants").field(fields.consultantName).size(100).order(Terms.Order.term(true)))
+            .addAggregation(new TermsBuilder("locations").field(fields.hospitalSite).size(100).order(Terms.Order.term(true)))
+            .addAggregation(new TermsBuilder("genders").field(fields.patientGender).size(5).order(Terms.Order.term(true)))
+            .addAggregation(new TermsBuilder("phases").field("phase").size(10).order(Terms.Order.term(true)));
+    }
 
-        return page;
+    private SearchFields searchFields() {
+        return applicationProperties.getSearch().isFlatFollowupActions() ? SearchFields.FLAT : SearchFields.NESTED;
     }
 
 
-    private FieldSortBuilder getSortParameters(Pageable pageable) {
+    private FieldSortBuilder getSortParameters(Pageable pageable, SearchFields fields) {
         List<Sort.Order> orders = new ArrayList<>() ;
         if (pageable != null) {
             for (Sort.Order order : pageable.getSort()) {
@@ -404,6 +634,56 @@ public class FollowupActionServiceImpl implements FollowupActionService {
             }
         }
 
-        return SortBuilders.fieldSort(sortField).order(sortOrder).unmappedType("string");
+        return SortBuilders.fieldSort(fields.sortField(sortField)).order(sortOrder).unmappedType("string");
+    }
+
+    /**
+     * The fields of the actions searched, in the flat {@link FollowupActionDocument}s or in the nested
+     * {@link FollowupAction} index kept as a fallback.
+     */
+    private static final class SearchFields {
+
+        static final SearchFields FLAT = new SearchFields(FollowupActionDocument.class, "primaryProcedure", "hospitalSite", "consultantName",
+            "side", "patientAge", "patientId", "patientNhsNumber", "patientGender", "patientAddress", "careEventId");
+
+        static final SearchFields NESTED = new SearchFields(FollowupAction.class, "careEvent.followupPlan.procedureBooking.primaryProcedure",
+            "careEvent.followupPlan.procedureBooking.hospitalSite", "careEvent.followupPlan.procedureBooking.consultantName",
+            "careEvent.followupPlan.procedureBooking.side", "careEvent.followupPlan.procedureBooking.patientAge",
+            "patient.id", "patient.nhsNumber", "careEvent.followupPlan.patient.gender", "patient.address.*", "careEvent.id");
+
+        private final Class<?> documentType;
+        private final String primaryProcedure;
+        private final String hospitalSite;
+        private final String consultantName;
+        private final String side;
+        private final String patientAge;
+        private final String patientId;
+        private final String patientNhsNumber;
+        private final String patientGender;
+        private final String patientAddress;
+        private final String careEventId;
+
+        private SearchFields(Class<?> documentType, String primaryProcedure, String hospitalSite,
+                             String consultantName, String side, String patientAge, String patientId,
+                             String patientNhsNumber, String patientGender, String patientAddress, String careEventId) {
+            this.documentType = documentType;
+            this.primaryProcedure = primaryProcedure;
+            this.hospitalSite = hospitalSite;
+            this.consultantName = consultantName;
+            this.side = side;
+            this.patientAge = patientAge;
+            this.patientId = patientId;
+            this.patientNhsNumber = patientNhsNumber;
+            this.patientGender = patientGender;
+            this.patientAddress = patientAddress;
+            this.careEventId = careEventId;
+        }
+
+        /**
+         * Get the field to sort on for a property of the action, as sorted on by the client.
+         */
+        String sortField(String property) {
+            return "patient.id".equals(property) ? patientId : property;
+        }
     }
 }
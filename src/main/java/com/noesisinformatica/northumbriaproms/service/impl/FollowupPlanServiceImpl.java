@@ -31,13 +31,13 @@ import com.noesisinformatica.northumbriaproms.domain.enumeration.EventType;
 import com.noesisinformatica.northumbriaproms.repository.FollowupPlanRepository;
 import com.noesisinformatica.northumbriaproms.repository.ProcedureBookingRepository;
 import com.noesisinformatica.northumbriaproms.repository.search.FollowupPlanSearchRepository;
-import com.noesisinformatica.northumbriaproms.repository.search.ProcedureBookingSearchRepository;
 import com.noesisinformatica.northumbriaproms.service.FollowupPlanService;
 import com.noesisinformatica.northumbriaproms.service.ProcedureTimepointService;
+import com.noesisinformatica.northumbriaproms.service.messaging.PipelineMessage;
+import com.noesisinformatica.northumbriaproms.service.messaging.PipelineMessagePublisher;
+import com.noesisinformatica.northumbriaproms.service.search.BulkIndexer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.amqp.rabbit.annotation.RabbitListener;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -61,25 +61,25 @@ import static org.elasticsearch.index.query.QueryBuilders.queryStringQuery;
 public class FollowupPlanServiceImpl implements FollowupPlanService {
 
     private final Logger log = LoggerFactory.getLogger(FollowupPlanServiceImpl.class);
-    private final RabbitTemplate rabbitTemplate;
+    private final PipelineMessagePublisher pipelineMessagePublisher;
     private final FollowupPlanRepository followupPlanRepository;
     private final ProcedureBookingRepository procedureBookingRepository;
-    private final ProcedureBookingSearchRepository procedureBookingSearchRepository;
     private final FollowupPlanSearchRepository followupPlanSearchRepository;
+    private final BulkIndexer bulkIndexer;
     private final ProcedureTimepointService procedureTimepointService;
 
     public FollowupPlanServiceImpl(FollowupPlanRepository followupPlanRepository,
                                    ProcedureBookingRepository procedureBookingRepository,
-                                   ProcedureBookingSearchRepository procedureBookingSearchRepository,
                                    FollowupPlanSearchRepository followupPlanSearchRepository,
+                                   BulkIndexer bulkIndexer,
                                    ProcedureTimepointService procedureTimepointService,
-                                   RabbitTemplate rabbitTemplate) {
+                                   PipelineMessagePublisher pipelineMessagePublisher) {
         this.followupPlanRepository = followupPlanRepository;
         this.procedureBookingRepository = procedureBookingRepository;
-        this.procedureBookingSearchRepository = procedureBookingSearchRepository;
         this.followupPlanSearchRepository = followupPlanSearchRepository;
+        this.bulkIndexer = bulkIndexer;
         this.procedureTimepointService = procedureTimepointService;
-        this.rabbitTemplate = rabbitTemplate;
+        this.pipelineMessagePublisher = pipelineMessagePublisher;
     }
 
     /**
@@ -88,9 +88,6 @@ public class FollowupPlanServiceImpl implements FollowupPlanService {
      * @param booking the ProcedureBooking to process
      */
     @Override
-//    @RabbitHandler
-    @RabbitListener(queues = Constants.BOOKINGS_QUEUE)
-//    @SendTo(value = Constants.ACTIONS_QUEUE)
     public void processBooking(ProcedureBooking booking) {
         log.debug("Request to process ProcedureBooking : {}", booking);
         Patient patient = booking.getPatient();
@@ -127,14 +124,14 @@ public class FollowupPlanServiceImpl implements FollowupPlanService {
     public FollowupPlan save(FollowupPlan followupPlan) {
         log.debug("Request to save FollowupPlan : {}", followupPlan);
         FollowupPlan result = followupPlanRepository.save(followupPlan);
-        followupPlanSearchRepository.save(result);
+        bulkIndexer.index(result, result.getId());
         // now send to message queue for further processing
-        rabbitTemplate.convertAndSend(Constants.PLANS_QUEUE, result);
+        pipelineMessagePublisher.send(Constants.PLANS_QUEUE, PipelineMessage.planSaved(result));
         // now update procedure booking with plan
         ProcedureBooking booking = result.getProcedureBooking();
         booking.setFollowupPlan(followupPlan);
         procedureBookingRepository.save(booking);
-        procedureBookingSearchRepository.save(booking);
+        bulkIndexer.index(booking, booking.getId());
         return result;
     }
 
@@ -200,7 +197,7 @@ public class FollowupPlanServiceImpl implements FollowupPlanService {
     public void delete(Long id) {
         log.debug("Request to delete FollowupPlan : {}", id);
         followupPlanRepository.delete(id);
-        followupPlanSearchRepository.delete(id);
+        bulkIndexer.delete(FollowupPlan.class, id);
     }
 
     /**
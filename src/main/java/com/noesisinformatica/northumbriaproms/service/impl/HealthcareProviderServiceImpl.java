@@ -28,6 +28,7 @@ import com.noesisinformatica.northumbriaproms.service.HealthcareProviderService;
 import com.noesisinformatica.northumbriaproms.domain.HealthcareProvider;
 import com.noesisinformatica.northumbriaproms.repository.HealthcareProviderRepository;
 import com.noesisinformatica.northumbriaproms.repository.search.HealthcareProviderSearchRepository;
+import com.noesisinformatica.northumbriaproms.service.search.BulkIndexer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
@@ -51,9 +52,12 @@ public class HealthcareProviderServiceImpl implements HealthcareProviderService{
 
     private final HealthcareProviderSearchRepository healthcareProviderSearchRepository;
 
-    public HealthcareProviderServiceImpl(HealthcareProviderRepository healthcareProviderRepository, HealthcareProviderSearchRepository healthcareProviderSearchRepository) {
+    private final BulkIndexer bulkIndexer;
+
+    public HealthcareProviderServiceImpl(HealthcareProviderRepository healthcareProviderRepository, HealthcareProviderSearchRepository healthcareProviderSearchRepository, BulkIndexer bulkIndexer) {
         this.healthcareProviderRepository = healthcareProviderRepository;
         this.healthcareProviderSearchRepository = healthcareProviderSearchRepository;
+        this.bulkIndexer = bulkIndexer;
     }
 
     /**
@@ -66,7 +70,7 @@ public class HealthcareProviderServiceImpl implements HealthcareProviderService{
     public HealthcareProvider save(HealthcareProvider healthcareProvider) {
         log.debug("Request to save HealthcareProvider : {}", healthcareProvider);
         HealthcareProvider result = healthcareProviderRepository.save(healthcareProvider);
-        healthcareProviderSearchRepository.save(result);
+        bulkIndexer.index(result, result.getId());
         return result;
     }
 
@@ -105,7 +109,7 @@ public class HealthcareProviderServiceImpl implements HealthcareProviderService{
     public void delete(Long id) {
         log.debug("Request to delete HealthcareProvider : {}", id);
         healthcareProviderRepository.delete(id);
-        healthcareProviderSearchRepository.delete(id);
+        bulkIndexer.delete(HealthcareProvider.class, id);
     }
 
     /**
@@ -28,6 +28,7 @@ import com.noesisinformatica.northumbriaproms.domain.Patient;
 import com.noesisinformatica.northumbriaproms.repository.PatientRepository;
 import com.noesisinformatica.northumbriaproms.repository.search.PatientSearchRepository;
 import com.noesisinformatica.northumbriaproms.service.PatientService;
+import com.noesisinformatica.northumbriaproms.service.search.BulkIndexer;
 import org.elasticsearch.index.query.MultiMatchQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
@@ -51,9 +52,12 @@ public class PatientServiceImpl implements PatientService{
 
     private final PatientSearchRepository patientSearchRepository;
 
-    public PatientServiceImpl(PatientRepository patientRepository, PatientSearchRepository patientSearchRepository) {
+    private final BulkIndexer bulkIndexer;
+
+    public PatientServiceImpl(PatientRepository patientRepository, PatientSearchRepository patientSearchRepository, BulkIndexer bulkIndexer) {
         this.patientRepository = patientRepository;
         this.patientSearchRepository = patientSearchRepository;
+        this.bulkIndexer = bulkIndexer;
     }
 
     /**
@@ -66,7 +70,7 @@ public class PatientServiceImpl implements PatientService{
     public Patient save(Patient patient) {
         log.debug("Request to save Patient : {}", patient);
         Patient result = patientRepository.save(patient);
-        patientSearchRepository.save(result);
+        bulkIndexer.index(result, result.getId());
         return result;
     }
 
@@ -105,7 +109,7 @@ public class PatientServiceImpl implements PatientService{
     public void delete(Long id) {
         log.debug("Request to delete Patient : {}", id);
         patientRepository.delete(id);
-        patientSearchRepository.delete(id);
+        bulkIndexer.delete(Patient.class, id);
     }
 
     /**
@@ -0,0 +1,159 @@
+package com.noesisinformatica.northumbriaproms.service.impl;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.noesisinformatica.northumbriaproms.domain.*;
+import com.noesisinformatica.northumbriaproms.domain.enumeration.ActionStatus;
+import com.noesisinformatica.northumbriaproms.domain.enumeration.EventType;
+import com.noesisinformatica.northumbriaproms.repository.FollowupPlanRepository;
+import com.noesisinformatica.northumbriaproms.repository.ProcedureBookingRepository;
+import com.noesisinformatica.northumbriaproms.service.PlanMaterialisationService;
+import com.noesisinformatica.northumbriaproms.service.ProcedureTimepointService;
+import com.noesisinformatica.northumbriaproms.service.ProcedurelinkService;
+import com.noesisinformatica.northumbriaproms.service.search.BulkIndexer;
+import com.noesisinformatica.northumbriaproms.service.util.FollowupActionPlanner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Service Implementation for generating followup plans in process.
+ * <p>
+ * This does the work of the bookings, plans and care events queue consumers in a single pass: the plan, its care
+ * events and their followup actions are built in memory and persisted in one transaction through the cascades of
+ * {@link FollowupPlan}, then queued on the {@link BulkIndexer}, which writes them and the documents projected from
+ * them once the transaction commits. Timepoints and
+ * questionnaires are looked up once per procedure, from the lookup caches.
+ */
+@Service
+@Transactional
+public class PlanMaterialisationServiceImpl implements PlanMaterialisationService {
+
+    private final Logger log = LoggerFactory.getLogger(PlanMaterialisationServiceImpl.class);
+
+    private final FollowupPlanRepository followupPlanRepository;
+    private final ProcedureBookingRepository procedureBookingRepository;
+    private final ProcedureTimepointService procedureTimepointService;
+    private final ProcedurelinkService procedurelinkService;
+    private final BulkIndexer bulkIndexer;
+
+    public PlanMaterialisationServiceImpl(FollowupPlanRepository followupPlanRepository,
+                                          ProcedureBookingRepository procedureBookingRepository,
+                                          ProcedureTimepointService procedureTimepointService,
+                                          ProcedurelinkService procedurelinkService,
+                                          BulkIndexer bulkIndexer) {
+        this.followupPlanRepository = followupPlanRepository;
+        this.procedureBookingRepository = procedureBookingRepository;
+        this.procedureTimepointService = procedureTimepointService;
+        this.procedurelinkService = procedurelinkService;
+        this.bulkIndexer = bulkIndexer;
+    }
+
+    /**
+     * Generate the followup plan of a procedureBooking.
+     *
+     * @param procedureBooking the saved procedureBooking
+     * @return the persisted plan
+     */
+    @Override
+    public FollowupPlan materialise(ProcedureBooking procedureBooking) {
+        return materialiseAll(Collections.singletonList(procedureBooking)).get(0);
+    }
+
+    /**
+     * Generate the followup plans of a list of procedureBookings in one transaction. A booking that already has
+     * a plan keeps its care events; only care events without followup actions are planned again.
+     *
+     * @param procedureBookings the saved procedureBookings
+     * @return the persisted plans, in the order of the bookings
+     */
+    @Override
+    public List<FollowupPlan> materialiseAll(List<ProcedureBooking> procedureBookings) {
+        log.debug("Request to materialise FollowupPlans for {} ProcedureBookings", procedureBookings.size());
+        if (procedureBookings.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Long> bookingIds = procedureBookings.stream().map(ProcedureBooking::getId).collect(Collectors.toList());
+        Map<Long, FollowupPlan> existingPlans = followupPlanRepository.findAllByProcedureBookingIdIn(bookingIds).stream()
+            .collect(Collectors.toMap(plan -> plan.getProcedureBooking().getId(), Function.identity()));
+        Map<Integer, List<Timepoint>> timepointsByProcedure = new HashMap<>();
+        Map<Integer, List<Questionnaire>> questionnairesByProcedure = new HashMap<>();
+
+        List<FollowupPlan> plans = new ArrayList<>(procedureBookings.size());
+        List<ProcedureBooking> bookings = new ArrayList<>(procedureBookings.size());
+        for (ProcedureBooking booking : procedureBookings) {
+            Integer localCode = Integer.valueOf(booking.getPrimaryProcedure());
+            Patient patient = booking.getPatient();
+            FollowupPlan plan = existingPlans.get(booking.getId());
+            if (plan == null) {
+                plan = new FollowupPlan();
+                List<Timepoint> timepoints = timepointsByProcedure.computeIfAbsent(localCode,
+                    procedureTimepointService::findAllTimepointsByProcedureLocalCode);
+                for (Timepoint timepoint : timepoints) {
+                    // add all time points to plan as scheduled care events
+                    plan.addCareEvent(new CareEvent().timepoint(timepoint).patient(patient)
+                        .type(EventType.SCHEDULED).status(ActionStatus.UNINITIALISED));
+                }
+            }
+            plan.setProcedureBooking(booking);
+            plan.setPatient(patient);
+
+            List<Questionnaire> questionnaires = questionnairesByProcedure.computeIfAbsent(localCode,
+                procedurelinkService::findAllQuestionnairesByProcedureLocalCode);
+            for (CareEvent careEvent : plan.getCareEvents()) {
+                if (careEvent.getFollowupActions().isEmpty()) {
+                    FollowupActionPlanner.planFollowupActions(careEvent, booking, questionnaires);
+                }
+            }
+
+            FollowupPlan result = followupPlanRepository.save(plan);
+            booking.setFollowupPlan(result);
+            bookings.add(procedureBookingRepository.save(booking));
+            plans.add(result);
+        }
+        followupPlanRepository.flush();
+
+        List<Long> careEventIds = new ArrayList<>();
+        List<Long> followupActionIds = new ArrayList<>();
+        for (FollowupPlan plan : plans) {
+            for (CareEvent careEvent : plan.getCareEvents()) {
+                careEventIds.add(careEvent.getId());
+                careEvent.getFollowupActions().forEach(followupAction -> followupActionIds.add(followupAction.getId()));
+            }
+        }
+        bulkIndexer.indexAll(FollowupPlan.class, plans.stream().map(FollowupPlan::getId).collect(Collectors.toList()));
+        bulkIndexer.indexAll(CareEvent.class, careEventIds);
+        bulkIndexer.indexAll(FollowupAction.class, followupActionIds);
+        bookings.forEach(booking -> bulkIndexer.index(booking, booking.getId()));
+        log.info("Materialised {} FollowupPlans with {} CareEvents and {} FollowupActions",
+            plans.size(), careEventIds.size(), followupActionIds.size());
+        return plans;
+    }
+}
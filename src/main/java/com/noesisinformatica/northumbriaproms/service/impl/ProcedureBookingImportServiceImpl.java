@@ -0,0 +1,359 @@
+package com.noesisinformatica.northumbriaproms.service.impl;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.noesisinformatica.northumbriaproms.config.ApplicationProperties;
+import com.noesisinformatica.northumbriaproms.config.Constants;
+import com.noesisinformatica.northumbriaproms.domain.Patient;
+import com.noesisinformatica.northumbriaproms.domain.ProcedureBooking;
+import com.noesisinformatica.northumbriaproms.repository.PatientRepository;
+import com.noesisinformatica.northumbriaproms.repository.ProcedureBookingRepository;
+import com.noesisinformatica.northumbriaproms.service.PlanMaterialisationService;
+import com.noesisinformatica.northumbriaproms.service.ProcedureBookingImportService;
+import com.noesisinformatica.northumbriaproms.service.dto.BulkImportResultDTO;
+import com.noesisinformatica.northumbriaproms.service.mapper.ProcedureBookingCsvMapper;
+import com.noesisinformatica.northumbriaproms.service.messaging.PipelineBackpressureMonitor;
+import com.noesisinformatica.northumbriaproms.service.messaging.PipelineMessage;
+import com.noesisinformatica.northumbriaproms.service.messaging.PipelineTransport;
+import com.opencsv.CSVReader;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.data.elasticsearch.ElasticsearchException;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Service Implementation for importing ProcedureBookings in bulk.
+ * <p>
+ * Bookings are processed in chunks. Each chunk is written in its own transaction, indexed with a single
+ * Elasticsearch bulk request and published to the bookings queue as one confirmed batch. As soon as a chunk
+ * is published, plan generation for it starts on the queue consumers while the next chunk is being written.
+ * In the direct pipeline mode the plans of a chunk are generated in process instead, which also indexes it.
+ * In queue mode, a chunk is held back while the pipeline queues are above their high water mark.
+ * A failing row is reported and skipped; it never aborts the rest of the import.
+ */
+@Service
+public class ProcedureBookingImportServiceImpl implements ProcedureBookingImportService {
+
+    private final Logger log = LoggerFactory.getLogger(ProcedureBookingImportServiceImpl.class);
+
+    private final ProcedureBookingRepository procedureBookingRepository;
+    private final PatientRepository patientRepository;
+    private final ElasticsearchTemplate elasticsearchTemplate;
+    private final PipelineTransport pipelineTransport;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final Validator validator;
+    private final PlanMaterialisationService planMaterialisationService;
+    private final PipelineBackpressureMonitor pipelineBackpressureMonitor;
+    private final ApplicationProperties applicationProperties;
+    private final ApplicationProperties.BulkImport properties;
+
+    public ProcedureBookingImportServiceImpl(ProcedureBookingRepository procedureBookingRepository,
+                                             PatientRepository patientRepository,
+                                             ElasticsearchTemplate elasticsearchTemplate,
+                                             PipelineTransport pipelineTransport,
+                                             PlatformTransactionManager transactionManager,
+                                             EntityManager entityManager,
+                                             Validator validator,
+                                             PlanMaterialisationService planMaterialisationService,
+                                             PipelineBackpressureMonitor pipelineBackpressureMonitor,
+                                             ApplicationProperties applicationProperties) {
+        this.procedureBookingRepository = procedureBookingRepository;
+        this.patientRepository = patientRepository;
+        this.elasticsearchTemplate = elasticsearchTemplate;
+        this.pipelineTransport = pipelineTransport;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.entityManager = entityManager;
+        this.validator = validator;
+        this.planMaterialisationService = planMaterialisationService;
+        this.pipelineBackpressureMonitor = pipelineBackpressureMonitor;
+        this.applicationProperties = applicationProperties;
+        this.properties = applicationProperties.getBulkImport();
+    }
+
+    /**
+     * Import a list of new procedureBookings.
+     *
+     * @param procedureBookings the entities to import, each referencing an existing patient
+     * @param chunkSize the number of bookings written together, or null for the configured default
+     * @return the result of the import
+     */
+    @Override
+    public BulkImportResultDTO importBookings(List<ProcedureBooking> procedureBookings, Integer chunkSize) {
+        log.debug("Request to import {} ProcedureBookings", procedureBookings.size());
+        int size = resolveChunkSize(chunkSize);
+        long start = System.currentTimeMillis();
+        BulkImportResultDTO result = new BulkImportResultDTO();
+        List<ImportRow> chunk = new ArrayList<>(size);
+        int row = 0;
+        for (ProcedureBooking booking : procedureBookings) {
+            chunk.add(new ImportRow(++row, booking));
+            if (chunk.size() == size) {
+                importChunk(chunk, result);
+                chunk.clear();
+            }
+        }
+        importChunk(chunk, result);
+        result.setReceived(row);
+        result.setDurationInMillis(System.currentTimeMillis() - start);
+        log.info("Imported ProcedureBookings : {}", result);
+        return result;
+    }
+
+    /**
+     * Import procedureBookings from CSV. Only one chunk of rows is held in memory at a time.
+     *
+     * @param reader the CSV content, starting with a header row
+     * @param chunkSize the number of bookings written together, or null for the configured default
+     * @return the result of the import
+     * @throws IOException if the CSV could not be read
+     */
+    @Override
+    public BulkImportResultDTO importCsv(Reader reader, Integer chunkSize) throws IOException {
+        log.debug("Request to import ProcedureBookings from CSV");
+        int size = resolveChunkSize(chunkSize);
+        long start = System.currentTimeMillis();
+        BulkImportResultDTO result = new BulkImportResultDTO();
+        List<ImportRow> chunk = new ArrayList<>(size);
+        int row = 0;
+        try (CSVReader csvReader = new CSVReader(reader)) {
+            ProcedureBookingCsvMapper mapper = new ProcedureBookingCsvMapper(csvReader.readNext());
+            String[] line = csvReader.readNext();
+            while (line != null) {
+                row++;
+                try {
+                    chunk.add(new ImportRow(row, mapper.toProcedureBooking(line)));
+                } catch (IllegalArgumentException e) {
+                    result.addError(row, e.getMessage(), true);
+                }
+                if (chunk.size() == size) {
+                    importChunk(chunk, result);
+                    chunk.clear();
+                }
+                line = csvReader.readNext();
+            }
+        }
+        importChunk(chunk, result);
+        result.setReceived(row);
+        result.setDurationInMillis(System.currentTimeMillis() - start);
+        log.info("Imported ProcedureBookings from CSV : {}", result);
+        return result;
+    }
+
+    private int resolveChunkSize(Integer chunkSize) {
+        if (chunkSize == null || chunkSize < 1) {
+            return properties.getChunkSize();
+        }
+        return Math.min(chunkSize, properties.getMaxChunkSize());
+    }
+
+    private void importChunk(List<ImportRow> chunk, BulkImportResultDTO result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        result.setChunks(result.getChunks() + 1);
+        List<ImportRow> valid = resolveAndValidate(chunk, result);
+        List<ImportRow> saved = write(valid, result);
+        if (saved.isEmpty()) {
+            return;
+        }
+        result.setImported(result.getImported() + saved.size());
+        if (applicationProperties.getPipeline().isDirect()) {
+            materialise(saved, result);
+        } else {
+            index(saved, result);
+            // let the consumers catch up before adding more work to the queues
+            pipelineBackpressureMonitor.awaitCapacity();
+            publish(saved, result);
+        }
+    }
+
+    /**
+     * Resolve the patients of a chunk with two queries, and reject rows that are not valid new bookings.
+     */
+    private List<ImportRow> resolveAndValidate(List<ImportRow> chunk, BulkImportResultDTO result) {
+        Set<Long> patientIds = new HashSet<>();
+        Set<Long> nhsNumbers = new HashSet<>();
+        for (ImportRow row : chunk) {
+            Patient patient = row.booking.getPatient();
+            if (patient != null && patient.getId() != null) {
+                patientIds.add(patient.getId());
+            } else if (patient != null && patient.getNhsNumber() != null) {
+                nhsNumbers.add(patient.getNhsNumber());
+            }
+        }
+        Map<Long, Patient> patientsById = patientIds.isEmpty() ? Collections.emptyMap() :
+            patientRepository.findAll(patientIds).stream().collect(Collectors.toMap(Patient::getId, Function.identity()));
+        Map<Long, Patient> patientsByNhsNumber = nhsNumbers.isEmpty() ? Collections.emptyMap() :
+            patientRepository.findAllByNhsNumberIn(nhsNumbers).stream()
+                .collect(Collectors.toMap(Patient::getNhsNumber, Function.identity(), (first, second) -> first));
+
+        List<ImportRow> valid = new ArrayList<>(chunk.size());
+        for (ImportRow row : chunk) {
+            ProcedureBooking booking = row.booking;
+            if (booking.getId() != null) {
+                result.addError(row.number, "A new procedureBooking cannot already have an ID", true);
+                continue;
+            }
+            Patient reference = booking.getPatient();
+            Patient patient = null;
+            if (reference != null && reference.getId() != null) {
+                patient = patientsById.get(reference.getId());
+            } else if (reference != null && reference.getNhsNumber() != null) {
+                patient = patientsByNhsNumber.get(reference.getNhsNumber());
+            }
+            if (patient == null) {
+                result.addError(row.number, "No patient with matching id exists", true);
+                continue;
+            }
+            booking.setPatient(patient);
+            Set<ConstraintViolation<ProcedureBooking>> violations = validator.validate(booking);
+            if (!violations.isEmpty()) {
+                result.addError(row.number, violations.stream()
+                    .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", ")), true);
+                continue;
+            }
+            valid.add(row);
+        }
+        return valid;
+    }
+
+    /**
+     * Write the rows of a chunk in one transaction. If that fails, the rows are retried one at a time so that
+     * only the offending rows are rejected.
+     */
+    private List<ImportRow> write(List<ImportRow> rows, BulkImportResultDTO result) {
+        if (rows.isEmpty()) {
+            return rows;
+        }
+        try {
+            transactionTemplate.execute(status -> {
+                entityManager.unwrap(Session.class).setJdbcBatchSize(rows.size());
+                rows.forEach(row -> procedureBookingRepository.save(row.booking));
+                return null;
+            });
+            return rows;
+        } catch (RuntimeException e) {
+            log.warn("Unable to write chunk of {} ProcedureBookings, retrying row by row. Nested exception is : {}", rows.size(), e.getMessage());
+        }
+
+        List<ImportRow> saved = new ArrayList<>(rows.size());
+        for (ImportRow row : rows) {
+            // ids assigned in the rolled back transaction are not valid
+            row.booking.setId(null);
+            try {
+                transactionTemplate.execute(status -> procedureBookingRepository.save(row.booking));
+                saved.add(row);
+            } catch (RuntimeException e) {
+                row.booking.setId(null);
+                result.addError(row.number, "Unable to save procedureBooking : " + e.getMessage(), true);
+            }
+        }
+        return saved;
+    }
+
+    /**
+     * Index the bookings of a committed chunk in one bulk request rather than through the
+     * {@link com.noesisinformatica.northumbriaproms.service.search.BulkIndexer}, so that the rows that could not be
+     * indexed are reported.
+     */
+    private void index(List<ImportRow> rows, BulkImportResultDTO result) {
+        List<IndexQuery> queries = rows.stream()
+            .map(row -> new IndexQueryBuilder().withId(row.booking.getId().toString()).withObject(row.booking).build())
+            .collect(Collectors.toList());
+        try {
+            elasticsearchTemplate.bulkIndex(queries);
+        } catch (ElasticsearchException e) {
+            Map<String, String> failures = e.getFailedDocuments();
+            rows.stream()
+                .filter(row -> failures.containsKey(row.booking.getId().toString()))
+                .forEach(row -> result.addError(row.number,
+                    "Saved but not indexed : " + failures.get(row.booking.getId().toString()), false));
+        } catch (RuntimeException e) {
+            log.error("Unable to index chunk of ProcedureBookings. Nested exception is : ", e);
+            rows.forEach(row -> result.addError(row.number, "Saved but not indexed : " + e.getMessage(), false));
+        }
+    }
+
+    private void publish(List<ImportRow> rows, BulkImportResultDTO result) {
+        List<PipelineMessage> messages = rows.stream()
+            .map(row -> PipelineMessage.bookingSaved(row.booking))
+            .collect(Collectors.toList());
+        try {
+            pipelineTransport.sendAll(Constants.BOOKINGS_QUEUE, messages, properties.getPublishConfirmTimeout());
+            result.setPublished(result.getPublished() + messages.size());
+        } catch (AmqpException e) {
+            log.error("Unable to publish chunk of ProcedureBookings. Nested exception is : ", e);
+            rows.forEach(row -> result.addError(row.number,
+                "Saved but not queued for followup plan generation : " + e.getMessage(), false));
+        }
+    }
+
+    private void materialise(List<ImportRow> rows, BulkImportResultDTO result) {
+        List<ProcedureBooking> bookings = rows.stream().map(row -> row.booking).collect(Collectors.toList());
+        try {
+            planMaterialisationService.materialiseAll(bookings);
+            result.setPublished(result.getPublished() + bookings.size());
+        } catch (RuntimeException e) {
+            log.error("Unable to generate followup plans for chunk of ProcedureBookings. Nested exception is : ", e);
+            index(rows, result);
+            rows.forEach(row -> result.addError(row.number,
+                "Saved but no followup plan generated : " + e.getMessage(), false));
+        }
+    }
+
+    /**
+     * A booking with its row number in the import.
+     */
+    private static final class ImportRow {
+
+        private final int number;
+
+        private final ProcedureBooking booking;
+
+        private ImportRow(int number, ProcedureBooking booking) {
+            this.number = number;
+            this.booking = booking;
+        }
+    }
+}
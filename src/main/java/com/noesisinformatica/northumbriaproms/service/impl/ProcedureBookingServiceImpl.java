@@ -24,19 +24,23 @@ package com.noesisinformatica.northumbriaproms.service.impl;
  * #L%
  */
 
+import com.noesisinformatica.northumbriaproms.config.ApplicationProperties;
 import com.noesisinformatica.northumbriaproms.config.Constants;
 import com.noesisinformatica.northumbriaproms.domain.FollowupPlan;
 import com.noesisinformatica.northumbriaproms.domain.Patient;
 import com.noesisinformatica.northumbriaproms.domain.ProcedureBooking;
 import com.noesisinformatica.northumbriaproms.repository.ProcedureBookingRepository;
 import com.noesisinformatica.northumbriaproms.repository.search.ProcedureBookingSearchRepository;
+import com.noesisinformatica.northumbriaproms.service.PlanMaterialisationService;
 import com.noesisinformatica.northumbriaproms.service.ProcedureBookingService;
+import com.noesisinformatica.northumbriaproms.service.messaging.PipelineMessage;
+import com.noesisinformatica.northumbriaproms.service.messaging.PipelineMessagePublisher;
+import com.noesisinformatica.northumbriaproms.service.search.BulkIndexer;
 import org.elasticsearch.index.query.MultiMatchQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -56,14 +60,25 @@ public class ProcedureBookingServiceImpl implements ProcedureBookingService{
     private final ProcedureBookingRepository procedureBookingRepository;
 
     private final ProcedureBookingSearchRepository procedureBookingSearchRepository;
-    private final RabbitTemplate rabbitTemplate;
+
+    private final BulkIndexer bulkIndexer;
+
+    private final PipelineMessagePublisher pipelineMessagePublisher;
+    private final PlanMaterialisationService planMaterialisationService;
+    private final ApplicationProperties applicationProperties;
 
     public ProcedureBookingServiceImpl(ProcedureBookingRepository procedureBookingRepository,
                                        ProcedureBookingSearchRepository procedureBookingSearchRepository,
-                                       RabbitTemplate rabbitTemplate) {
+                                       BulkIndexer bulkIndexer,
+                                       PipelineMessagePublisher pipelineMessagePublisher,
+                                       PlanMaterialisationService planMaterialisationService,
+                                       ApplicationProperties applicationProperties) {
         this.procedureBookingRepository = procedureBookingRepository;
         this.procedureBookingSearchRepository = procedureBookingSearchRepository;
-        this.rabbitTemplate = rabbitTemplate;
+        this.bulkIndexer = bulkIndexer;
+        this.pipelineMessagePublisher = pipelineMessagePublisher;
+        this.planMaterialisationService = planMaterialisationService;
+        this.applicationProperties = applicationProperties;
     }
 
     /**
@@ -76,8 +91,13 @@ public class ProcedureBookingServiceImpl implements ProcedureBookingService{
     public ProcedureBooking save(ProcedureBooking procedureBooking) {
         log.debug("Request to save ProcedureBooking : {}", procedureBooking);
         ProcedureBooking result = procedureBookingRepository.save(procedureBooking);
-        procedureBookingSearchRepository.save(result);
-        rabbitTemplate.convertAndSend(Constants.BOOKINGS_QUEUE, result);
+        if (applicationProperties.getPipeline().isDirect()) {
+            // generate plan, care events and actions in this transaction; this also queues the booking for indexing
+            planMaterialisationService.materialise(result);
+            return result;
+        }
+        bulkIndexer.index(result, result.getId());
+        pipelineMessagePublisher.send(Constants.BOOKINGS_QUEUE, PipelineMessage.bookingSaved(result));
         log.info("Sent off ProcedureBooking to message queue");
         return result;
     }
@@ -144,7 +164,7 @@ public class ProcedureBookingServiceImpl implements ProcedureBookingService{
     public void delete(Long id) {
         log.debug("Request to delete ProcedureBooking : {}", id);
         procedureBookingRepository.delete(id);
-        procedureBookingSearchRepository.delete(id);
+        bulkIndexer.delete(ProcedureBooking.class, id);
     }
 
     /**
@@ -28,8 +28,12 @@ import com.noesisinformatica.northumbriaproms.service.ProcedureService;
 import com.noesisinformatica.northumbriaproms.domain.Procedure;
 import com.noesisinformatica.northumbriaproms.repository.ProcedureRepository;
 import com.noesisinformatica.northumbriaproms.repository.search.ProcedureSearchRepository;
+import com.noesisinformatica.northumbriaproms.repository.ProcedureTimepointRepository;
+import com.noesisinformatica.northumbriaproms.repository.ProcedurelinkRepository;
+import com.noesisinformatica.northumbriaproms.service.search.BulkIndexer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -51,9 +55,12 @@ public class ProcedureServiceImpl implements ProcedureService{
 
     private final ProcedureSearchRepository procedureSearchRepository;
 
-    public ProcedureServiceImpl(ProcedureRepository procedureRepository, ProcedureSearchRepository procedureSearchRepository) {
+    private final BulkIndexer bulkIndexer;
+
+    public ProcedureServiceImpl(ProcedureRepository procedureRepository, ProcedureSearchRepository procedureSearchRepository, BulkIndexer bulkIndexer) {
         this.procedureRepository = procedureRepository;
         this.procedureSearchRepository = procedureSearchRepository;
+        this.bulkIndexer = bulkIndexer;
     }
 
     /**
@@ -63,10 +70,11 @@ public class ProcedureServiceImpl implements ProcedureService{
      * @return the persisted entity
      */
     @Override
+    @CacheEvict(cacheNames = {ProcedureTimepointRepository.TIMEPOINTS_BY_PROCEDURE_CACHE, ProcedurelinkRepository.QUESTIONNAIRES_BY_PROCEDURE_CACHE}, allEntries = true)
     public Procedure save(Procedure procedure) {
         log.debug("Request to save Procedure : {}", procedure);
         Procedure result = procedureRepository.save(procedure);
-        procedureSearchRepository.save(result);
+        bulkIndexer.index(result, result.getId());
         return result;
     }
 
@@ -102,10 +110,11 @@ public class ProcedureServiceImpl implements ProcedureService{
      * @param id the id of the entity
      */
     @Override
+    @CacheEvict(cacheNames = {ProcedureTimepointRepository.TIMEPOINTS_BY_PROCEDURE_CACHE, ProcedurelinkRepository.QUESTIONNAIRES_BY_PROCEDURE_CACHE}, allEntries = true)
     public void delete(Long id) {
         log.debug("Request to delete Procedure : {}", id);
         procedureRepository.delete(id);
-        procedureSearchRepository.delete(id);
+        bulkIndexer.delete(Procedure.class, id);
     }
 
     /**
@@ -29,8 +29,10 @@ import com.noesisinformatica.northumbriaproms.service.ProcedureTimepointService;
 import com.noesisinformatica.northumbriaproms.domain.ProcedureTimepoint;
 import com.noesisinformatica.northumbriaproms.repository.ProcedureTimepointRepository;
 import com.noesisinformatica.northumbriaproms.repository.search.ProcedureTimepointSearchRepository;
+import com.noesisinformatica.northumbriaproms.service.search.BulkIndexer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -54,9 +56,12 @@ public class ProcedureTimepointServiceImpl implements ProcedureTimepointService{
 
     private final ProcedureTimepointSearchRepository procedureTimepointSearchRepository;
 
-    public ProcedureTimepointServiceImpl(ProcedureTimepointRepository procedureTimepointRepository, ProcedureTimepointSearchRepository procedureTimepointSearchRepository) {
+    private final BulkIndexer bulkIndexer;
+
+    public ProcedureTimepointServiceImpl(ProcedureTimepointRepository procedureTimepointRepository, ProcedureTimepointSearchRepository procedureTimepointSearchRepository, BulkIndexer bulkIndexer) {
         this.procedureTimepointRepository = procedureTimepointRepository;
         this.procedureTimepointSearchRepository = procedureTimepointSearchRepository;
+        this.bulkIndexer = bulkIndexer;
     }
 
     /**
@@ -66,10 +71,11 @@ public class ProcedureTimepointServiceImpl implements ProcedureTimepointService{
      * @return the persisted entity
      */
     @Override
+    @CacheEvict(cacheNames = ProcedureTimepointRepository.TIMEPOINTS_BY_PROCEDURE_CACHE, allEntries = true)
     public ProcedureTimepoint save(ProcedureTimepoint procedureTimepoint) {
         log.debug("Request to save ProcedureTimepoint : {}", procedureTimepoint);
         ProcedureTimepoint result = procedureTimepointRepository.save(procedureTimepoint);
-        procedureTimepointSearchRepository.save(result);
+        bulkIndexer.index(result, result.getId());
         return result;
     }
 
@@ -105,10 +111,11 @@ public class ProcedureTimepointServiceImpl implements ProcedureTimepointService{
      * @param id the id of the entity
      */
     @Override
+    @CacheEvict(cacheNames = ProcedureTimepointRepository.TIMEPOINTS_BY_PROCEDURE_CACHE, allEntries = true)
     public void delete(Long id) {
         log.debug("Request to delete ProcedureTimepoint : {}", id);
         procedureTimepointRepository.delete(id);
-        procedureTimepointSearchRepository.delete(id);
+        bulkIndexer.delete(ProcedureTimepoint.class, id);
     }
 
     /**
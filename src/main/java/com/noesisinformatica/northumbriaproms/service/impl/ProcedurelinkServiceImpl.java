@@ -30,8 +30,10 @@ import com.noesisinformatica.northumbriaproms.service.ProcedurelinkService;
 import com.noesisinformatica.northumbriaproms.domain.Procedurelink;
 import com.noesisinformatica.northumbriaproms.repository.ProcedurelinkRepository;
 import com.noesisinformatica.northumbriaproms.repository.search.ProcedurelinkSearchRepository;
+import com.noesisinformatica.northumbriaproms.service.search.BulkIndexer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -56,9 +58,12 @@ public class ProcedurelinkServiceImpl implements ProcedurelinkService{
 
     private final ProcedurelinkSearchRepository procedurelinkSearchRepository;
 
-    public ProcedurelinkServiceImpl(ProcedurelinkRepository procedurelinkRepository, ProcedurelinkSearchRepository procedurelinkSearchRepository) {
+    private final BulkIndexer bulkIndexer;
+
+    public ProcedurelinkServiceImpl(ProcedurelinkRepository procedurelinkRepository, ProcedurelinkSearchRepository procedurelinkSearchRepository, BulkIndexer bulkIndexer) {
         this.procedurelinkRepository = procedurelinkRepository;
         this.procedurelinkSearchRepository = procedurelinkSearchRepository;
+        this.bulkIndexer = bulkIndexer;
     }
 
     /**
@@ -68,6 +73,7 @@ public class ProcedurelinkServiceImpl implements ProcedurelinkService{
      * @return the persisted entity
      */
     @Override
+    @CacheEvict(cacheNames = ProcedurelinkRepository.QUESTIONNAIRES_BY_PROCEDURE_CACHE, allEntries = true)
     public Procedurelink save(Procedurelink procedurelink) {
         log.debug("Request to save Procedurelink : {}", procedurelink);
         // verify if there is existing match
@@ -76,7 +82,7 @@ public class ProcedurelinkServiceImpl implements ProcedurelinkService{
             return existing.get();
         } else {
             Procedurelink result = procedurelinkRepository.save(procedurelink);
-            procedurelinkSearchRepository.save(result);
+            bulkIndexer.index(result, result.getId());
             return result;
         }
     }
@@ -152,10 +158,11 @@ public class ProcedurelinkServiceImpl implements ProcedurelinkService{
      * @param id the id of the entity
      */
     @Override
+    @CacheEvict(cacheNames = ProcedurelinkRepository.QUESTIONNAIRES_BY_PROCEDURE_CACHE, allEntries = true)
     public void delete(Long id) {
         log.debug("Request to delete Procedurelink : {}", id);
         procedurelinkRepository.delete(id);
-        procedurelinkSearchRepository.delete(id);
+        bulkIndexer.delete(Procedurelink.class, id);
     }
 
     /**
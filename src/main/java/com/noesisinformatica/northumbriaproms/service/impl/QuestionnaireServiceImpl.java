@@ -28,8 +28,11 @@ import com.noesisinformatica.northumbriaproms.service.QuestionnaireService;
 import com.noesisinformatica.northumbriaproms.domain.Questionnaire;
 import com.noesisinformatica.northumbriaproms.repository.QuestionnaireRepository;
 import com.noesisinformatica.northumbriaproms.repository.search.QuestionnaireSearchRepository;
+import com.noesisinformatica.northumbriaproms.repository.ProcedurelinkRepository;
+import com.noesisinformatica.northumbriaproms.service.search.BulkIndexer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -51,9 +54,12 @@ public class QuestionnaireServiceImpl implements QuestionnaireService{
 
     private final QuestionnaireSearchRepository questionnaireSearchRepository;
 
-    public QuestionnaireServiceImpl(QuestionnaireRepository questionnaireRepository, QuestionnaireSearchRepository questionnaireSearchRepository) {
+    private final BulkIndexer bulkIndexer;
+
+    public QuestionnaireServiceImpl(QuestionnaireRepository questionnaireRepository, QuestionnaireSearchRepository questionnaireSearchRepository, BulkIndexer bulkIndexer) {
         this.questionnaireRepository = questionnaireRepository;
         this.questionnaireSearchRepository = questionnaireSearchRepository;
+        this.bulkIndexer = bulkIndexer;
     }
 
     /**
@@ -63,10 +69,11 @@ public class QuestionnaireServiceImpl implements QuestionnaireService{
      * @return the persisted entity
      */
     @Override
+    @CacheEvict(cacheNames = ProcedurelinkRepository.QUESTIONNAIRES_BY_PROCEDURE_CACHE, allEntries = true)
     public Questionnaire save(Questionnaire questionnaire) {
         log.debug("Request to save Questionnaire : {}", questionnaire);
         Questionnaire result = questionnaireRepository.save(questionnaire);
-        questionnaireSearchRepository.save(result);
+        bulkIndexer.index(result, result.getId());
         return result;
     }
 
@@ -102,10 +109,11 @@ public class QuestionnaireServiceImpl implements QuestionnaireService{
      * @param id the id of the entity
      */
     @Override
+    @CacheEvict(cacheNames = ProcedurelinkRepository.QUESTIONNAIRES_BY_PROCEDURE_CACHE, allEntries = true)
     public void delete(Long id) {
         log.debug("Request to delete Questionnaire : {}", id);
         questionnaireRepository.delete(id);
-        questionnaireSearchRepository.delete(id);
+        bulkIndexer.delete(Questionnaire.class, id);
     }
 
     /**
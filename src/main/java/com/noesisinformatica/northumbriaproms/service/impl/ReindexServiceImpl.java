@@ -0,0 +1,118 @@
+package com.noesisinformatica.northumbriaproms.service.impl;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.noesisinformatica.northumbriaproms.service.ReindexService;
+import com.noesisinformatica.northumbriaproms.service.dto.ReindexStatusDTO;
+import com.noesisinformatica.northumbriaproms.service.search.IndexRebuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Service Implementation for rebuilding the search indices of all the entities mapped to an index.
+ */
+@Service
+public class ReindexServiceImpl implements ReindexService {
+
+    private final Logger log = LoggerFactory.getLogger(ReindexServiceImpl.class);
+
+    private final IndexRebuilder indexRebuilder;
+    private final ElasticsearchTemplate elasticsearchTemplate;
+
+    public ReindexServiceImpl(IndexRebuilder indexRebuilder, ElasticsearchTemplate elasticsearchTemplate) {
+        this.indexRebuilder = indexRebuilder;
+        this.elasticsearchTemplate = elasticsearchTemplate;
+    }
+
+    /**
+     * Get the progress of the last rebuild of the index of each document type.
+     *
+     * @return the progress of each document type, without a state for those not rebuilt yet
+     */
+    @Override
+    public List<ReindexStatusDTO> getStatuses() {
+        return indexRebuilder.getDocumentTypes().stream()
+            .map(type -> {
+                ReindexStatusDTO status = indexRebuilder.getStatus(type);
+                if (status == null) {
+                    status = new ReindexStatusDTO();
+                    status.setDocumentType(type.getSimpleName());
+                }
+                return status;
+            })
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Get the progress of the last rebuild of the index of a document type.
+     *
+     * @param documentType the name of the document type or of its index
+     * @return the progress of the rebuild, or null if the type is unknown or has not been rebuilt
+     */
+    @Override
+    public ReindexStatusDTO getStatus(String documentType) {
+        Class<?> type = findDocumentType(documentType);
+        return type != null ? indexRebuilder.getStatus(type) : null;
+    }
+
+    /**
+     * Start rebuilding the index of a document type in the background.
+     *
+     * @param documentType the name of the document type or of its index
+     * @return the progress of the rebuild, or null if the type is unknown
+     */
+    @Override
+    public ReindexStatusDTO reindex(String documentType) {
+        log.debug("Request to reindex {}", documentType);
+        Class<?> type = findDocumentType(documentType);
+        return type != null ? indexRebuilder.rebuild(type) : null;
+    }
+
+    /**
+     * Start rebuilding the indices of all the document types in the background, concurrently.
+     *
+     * @return the progress of each rebuild
+     */
+    @Override
+    public List<ReindexStatusDTO> reindexAll() {
+        log.debug("Request to reindex all document types");
+        return indexRebuilder.getDocumentTypes().stream()
+            .map(indexRebuilder::rebuild)
+            .collect(Collectors.toList());
+    }
+
+    private Class<?> findDocumentType(String documentType) {
+        return indexRebuilder.getDocumentTypes().stream()
+            .filter(type -> type.getSimpleName().equalsIgnoreCase(documentType)
+                || elasticsearchTemplate.getPersistentEntityFor(type).getIndexName().equalsIgnoreCase(documentType))
+            .findFirst()
+            .orElse(null);
+    }
+}
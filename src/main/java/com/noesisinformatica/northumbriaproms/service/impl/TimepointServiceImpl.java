@@ -28,8 +28,11 @@ import com.noesisinformatica.northumbriaproms.service.TimepointService;
 import com.noesisinformatica.northumbriaproms.domain.Timepoint;
 import com.noesisinformatica.northumbriaproms.repository.TimepointRepository;
 import com.noesisinformatica.northumbriaproms.repository.search.TimepointSearchRepository;
+import com.noesisinformatica.northumbriaproms.repository.ProcedureTimepointRepository;
+import com.noesisinformatica.northumbriaproms.service.search.BulkIndexer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -51,9 +54,12 @@ public class TimepointServiceImpl implements TimepointService{
 
     private final TimepointSearchRepository timepointSearchRepository;
 
-    public TimepointServiceImpl(TimepointRepository timepointRepository, TimepointSearchRepository timepointSearchRepository) {
+    private final BulkIndexer bulkIndexer;
+
+    public TimepointServiceImpl(TimepointRepository timepointRepository, TimepointSearchRepository timepointSearchRepository, BulkIndexer bulkIndexer) {
         this.timepointRepository = timepointRepository;
         this.timepointSearchRepository = timepointSearchRepository;
+        this.bulkIndexer = bulkIndexer;
     }
 
     /**
@@ -63,10 +69,11 @@ public class TimepointServiceImpl implements TimepointService{
      * @return the persisted entity
      */
     @Override
+    @CacheEvict(cacheNames = ProcedureTimepointRepository.TIMEPOINTS_BY_PROCEDURE_CACHE, allEntries = true)
     public Timepoint save(Timepoint timepoint) {
         log.debug("Request to save Timepoint : {}", timepoint);
         Timepoint result = timepointRepository.save(timepoint);
-        timepointSearchRepository.save(result);
+        bulkIndexer.index(result, result.getId());
         return result;
     }
 
@@ -102,10 +109,11 @@ public class TimepointServiceImpl implements TimepointService{
      * @param id the id of the entity
      */
     @Override
+    @CacheEvict(cacheNames = ProcedureTimepointRepository.TIMEPOINTS_BY_PROCEDURE_CACHE, allEntries = true)
     public void delete(Long id) {
         log.debug("Request to delete Timepoint : {}", id);
         timepointRepository.delete(id);
-        timepointSearchRepository.delete(id);
+        bulkIndexer.delete(Timepoint.class, id);
     }
 
     /**
@@ -0,0 +1,188 @@
+package com.noesisinformatica.northumbriaproms.service.mapper;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.types.DateUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writer of the exported values of followup actions as an Arrow IPC stream, for analytics tools to load.
+ * <p>
+ * The columns are those of the CSV export, in the same order, but keep their types: ids, NHS numbers, ages and
+ * scores are integers, dates are dates and missing values are nulls. Rows are buffered into record batches of a
+ * fixed size, and each batch is written to the stream once full, so only one batch is held in memory at a time.
+ */
+public class FollowupActionArrowWriter implements Closeable {
+
+    private static final ArrowType LONG = new ArrowType.Int(64, true);
+    private static final ArrowType INT = new ArrowType.Int(32, true);
+    private static final ArrowType DATE = new ArrowType.Date(DateUnit.DAY);
+    private static final ArrowType TEXT = ArrowType.Utf8.INSTANCE;
+
+    public static final Schema SCHEMA = new Schema(Arrays.asList(
+        Field.nullable("id", LONG),
+        Field.nullable("last_name", TEXT),
+        Field.nullable("first_name", TEXT),
+        Field.nullable("nhs_number", LONG),
+        Field.nullable("gender", TEXT),
+        Field.nullable("age", INT),
+        Field.nullable("consultant_name", TEXT),
+        Field.nullable("hospital_name", TEXT),
+        Field.nullable("primary_procedure", TEXT),
+        Field.nullable("performed_date", DATE),
+        Field.nullable("name", TEXT),
+        Field.nullable("time_point", TEXT),
+        Field.nullable("outcomeScore", INT),
+        Field.nullable("completed_date", DATE),
+        Field.nullable("phase", TEXT),
+        Field.nullable("outcome_comment", TEXT)));
+
+    private final int batchSize;
+    private final BufferAllocator allocator;
+    private final VectorSchemaRoot root;
+    private final ArrowStreamWriter writer;
+    private int rows;
+
+    /**
+     * Start a stream, writing its schema.
+     *
+     * @param out the stream to write to, left open
+     * @param batchSize the number of rows in each record batch
+     * @throws IOException if the schema could not be written
+     */
+    public FollowupActionArrowWriter(OutputStream out, int batchSize) throws IOException {
+        this.batchSize = batchSize;
+        this.allocator = new RootAllocator(Long.MAX_VALUE);
+        this.root = VectorSchemaRoot.create(SCHEMA, allocator);
+        allocate();
+        this.writer = new ArrowStreamWriter(root, new DictionaryProvider.MapDictionaryProvider(), out);
+        writer.start();
+    }
+
+    /**
+     * Add a row, writing the current batch if it is full.
+     *
+     * @param values the values of the action, in the order of the schema
+     * @throws IOException if the batch could not be written
+     */
+    public void write(Object[] values) throws IOException {
+        List<FieldVector> vectors = root.getFieldVectors();
+        for (int i = 0; i < vectors.size(); i++) {
+            set(vectors.get(i), rows, i < values.length ? values[i] : null);
+        }
+        if (++rows == batchSize) {
+            writeBatch();
+        }
+    }
+
+    /**
+     * Write the last batch and the end of the stream.
+     *
+     * @throws IOException if they could not be written
+     */
+    public void finish() throws IOException {
+        if (rows > 0) {
+            writeBatch();
+        }
+        writer.end();
+    }
+
+    /**
+     * Release the memory of the batch, without closing the stream.
+     */
+    @Override
+    public void close() {
+        root.close();
+        allocator.close();
+    }
+
+    private void writeBatch() throws IOException {
+        // the root does not pass its row count on to its vectors
+        for (FieldVector vector : root.getFieldVectors()) {
+            vector.setValueCount(rows);
+        }
+        root.setRowCount(rows);
+        writer.writeBatch();
+        rows = 0;
+        allocate();
+    }
+
+    private void allocate() {
+        for (FieldVector vector : root.getFieldVectors()) {
+            vector.clear();
+            vector.setInitialCapacity(batchSize);
+            vector.allocateNew();
+        }
+    }
+
+    private static void set(FieldVector vector, int index, Object value) {
+        if (vector instanceof BigIntVector) {
+            if (value == null) {
+                ((BigIntVector) vector).setNull(index);
+            } else {
+                ((BigIntVector) vector).setSafe(index, ((Number) value).longValue());
+            }
+        } else if (vector instanceof IntVector) {
+            if (value == null) {
+                ((IntVector) vector).setNull(index);
+            } else {
+                ((IntVector) vector).setSafe(index, ((Number) value).intValue());
+            }
+        } else if (vector instanceof DateDayVector) {
+            if (value == null) {
+                ((DateDayVector) vector).setNull(index);
+            } else {
+                ((DateDayVector) vector).setSafe(index, (int) ((LocalDate) value).toEpochDay());
+            }
+        } else {
+            if (value == null) {
+                ((VarCharVector) vector).setNull(index);
+            } else {
+                String text = value instanceof Enum ? ((Enum<?>) value).name() : value.toString();
+                ((VarCharVector) vector).setSafe(index, text.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+}
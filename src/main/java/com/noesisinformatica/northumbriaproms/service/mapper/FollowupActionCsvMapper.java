@@ -0,0 +1,71 @@
+package com.noesisinformatica.northumbriaproms.service.mapper;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Mapper from the exported values of a followup action to a row of the followup action CSV export.
+ * <p>
+ * The values are those read by {@code FollowupActionRepository.findExportValuesByIdIn}, in the order of
+ * {@link #HEADER}. Missing values are written as empty cells, so that an action without a booking, timepoint or
+ * outcome is exported rather than failing the export. Dates are written as {@code dd/MM/yyyy}.
+ */
+public class FollowupActionCsvMapper {
+
+    public static final String[] HEADER = new String[]{"id", "last_name", "first_name", "nhs_number", "gender", "age",
+        "consultant_name", "hospital_name", "primary_procedure", "performed_date",
+        "name", "time_point", "outcomeScore", "completed_date", "phase", "outcome_comment"};
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    /**
+     * Map the exported values of an action to a CSV row.
+     *
+     * @param values the values of the action, in the order of the header
+     * @return the cells of the row
+     */
+    public String[] toRow(Object[] values) {
+        String[] row = new String[HEADER.length];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = i < values.length ? cell(values[i]) : "";
+        }
+        return row;
+    }
+
+    private String cell(Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (value instanceof LocalDate) {
+            return ((LocalDate) value).format(DATE_FORMAT);
+        }
+        if (value instanceof Enum) {
+            return ((Enum<?>) value).name();
+        }
+        return value.toString();
+    }
+}
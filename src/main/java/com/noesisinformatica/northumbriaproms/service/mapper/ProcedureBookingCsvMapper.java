@@ -0,0 +1,145 @@
+package com.noesisinformatica.northumbriaproms.service.mapper;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.noesisinformatica.northumbriaproms.domain.Patient;
+import com.noesisinformatica.northumbriaproms.domain.ProcedureBooking;
+import com.noesisinformatica.northumbriaproms.domain.enumeration.Laterality;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Mapper from a row of a procedure booking CSV file to a {@link ProcedureBooking}.
+ * <p>
+ * Columns are matched by the names in the header row, so their order does not matter. The patient is
+ * referenced either by {@code patient_id} or by {@code nhs_number}, and is only set as a reference;
+ * resolving it against the database is left to the caller. Dates are read as {@code dd/MM/yyyy}, the
+ * format used by the export, or as ISO dates.
+ */
+public class ProcedureBookingCsvMapper {
+
+    public static final String PATIENT_ID = "patient_id";
+    public static final String NHS_NUMBER = "nhs_number";
+    public static final String CONSULTANT_NAME = "consultant_name";
+    public static final String HOSPITAL_SITE = "hospital_site";
+    public static final String PRIMARY_PROCEDURE = "primary_procedure";
+    public static final String OTHER_PROCEDURES = "other_procedures";
+    public static final String SCHEDULED_DATE = "scheduled_date";
+    public static final String PERFORMED_DATE = "performed_date";
+    public static final String SIDE = "side";
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    private final Map<String, Integer> columns = new HashMap<>();
+
+    public ProcedureBookingCsvMapper(String[] header) {
+        if (header == null) {
+            throw new IllegalArgumentException("CSV header row is missing");
+        }
+        for (int i = 0; i < header.length; i++) {
+            columns.put(header[i].trim().toLowerCase(Locale.ENGLISH), i);
+        }
+        if (!columns.containsKey(PATIENT_ID) && !columns.containsKey(NHS_NUMBER)) {
+            throw new IllegalArgumentException("CSV header must contain a " + PATIENT_ID + " or " + NHS_NUMBER + " column");
+        }
+    }
+
+    /**
+     * Map a CSV row to a new, unsaved procedure booking.
+     *
+     * @param line the values of the row
+     * @return the procedure booking
+     * @throws IllegalArgumentException if a value can not be converted
+     */
+    public ProcedureBooking toProcedureBooking(String[] line) {
+        ProcedureBooking booking = new ProcedureBooking()
+            .consultantName(value(line, CONSULTANT_NAME))
+            .hospitalSite(value(line, HOSPITAL_SITE))
+            .primaryProcedure(value(line, PRIMARY_PROCEDURE))
+            .otherProcedures(value(line, OTHER_PROCEDURES))
+            .scheduledDate(date(line, SCHEDULED_DATE))
+            .performedDate(date(line, PERFORMED_DATE));
+
+        String side = value(line, SIDE);
+        if (side != null) {
+            try {
+                booking.setSide(Laterality.valueOf(side.toUpperCase(Locale.ENGLISH)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown side : " + side);
+            }
+        }
+
+        Patient patient = new Patient();
+        patient.setId(number(line, PATIENT_ID));
+        patient.setNhsNumber(number(line, NHS_NUMBER));
+        if (patient.getId() == null && patient.getNhsNumber() == null) {
+            throw new IllegalArgumentException("Row has neither a " + PATIENT_ID + " nor a " + NHS_NUMBER);
+        }
+        booking.setPatient(patient);
+        return booking;
+    }
+
+    private String value(String[] line, String column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= line.length) {
+            return null;
+        }
+        String value = line[index].trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private Long number(String[] line, String column) {
+        String value = value(line, column);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number in column " + column + " : " + value);
+        }
+    }
+
+    private LocalDate date(String[] line, String column) {
+        String value = value(line, column);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(value, DATE_FORMAT);
+        } catch (DateTimeParseException e) {
+            try {
+                return LocalDate.parse(value);
+            } catch (DateTimeParseException ignored) {
+                throw new IllegalArgumentException("Invalid date in column " + column + " : " + value);
+            }
+        }
+    }
+}
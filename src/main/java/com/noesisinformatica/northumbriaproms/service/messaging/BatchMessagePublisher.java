@@ -0,0 +1,91 @@
+package com.noesisinformatica.northumbriaproms.service.messaging;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.noesisinformatica.northumbriaproms.config.Constants;
+import com.rabbitmq.client.AMQP;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.RabbitUtils;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.support.DefaultMessagePropertiesConverter;
+import org.springframework.amqp.rabbit.support.MessagePropertiesConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Publishes a batch of payloads to a queue on a single channel and waits once for the broker
+ * to confirm the whole batch, instead of a round trip per message. The channel is put in confirm mode for the
+ * batch only, and closed once it is published.
+ */
+@Component
+@Profile("!" + Constants.SPRING_PROFILE_IN_MEMORY_PIPELINE)
+public class BatchMessagePublisher {
+
+    private final Logger log = LoggerFactory.getLogger(BatchMessagePublisher.class);
+
+    private final RabbitTemplate rabbitTemplate;
+
+    private final MessagePropertiesConverter messagePropertiesConverter = new DefaultMessagePropertiesConverter();
+
+    public BatchMessagePublisher(RabbitTemplate rabbitTemplate) {
+        this.rabbitTemplate = rabbitTemplate;
+    }
+
+    /**
+     * Publish all payloads to the given queue using publisher confirms.
+     *
+     * @param queue the name of the queue, used as routing key on the default exchange
+     * @param payloads the payloads to convert and publish
+     * @param confirmTimeout how long to wait for the broker to confirm the batch, in milliseconds
+     * @throws org.springframework.amqp.AmqpException if the batch could not be published or was nacked
+     */
+    public void publish(String queue, List<?> payloads, long confirmTimeout) {
+        if (payloads.isEmpty()) {
+            return;
+        }
+        log.debug("Publishing batch of {} messages to {}", payloads.size(), queue);
+        MessageConverter converter = rabbitTemplate.getMessageConverter();
+        rabbitTemplate.execute(channel -> {
+            // confirm mode cannot be turned off again, so the channel is closed rather than returned to the cache
+            // shared with the other senders, whose messages would otherwise collect confirms nobody waits for
+            RabbitUtils.setPhysicalCloseRequired(channel, true);
+            channel.confirmSelect();
+            for (Object payload : payloads) {
+                Message message = converter.toMessage(payload, new MessageProperties());
+                AMQP.BasicProperties properties = messagePropertiesConverter
+                    .fromMessageProperties(message.getMessageProperties(), "UTF-8");
+                channel.basicPublish("", queue, properties, message.getBody());
+            }
+            channel.waitForConfirmsOrDie(confirmTimeout);
+            return null;
+        });
+    }
+}
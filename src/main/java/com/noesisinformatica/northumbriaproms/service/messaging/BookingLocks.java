@@ -0,0 +1,59 @@
+package com.noesisinformatica.northumbriaproms.service.messaging;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of locks, striped by booking id, so that the messages of one booking are processed one at a time
+ * while messages of different bookings are processed concurrently.
+ */
+public class BookingLocks {
+
+    private final Lock[] locks;
+
+    public BookingLocks(int stripes) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("Number of lock stripes must be positive : " + stripes);
+        }
+        this.locks = new Lock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Get the lock guarding the booking a message belongs to. Messages without a booking are striped by the id
+     * of their entity instead.
+     *
+     * @param message the message to process
+     * @return the lock to hold while processing the message
+     */
+    public Lock lockFor(PipelineMessage message) {
+        Long key = message.getBookingId() != null ? message.getBookingId() : message.getEntityId();
+        return key == null ? locks[0] : locks[(Long.hashCode(key) & Integer.MAX_VALUE) % locks.length];
+    }
+}
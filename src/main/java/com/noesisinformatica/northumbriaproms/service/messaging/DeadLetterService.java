@@ -0,0 +1,80 @@
+package com.noesisinformatica.northumbriaproms.service.messaging;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.noesisinformatica.northumbriaproms.config.Constants;
+import com.noesisinformatica.northumbriaproms.service.dto.DeadLetterDTO;
+import com.noesisinformatica.northumbriaproms.service.dto.DeadLetterQueueDTO;
+
+import java.util.List;
+
+/**
+ * Service for inspecting and replaying the messages the pipeline gave up on, which the transport keeps in a dead
+ * letter queue per pipeline queue.
+ *
+ * @see RabbitDeadLetterService
+ * @see InMemoryDeadLetterService
+ */
+public interface DeadLetterService {
+
+    /**
+     * Get the dead letter queues with the number of messages in each.
+     *
+     * @return the list of dead letter queues
+     */
+    List<DeadLetterQueueDTO> getDeadLetterQueues();
+
+    /**
+     * Get the first messages of the dead letter queue of a pipeline queue, leaving them in the queue.
+     *
+     * @param queue the name of the pipeline queue
+     * @param count the maximum number of messages to return
+     * @return the list of messages
+     */
+    List<DeadLetterDTO> peek(String queue, int count);
+
+    /**
+     * Move messages from the dead letter queue of a pipeline queue back to the pipeline queue.
+     *
+     * @param queue the name of the pipeline queue
+     * @param count the maximum number of messages to replay
+     * @return the number of messages replayed
+     */
+    int replay(String queue, int count);
+
+    /**
+     * Get the name of the dead letter queue of a pipeline queue.
+     *
+     * @param queue the name of the pipeline queue
+     * @return the name of its dead letter queue
+     * @throws IllegalArgumentException if the queue is not a pipeline queue
+     */
+    static String deadLetterQueueOf(String queue) {
+        if (!Constants.PIPELINE_QUEUES.contains(queue)) {
+            throw new IllegalArgumentException("Unknown queue : " + queue);
+        }
+        return queue + Constants.DEAD_LETTER_QUEUE_SUFFIX;
+    }
+}
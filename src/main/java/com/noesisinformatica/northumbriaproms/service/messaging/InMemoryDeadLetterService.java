@@ -0,0 +1,96 @@
+package com.noesisinformatica.northumbriaproms.service.messaging;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.noesisinformatica.northumbriaproms.config.Constants;
+import com.noesisinformatica.northumbriaproms.service.dto.DeadLetterDTO;
+import com.noesisinformatica.northumbriaproms.service.dto.DeadLetterQueueDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Service for inspecting and replaying the messages kept in the dead letter queues of the
+ * {@link InMemoryPipelineTransport}.
+ */
+@Service
+@Profile(Constants.SPRING_PROFILE_IN_MEMORY_PIPELINE)
+public class InMemoryDeadLetterService implements DeadLetterService {
+
+    private final Logger log = LoggerFactory.getLogger(InMemoryDeadLetterService.class);
+
+    private final InMemoryPipelineTransport pipelineTransport;
+
+    private final ObjectMapper objectMapper;
+
+    public InMemoryDeadLetterService(InMemoryPipelineTransport pipelineTransport, ObjectMapper objectMapper) {
+        this.pipelineTransport = pipelineTransport;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public List<DeadLetterQueueDTO> getDeadLetterQueues() {
+        return Constants.PIPELINE_QUEUES.stream()
+            .map(queue -> new DeadLetterQueueDTO(queue, DeadLetterService.deadLetterQueueOf(queue),
+                pipelineTransport.getDeadLetterCount(queue)))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<DeadLetterDTO> peek(String queue, int count) {
+        log.debug("Request to get {} dead letters of {}", count, queue);
+        DeadLetterService.deadLetterQueueOf(queue);
+        return pipelineTransport.getDeadLetters(queue, count).stream()
+            .map(this::toDeadLetter)
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public int replay(String queue, int count) {
+        log.debug("Request to replay {} dead letters of {}", count, queue);
+        DeadLetterService.deadLetterQueueOf(queue);
+        int replayed = pipelineTransport.replayDeadLetters(queue, count);
+        log.info("Replayed {} dead letters to {}", replayed, queue);
+        return replayed;
+    }
+
+    private DeadLetterDTO toDeadLetter(InMemoryPipelineTransport.DeadLetter deadLetter) {
+        DeadLetterDTO result = new DeadLetterDTO();
+        result.setMessageId(deadLetter.getMessage().getMessageId());
+        result.setExceptionMessage(deadLetter.getExceptionMessage());
+        try {
+            result.setPayload(objectMapper.writeValueAsString(deadLetter.getMessage()));
+        } catch (JsonProcessingException e) {
+            result.setPayload(deadLetter.getMessage().toString());
+        }
+        return result;
+    }
+}
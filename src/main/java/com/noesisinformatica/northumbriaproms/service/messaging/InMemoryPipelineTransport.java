@@ -0,0 +1,318 @@
+package com.noesisinformatica.northumbriaproms.service.messaging;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.noesisinformatica.northumbriaproms.config.ApplicationProperties;
+import com.noesisinformatica.northumbriaproms.config.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.context.annotation.Profile;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Pipeline transport within the JVM, for single node installs and benchmarks. Each queue is a bounded queue
+ * drained by its own pool of worker threads, sized by the queue's listener settings; senders wait while a
+ * queue is full.
+ * <p>
+ * Failing messages are retried with the same backoff as on RabbitMQ, then kept in a bounded dead letter queue of
+ * their queue, from which {@link InMemoryDeadLetterService} lists and replays them; the oldest are dropped once it
+ * is full. Messages still waiting in the queues, and dead letters, are lost when the application stops.
+ */
+@Component
+@Profile(Constants.SPRING_PROFILE_IN_MEMORY_PIPELINE)
+public class InMemoryPipelineTransport implements PipelineTransport {
+
+    private static final long SEND_TIMEOUT_MILLIS = 10000;
+
+    private static final long IDLE_CONSUMER_KEEP_ALIVE_SECONDS = 60;
+
+    private final Logger log = LoggerFactory.getLogger(InMemoryPipelineTransport.class);
+
+    private final Map<String, ThreadPoolExecutor> executors = new LinkedHashMap<>();
+    private final Map<String, Consumer<PipelineMessage>> consumers = new ConcurrentHashMap<>();
+    private final Map<String, Deque<DeadLetter>> deadLetters = new LinkedHashMap<>();
+    private final int deadLetterCapacity;
+    private final RetryTemplate retryTemplate;
+    private final Meter deadLettered;
+
+    public InMemoryPipelineTransport(ApplicationProperties applicationProperties, MetricRegistry metricRegistry) {
+        ApplicationProperties.Pipeline pipeline = applicationProperties.getPipeline();
+        for (String queue : Constants.PIPELINE_QUEUES) {
+            ApplicationProperties.Pipeline.Listener listener = pipeline.getListener(queue);
+            int consumerCount = Math.max(1, listener.getConcurrentConsumers());
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(consumerCount,
+                Math.max(consumerCount, listener.getMaxConcurrentConsumers()),
+                IDLE_CONSUMER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(pipeline.getInMemory().getQueueCapacity()), threadFactory(queue));
+            executor.prestartAllCoreThreads();
+            executors.put(queue, executor);
+            deadLetters.put(queue, new ArrayDeque<>());
+        }
+        this.deadLetterCapacity = pipeline.getInMemory().getDeadLetterCapacity();
+        this.retryTemplate = PipelineRetry.retryTemplate(pipeline.getRetry(), metricRegistry);
+        this.deadLettered = metricRegistry.meter("pipeline.messages.dead-lettered");
+    }
+
+    private static ThreadFactory threadFactory(String queue) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, queue + "-consumer-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @Override
+    public void send(String queue, PipelineMessage message) {
+        sendAll(queue, Collections.singletonList(message), SEND_TIMEOUT_MILLIS);
+    }
+
+    @Override
+    public void sendAll(String queue, List<PipelineMessage> messages, long timeout) {
+        ThreadPoolExecutor executor = executorOf(queue);
+        long deadline = System.currentTimeMillis() + timeout;
+        try {
+            for (PipelineMessage message : messages) {
+                log.debug("Sending {} to {}", message, queue);
+                // queue directly rather than through execute(), which would reject rather than wait when full
+                long remaining = Math.max(0, deadline - System.currentTimeMillis());
+                if (!executor.getQueue().offer(() -> deliver(queue, message), remaining, TimeUnit.MILLISECONDS)) {
+                    throw new AmqpException("Queue " + queue + " is full, message not sent : " + message);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmqpException("Interrupted while sending to " + queue, e);
+        } finally {
+            // replace the consumers that stopped while the queue was empty
+            executor.prestartAllCoreThreads();
+        }
+    }
+
+    private void deliver(String queue, PipelineMessage message) {
+        Consumer<PipelineMessage> consumer = consumers.get(queue);
+        if (consumer == null) {
+            log.error("No consumer for {}, dead lettering {}", queue, message);
+            deadLetter(queue, message, "No consumer for " + queue);
+            return;
+        }
+        retryTemplate.execute(context -> {
+            consumer.accept(message);
+            return null;
+        }, context -> {
+            String exceptionMessage = context.getLastThrowable() == null ? null : context.getLastThrowable().getMessage();
+            log.error("Dead lettering {} from {} after {} attempts : {}", message, queue, context.getRetryCount(),
+                exceptionMessage);
+            deadLetter(queue, message, exceptionMessage);
+            return null;
+        });
+    }
+
+    private void deadLetter(String queue, PipelineMessage message, String exceptionMessage) {
+        Deque<DeadLetter> queueDeadLetters = deadLettersOf(queue);
+        synchronized (queueDeadLetters) {
+            if (queueDeadLetters.size() >= deadLetterCapacity) {
+                log.warn("Dead letter queue of {} is full, dropping {}", queue, queueDeadLetters.pollFirst());
+            }
+            queueDeadLetters.offerLast(new DeadLetter(message, exceptionMessage));
+        }
+        deadLettered.mark();
+    }
+
+    /**
+     * Get the number of messages in the dead letter queue of a queue.
+     *
+     * @param queue the name of the queue
+     * @return the number of dead letters
+     */
+    public int getDeadLetterCount(String queue) {
+        Deque<DeadLetter> queueDeadLetters = deadLettersOf(queue);
+        synchronized (queueDeadLetters) {
+            return queueDeadLetters.size();
+        }
+    }
+
+    /**
+     * Get the oldest messages of the dead letter queue of a queue, leaving them in the dead letter queue.
+     *
+     * @param queue the name of the queue
+     * @param count the maximum number of messages to return
+     * @return the dead letters, oldest first
+     */
+    public List<DeadLetter> getDeadLetters(String queue, int count) {
+        Deque<DeadLetter> queueDeadLetters = deadLettersOf(queue);
+        synchronized (queueDeadLetters) {
+            List<DeadLetter> result = new ArrayList<>(Math.min(count, queueDeadLetters.size()));
+            for (DeadLetter deadLetter : queueDeadLetters) {
+                if (result.size() == count) {
+                    break;
+                }
+                result.add(deadLetter);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Send the oldest messages of the dead letter queue of a queue back to the queue. A message stays in the
+     * dead letter queue if it cannot be sent.
+     *
+     * @param queue the name of the queue
+     * @param count the maximum number of messages to replay
+     * @return the number of messages replayed
+     * @throws AmqpException if the queue stays full
+     */
+    public int replayDeadLetters(String queue, int count) {
+        Deque<DeadLetter> queueDeadLetters = deadLettersOf(queue);
+        int replayed = 0;
+        while (replayed < count) {
+            DeadLetter deadLetter;
+            synchronized (queueDeadLetters) {
+                deadLetter = queueDeadLetters.pollFirst();
+            }
+            if (deadLetter == null) {
+                break;
+            }
+            try {
+                send(queue, deadLetter.getMessage());
+            } catch (AmqpException e) {
+                synchronized (queueDeadLetters) {
+                    queueDeadLetters.offerFirst(deadLetter);
+                }
+                throw e;
+            }
+            replayed++;
+        }
+        return replayed;
+    }
+
+    @Override
+    public void subscribe(String queue, Consumer<PipelineMessage> consumer) {
+        executorOf(queue);
+        consumers.put(queue, consumer);
+    }
+
+    @Override
+    public Integer getDepth(String queue) {
+        return executorOf(queue).getQueue().size();
+    }
+
+    @Override
+    public int getActiveConsumers(String queue) {
+        return executorOf(queue).getPoolSize();
+    }
+
+    @Override
+    public void setConsumers(String queue, int consumers) {
+        ThreadPoolExecutor executor = executorOf(queue);
+        int size = Math.max(1, consumers);
+        synchronized (executor) {
+            // the maximum can never be below the core size
+            if (size > executor.getMaximumPoolSize()) {
+                executor.setMaximumPoolSize(size);
+                executor.setCorePoolSize(size);
+            } else {
+                executor.setCorePoolSize(size);
+                executor.setMaximumPoolSize(size);
+            }
+        }
+        executor.prestartAllCoreThreads();
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    private Deque<DeadLetter> deadLettersOf(String queue) {
+        executorOf(queue);
+        return deadLetters.get(queue);
+    }
+
+    private ThreadPoolExecutor executorOf(String queue) {
+        ThreadPoolExecutor executor = executors.get(queue);
+        if (executor == null) {
+            throw new IllegalArgumentException("Not a pipeline queue : " + queue);
+        }
+        return executor;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executors.forEach((queue, executor) -> {
+            executor.shutdown();
+            if (!executor.getQueue().isEmpty()) {
+                log.warn("Discarding {} messages waiting in {}", executor.getQueue().size(), queue);
+            }
+            if (getDeadLetterCount(queue) > 0) {
+                log.warn("Discarding {} dead letters of {}", getDeadLetterCount(queue), queue);
+            }
+        });
+    }
+
+    /**
+     * A message the transport gave up on, with the message of the exception it last failed with.
+     */
+    public static final class DeadLetter {
+
+        private final PipelineMessage message;
+
+        private final String exceptionMessage;
+
+        DeadLetter(PipelineMessage message, String exceptionMessage) {
+            this.message = message;
+            this.exceptionMessage = exceptionMessage;
+        }
+
+        public PipelineMessage getMessage() {
+            return message;
+        }
+
+        public String getExceptionMessage() {
+            return exceptionMessage;
+        }
+    }
+}
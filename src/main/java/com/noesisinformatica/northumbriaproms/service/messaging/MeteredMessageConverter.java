@@ -0,0 +1,72 @@
+package com.noesisinformatica.northumbriaproms.service.messaging;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+/**
+ * A {@link MessageConverter} that records the size of the messages it writes and the time spent converting
+ * them in the {@link MetricRegistry}.
+ */
+public class MeteredMessageConverter implements MessageConverter {
+
+    private final MessageConverter delegate;
+
+    private final Histogram size;
+
+    private final Timer serialisation;
+
+    private final Timer deserialisation;
+
+    public MeteredMessageConverter(MessageConverter delegate, MetricRegistry metricRegistry) {
+        this.delegate = delegate;
+        this.size = metricRegistry.histogram("pipeline.messages.size");
+        this.serialisation = metricRegistry.timer("pipeline.messages.serialisation");
+        this.deserialisation = metricRegistry.timer("pipeline.messages.deserialisation");
+    }
+
+    @Override
+    public Message toMessage(Object object, MessageProperties messageProperties) throws MessageConversionException {
+        Message message;
+        try (Timer.Context ignored = serialisation.time()) {
+            message = delegate.toMessage(object, messageProperties);
+        }
+        size.update(message.getBody().length);
+        return message;
+    }
+
+    @Override
+    public Object fromMessage(Message message) throws MessageConversionException {
+        try (Timer.Context ignored = deserialisation.time()) {
+            return delegate.fromMessage(message);
+        }
+    }
+}
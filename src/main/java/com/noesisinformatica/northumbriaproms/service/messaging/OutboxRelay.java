@@ -0,0 +1,168 @@
+package com.noesisinformatica.northumbriaproms.service.messaging;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+
+import com.noesisinformatica.northumbriaproms.config.ApplicationProperties;
+import com.noesisinformatica.northumbriaproms.domain.OutboxEvent;
+import com.noesisinformatica.northumbriaproms.repository.OutboxEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Relays the messages recorded in the outbox table to the pipeline queues, in batches, and deletes them once the
+ * broker has confirmed them.
+ * <p>
+ * The relay is woken up when a transaction that recorded messages commits, and also polls the table for messages
+ * left behind, e.g. by a broker outage or a restart. Relays run one at a time on a dedicated thread; a message may
+ * be sent more than once if the relay fails after sending it, which the consumers tolerate.
+ */
+@Component
+public class OutboxRelay {
+
+    private final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final PipelineTransport pipelineTransport;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationProperties.Pipeline.Outbox properties;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "outbox-relay");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean relayPending = new AtomicBoolean();
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+                       PipelineTransport pipelineTransport,
+                       PlatformTransactionManager transactionManager,
+                       ApplicationProperties applicationProperties) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.pipelineTransport = pipelineTransport;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = applicationProperties.getPipeline().getOutbox();
+    }
+
+    /**
+     * Relay the pending messages in the background, unless a relay is already waiting to run.
+     */
+    public void wakeUp() {
+        if (relayPending.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                relayPending.set(false);
+                try {
+                    relayAll();
+                } catch (RuntimeException e) {
+                    log.warn("Unable to relay outbox messages, will retry on next poll : {}", e.getMessage());
+                }
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${application.pipeline.outbox.poll-interval:5000}")
+    public void poll() {
+        wakeUp();
+    }
+
+    /**
+     * Relay the pending messages, one batch per transaction, until there are none left.
+     *
+     * @return the number of messages relayed
+     */
+    public int relayAll() {
+        int total = 0;
+        int relayed;
+        do {
+            relayed = relayBatch();
+            total += relayed;
+        } while (relayed == properties.getBatchSize());
+        if (total > 0) {
+            log.debug("Relayed {} outbox messages", total);
+        }
+        return total;
+    }
+
+    private int relayBatch() {
+        return transactionTemplate.execute(status -> {
+            List<OutboxEvent> events = outboxEventRepository.findOldestForUpdate(new PageRequest(0, properties.getBatchSize()));
+            if (events.isEmpty()) {
+                return 0;
+            }
+            Map<String, List<PipelineMessage>> messagesByQueue = new LinkedHashMap<>();
+            for (OutboxEvent event : events) {
+                messagesByQueue.computeIfAbsent(event.getQueueName(), queue -> new ArrayList<>()).add(toMessage(event));
+            }
+            messagesByQueue.forEach((queue, messages) ->
+                pipelineTransport.sendAll(queue, messages, properties.getPublishConfirmTimeout()));
+            outboxEventRepository.deleteInBatch(events);
+            return events.size();
+        });
+    }
+
+    /**
+     * Record a message in the outbox, in the current transaction.
+     *
+     * @param queue the queue to send the message to
+     * @param message the message
+     */
+    public void record(String queue, PipelineMessage message) {
+        outboxEventRepository.save(new OutboxEvent()
+            .queueName(queue)
+            .messageId(message.getMessageId())
+            .eventType(message.getType().name())
+            .entityId(message.getEntityId())
+            .bookingId(message.getBookingId())
+            .messageVersion(message.getVersion()));
+    }
+
+    private static PipelineMessage toMessage(OutboxEvent event) {
+        PipelineMessage message = new PipelineMessage();
+        message.setMessageId(event.getMessageId());
+        message.setType(PipelineEventType.valueOf(event.getEventType()));
+        message.setEntityId(event.getEntityId());
+        message.setBookingId(event.getBookingId());
+        message.setVersion(event.getMessageVersion());
+        return message;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,206 @@
+package com.noesisinformatica.northumbriaproms.service.messaging;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.noesisinformatica.northumbriaproms.config.ApplicationProperties;
+import com.noesisinformatica.northumbriaproms.config.Constants;
+import com.noesisinformatica.northumbriaproms.service.dto.PipelineQueueStateDTO;
+import com.noesisinformatica.northumbriaproms.service.dto.PipelineStateDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Control loop that samples the depth of the pipeline queues and reacts to it:
+ * <ul>
+ * <li>the number of consumers of each queue is raised, within the limits of the queue's listener settings,
+ * by one for every {@code backlog-per-consumer} waiting messages, and lowered again as the queue drains;</li>
+ * <li>bulk imports, the main producer, wait between chunks while the total depth is above the high water mark,
+ * until it falls below the low water mark.</li>
+ * </ul>
+ * The last sample is exposed by the {@link PipelineEndpoint}.
+ */
+@Component
+public class PipelineBackpressureMonitor {
+
+    private final Logger log = LoggerFactory.getLogger(PipelineBackpressureMonitor.class);
+
+    private final PipelineTransport pipelineTransport;
+    private final MetricRegistry metricRegistry;
+    private final ApplicationProperties.Pipeline pipeline;
+    private final ApplicationProperties.Pipeline.Backpressure properties;
+
+    private volatile boolean throttled;
+
+    private volatile PipelineStateDTO state = new PipelineStateDTO();
+
+    private final Map<String, Integer> consumerTargets = new ConcurrentHashMap<>();
+
+    public PipelineBackpressureMonitor(PipelineTransport pipelineTransport,
+                                       MetricRegistry metricRegistry,
+                                       ApplicationProperties applicationProperties) {
+        this.pipelineTransport = pipelineTransport;
+        this.metricRegistry = metricRegistry;
+        this.pipeline = applicationProperties.getPipeline();
+        this.properties = pipeline.getBackpressure();
+    }
+
+    @PostConstruct
+    public void registerGauges() {
+        metricRegistry.register("pipeline.backpressure.throttled", (Gauge<Integer>) () -> throttled ? 1 : 0);
+    }
+
+    /**
+     * Sample the queues, then adjust their consumers and the throttling of bulk imports.
+     */
+    @Scheduled(fixedDelayString = "${application.pipeline.backpressure.sample-interval:5000}")
+    public void sample() {
+        if (pipeline.isDirect()) {
+            return;
+        }
+        List<PipelineQueueStateDTO> queues = new ArrayList<>();
+        long totalDepth = 0;
+        boolean allSampled = true;
+        for (String queue : Constants.PIPELINE_QUEUES) {
+            Integer depth = pipelineTransport.getDepth(queue);
+            if (depth == null) {
+                allSampled = false;
+            } else {
+                totalDepth += depth;
+            }
+            queues.add(adjustConsumers(queue, depth));
+        }
+        // keep throttling as it is while the broker cannot be asked
+        if (allSampled) {
+            boolean wasThrottled = throttled;
+            throttled = isThrottled(wasThrottled, totalDepth, properties.getHighWaterMark(), properties.getLowWaterMark());
+            if (throttled != wasThrottled) {
+                log.info("{} bulk imports, {} messages waiting in pipeline queues",
+                    throttled ? "Throttling" : "Resuming", totalDepth);
+            }
+        }
+
+        PipelineStateDTO sampled = new PipelineStateDTO();
+        sampled.setThrottled(throttled);
+        sampled.setTotalDepth(totalDepth);
+        sampled.setHighWaterMark(properties.getHighWaterMark());
+        sampled.setLowWaterMark(properties.getLowWaterMark());
+        sampled.setSampledAt(Instant.now());
+        sampled.setQueues(queues);
+        state = sampled;
+    }
+
+    private PipelineQueueStateDTO adjustConsumers(String queue, Integer depth) {
+        ApplicationProperties.Pipeline.Listener listener = pipeline.getListener(queue);
+        int max = Math.max(listener.getConcurrentConsumers(), listener.getMaxConcurrentConsumers());
+        if (depth != null) {
+            int target = targetConsumers(depth, properties.getBacklogPerConsumer(), listener.getConcurrentConsumers(), max);
+            Integer previous = consumerTargets.put(queue, target);
+            if (previous == null || previous != target) {
+                log.info("Scaling consumers of {} to {} for {} waiting messages", queue, target, depth);
+                pipelineTransport.setConsumers(queue, target);
+            }
+        }
+        int active = pipelineTransport.getActiveConsumers(queue);
+        PipelineQueueStateDTO queueState = new PipelineQueueStateDTO();
+        queueState.setQueue(queue);
+        queueState.setDepth(depth);
+        queueState.setConcurrentConsumers(consumerTargets.getOrDefault(queue, listener.getConcurrentConsumers()));
+        queueState.setActiveConsumers(active);
+        queueState.setMaxConcurrentConsumers(max);
+        queueState.setConsumerScale(max == 0 ? 0 : (double) active / max);
+        return queueState;
+    }
+
+    /**
+     * The number of consumers for a queue: one per {@code backlogPerConsumer} waiting messages, within limits.
+     */
+    static int targetConsumers(int depth, int backlogPerConsumer, int min, int max) {
+        int wanted = (int) Math.ceil((double) depth / Math.max(1, backlogPerConsumer));
+        return Math.max(min, Math.min(max, wanted));
+    }
+
+    /**
+     * Whether to throttle producers, with hysteresis between the high and low water marks.
+     */
+    static boolean isThrottled(boolean throttled, long totalDepth, long highWaterMark, long lowWaterMark) {
+        if (throttled) {
+            return totalDepth > lowWaterMark;
+        }
+        return totalDepth >= highWaterMark;
+    }
+
+    /**
+     * Wait until the pipeline queues have drained below the low water mark, if they are above the high water mark,
+     * or until the configured maximum wait has passed.
+     *
+     * @return true if the queues drained, false if the wait timed out or was interrupted
+     */
+    public boolean awaitCapacity() {
+        if (!throttled) {
+            return true;
+        }
+        log.info("Waiting for pipeline queues to drain, {} messages waiting", state.getTotalDepth());
+        long deadline = System.currentTimeMillis() + properties.getMaxThrottleWait();
+        try {
+            while (throttled) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    log.warn("Pipeline queues still above low water mark after {} ms, resuming", properties.getMaxThrottleWait());
+                    return false;
+                }
+                Thread.sleep(Math.min(remaining, properties.getSampleInterval()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    public boolean isThrottled() {
+        return throttled;
+    }
+
+    /**
+     * Get the last sample of the control loop.
+     *
+     * @return the state of the pipeline queues and of the throttling
+     */
+    public PipelineStateDTO getState() {
+        return state;
+    }
+}
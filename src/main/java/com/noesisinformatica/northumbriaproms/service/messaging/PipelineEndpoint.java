@@ -0,0 +1,49 @@
+package com.noesisinformatica.northumbriaproms.service.messaging;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+
+import com.noesisinformatica.northumbriaproms.service.dto.PipelineStateDTO;
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint exposing the state of the pipeline backpressure control loop, at {@code /management/pipeline}.
+ */
+@Component
+public class PipelineEndpoint extends AbstractEndpoint<PipelineStateDTO> {
+
+    private final PipelineBackpressureMonitor pipelineBackpressureMonitor;
+
+    public PipelineEndpoint(PipelineBackpressureMonitor pipelineBackpressureMonitor) {
+        super("pipeline");
+        this.pipelineBackpressureMonitor = pipelineBackpressureMonitor;
+    }
+
+    @Override
+    public PipelineStateDTO invoke() {
+        return pipelineBackpressureMonitor.getState();
+    }
+}
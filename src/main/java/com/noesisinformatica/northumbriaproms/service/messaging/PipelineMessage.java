@@ -0,0 +1,170 @@
+package com.noesisinformatica.northumbriaproms.service.messaging;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.noesisinformatica.northumbriaproms.domain.CareEvent;
+import com.noesisinformatica.northumbriaproms.domain.FollowupAction;
+import com.noesisinformatica.northumbriaproms.domain.FollowupPlan;
+import com.noesisinformatica.northumbriaproms.domain.ProcedureBooking;
+
+import java.io.Serializable;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * The message sent on the pipeline queues. It only identifies the entity that changed; consumers reload the
+ * current state of the entity instead of relying on a copy taken when the message was sent.
+ */
+public class PipelineMessage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String messageId;
+
+    private PipelineEventType type;
+
+    private Long entityId;
+
+    private Long bookingId;
+
+    private long version;
+
+    public PipelineMessage() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public PipelineMessage(PipelineEventType type, Long entityId, Long bookingId, long version) {
+        this.messageId = UUID.randomUUID().toString();
+        this.type = type;
+        this.entityId = entityId;
+        this.bookingId = bookingId;
+        this.version = version;
+    }
+
+    public static PipelineMessage bookingSaved(ProcedureBooking booking) {
+        return new PipelineMessage(PipelineEventType.BOOKING_SAVED, booking.getId(), booking.getId(), System.currentTimeMillis());
+    }
+
+    public static PipelineMessage planSaved(FollowupPlan plan) {
+        return new PipelineMessage(PipelineEventType.PLAN_SAVED, plan.getId(), bookingIdOf(plan), System.currentTimeMillis());
+    }
+
+    public static PipelineMessage careEventSaved(CareEvent careEvent) {
+        return new PipelineMessage(PipelineEventType.CARE_EVENT_SAVED, careEvent.getId(),
+            bookingIdOf(careEvent.getFollowupPlan()), System.currentTimeMillis());
+    }
+
+    public static PipelineMessage actionSaved(FollowupAction action) {
+        return new PipelineMessage(PipelineEventType.ACTION_SAVED, action.getId(),
+            action.getCareEvent() == null ? null : bookingIdOf(action.getCareEvent().getFollowupPlan()),
+            System.currentTimeMillis());
+    }
+
+    private static Long bookingIdOf(FollowupPlan plan) {
+        if (plan == null || plan.getProcedureBooking() == null) {
+            return null;
+        }
+        return plan.getProcedureBooking().getId();
+    }
+
+    public String getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(String messageId) {
+        this.messageId = messageId;
+    }
+
+    public PipelineEventType getType() {
+        return type;
+    }
+
+    public void setType(PipelineEventType type) {
+        this.type = type;
+    }
+
+    public Long getEntityId() {
+        return entityId;
+    }
+
+    public void setEntityId(Long entityId) {
+        this.entityId = entityId;
+    }
+
+    /**
+     * The id of the procedure booking the entity belongs to.
+     *
+     * @return the booking id
+     */
+    public Long getBookingId() {
+        return bookingId;
+    }
+
+    public void setBookingId(Long bookingId) {
+        this.bookingId = bookingId;
+    }
+
+    /**
+     * The version of the entity the message was sent for, as the epoch milliseconds of the change by the clock of
+     * the sender. It tells when the message was sent, but does not order the changes made on different nodes.
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        PipelineMessage that = (PipelineMessage) o;
+        return Objects.equals(messageId, that.messageId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(messageId);
+    }
+
+    @Override
+    public String toString() {
+        return "PipelineMessage{" +
+            "messageId='" + messageId + "'" +
+            ", type='" + type + "'" +
+            ", entityId=" + entityId +
+            ", bookingId=" + bookingId +
+            ", version=" + version +
+            "}";
+    }
+}
@@ -0,0 +1,254 @@
+package com.noesisinformatica.northumbriaproms.service.messaging;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.noesisinformatica.northumbriaproms.config.ApplicationProperties;
+import com.noesisinformatica.northumbriaproms.config.Constants;
+import com.noesisinformatica.northumbriaproms.domain.CareEvent;
+import com.noesisinformatica.northumbriaproms.domain.FollowupAction;
+import com.noesisinformatica.northumbriaproms.domain.FollowupPlan;
+import com.noesisinformatica.northumbriaproms.domain.ProcedureBooking;
+import com.noesisinformatica.northumbriaproms.repository.CareEventRepository;
+import com.noesisinformatica.northumbriaproms.repository.FollowupActionRepository;
+import com.noesisinformatica.northumbriaproms.repository.FollowupPlanRepository;
+import com.noesisinformatica.northumbriaproms.repository.ProcedureBookingRepository;
+import com.noesisinformatica.northumbriaproms.service.CareEventService;
+import com.noesisinformatica.northumbriaproms.service.FollowupActionService;
+import com.noesisinformatica.northumbriaproms.service.FollowupPlanService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Consumes the {@link PipelineMessage}s of the pipeline queues. Each message is handled in a transaction
+ * that reloads the entity it refers to and hands it to the service responsible for the next step.
+ * <p>
+ * Handling is idempotent: messages that were already processed are skipped. Messages of the same booking are
+ * processed one at a time, so the queues can be consumed concurrently without creating duplicate plans or actions.
+ * <p>
+ * Each queue has its own container factory, see {@link com.noesisinformatica.northumbriaproms.config.RabbitListenerConfig}.
+ * When a queue is consumed in batches, the transaction of each message joins the transaction of its batch, and the
+ * lock of its booking is held until the batch completes. A batch waits a limited time for each lock, then rolls back
+ * so that its messages are redelivered, as two batches could otherwise wait for each other's locks.
+ */
+@Component
+public class PipelineMessageListener {
+
+    private final Logger log = LoggerFactory.getLogger(PipelineMessageListener.class);
+
+    private final ProcedureBookingRepository procedureBookingRepository;
+    private final FollowupPlanRepository followupPlanRepository;
+    private final CareEventRepository careEventRepository;
+    private final FollowupActionRepository followupActionRepository;
+    private final FollowupPlanService followupPlanService;
+    private final CareEventService careEventService;
+    private final FollowupActionService followupActionService;
+    private final TransactionTemplate transactionTemplate;
+    private final ProcessedMessageCache processedMessages;
+    private final BookingLocks bookingLocks;
+    private final PipelineTransport pipelineTransport;
+    private final long lockTimeout;
+
+    public PipelineMessageListener(ProcedureBookingRepository procedureBookingRepository,
+                                   FollowupPlanRepository followupPlanRepository,
+                                   CareEventRepository careEventRepository,
+                                   FollowupActionRepository followupActionRepository,
+                                   FollowupPlanService followupPlanService,
+                                   CareEventService careEventService,
+                                   FollowupActionService followupActionService,
+                                   PlatformTransactionManager transactionManager,
+                                   PipelineTransport pipelineTransport,
+                                   ApplicationProperties applicationProperties) {
+        this.procedureBookingRepository = procedureBookingRepository;
+        this.followupPlanRepository = followupPlanRepository;
+        this.careEventRepository = careEventRepository;
+        this.followupActionRepository = followupActionRepository;
+        this.followupPlanService = followupPlanService;
+        this.careEventService = careEventService;
+        this.followupActionService = followupActionService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.processedMessages = new ProcessedMessageCache(applicationProperties.getPipeline().getDedupeCacheSize());
+        this.bookingLocks = new BookingLocks(applicationProperties.getPipeline().getLockStripes());
+        this.pipelineTransport = pipelineTransport;
+        this.lockTimeout = applicationProperties.getPipeline().getLockTimeout();
+    }
+
+    /**
+     * Register the listener methods as the consumers of their queues, for transports other than RabbitMQ.
+     */
+    @PostConstruct
+    public void subscribe() {
+        pipelineTransport.subscribe(Constants.BOOKINGS_QUEUE, this::onBookingSaved);
+        pipelineTransport.subscribe(Constants.PLANS_QUEUE, this::onPlanSaved);
+        pipelineTransport.subscribe(Constants.CARE_EVENTS_QUEUE, this::onCareEventSaved);
+        pipelineTransport.subscribe(Constants.ACTIONS_QUEUE, this::onActionSaved);
+    }
+
+    /**
+     * Generate the followup plan of a saved procedure booking.
+     *
+     * @param message the message identifying the booking
+     */
+    @RabbitListener(id = Constants.BOOKINGS_QUEUE, queues = Constants.BOOKINGS_QUEUE, containerFactory = "bookingsContainerFactory")
+    public void onBookingSaved(PipelineMessage message) {
+        handle(message, () -> {
+            // lock the booking row, so that instances on other nodes cannot generate a second plan concurrently
+            ProcedureBooking booking = procedureBookingRepository.findOneForUpdate(message.getEntityId());
+            if (booking == null) {
+                log.warn("Ignoring {} as the ProcedureBooking no longer exists", message);
+                return;
+            }
+            followupPlanService.processBooking(booking);
+        });
+    }
+
+    /**
+     * Plan the followup actions of the care events of a saved followup plan.
+     *
+     * @param message the message identifying the plan
+     */
+    @RabbitListener(id = Constants.PLANS_QUEUE, queues = Constants.PLANS_QUEUE, containerFactory = "plansContainerFactory")
+    public void onPlanSaved(PipelineMessage message) {
+        handle(message, () -> {
+            FollowupPlan plan = followupPlanRepository.findOneWithCareEventsById(message.getEntityId());
+            if (plan == null) {
+                log.warn("Ignoring {} as the FollowupPlan no longer exists", message);
+                return;
+            }
+            careEventService.processFollowupPlan(plan);
+        });
+    }
+
+    /**
+     * Process the followup actions of a saved care event.
+     *
+     * @param message the message identifying the care event
+     */
+    @RabbitListener(id = Constants.CARE_EVENTS_QUEUE, queues = Constants.CARE_EVENTS_QUEUE, containerFactory = "careEventsContainerFactory")
+    public void onCareEventSaved(PipelineMessage message) {
+        handle(message, () -> {
+            CareEvent careEvent = careEventRepository.findOneWithFollowupActionsById(message.getEntityId());
+            if (careEvent == null) {
+                log.warn("Ignoring {} as the CareEvent no longer exists", message);
+                return;
+            }
+            followupActionService.processCareEvent(careEvent);
+        });
+    }
+
+    /**
+     * Process a saved followup action.
+     *
+     * @param message the message identifying the followup action
+     */
+    @RabbitListener(id = Constants.ACTIONS_QUEUE, queues = Constants.ACTIONS_QUEUE, containerFactory = "actionsContainerFactory")
+    public void onActionSaved(PipelineMessage message) {
+        handle(message, () -> {
+            FollowupAction action = followupActionRepository.findOne(message.getEntityId());
+            if (action == null) {
+                log.warn("Ignoring {} as the FollowupAction no longer exists", message);
+                return;
+            }
+            followupActionService.processFollowupAction(action);
+        });
+    }
+
+    private void handle(PipelineMessage message, Runnable work) {
+        log.debug("Received {}", message);
+        if (processedMessages.isProcessed(message)) {
+            log.debug("Skipping duplicate {}", message);
+            return;
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            handleInBatch(message, work);
+            return;
+        }
+        Lock lock = bookingLocks.lockFor(message);
+        lock.lock();
+        try {
+            // a redelivery of the message may have been processed while waiting for the lock
+            if (processedMessages.isProcessed(message)) {
+                log.debug("Skipping duplicate {}", message);
+                return;
+            }
+            process(message, work);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Handle a message in the transaction of its batch, which only commits once the other messages of the batch
+     * have been handled, so the lock of its booking is released when the batch completes rather than when the
+     * message has been handled.
+     */
+    private void handleInBatch(PipelineMessage message, Runnable work) {
+        Lock lock = bookingLocks.lockFor(message);
+        try {
+            if (!lock.tryLock(lockTimeout, TimeUnit.MILLISECONDS)) {
+                throw new CannotAcquireLockException("Timed out waiting for the lock of " + message);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CannotAcquireLockException("Interrupted while waiting for the lock of " + message, e);
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                lock.unlock();
+            }
+        });
+        // a redelivery of the message may have been processed while waiting for the lock
+        if (processedMessages.isProcessed(message)) {
+            log.debug("Skipping duplicate {}", message);
+            return;
+        }
+        process(message, work);
+    }
+
+    private void process(PipelineMessage message, Runnable work) {
+        transactionTemplate.execute(status -> {
+            work.run();
+            // only once committed, with the other messages of its batch when the queue is consumed in batches
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    processedMessages.markProcessed(message);
+                }
+            });
+            return null;
+        });
+    }
+}
@@ -0,0 +1,74 @@
+package com.noesisinformatica.northumbriaproms.service.messaging;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Sends {@link PipelineMessage}s to the pipeline queues.
+ * <p>
+ * Consumers reload the entity a message refers to, so a message sent within a transaction is recorded in the
+ * outbox table by that transaction and relayed to the broker once it has committed. The message is therefore
+ * sent if and only if the change it announces is committed, even if the application stops right after the commit.
+ */
+@Component
+public class PipelineMessagePublisher {
+
+    private final Logger log = LoggerFactory.getLogger(PipelineMessagePublisher.class);
+
+    private final PipelineTransport pipelineTransport;
+    private final OutboxRelay outboxRelay;
+
+    public PipelineMessagePublisher(PipelineTransport pipelineTransport, OutboxRelay outboxRelay) {
+        this.pipelineTransport = pipelineTransport;
+        this.outboxRelay = outboxRelay;
+    }
+
+    /**
+     * Send a message to the given queue, through the outbox if there is a current transaction.
+     *
+     * @param queue the name of the queue
+     * @param message the message to send
+     */
+    public void send(String queue, PipelineMessage message) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+            && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            log.debug("Recording {} for {} in outbox", message, queue);
+            outboxRelay.record(queue, message);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    outboxRelay.wakeUp();
+                }
+            });
+        } else {
+            pipelineTransport.send(queue, message);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.noesisinformatica.northumbriaproms.service.messaging;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.noesisinformatica.northumbriaproms.config.ApplicationProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.backoff.ExponentialBackOffPolicy;
+import org.springframework.retry.listener.RetryListenerSupport;
+import org.springframework.retry.policy.SimpleRetryPolicy;
+import org.springframework.retry.support.RetryTemplate;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The retry policy of the pipeline consumers, shared by the message transports.
+ */
+public final class PipelineRetry {
+
+    private PipelineRetry() {
+    }
+
+    /**
+     * Create a template retrying a failing message with exponential backoff. Messages that cannot be converted
+     * are not retried. Each retry marks the {@code pipeline.messages.retries} meter.
+     *
+     * @param properties the retry settings
+     * @param metricRegistry the registry of the retries meter
+     * @return the retry template
+     */
+    public static RetryTemplate retryTemplate(ApplicationProperties.Pipeline.Retry properties, MetricRegistry metricRegistry) {
+        Meter retries = metricRegistry.meter("pipeline.messages.retries");
+
+        Map<Class<? extends Throwable>, Boolean> retryableExceptions = new HashMap<>();
+        retryableExceptions.put(MessageConversionException.class, false);
+        retryableExceptions.put(org.springframework.messaging.converter.MessageConversionException.class, false);
+        ExponentialBackOffPolicy backOffPolicy = new ExponentialBackOffPolicy();
+        backOffPolicy.setInitialInterval(properties.getInitialInterval());
+        backOffPolicy.setMultiplier(properties.getMultiplier());
+        backOffPolicy.setMaxInterval(properties.getMaxInterval());
+        RetryTemplate retryTemplate = new RetryTemplate();
+        retryTemplate.setRetryPolicy(new SimpleRetryPolicy(properties.getMaxAttempts(), retryableExceptions, true, true));
+        retryTemplate.setBackOffPolicy(backOffPolicy);
+        retryTemplate.registerListener(new RetryListenerSupport() {
+            @Override
+            public <T, E extends Throwable> void onError(RetryContext context, RetryCallback<T, E> callback, Throwable throwable) {
+                retries.mark();
+            }
+        });
+        return retryTemplate;
+    }
+}
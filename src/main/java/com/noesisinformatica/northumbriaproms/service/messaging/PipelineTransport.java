@@ -0,0 +1,97 @@
+package com.noesisinformatica.northumbriaproms.service.messaging;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Carries {@link PipelineMessage}s between the steps of the followup plan pipeline, one queue per step.
+ * <p>
+ * The RabbitMQ transport is the default; the in process transport replaces it with the
+ * {@link com.noesisinformatica.northumbriaproms.config.Constants#SPRING_PROFILE_IN_MEMORY_PIPELINE} profile.
+ * Both retry a failing message with the same backoff before giving up on it.
+ */
+public interface PipelineTransport {
+
+    /**
+     * Send a message to a queue.
+     *
+     * @param queue the name of the queue
+     * @param message the message to send
+     * @throws org.springframework.amqp.AmqpException if the message could not be sent
+     */
+    void send(String queue, PipelineMessage message);
+
+    /**
+     * Send a batch of messages to a queue, returning once the transport has accepted all of them.
+     *
+     * @param queue the name of the queue
+     * @param messages the messages to send
+     * @param timeout how long to wait for the batch to be accepted, in milliseconds
+     * @throws org.springframework.amqp.AmqpException if the batch could not be sent
+     */
+    void sendAll(String queue, List<PipelineMessage> messages, long timeout);
+
+    /**
+     * Register the consumer of a queue.
+     *
+     * @param queue the name of the queue
+     * @param consumer the consumer to hand the messages of the queue to
+     */
+    void subscribe(String queue, Consumer<PipelineMessage> consumer);
+
+    /**
+     * Get the number of messages waiting in a queue.
+     *
+     * @param queue the name of the queue
+     * @return the number of messages, or null if it is not known
+     */
+    Integer getDepth(String queue);
+
+    /**
+     * Get the number of consumers currently running for a queue.
+     *
+     * @param queue the name of the queue
+     * @return the number of consumers
+     */
+    int getActiveConsumers(String queue);
+
+    /**
+     * Change the number of consumers of a queue.
+     *
+     * @param queue the name of the queue
+     * @param consumers the number of consumers to run
+     */
+    void setConsumers(String queue, int consumers);
+
+    /**
+     * Whether messages can currently be sent.
+     *
+     * @return true if the transport is available
+     */
+    boolean isAvailable();
+}
@@ -0,0 +1,85 @@
+package com.noesisinformatica.northumbriaproms.service.messaging;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded record of the {@link PipelineMessage}s that have been processed, used to skip redelivered messages.
+ * It remembers the most recently processed message ids; the least recently used ids are dropped once the cache
+ * is full.
+ * <p>
+ * Messages are not skipped as superseded by a later message of their entity: the version of a message is the
+ * clock of its sender, which does not order the changes made on different nodes.
+ */
+public class ProcessedMessageCache {
+
+    private final Map<String, Boolean> messageIds;
+
+    public ProcessedMessageCache(int maxSize) {
+        this.messageIds = new BoundedMap<>(maxSize);
+    }
+
+    /**
+     * Check if a message has already been processed.
+     *
+     * @param message the message to check
+     * @return true if the message can be skipped
+     */
+    public synchronized boolean isProcessed(PipelineMessage message) {
+        return messageIds.containsKey(message.getMessageId());
+    }
+
+    /**
+     * Record that a message has been processed.
+     *
+     * @param message the processed message
+     */
+    public synchronized void markProcessed(PipelineMessage message) {
+        messageIds.put(message.getMessageId(), Boolean.TRUE);
+    }
+
+    public synchronized int size() {
+        return messageIds.size();
+    }
+
+    private static final class BoundedMap<K, V> extends LinkedHashMap<K, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+
+        private BoundedMap(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > maxSize;
+        }
+    }
+}
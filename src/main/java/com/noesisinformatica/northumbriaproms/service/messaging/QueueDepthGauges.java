@@ -0,0 +1,96 @@
+package com.noesisinformatica.northumbriaproms.service.messaging;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.codahale.metrics.CachedGauge;
+import com.codahale.metrics.MetricRegistry;
+import com.noesisinformatica.northumbriaproms.config.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registers a gauge with the number of ready messages of each pipeline queue and dead letter queue.
+ * The broker is asked at most once per interval, however often the gauges are read.
+ */
+@Component
+@Profile("!" + Constants.SPRING_PROFILE_IN_MEMORY_PIPELINE)
+public class QueueDepthGauges {
+
+    private static final long REFRESH_INTERVAL_SECONDS = 10;
+
+    private final Logger log = LoggerFactory.getLogger(QueueDepthGauges.class);
+
+    private final AmqpAdmin amqpAdmin;
+
+    private final MetricRegistry metricRegistry;
+
+    public QueueDepthGauges(AmqpAdmin amqpAdmin, MetricRegistry metricRegistry) {
+        this.amqpAdmin = amqpAdmin;
+        this.metricRegistry = metricRegistry;
+    }
+
+    @PostConstruct
+    public void registerGauges() {
+        for (String queue : Constants.PIPELINE_QUEUES) {
+            register(queue);
+            register(queue + Constants.DEAD_LETTER_QUEUE_SUFFIX);
+        }
+    }
+
+    private void register(String queue) {
+        metricRegistry.register("pipeline.queues." + queue + ".depth",
+            new CachedGauge<Integer>(REFRESH_INTERVAL_SECONDS, TimeUnit.SECONDS) {
+                @Override
+                protected Integer loadValue() {
+                    return getDepth(queue);
+                }
+            });
+    }
+
+    /**
+     * Get the number of messages ready for delivery in a queue.
+     *
+     * @param queue the name of the queue
+     * @return the number of messages, or null if the queue does not exist or the broker is unavailable
+     */
+    public Integer getDepth(String queue) {
+        try {
+            Properties properties = amqpAdmin.getQueueProperties(queue);
+            return properties == null ? null : (Integer) properties.get(RabbitAdmin.QUEUE_MESSAGE_COUNT);
+        } catch (AmqpException e) {
+            log.debug("Unable to get depth of queue {} : {}", queue, e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.noesisinformatica.northumbriaproms.service.messaging;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.noesisinformatica.northumbriaproms.config.Constants;
+import com.noesisinformatica.northumbriaproms.service.dto.DeadLetterDTO;
+import com.noesisinformatica.northumbriaproms.service.dto.DeadLetterQueueDTO;
+import com.rabbitmq.client.GetResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.retry.RepublishMessageRecoverer;
+import org.springframework.amqp.rabbit.support.DefaultMessagePropertiesConverter;
+import org.springframework.amqp.rabbit.support.MessagePropertiesConverter;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Service for inspecting and replaying the messages quarantined in the RabbitMQ dead letter queues of the pipeline
+ * queues.
+ */
+@Service
+@Profile("!" + Constants.SPRING_PROFILE_IN_MEMORY_PIPELINE)
+public class RabbitDeadLetterService implements DeadLetterService {
+
+    private final Logger log = LoggerFactory.getLogger(RabbitDeadLetterService.class);
+
+    private static final String ENCODING = "UTF-8";
+
+    private static final long CONFIRM_TIMEOUT_MILLIS = 10000;
+
+    private final RabbitTemplate rabbitTemplate;
+
+    private final QueueDepthGauges queueDepthGauges;
+
+    private final MessagePropertiesConverter messagePropertiesConverter = new DefaultMessagePropertiesConverter();
+
+    public RabbitDeadLetterService(RabbitTemplate rabbitTemplate, QueueDepthGauges queueDepthGauges) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.queueDepthGauges = queueDepthGauges;
+    }
+
+    @Override
+    public List<DeadLetterQueueDTO> getDeadLetterQueues() {
+        return Constants.PIPELINE_QUEUES.stream()
+            .map(queue -> new DeadLetterQueueDTO(queue, DeadLetterService.deadLetterQueueOf(queue),
+                queueDepthGauges.getDepth(DeadLetterService.deadLetterQueueOf(queue))))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<DeadLetterDTO> peek(String queue, int count) {
+        String deadLetterQueue = DeadLetterService.deadLetterQueueOf(queue);
+        log.debug("Request to get {} messages of {}", count, deadLetterQueue);
+        return rabbitTemplate.execute(channel -> {
+            List<DeadLetterDTO> result = new ArrayList<>();
+            long lastDeliveryTag = -1;
+            try {
+                GetResponse response;
+                while (result.size() < count && (response = channel.basicGet(deadLetterQueue, false)) != null) {
+                    lastDeliveryTag = response.getEnvelope().getDeliveryTag();
+                    result.add(toDeadLetter(response));
+                }
+            } finally {
+                if (lastDeliveryTag >= 0) {
+                    // put all messages back
+                    channel.basicNack(lastDeliveryTag, true, true);
+                }
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public int replay(String queue, int count) {
+        String deadLetterQueue = DeadLetterService.deadLetterQueueOf(queue);
+        log.debug("Request to replay {} messages of {}", count, deadLetterQueue);
+        // messages only leave the dead letter queue once the broker has confirmed they are back on the queue
+        Integer replayed = rabbitTemplate.execute(channel -> {
+            channel.confirmSelect();
+            int published = 0;
+            long lastDeliveryTag = -1;
+            try {
+                GetResponse response;
+                while (published < count && (response = channel.basicGet(deadLetterQueue, false)) != null) {
+                    lastDeliveryTag = response.getEnvelope().getDeliveryTag();
+                    channel.basicPublish("", queue, response.getProps(), response.getBody());
+                    published++;
+                }
+                if (lastDeliveryTag >= 0) {
+                    channel.waitForConfirmsOrDie(CONFIRM_TIMEOUT_MILLIS);
+                    channel.basicAck(lastDeliveryTag, true);
+                }
+            } catch (Exception e) {
+                if (lastDeliveryTag >= 0) {
+                    channel.basicNack(lastDeliveryTag, true, true);
+                }
+                throw e;
+            }
+            return published;
+        });
+        log.info("Replayed {} messages from {} to {}", replayed, deadLetterQueue, queue);
+        return replayed;
+    }
+
+    private DeadLetterDTO toDeadLetter(GetResponse response) {
+        MessageProperties properties = messagePropertiesConverter.toMessageProperties(response.getProps(),
+            response.getEnvelope(), ENCODING);
+        DeadLetterDTO deadLetter = new DeadLetterDTO();
+        deadLetter.setPayload(new String(response.getBody(), StandardCharsets.UTF_8));
+        deadLetter.setExceptionMessage(exceptionMessageOf(properties));
+        try {
+            Object payload = rabbitTemplate.getMessageConverter().fromMessage(new Message(response.getBody(), properties));
+            if (payload instanceof PipelineMessage) {
+                deadLetter.setMessageId(((PipelineMessage) payload).getMessageId());
+            }
+        } catch (MessageConversionException e) {
+            log.debug("Dead lettered message is not a pipeline message : {}", e.getMessage());
+        }
+        return deadLetter;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String exceptionMessageOf(MessageProperties properties) {
+        Object exceptionMessage = properties.getHeaders().get(RepublishMessageRecoverer.X_EXCEPTION_MESSAGE);
+        if (exceptionMessage != null) {
+            return exceptionMessage.toString();
+        }
+        // rejected by the broker or a consumer without retry, the reason is in the x-death header
+        Object deaths = properties.getHeaders().get("x-death");
+        if (deaths instanceof List && !((List<?>) deaths).isEmpty()) {
+            Map<String, Object> death = (Map<String, Object>) ((List<?>) deaths).get(0);
+            return String.valueOf(death.get("reason"));
+        }
+        return null;
+    }
+}
@@ -0,0 +1,118 @@
+package com.noesisinformatica.northumbriaproms.service.messaging;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+
+import com.noesisinformatica.northumbriaproms.config.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Pipeline transport over RabbitMQ. The consumers are the {@code @RabbitListener} methods of
+ * {@link PipelineMessageListener}, each in the listener container registered under the name of its queue.
+ */
+@Component
+@Profile("!" + Constants.SPRING_PROFILE_IN_MEMORY_PIPELINE)
+public class RabbitPipelineTransport implements PipelineTransport {
+
+    private final Logger log = LoggerFactory.getLogger(RabbitPipelineTransport.class);
+
+    private final RabbitTemplate rabbitTemplate;
+    private final BatchMessagePublisher batchMessagePublisher;
+    private final QueueDepthGauges queueDepthGauges;
+    private final RabbitListenerEndpointRegistry listenerEndpointRegistry;
+
+    public RabbitPipelineTransport(RabbitTemplate rabbitTemplate,
+                                   BatchMessagePublisher batchMessagePublisher,
+                                   QueueDepthGauges queueDepthGauges,
+                                   RabbitListenerEndpointRegistry listenerEndpointRegistry) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.batchMessagePublisher = batchMessagePublisher;
+        this.queueDepthGauges = queueDepthGauges;
+        this.listenerEndpointRegistry = listenerEndpointRegistry;
+    }
+
+    @Override
+    public void send(String queue, PipelineMessage message) {
+        log.debug("Sending {} to {}", message, queue);
+        rabbitTemplate.convertAndSend(queue, message);
+    }
+
+    @Override
+    public void sendAll(String queue, List<PipelineMessage> messages, long timeout) {
+        batchMessagePublisher.publish(queue, messages, timeout);
+    }
+
+    /**
+     * Nothing to do, the listener containers are created for the {@code @RabbitListener} methods.
+     */
+    @Override
+    public void subscribe(String queue, Consumer<PipelineMessage> consumer) {
+        log.debug("Consumer of {} is registered as a RabbitListener", queue);
+    }
+
+    @Override
+    public Integer getDepth(String queue) {
+        return queueDepthGauges.getDepth(queue);
+    }
+
+    @Override
+    public int getActiveConsumers(String queue) {
+        SimpleMessageListenerContainer container = containerOf(queue);
+        return container == null ? 0 : container.getActiveConsumerCount();
+    }
+
+    @Override
+    public void setConsumers(String queue, int consumers) {
+        SimpleMessageListenerContainer container = containerOf(queue);
+        if (container != null) {
+            container.setConcurrentConsumers(consumers);
+        }
+    }
+
+    @Override
+    public boolean isAvailable() {
+        try {
+            return rabbitTemplate.execute(channel -> channel.isOpen());
+        } catch (AmqpException e) {
+            return false;
+        }
+    }
+
+    private SimpleMessageListenerContainer containerOf(String queue) {
+        MessageListenerContainer container = listenerEndpointRegistry.getListenerContainer(queue);
+        return container instanceof SimpleMessageListenerContainer ? (SimpleMessageListenerContainer) container : null;
+    }
+}
@@ -0,0 +1,408 @@
+package com.noesisinformatica.northumbriaproms.service.search;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.noesisinformatica.northumbriaproms.config.ApplicationProperties;
+import org.hibernate.Hibernate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Writes entities to their search index in the background, so that saving an entity does not wait for
+ * Elasticsearch.
+ * <p>
+ * The ids of the entities written in a transaction are queued once it commits, and nothing is queued if it rolls
+ * back; outside of a transaction they are queued straight away. An id queued again before it is written is only
+ * written once. The queue is written in bulk requests of up to the batch size, each entity read again from the
+ * database so its document has its latest committed state, and entities that no longer exist are deleted from the
+ * index. The documents {@link SearchProjection}s build from an entity are written along with it, and the documents
+ * holding copies of it are updated by the {@link ChangePropagator}. The queue is written on a dedicated thread every
+ * flush interval, or as soon as it holds a batch. Writes
+ * that fail are retried on the next flush, up to the maximum number of attempts.
+ * <p>
+ * In synchronous mode, used by the tests, entities are written straight away on the calling thread instead, and
+ * their index is refreshed so that they can be searched as soon as the call returns.
+ * <p>
+ * Every write of a searchable entity goes through here, direct followup plan generation included. The one exception
+ * is the bulk import, which indexes the bookings of a chunk itself once the chunk has committed, so that the rows
+ * saved but not indexed are reported in the import result; new bookings have no projections nor copies to update.
+ */
+@Component
+public class BulkIndexer {
+
+    private final Logger log = LoggerFactory.getLogger(BulkIndexer.class);
+
+    private final ElasticsearchTemplate elasticsearchTemplate;
+    private final EntityDocuments entityDocuments;
+    private final List<SearchProjection<?>> projections;
+    private final ChangePropagator changePropagator;
+    private final ApplicationProperties.IndexWriter properties;
+    private final Map<Key, Write> pending = new ConcurrentHashMap<>();
+    private final Meter written;
+    private final Meter failed;
+    private final Meter coalesced;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "index-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean flushPending = new AtomicBoolean();
+
+    public BulkIndexer(ElasticsearchTemplate elasticsearchTemplate,
+                       EntityDocuments entityDocuments,
+                       List<SearchProjection<?>> projections,
+                       ChangePropagator changePropagator,
+                       MetricRegistry metricRegistry,
+                       ApplicationProperties applicationProperties) {
+        this.elasticsearchTemplate = elasticsearchTemplate;
+        this.entityDocuments = entityDocuments;
+        this.projections = projections;
+        this.changePropagator = changePropagator;
+        this.properties = applicationProperties.getIndexWriter();
+        this.written = metricRegistry.meter(MetricRegistry.name("search", "index-writer", "written"));
+        this.failed = metricRegistry.meter(MetricRegistry.name("search", "index-writer", "failed"));
+        this.coalesced = metricRegistry.meter(MetricRegistry.name("search", "index-writer", "coalesced"));
+        metricRegistry.gauge(MetricRegistry.name("search", "index-writer", "pending"), () -> (Gauge<Integer>) pending::size);
+    }
+
+    /**
+     * Index an entity, once the current transaction commits if there is one.
+     *
+     * @param entity the entity to index, a document mapped by a search repository
+     * @param id the id of the entity
+     */
+    public void index(Object entity, Long id) {
+        if (properties.isSynchronous()) {
+            elasticsearchTemplate.index(new IndexQueryBuilder().withId(id.toString()).withObject(entity).build());
+            elasticsearchTemplate.refresh(Hibernate.getClass(entity));
+            writeProjections(Hibernate.getClass(entity), Collections.singletonMap(id, Operation.INDEX), true);
+            changePropagator.propagate(Hibernate.getClass(entity), Collections.singleton(id))
+                .forEach(elasticsearchTemplate::refresh);
+            return;
+        }
+        queue(new Key(Hibernate.getClass(entity), id), Operation.INDEX);
+    }
+
+    /**
+     * Index entities in their state in the database, once the current transaction commits if there is one.
+     *
+     * @param type the type of the entities, a document mapped by a search repository
+     * @param ids the ids of the entities
+     */
+    public void indexAll(Class<?> type, Collection<Long> ids) {
+        if (properties.isSynchronous()) {
+            if (!ids.isEmpty()) {
+                Map<Long, Operation> operations = ids.stream()
+                    .collect(Collectors.toMap(id -> id, id -> Operation.INDEX, (a, b) -> a));
+                writeDocuments(type, operations, (indexed, indexName) -> entityDocuments.findAll(type, indexed, indexName));
+                elasticsearchTemplate.refresh(type);
+                writeProjections(type, operations, true);
+                changePropagator.propagate(type, ids).forEach(elasticsearchTemplate::refresh);
+            }
+            return;
+        }
+        ids.forEach(id -> queue(new Key(type, id), Operation.INDEX));
+    }
+
+    /**
+     * Delete an entity from its index, once the current transaction commits if there is one.
+     *
+     * @param type the type of the entity, a document mapped by a search repository
+     * @param id the id of the entity
+     */
+    public void delete(Class<?> type, Long id) {
+        if (properties.isSynchronous()) {
+            elasticsearchTemplate.delete(type, id.toString());
+            elasticsearchTemplate.refresh(type);
+            writeProjections(type, Collections.singletonMap(id, Operation.DELETE), true);
+            return;
+        }
+        queue(new Key(type, id), Operation.DELETE);
+    }
+
+    /**
+     * Write the queued entities in the background, unless a flush is already waiting to run.
+     */
+    public void wakeUp() {
+        if (flushPending.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                flushPending.set(false);
+                try {
+                    flushAll();
+                } catch (RuntimeException e) {
+                    log.warn("Unable to write queued documents, will retry on next flush : {}", e.getMessage());
+                }
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${application.index-writer.flush-interval:1000}")
+    public void poll() {
+        if (!pending.isEmpty()) {
+            wakeUp();
+        }
+    }
+
+    /**
+     * Write the queued entities, one bulk request per batch, until the queue is empty. Writes that fail are queued
+     * again once the others are done, so they are retried on the next flush.
+     *
+     * @return the number of entities written
+     */
+    public int flushAll() {
+        Map<Key, Write> failures = new HashMap<>();
+        int total = 0;
+        while (!pending.isEmpty()) {
+            Map<Key, Write> batch = new HashMap<>();
+            for (Key key : pending.keySet()) {
+                if (batch.size() == properties.getBatchSize()) {
+                    break;
+                }
+                Write write = pending.remove(key);
+                if (write != null) {
+                    batch.put(key, write);
+                }
+            }
+            total += flush(batch, failures);
+        }
+        failures.forEach(this::retry);
+        if (total > 0) {
+            log.debug("Wrote {} queued documents", total);
+        }
+        return total;
+    }
+
+    private int flush(Map<Key, Write> batch, Map<Key, Write> failures) {
+        Map<Class<?>, Map<Key, Write>> batchByType = new LinkedHashMap<>();
+        batch.forEach((key, write) -> batchByType.computeIfAbsent(key.type, type -> new HashMap<>()).put(key, write));
+        int total = 0;
+        for (Map.Entry<Class<?>, Map<Key, Write>> entry : batchByType.entrySet()) {
+            Map<Long, Operation> operations = entry.getValue().entrySet().stream()
+                .collect(Collectors.toMap(write -> write.getKey().id, write -> write.getValue().operation));
+            try {
+                write(entry.getKey(), operations);
+                written.mark(operations.size());
+                total += operations.size();
+            } catch (RuntimeException e) {
+                log.warn("Unable to write {} {} documents : {}", operations.size(), entry.getKey().getSimpleName(),
+                    e.getMessage());
+                failures.putAll(entry.getValue());
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Write the entities of a type and the documents projected from them, and update the documents holding copies of
+     * them.
+     */
+    private void write(Class<?> type, Map<Long, Operation> operations) {
+        writeDocuments(type, operations, (indexed, indexName) -> entityDocuments.findAll(type, indexed, indexName));
+        writeProjections(type, operations, false);
+        List<Long> indexed = operations.entrySet().stream()
+            .filter(operation -> operation.getValue() == Operation.INDEX)
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toList());
+        changePropagator.propagate(type, indexed);
+    }
+
+    private void writeProjections(Class<?> type, Map<Long, Operation> operations, boolean refresh) {
+        for (SearchProjection<?> projection : projections) {
+            if (projection.getEntityType().equals(type)) {
+                writeDocuments(projection.getDocumentType(), operations,
+                    (indexed, indexName) -> entityDocuments.findAll(projection, indexed, indexName));
+                if (refresh) {
+                    elasticsearchTemplate.refresh(projection.getDocumentType());
+                }
+            }
+        }
+    }
+
+    /**
+     * Index the documents of a type read from the database, and delete those removed or no longer found.
+     */
+    private void writeDocuments(Class<?> documentType, Map<Long, Operation> operations,
+                                BiFunction<List<Long>, String, List<IndexQuery>> reader) {
+        ElasticsearchPersistentEntity<?> entity = elasticsearchTemplate.getPersistentEntityFor(documentType);
+        List<Long> indexed = operations.entrySet().stream()
+            .filter(operation -> operation.getValue() == Operation.INDEX)
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toList());
+        List<IndexQuery> queries = indexed.isEmpty()
+            ? Collections.emptyList() : reader.apply(indexed, entity.getIndexName());
+        if (!queries.isEmpty()) {
+            elasticsearchTemplate.bulkIndex(queries);
+        }
+        Set<String> found = queries.stream().map(IndexQuery::getId).collect(Collectors.toSet());
+        operations.keySet().stream().map(String::valueOf).filter(id -> !found.contains(id))
+            .forEach(id -> elasticsearchTemplate.delete(entity.getIndexName(), entity.getIndexType(), id));
+    }
+
+    private void retry(Key key, Write write) {
+        if (write.attempts + 1 >= properties.getMaxAttempts()) {
+            log.error("Giving up writing {} {} after {} attempts", key.type.getSimpleName(), key.id,
+                write.attempts + 1);
+            failed.mark();
+            return;
+        }
+        pending.putIfAbsent(key, new Write(write.operation, write.attempts + 1));
+    }
+
+    private void queue(Key key, Operation operation) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            enqueue(Collections.singletonMap(key, operation));
+            return;
+        }
+        if (pendingWrites().put(key, operation) != null) {
+            coalesced.mark();
+        }
+    }
+
+    private void enqueue(Map<Key, Operation> operations) {
+        operations.forEach((key, operation) -> {
+            if (pending.put(key, new Write(operation, 0)) != null) {
+                coalesced.mark();
+            }
+        });
+        if (pending.size() >= properties.getBatchSize()) {
+            wakeUp();
+        }
+    }
+
+    /**
+     * The writes to queue when the current transaction commits.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<Key, Operation> pendingWrites() {
+        Map<Key, Operation> writes = (Map<Key, Operation>) TransactionSynchronizationManager.getResource(this);
+        if (writes == null) {
+            Map<Key, Operation> transactionWrites = new LinkedHashMap<>();
+            TransactionSynchronizationManager.bindResource(this, transactionWrites);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    enqueue(transactionWrites);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(BulkIndexer.this);
+                }
+            });
+            writes = transactionWrites;
+        }
+        return writes;
+    }
+
+    /**
+     * Get the number of entities waiting to be written.
+     *
+     * @return the size of the queue
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        try {
+            flushAll();
+        } catch (RuntimeException e) {
+            log.warn("Unable to write {} queued documents on shutdown : {}", pending.size(), e.getMessage());
+        }
+    }
+
+    private enum Operation {
+        INDEX, DELETE
+    }
+
+    /**
+     * An entity to write, by type and id.
+     */
+    private static final class Key {
+
+        private final Class<?> type;
+        private final Long id;
+
+        Key(Class<?> type, Long id) {
+            this.type = type;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return type.equals(key.type) && id.equals(key.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, id);
+        }
+    }
+
+    /**
+     * A queued write and the number of times it has been attempted.
+     */
+    private static final class Write {
+
+        private final Operation operation;
+        private final int attempts;
+
+        Write(Operation operation, int attempts) {
+            this.operation = operation;
+            this.attempts = attempts;
+        }
+    }
+}
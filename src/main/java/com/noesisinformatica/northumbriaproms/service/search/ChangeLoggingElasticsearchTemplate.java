@@ -0,0 +1,90 @@
+package com.noesisinformatica.northumbriaproms.service.search;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import org.elasticsearch.action.update.UpdateResponse;
+import org.elasticsearch.client.Client;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.EntityMapper;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.UpdateQuery;
+
+import java.util.List;
+
+/**
+ * Elasticsearch template that records the documents written through it in the {@link IndexChangeLog}, so that the
+ * writes made while an index is rebuilt are not lost when the rebuilt index replaces it.
+ */
+public class ChangeLoggingElasticsearchTemplate extends ElasticsearchTemplate {
+
+    private final IndexChangeLog indexChangeLog;
+
+    public ChangeLoggingElasticsearchTemplate(Client client, EntityMapper entityMapper, IndexChangeLog indexChangeLog) {
+        super(client, entityMapper);
+        this.indexChangeLog = indexChangeLog;
+    }
+
+    @Override
+    public String index(IndexQuery query) {
+        record(query);
+        return super.index(query);
+    }
+
+    @Override
+    public void bulkIndex(List<IndexQuery> queries) {
+        queries.forEach(this::record);
+        super.bulkIndex(queries);
+    }
+
+    @Override
+    public UpdateResponse update(UpdateQuery query) {
+        record(query);
+        return super.update(query);
+    }
+
+    @Override
+    public void bulkUpdate(List<UpdateQuery> queries) {
+        queries.forEach(this::record);
+        super.bulkUpdate(queries);
+    }
+
+    @Override
+    public String delete(String indexName, String type, String id) {
+        indexChangeLog.record(indexName, id);
+        return super.delete(indexName, type, id);
+    }
+
+    private void record(IndexQuery query) {
+        String indexName = query.getIndexName() != null ? query.getIndexName()
+            : getPersistentEntityFor(query.getObject().getClass()).getIndexName();
+        indexChangeLog.record(indexName, query.getId());
+    }
+
+    private void record(UpdateQuery query) {
+        String indexName = query.getIndexName() != null ? query.getIndexName()
+            : getPersistentEntityFor(query.getClazz()).getIndexName();
+        indexChangeLog.record(indexName, query.getId());
+    }
+}
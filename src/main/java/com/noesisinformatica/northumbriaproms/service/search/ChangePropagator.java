@@ -0,0 +1,311 @@
+package com.noesisinformatica.northumbriaproms.service.search;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.noesisinformatica.northumbriaproms.config.ApplicationProperties;
+import com.noesisinformatica.northumbriaproms.config.ReplicaRoutingDataSource;
+import com.noesisinformatica.northumbriaproms.domain.*;
+import com.noesisinformatica.northumbriaproms.repository.CareEventRepository;
+import com.noesisinformatica.northumbriaproms.repository.FollowupActionRepository;
+import com.noesisinformatica.northumbriaproms.repository.FollowupPlanRepository;
+import com.noesisinformatica.northumbriaproms.repository.ProcedureBookingRepository;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.elasticsearch.ElasticsearchException;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.EntityMapper;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
+import org.springframework.data.elasticsearch.core.query.UpdateQuery;
+import org.springframework.data.elasticsearch.core.query.UpdateQueryBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Updates the documents that hold copies of an entity when it changes, so that they do not go stale until their
+ * index is rebuilt.
+ * <p>
+ * The nested documents of followup actions, care events, followup plans and bookings embed their booking, patient
+ * and care event, and the flat {@link FollowupActionDocument}s copy fields of their booking and patient. When one of
+ * these entities is written, the ids of the documents holding it are read from the primary database and only the
+ * copied part of each document is sent, as a partial update in bulk requests of up to the batch size. Elasticsearch
+ * skips the documents whose copy has not changed, and documents that have not been indexed yet are left alone.
+ * <p>
+ * An entity copied into more than the maximum fan out of documents is not propagated, and its documents are left
+ * for a rebuild of their index. The number of documents each change reaches is recorded in the
+ * {@code search.propagation.fan-out} histogram.
+ */
+@Component
+public class ChangePropagator {
+
+    private final Logger log = LoggerFactory.getLogger(ChangePropagator.class);
+
+    private final ElasticsearchTemplate elasticsearchTemplate;
+    private final EntityMapper entityMapper;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationProperties.IndexWriter properties;
+    private final List<Dependency<?>> dependencies;
+    private final Meter changes;
+    private final Meter updated;
+    private final Meter overLimit;
+    private final Histogram fanOut;
+
+    public ChangePropagator(ElasticsearchTemplate elasticsearchTemplate,
+                            EntityMapper entityMapper,
+                            EntityManager entityManager,
+                            PlatformTransactionManager transactionManager,
+                            FollowupActionRepository followupActionRepository,
+                            CareEventRepository careEventRepository,
+                            FollowupPlanRepository followupPlanRepository,
+                            ProcedureBookingRepository procedureBookingRepository,
+                            FollowupActionProjection followupActionProjection,
+                            MetricRegistry metricRegistry,
+                            ApplicationProperties applicationProperties) {
+        this.elasticsearchTemplate = elasticsearchTemplate;
+        this.entityMapper = entityMapper;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.properties = applicationProperties.getIndexWriter();
+        this.changes = metricRegistry.meter(MetricRegistry.name("search", "propagation", "changes"));
+        this.updated = metricRegistry.meter(MetricRegistry.name("search", "propagation", "updated"));
+        this.overLimit = metricRegistry.meter(MetricRegistry.name("search", "propagation", "over-limit"));
+        this.fanOut = metricRegistry.histogram(MetricRegistry.name("search", "propagation", "fan-out"));
+
+        this.dependencies = Arrays.asList(
+            new Dependency<>(ProcedureBooking.class, FollowupAction.class,
+                booking -> followupActionRepository.findIdsByProcedureBookingId(booking.getId()),
+                booking -> nested(booking, "careEvent.followupPlan.procedureBooking")),
+            new Dependency<>(ProcedureBooking.class, CareEvent.class,
+                booking -> careEventRepository.findIdsByProcedureBookingId(booking.getId()),
+                booking -> nested(booking, "followupPlan.procedureBooking")),
+            new Dependency<>(ProcedureBooking.class, FollowupPlan.class,
+                booking -> booking.getFollowupPlan() != null
+                    ? Collections.singletonList(booking.getFollowupPlan().getId()) : Collections.emptyList(),
+                booking -> nested(booking, "procedureBooking")),
+            new Dependency<>(ProcedureBooking.class, FollowupActionDocument.class,
+                booking -> followupActionRepository.findIdsByProcedureBookingId(booking.getId()),
+                booking -> flat(followupActionProjection.projectBooking(booking),
+                    FollowupActionProjection.BOOKING_FIELDS)),
+            new Dependency<>(Patient.class, FollowupAction.class,
+                patient -> followupActionRepository.findIdsByPatientId(patient.getId()),
+                patient -> nested(patient, "patient", "careEvent.patient", "careEvent.followupPlan.patient",
+                    "careEvent.followupPlan.procedureBooking.patient")),
+            new Dependency<>(Patient.class, CareEvent.class,
+                patient -> careEventRepository.findIdsByPatientId(patient.getId()),
+                patient -> nested(patient, "patient", "followupPlan.patient", "followupPlan.procedureBooking.patient")),
+            new Dependency<>(Patient.class, FollowupPlan.class,
+                patient -> followupPlanRepository.findIdsByPatientId(patient.getId()),
+                patient -> nested(patient, "patient", "procedureBooking.patient")),
+            new Dependency<>(Patient.class, ProcedureBooking.class,
+                patient -> procedureBookingRepository.findIdsByPatientId(patient.getId()),
+                patient -> nested(patient, "patient")),
+            new Dependency<>(Patient.class, FollowupActionDocument.class,
+                patient -> followupActionRepository.findIdsByPatientId(patient.getId()),
+                patient -> flat(followupActionProjection.projectPatient(patient),
+                    FollowupActionProjection.PATIENT_FIELDS)),
+            new Dependency<>(Address.class, FollowupActionDocument.class,
+                address -> address.getPatient() != null
+                    ? followupActionRepository.findIdsByPatientId(address.getPatient().getId())
+                    : Collections.emptyList(),
+                address -> flat(followupActionProjection.projectPatient(address.getPatient()),
+                    FollowupActionProjection.PATIENT_FIELDS)),
+            new Dependency<>(CareEvent.class, FollowupAction.class,
+                careEvent -> followupActionRepository.findIdsByCareEventId(careEvent.getId()),
+                careEvent -> nested(careEvent, "careEvent")));
+    }
+
+    /**
+     * Update the documents holding copies of the given entities, in their state in the database.
+     *
+     * @param type the type of the entities that changed
+     * @param ids the ids of the entities
+     * @return the types of the documents updated
+     */
+    public Set<Class<?>> propagate(Class<?> type, Collection<Long> ids) {
+        List<Dependency<?>> applicable = new ArrayList<>();
+        for (Dependency<?> dependency : dependencies) {
+            if (dependency.sourceType.equals(type)) {
+                applicable.add(dependency);
+            }
+        }
+        if (applicable.isEmpty() || ids.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Map<Class<?>, List<UpdateQuery>> updates = ReplicaRoutingDataSource.readFromPrimary(() ->
+            transactionTemplate.execute(status -> {
+                Map<Class<?>, List<UpdateQuery>> queries = new LinkedHashMap<>();
+                for (Long id : ids) {
+                    Object entity = entityManager.find(type, id);
+                    if (entity != null) {
+                        collect(type, id, entity, applicable, queries);
+                    }
+                }
+                return queries;
+            }));
+        updates.forEach(this::update);
+        return updates.keySet();
+    }
+
+    private void collect(Class<?> type, Long id, Object entity, List<Dependency<?>> applicable,
+                         Map<Class<?>, List<UpdateQuery>> queries) {
+        Map<Class<?>, List<UpdateQuery>> change = new LinkedHashMap<>();
+        int documents = 0;
+        for (Dependency<?> dependency : applicable) {
+            List<Long> dependentIds = dependency.dependentsOf(entity);
+            if (dependentIds.isEmpty()) {
+                continue;
+            }
+            documents += dependentIds.size();
+            if (documents > properties.getMaxFanOut()) {
+                break;
+            }
+            Map<String, Object> partial = dependency.partialOf(entity);
+            ElasticsearchPersistentEntity<?> document =
+                elasticsearchTemplate.getPersistentEntityFor(dependency.documentType);
+            List<UpdateQuery> documentQueries = change.computeIfAbsent(dependency.documentType, t -> new ArrayList<>());
+            for (Long dependentId : dependentIds) {
+                documentQueries.add(new UpdateQueryBuilder()
+                    .withIndexName(document.getIndexName())
+                    .withType(document.getIndexType())
+                    .withId(dependentId.toString())
+                    .withClass(dependency.documentType)
+                    .withUpdateRequest(new UpdateRequest().doc(partial))
+                    .build());
+            }
+        }
+        changes.mark();
+        fanOut.update(documents);
+        if (documents > properties.getMaxFanOut()) {
+            log.warn("Not propagating {} {}, it is copied into more than {} documents", type.getSimpleName(), id,
+                properties.getMaxFanOut());
+            overLimit.mark();
+            return;
+        }
+        change.forEach((documentType, documentQueries) ->
+            queries.computeIfAbsent(documentType, t -> new ArrayList<>()).addAll(documentQueries));
+    }
+
+    private void update(Class<?> documentType, List<UpdateQuery> queries) {
+        for (int from = 0; from < queries.size(); from += properties.getBatchSize()) {
+            List<UpdateQuery> batch = queries.subList(from, Math.min(from + properties.getBatchSize(), queries.size()));
+            try {
+                elasticsearchTemplate.bulkUpdate(batch);
+                updated.mark(batch.size());
+            } catch (ElasticsearchException e) {
+                if (!onlyMissing(e.getFailedDocuments())) {
+                    throw e;
+                }
+                log.debug("Skipped {} {} documents not indexed yet", e.getFailedDocuments().size(),
+                    documentType.getSimpleName());
+                updated.mark(batch.size() - e.getFailedDocuments().size());
+            }
+        }
+    }
+
+    private static boolean onlyMissing(Map<String, String> failedDocuments) {
+        return failedDocuments != null && !failedDocuments.isEmpty() && failedDocuments.values().stream()
+            .allMatch(message -> message != null && message.contains("document missing"));
+    }
+
+    /**
+     * Serialise an entity the way it is embedded in nested documents, at each of the given paths.
+     */
+    private Map<String, Object> nested(Object entity, String... paths) {
+        Map<String, Object> copy = toMap(entity);
+        Map<String, Object> partial = new LinkedHashMap<>();
+        for (String path : paths) {
+            Map<String, Object> parent = partial;
+            String[] names = path.split("\\.");
+            for (int i = 0; i < names.length - 1; i++) {
+                parent = childOf(parent, names[i]);
+            }
+            parent.put(names[names.length - 1], copy);
+        }
+        return partial;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> childOf(Map<String, Object> parent, String name) {
+        return (Map<String, Object>) parent.computeIfAbsent(name, n -> new LinkedHashMap<String, Object>());
+    }
+
+    /**
+     * Serialise the given fields of a flat document, including those without a value so that they are cleared.
+     */
+    private Map<String, Object> flat(Object document, List<String> fields) {
+        Map<String, Object> values = toMap(document);
+        Map<String, Object> partial = new LinkedHashMap<>();
+        fields.forEach(field -> partial.put(field, values.get(field)));
+        return partial;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> toMap(Object value) {
+        try {
+            return entityMapper.mapToObject(entityMapper.mapToString(value), Map.class);
+        } catch (IOException e) {
+            throw new ElasticsearchException("Unable to map " + value.getClass().getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Documents of a type holding a copy of an entity: how to find their ids from the entity, and the part of them
+     * to update with it.
+     */
+    private static final class Dependency<E> {
+
+        private final Class<E> sourceType;
+        private final Class<?> documentType;
+        private final Function<E, List<Long>> dependents;
+        private final Function<E, Map<String, Object>> partial;
+
+        Dependency(Class<E> sourceType, Class<?> documentType, Function<E, List<Long>> dependents,
+                   Function<E, Map<String, Object>> partial) {
+            this.sourceType = sourceType;
+            this.documentType = documentType;
+            this.dependents = dependents;
+            this.partial = partial;
+        }
+
+        List<Long> dependentsOf(Object entity) {
+            return dependents.apply(sourceType.cast(entity));
+        }
+
+        Map<String, Object> partialOf(Object entity) {
+            return partial.apply(sourceType.cast(entity));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.noesisinformatica.northumbriaproms.service.search;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import java.util.List;
+
+/**
+ * A page of the hits of a search, or of the rows of a query, with the cursor to read the next page from.
+ *
+ * @param <T> the type of the hits
+ */
+public class CursorPage<T> {
+
+    private final List<T> content;
+    private final Long totalElements;
+    private final String nextCursor;
+
+    public CursorPage(List<T> content, Long totalElements, String nextCursor) {
+        this.content = content;
+        this.totalElements = totalElements;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    /**
+     * Get the total number of hits or rows, over all the pages.
+     *
+     * @return the total, or null if it was not counted
+     */
+    public Long getTotalElements() {
+        return totalElements;
+    }
+
+    /**
+     * Get the token of the cursor after the last hit of this page.
+     *
+     * @return the token, or null if this is the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
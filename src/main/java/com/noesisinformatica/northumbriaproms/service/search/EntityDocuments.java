@@ -0,0 +1,222 @@
+package com.noesisinformatica.northumbriaproms.service.search;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.noesisinformatica.northumbriaproms.config.ReplicaRoutingDataSource;
+import org.springframework.data.elasticsearch.ElasticsearchException;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.EntityMapper;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityGraph;
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Reads entities from the database as the queries indexing them, either as the entities themselves or as the
+ * documents a {@link SearchProjection} builds from them. Documents are serialised while their transaction is still
+ * open, so the queries can be sent from any thread. Entities declaring a "list" entity graph, such as
+ * "FollowupAction.list", are read with it, so the associations a document holds are fetched with the entities.
+ * Entities are always read from the primary database, as the replicas may not have the changes being indexed yet.
+ */
+@Component
+public class EntityDocuments {
+
+    private final ElasticsearchTemplate elasticsearchTemplate;
+    private final EntityMapper entityMapper;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+
+    public EntityDocuments(ElasticsearchTemplate elasticsearchTemplate,
+                           EntityMapper entityMapper,
+                           EntityManager entityManager,
+                           PlatformTransactionManager transactionManager) {
+        this.elasticsearchTemplate = elasticsearchTemplate;
+        this.entityMapper = entityMapper;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Count the entities of a type, up to an id if one is given.
+     *
+     * @param type the entity type
+     * @param upToId the highest id to count, or null to count them all
+     * @return the number of entities
+     */
+    public long count(Class<?> type, Long upToId) {
+        String entityName = entityName(type);
+        return read(status -> upToId == null
+            ? entityManager.createQuery("select count(e) from " + entityName + " e", Long.class).getSingleResult()
+            : entityManager.createQuery("select count(e) from " + entityName + " e where e.id <= :upToId", Long.class)
+                .setParameter("upToId", upToId).getSingleResult());
+    }
+
+    /**
+     * Find the entities of a type, up to an id, modified since a date.
+     *
+     * @param type the entity type, an {@link com.noesisinformatica.northumbriaproms.domain.AbstractAuditingEntity}
+     * @param upToId the highest id to find
+     * @param since the date from which modified entities are found
+     * @return the ids of the entities, in order of id
+     */
+    public List<Long> findIdsModifiedSince(Class<?> type, Long upToId, Instant since) {
+        String entityName = entityName(type);
+        return read(status -> entityManager.createQuery("select e.id from " + entityName
+                + " e where e.id <= :upToId and e.lastModifiedDate >= :since order by e.id", Long.class)
+            .setParameter("upToId", upToId)
+            .setParameter("since", since)
+            .getResultList());
+    }
+
+    /**
+     * Read the entities of a type following an id, in order of id.
+     *
+     * @param type the entity type
+     * @param lastId the id to start after
+     * @param limit the maximum number of entities to read
+     * @param indexName the index to write the documents to
+     * @return the queries indexing the entities, in order of id
+     */
+    public List<IndexQuery> findAfter(Class<?> type, Long lastId, int limit, String indexName) {
+        return findAfter(type, row -> row, type, lastId, limit, indexName);
+    }
+
+    /**
+     * Read the entities of a projection following an id, in order of id, as the documents built from them.
+     *
+     * @param projection the projection building the documents
+     * @param lastId the id to start after
+     * @param limit the maximum number of entities to read
+     * @param indexName the index to write the documents to
+     * @return the queries indexing the documents, in order of id
+     */
+    public List<IndexQuery> findAfter(SearchProjection<?> projection, Long lastId, int limit, String indexName) {
+        return findAfter(projection.getEntityType(), toDocument(projection), projection.getDocumentType(),
+            lastId, limit, indexName);
+    }
+
+    private List<IndexQuery> findAfter(Class<?> type, Function<Object, Object> toDocument, Class<?> documentType,
+                                       Long lastId, int limit, String indexName) {
+        String entityName = entityName(type);
+        return read(status -> {
+            Query query = entityManager
+                .createQuery("select e from " + entityName + " e where e.id > :lastId order by e.id")
+                .setParameter("lastId", lastId)
+                .setMaxResults(limit);
+            List<?> rows = withListGraph(query, type).getResultList();
+            return toQueries(documentType, rows, toDocument, indexName);
+        });
+    }
+
+    /**
+     * Read the entities of a type with the given ids. Ids without an entity are left out.
+     *
+     * @param type the entity type
+     * @param ids the ids of the entities
+     * @param indexName the index to write the documents to
+     * @return the queries indexing the entities found
+     */
+    public List<IndexQuery> findAll(Class<?> type, Collection<Long> ids, String indexName) {
+        return findAll(type, row -> row, type, ids, indexName);
+    }
+
+    /**
+     * Read the entities of a projection with the given ids, as the documents built from them. Ids without an
+     * entity are left out.
+     *
+     * @param projection the projection building the documents
+     * @param ids the ids of the entities
+     * @param indexName the index to write the documents to
+     * @return the queries indexing the documents of the entities found
+     */
+    public List<IndexQuery> findAll(SearchProjection<?> projection, Collection<Long> ids, String indexName) {
+        return findAll(projection.getEntityType(), toDocument(projection), projection.getDocumentType(), ids,
+            indexName);
+    }
+
+    private List<IndexQuery> findAll(Class<?> type, Function<Object, Object> toDocument, Class<?> documentType,
+                                     Collection<Long> ids, String indexName) {
+        String entityName = entityName(type);
+        return read(status -> {
+            Query query = entityManager
+                .createQuery("select e from " + entityName + " e where e.id in :ids")
+                .setParameter("ids", ids);
+            List<?> rows = withListGraph(query, type).getResultList();
+            return toQueries(documentType, rows, toDocument, indexName);
+        });
+    }
+
+    private <T> T read(TransactionCallback<T> reads) {
+        return ReplicaRoutingDataSource.readFromPrimary(() -> transactionTemplate.execute(reads));
+    }
+
+    private List<IndexQuery> toQueries(Class<?> documentType, List<?> rows, Function<Object, Object> toDocument,
+                                       String indexName) {
+        String indexType = elasticsearchTemplate.getPersistentEntityFor(documentType).getIndexType();
+        return rows.stream().map(row -> toQuery(row, toDocument, indexName, indexType)).collect(Collectors.toList());
+    }
+
+    private IndexQuery toQuery(Object row, Function<Object, Object> toDocument, String indexName, String indexType) {
+        Object id = entityManager.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(row);
+        try {
+            return new IndexQueryBuilder().withId(id.toString()).withIndexName(indexName).withType(indexType)
+                .withSource(entityMapper.mapToString(toDocument.apply(row))).build();
+        } catch (IOException e) {
+            throw new ElasticsearchException("Unable to map " + row.getClass().getSimpleName() + " " + id, e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> toDocument(SearchProjection<?> projection) {
+        return row -> ((SearchProjection<Object>) projection).project(row);
+    }
+
+    private Query withListGraph(Query query, Class<?> type) {
+        String graphName = entityName(type) + ".list";
+        for (EntityGraph<?> graph : entityManager.getEntityGraphs(type)) {
+            if (graphName.equals(graph.getName())) {
+                return query.setHint("javax.persistence.fetchgraph", graph);
+            }
+        }
+        return query;
+    }
+
+    private String entityName(Class<?> type) {
+        return entityManager.getMetamodel().entity(type).getName();
+    }
+}
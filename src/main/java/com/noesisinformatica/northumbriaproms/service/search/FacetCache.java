@@ -0,0 +1,196 @@
+package com.noesisinformatica.northumbriaproms.service.search;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.noesisinformatica.northumbriaproms.config.ApplicationProperties;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the facets of searches for a short time, by the type of the documents searched and the normalised query.
+ * <p>
+ * The facets of a search are aggregations over all of its hits, so they cost far more to compute than a page of
+ * hits, and they are the same for every page. A cached entry is dropped once it is older than the time to live, or
+ * as soon as a document is written to its index by this instance. Writes made by other instances are only seen once
+ * the entry expires. Once the cache holds the maximum number of entries, new facets are not cached until some of
+ * them expire.
+ */
+@Component
+public class FacetCache {
+
+    private final ElasticsearchTemplate elasticsearchTemplate;
+    private final IndexChangeLog indexChangeLog;
+    private final ApplicationProperties.Search properties;
+    private final Map<Key, Facets> entries = new ConcurrentHashMap<>();
+    private final Meter hits;
+    private final Meter misses;
+
+    public FacetCache(ElasticsearchTemplate elasticsearchTemplate,
+                      IndexChangeLog indexChangeLog,
+                      MetricRegistry metricRegistry,
+                      ApplicationProperties applicationProperties) {
+        this.elasticsearchTemplate = elasticsearchTemplate;
+        this.indexChangeLog = indexChangeLog;
+        this.properties = applicationProperties.getSearch();
+        this.hits = metricRegistry.meter(MetricRegistry.name("search", "facet-cache", "hits"));
+        this.misses = metricRegistry.meter(MetricRegistry.name("search", "facet-cache", "misses"));
+        metricRegistry.gauge(MetricRegistry.name("search", "facet-cache", "size"), () -> (Gauge<Integer>) entries::size);
+    }
+
+    /**
+     * Get the state of the index of a type of document, to take before searching it and cache the facets with.
+     *
+     * @param documentType the type of the documents searched
+     * @return the number of writes to the index so far
+     */
+    public long stamp(Class<?> documentType) {
+        return indexChangeLog.getWriteCount(indexName(documentType));
+    }
+
+    /**
+     * Get the cached facets of a search, unless they have expired or the index has been written since.
+     *
+     * @param documentType the type of the documents searched
+     * @param query the normalised query of the search
+     * @return the facets, or null if they are not cached
+     */
+    public Facets get(Class<?> documentType, Object query) {
+        Key key = new Key(documentType, query);
+        Facets facets = entries.get(key);
+        if (facets != null && !isCurrent(facets, documentType, System.currentTimeMillis())) {
+            entries.remove(key, facets);
+            facets = null;
+        }
+        if (facets == null) {
+            misses.mark();
+            return null;
+        }
+        hits.mark();
+        return facets;
+    }
+
+    /**
+     * Cache the facets of a search.
+     *
+     * @param documentType the type of the documents searched
+     * @param query the normalised query of the search
+     * @param stamp the state of the index taken before searching it
+     * @param aggregations the facets
+     * @param total the number of hits of the search
+     */
+    public void put(Class<?> documentType, Object query, long stamp, Aggregations aggregations, long total) {
+        if (properties.getFacetCacheTtl() <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (entries.size() >= properties.getFacetCacheSize()) {
+            entries.entrySet().removeIf(entry -> !isCurrent(entry.getValue(), entry.getKey().documentType, now));
+            if (entries.size() >= properties.getFacetCacheSize()) {
+                return;
+            }
+        }
+        entries.put(new Key(documentType, query), new Facets(aggregations, total, stamp, now));
+    }
+
+    /**
+     * Drop all the cached facets.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    private boolean isCurrent(Facets facets, Class<?> documentType, long now) {
+        return now - facets.cachedAt < properties.getFacetCacheTtl() && facets.stamp == stamp(documentType);
+    }
+
+    private String indexName(Class<?> documentType) {
+        return elasticsearchTemplate.getPersistentEntityFor(documentType).getIndexName();
+    }
+
+    /**
+     * The facets of a search and its number of hits.
+     */
+    public static final class Facets {
+
+        private final Aggregations aggregations;
+        private final long total;
+        private final long stamp;
+        private final long cachedAt;
+
+        Facets(Aggregations aggregations, long total, long stamp, long cachedAt) {
+            this.aggregations = aggregations;
+            this.total = total;
+            this.stamp = stamp;
+            this.cachedAt = cachedAt;
+        }
+
+        public Aggregations getAggregations() {
+            return aggregations;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+    }
+
+    /**
+     * A search, by type of document and normalised query.
+     */
+    private static final class Key {
+
+        private final Class<?> documentType;
+        private final Object query;
+
+        Key(Class<?> documentType, Object query) {
+            this.documentType = documentType;
+            this.query = query;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return documentType.equals(key.documentType) && query.equals(key.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(documentType, query);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.noesisinformatica.northumbriaproms.service.search;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.noesisinformatica.northumbriaproms.domain.*;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Builds the flat {@link FollowupActionDocument} of a {@link FollowupAction}, from the action, its care event, the
+ * booking of its followup plan and its patient.
+ * <p>
+ * Flat documents are only written by the {@link BulkIndexer} and the {@link IndexRebuilder}, so every path saving
+ * followup actions queues them on the former: the followup action service, the status transitions and the direct
+ * generation of followup plans. An action saved any other way is missing from flat search until the next rebuild.
+ */
+@Component
+public class FollowupActionProjection implements SearchProjection<FollowupAction> {
+
+    /** The fields of a document copied from the booking of its action */
+    public static final List<String> BOOKING_FIELDS = Collections.unmodifiableList(Arrays.asList(
+        "procedureBookingId", "primaryProcedure", "consultantName", "hospitalSite", "side", "patientAge"));
+
+    /** The fields of a document copied from the patient of its action */
+    public static final List<String> PATIENT_FIELDS = Collections.unmodifiableList(Arrays.asList(
+        "patientId", "patientNhsNumber", "patientGender", "patientAddress"));
+
+    @Override
+    public Class<FollowupAction> getEntityType() {
+        return FollowupAction.class;
+    }
+
+    @Override
+    public Class<?> getDocumentType() {
+        return FollowupActionDocument.class;
+    }
+
+    @Override
+    public FollowupActionDocument project(FollowupAction action) {
+        FollowupActionDocument document = new FollowupActionDocument();
+        document.setId(action.getId());
+        document.setName(action.getName());
+        document.setType(action.getType());
+        document.setPhase(action.getPhase());
+        document.setStatus(action.getStatus());
+        document.setScheduledDate(action.getScheduledDate());
+        document.setCompletedDate(action.getCompletedDate());
+        document.setOutcomeScore(action.getOutcomeScore());
+
+        CareEvent careEvent = action.getCareEvent();
+        FollowupPlan plan = careEvent != null ? careEvent.getFollowupPlan() : null;
+        if (careEvent != null) {
+            document.setCareEventId(careEvent.getId());
+        }
+        ProcedureBooking booking = plan != null ? plan.getProcedureBooking() : null;
+        if (booking != null) {
+            copyBooking(booking, document);
+        }
+
+        Patient patient = action.getPatient() != null ? action.getPatient() : plan != null ? plan.getPatient() : null;
+        if (patient != null) {
+            copyPatient(patient, document);
+        }
+        return document;
+    }
+
+    /**
+     * Build the part of a document copied from a booking, to update the documents of its actions with.
+     *
+     * @param booking the booking
+     * @return a document holding only the {@link #BOOKING_FIELDS}
+     */
+    public FollowupActionDocument projectBooking(ProcedureBooking booking) {
+        FollowupActionDocument document = new FollowupActionDocument();
+        copyBooking(booking, document);
+        return document;
+    }
+
+    /**
+     * Build the part of a document copied from a patient, to update the documents of their actions with.
+     *
+     * @param patient the patient
+     * @return a document holding only the {@link #PATIENT_FIELDS}
+     */
+    public FollowupActionDocument projectPatient(Patient patient) {
+        FollowupActionDocument document = new FollowupActionDocument();
+        copyPatient(patient, document);
+        return document;
+    }
+
+    private static void copyBooking(ProcedureBooking booking, FollowupActionDocument document) {
+        document.setProcedureBookingId(booking.getId());
+        document.setPrimaryProcedure(booking.getPrimaryProcedure());
+        document.setConsultantName(booking.getConsultantName());
+        document.setHospitalSite(booking.getHospitalSite());
+        document.setSide(booking.getSide());
+        document.setPatientAge(booking.getPatientAge());
+    }
+
+    private static void copyPatient(Patient patient, FollowupActionDocument document) {
+        document.setPatientId(patient.getId());
+        document.setPatientNhsNumber(patient.getNhsNumber() != null ? patient.getNhsNumber().toString() : null);
+        document.setPatientGender(patient.getGender());
+        String address = patient.getAddresses().stream()
+            .flatMap(FollowupActionProjection::addressParts)
+            .filter(Objects::nonNull)
+            .collect(Collectors.joining(" "));
+        document.setPatientAddress(address.isEmpty() ? null : address);
+    }
+
+    private static Stream<String> addressParts(Address address) {
+        return Stream.concat(address.getLines().stream(),
+            Stream.of(address.getStreet(), address.getCity(), address.getCounty(), address.getPostalCode()));
+    }
+}
@@ -0,0 +1,98 @@
+package com.noesisinformatica.northumbriaproms.service.search;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the ids of the documents written to an index while the index is being rebuilt, so that they can be
+ * written again once the rebuilt index has replaced it. The writes to every index are also counted, so that results
+ * computed from an index, such as cached facets, can tell when it has changed since.
+ * <p>
+ * Only the writes made by this instance are recorded.
+ */
+@Component
+public class IndexChangeLog {
+
+    private final ConcurrentHashMap<String, Set<String>> changedIds = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, AtomicLong> writeCounts = new ConcurrentHashMap<>();
+
+    /**
+     * Start recording the documents written to an index.
+     *
+     * @param indexName the name of the index, or of its alias
+     */
+    public void start(String indexName) {
+        changedIds.put(indexName, ConcurrentHashMap.newKeySet());
+    }
+
+    /**
+     * Record a document written to an index, and its id if the index is being rebuilt.
+     *
+     * @param indexName the name of the index, or of its alias
+     * @param id the id of the document
+     */
+    public void record(String indexName, String id) {
+        increment(indexName);
+        Set<String> ids = changedIds.get(indexName);
+        if (ids != null && id != null) {
+            ids.add(id);
+        }
+    }
+
+    /**
+     * Stop recording the documents written to an index.
+     *
+     * @param indexName the name of the index, or of its alias
+     * @return the ids of the documents written since recording started
+     */
+    public Set<String> stop(String indexName) {
+        // the rebuilt index may now be behind the alias, with documents never written through it
+        increment(indexName);
+        Set<String> ids = changedIds.remove(indexName);
+        return ids != null ? ids : Collections.emptySet();
+    }
+
+    /**
+     * Get the number of writes recorded to an index. It only ever increases.
+     *
+     * @param indexName the name of the index, or of its alias
+     * @return the number of writes recorded since this instance started
+     */
+    public long getWriteCount(String indexName) {
+        AtomicLong count = writeCounts.get(indexName);
+        return count != null ? count.get() : 0;
+    }
+
+    private void increment(String indexName) {
+        writeCounts.computeIfAbsent(indexName, name -> new AtomicLong()).incrementAndGet();
+    }
+}
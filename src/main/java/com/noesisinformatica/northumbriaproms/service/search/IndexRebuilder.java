@@ -0,0 +1,387 @@
+package com.noesisinformatica.northumbriaproms.service.search;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.noesisinformatica.northumbriaproms.config.ApplicationProperties;
+import com.noesisinformatica.northumbriaproms.domain.AbstractAuditingEntity;
+import com.noesisinformatica.northumbriaproms.domain.JobCheckpoint;
+import com.noesisinformatica.northumbriaproms.repository.JobCheckpointRepository;
+import com.noesisinformatica.northumbriaproms.service.dto.ReindexStatusDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.elasticsearch.annotations.Document;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.metamodel.EntityType;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Rebuilds the search index of a document type from the database without interrupting search.
+ * <p>
+ * Rows are read in chunks ordered by id, each chunk starting after the last id of the previous one, so memory use
+ * does not grow with the table. Each chunk is sent as one bulk request into a new version of the index, with a
+ * bounded number of requests in flight. Once all rows are indexed, the alias of the document type is switched to
+ * the new version in one request, and the documents written to the old version in the meantime, as recorded by
+ * the {@link IndexChangeLog}, are written again from the database.
+ * <p>
+ * The new version, the date its rebuild started and the id up to which all rows are indexed are recorded as the
+ * checkpoint of the rebuild, so that an interrupted rebuild resumes where it stopped the next time it is started.
+ * The documents written while it was interrupted were not recorded, so the rows up to that id modified since the
+ * rebuild started are written again when it resumes. Only entities with a last modified date, and no projected
+ * documents, can tell which rows those are; the rebuild of other document types starts again in a new version
+ * instead. The documents and bulk requests indexed are metered per document type.
+ * <p>
+ * Rebuilds run in the background, one at a time per document type; different types are rebuilt concurrently.
+ */
+@Component
+public class IndexRebuilder {
+
+    static final String CHECKPOINT_PREFIX = "reindex-";
+
+    private final Logger log = LoggerFactory.getLogger(IndexRebuilder.class);
+
+    private final ElasticsearchTemplate elasticsearchTemplate;
+    private final EntityDocuments entityDocuments;
+    private final List<SearchProjection<?>> projections;
+    private final VersionedIndexManager versionedIndexManager;
+    private final IndexChangeLog indexChangeLog;
+    private final EntityManager entityManager;
+    private final JobCheckpointRepository jobCheckpointRepository;
+    private final MetricRegistry metricRegistry;
+    private final TransactionTemplate checkpointTransactionTemplate;
+    private final ApplicationProperties.Reindex properties;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "index-rebuilder");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<Class<?>, Rebuild> rebuilds = new ConcurrentHashMap<>();
+
+    public IndexRebuilder(ElasticsearchTemplate elasticsearchTemplate,
+                          EntityDocuments entityDocuments,
+                          List<SearchProjection<?>> projections,
+                          VersionedIndexManager versionedIndexManager,
+                          IndexChangeLog indexChangeLog,
+                          EntityManager entityManager,
+                          JobCheckpointRepository jobCheckpointRepository,
+                          MetricRegistry metricRegistry,
+                          PlatformTransactionManager transactionManager,
+                          ApplicationProperties applicationProperties) {
+        this.elasticsearchTemplate = elasticsearchTemplate;
+        this.entityDocuments = entityDocuments;
+        this.projections = projections;
+        this.versionedIndexManager = versionedIndexManager;
+        this.indexChangeLog = indexChangeLog;
+        this.entityManager = entityManager;
+        this.jobCheckpointRepository = jobCheckpointRepository;
+        this.metricRegistry = metricRegistry;
+        this.checkpointTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = applicationProperties.getReindex();
+    }
+
+    /**
+     * Get the document types whose index can be rebuilt, i.e. the entities mapped to an index and the documents
+     * projected from entities.
+     *
+     * @return the document types, by name
+     */
+    public List<Class<?>> getDocumentTypes() {
+        return Stream.concat(
+            entityManager.getMetamodel().getEntities().stream().<Class<?>>map(EntityType::getJavaType),
+            projections.stream().<Class<?>>map(SearchProjection::getDocumentType))
+            .filter(type -> type.isAnnotationPresent(Document.class))
+            .sorted(Comparator.comparing(Class::getSimpleName))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Start rebuilding the index of a document type in the background, unless it is already being rebuilt. A
+     * rebuild that was interrupted is resumed.
+     *
+     * @param documentClass the document type, an entity mapped to an index or a projected document
+     * @return the progress of the rebuild
+     */
+    public ReindexStatusDTO rebuild(Class<?> documentClass) {
+        Rebuild started = new Rebuild(documentClass);
+        Rebuild rebuild = rebuilds.compute(documentClass,
+            (type, current) -> current != null && current.state == ReindexStatusDTO.State.RUNNING ? current : started);
+        if (rebuild == started) {
+            executor.execute(() -> run(rebuild));
+        }
+        return rebuild.toDTO();
+    }
+
+    /**
+     * Get the progress of the last rebuild of the index of a document type.
+     *
+     * @param documentClass the document type
+     * @return the progress of the rebuild, or null if the index has not been rebuilt
+     */
+    public ReindexStatusDTO getStatus(Class<?> documentClass) {
+        Rebuild rebuild = rebuilds.get(documentClass);
+        return rebuild != null ? rebuild.toDTO() : null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(Rebuild rebuild) {
+        ElasticsearchPersistentEntity<?> entity = elasticsearchTemplate.getPersistentEntityFor(rebuild.documentClass);
+        String alias = entity.getIndexName();
+        SearchProjection<?> projection = projections.stream()
+            .filter(candidate -> candidate.getDocumentType().equals(rebuild.documentClass))
+            .findFirst().orElse(null);
+        Class<?> entityType = projection != null ? projection.getEntityType() : rebuild.documentClass;
+        String entityName = entityManager.getMetamodel().entity(entityType).getName();
+        String checkpointName = CHECKPOINT_PREFIX + alias;
+        Meter documents = metricRegistry.meter(MetricRegistry.name("reindex", alias, "documents"));
+        Timer bulkRequests = metricRegistry.timer(MetricRegistry.name("reindex", alias, "bulk-requests"));
+        ExecutorService bulkExecutor = Executors.newFixedThreadPool(properties.getParallelism(), runnable -> {
+            Thread thread = new Thread(runnable, "index-rebuilder-bulk");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Semaphore inFlight = new Semaphore(properties.getParallelism());
+        indexChangeLog.start(alias);
+        try {
+            JobCheckpoint checkpoint = checkpointTransactionTemplate.execute(status ->
+                jobCheckpointRepository.findOne(checkpointName));
+            Long lastId = 0L;
+            if (checkpoint != null && checkpoint.getCheckpointValue() != null
+                && versionedIndexManager.exists(checkpoint.getCheckpointValue())) {
+                if (projection == null && checkpoint.getLastRunDate() != null
+                    && AbstractAuditingEntity.class.isAssignableFrom(entityType)) {
+                    rebuild.version = checkpoint.getCheckpointValue();
+                    lastId = checkpoint.getCheckpointId() != null ? checkpoint.getCheckpointId() : 0L;
+                    Set<String> modified = entityDocuments
+                        .findIdsModifiedSince(entityType, lastId, checkpoint.getLastRunDate()).stream()
+                        .map(String::valueOf).collect(Collectors.toSet());
+                    rewrite(null, entityType, rebuild.version, entity.getIndexType(), modified);
+                    rebuild.indexed.set(entityDocuments.count(entityType, lastId));
+                    log.info("Resuming rebuild of index {} into {} after id {}, {} modified since written again",
+                        alias, rebuild.version, lastId, modified.size());
+                } else {
+                    log.info("Discarding interrupted rebuild of index {} into {}, the rows modified since are unknown",
+                        alias, checkpoint.getCheckpointValue());
+                    versionedIndexManager.delete(rebuild.documentClass, checkpoint.getCheckpointValue());
+                }
+            }
+            if (rebuild.version == null) {
+                rebuild.version = versionedIndexManager.createVersion(rebuild.documentClass);
+                saveCheckpoint(checkpointName, rebuild.version, lastId);
+            }
+            rebuild.total = entityDocuments.count(entityType, null);
+            log.info("Rebuilding index {} of {} {} into {}", alias, rebuild.total, entityName, rebuild.version);
+
+            List<IndexQuery> chunk;
+            while (!(chunk = read(projection, entityType, lastId, rebuild.version)).isEmpty()) {
+                lastId = Long.valueOf(chunk.get(chunk.size() - 1).getId());
+                inFlight.acquire();
+                rebuild.checkFailure();
+                List<IndexQuery> queries = chunk;
+                Long chunkLastId = lastId;
+                rebuild.submitted(chunkLastId);
+                bulkExecutor.execute(() -> {
+                    try (Timer.Context ignored = bulkRequests.time()) {
+                        elasticsearchTemplate.bulkIndex(queries);
+                        rebuild.indexed.addAndGet(queries.size());
+                        documents.mark(queries.size());
+                        synchronized (rebuild) {
+                            Long indexedUpTo = rebuild.completed(chunkLastId);
+                            if (indexedUpTo != null) {
+                                saveCheckpoint(checkpointName, rebuild.version, indexedUpTo);
+                            }
+                        }
+                    } catch (RuntimeException e) {
+                        rebuild.failure.compareAndSet(null, e);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+            inFlight.acquire(properties.getParallelism());
+            rebuild.checkFailure();
+
+            versionedIndexManager.promote(rebuild.documentClass, rebuild.version);
+            saveCheckpoint(checkpointName, null, null);
+            int rewritten = rewrite(projection, entityType, alias, entity.getIndexType(),
+                indexChangeLog.stop(alias));
+            rebuild.finish(ReindexStatusDTO.State.COMPLETED, null);
+            log.info("Rebuilt index {} with {} {} in {}, {} written again", alias, rebuild.indexed, entityName,
+                Duration.between(rebuild.startedDate, rebuild.finishedDate), rewritten);
+        } catch (Exception e) {
+            log.error("Unable to rebuild index {}, it will resume from its checkpoint : {}", alias, e.getMessage(), e);
+            indexChangeLog.stop(alias);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            rebuild.finish(ReindexStatusDTO.State.FAILED, e.getMessage());
+        } finally {
+            bulkExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Record the version being built and the id up to which all rows are indexed in it; or clear them once the
+     * version has been promoted. The last run date is only set when the version changes, so that it holds the date
+     * the rebuild into the version started.
+     */
+    private void saveCheckpoint(String name, String version, Long indexedUpTo) {
+        checkpointTransactionTemplate.execute(status -> {
+            JobCheckpoint checkpoint = jobCheckpointRepository.findOne(name);
+            if (checkpoint == null) {
+                checkpoint = new JobCheckpoint().name(name);
+            }
+            if (!Objects.equals(checkpoint.getCheckpointValue(), version)) {
+                checkpoint.lastRunDate(Instant.now());
+            }
+            return jobCheckpointRepository.save(checkpoint.checkpointValue(version).checkpointId(indexedUpTo));
+        });
+    }
+
+    /**
+     * Read the next chunk of rows, after the given id, as queries indexing their documents into the given index.
+     */
+    private List<IndexQuery> read(SearchProjection<?> projection, Class<?> entityType, Long lastId, String indexName) {
+        return projection != null
+            ? entityDocuments.findAfter(projection, lastId, properties.getChunkSize(), indexName)
+            : entityDocuments.findAfter(entityType, lastId, properties.getChunkSize(), indexName);
+    }
+
+    /**
+     * Write the documents with the given ids again from the database, deleting those whose rows are gone.
+     *
+     * @return the number of documents written
+     */
+    private int rewrite(SearchProjection<?> projection, Class<?> entityType, String indexName, String type,
+                        Set<String> ids) {
+        List<Long> pending = ids.stream().map(Long::valueOf).sorted().collect(Collectors.toList());
+        for (int from = 0; from < pending.size(); from += properties.getChunkSize()) {
+            List<Long> chunk = pending.subList(from, Math.min(from + properties.getChunkSize(), pending.size()));
+            List<IndexQuery> queries = projection != null
+                ? entityDocuments.findAll(projection, chunk, indexName)
+                : entityDocuments.findAll(entityType, chunk, indexName);
+            if (!queries.isEmpty()) {
+                elasticsearchTemplate.bulkIndex(queries);
+            }
+            Set<String> found = queries.stream().map(IndexQuery::getId).collect(Collectors.toSet());
+            chunk.stream().map(String::valueOf).filter(id -> !found.contains(id))
+                .forEach(id -> elasticsearchTemplate.delete(indexName, type, id));
+        }
+        return pending.size();
+    }
+
+    /**
+     * The progress of a rebuild, updated by the threads running it.
+     */
+    private static class Rebuild {
+
+        private final Class<?> documentClass;
+        private final Instant startedDate = Instant.now();
+        private final AtomicLong indexed = new AtomicLong();
+        private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        private final NavigableMap<Long, Boolean> chunks = new TreeMap<>();
+        private volatile String version;
+        private volatile long total;
+        private volatile ReindexStatusDTO.State state = ReindexStatusDTO.State.RUNNING;
+        private volatile Instant finishedDate;
+        private volatile String error;
+
+        Rebuild(Class<?> documentClass) {
+            this.documentClass = documentClass;
+        }
+
+        void checkFailure() {
+            RuntimeException e = failure.get();
+            if (e != null) {
+                throw e;
+            }
+        }
+
+        /**
+         * Record a chunk sent for indexing, by its last id.
+         */
+        synchronized void submitted(Long lastId) {
+            chunks.put(lastId, false);
+        }
+
+        /**
+         * Record a chunk as indexed, by its last id.
+         *
+         * @return the id up to which all the chunks sent are indexed, if it has moved
+         */
+        synchronized Long completed(Long lastId) {
+            chunks.put(lastId, true);
+            Long indexedUpTo = null;
+            while (!chunks.isEmpty() && chunks.firstEntry().getValue()) {
+                indexedUpTo = chunks.pollFirstEntry().getKey();
+            }
+            return indexedUpTo;
+        }
+
+        void finish(ReindexStatusDTO.State state, String error) {
+            this.finishedDate = Instant.now();
+            this.error = error;
+            this.state = state;
+        }
+
+        ReindexStatusDTO toDTO() {
+            ReindexStatusDTO dto = new ReindexStatusDTO();
+            dto.setDocumentType(documentClass.getSimpleName());
+            dto.setIndex(version);
+            dto.setState(state);
+            dto.setTotal(total);
+            dto.setIndexed(indexed.get());
+            dto.setStartedDate(startedDate);
+            dto.setFinishedDate(finishedDate);
+            dto.setError(error);
+            long millis = Duration.between(startedDate, finishedDate != null ? finishedDate : Instant.now()).toMillis();
+            dto.setDocumentsPerSecond(millis > 0 ? indexed.get() * 1000.0 / millis : 0);
+            return dto;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.noesisinformatica.northumbriaproms.service.search;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import org.springframework.data.util.CloseableIterator;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * Iterates over the entities of the documents scrolled from an index, reading the entities from the database a batch
+ * of ids at a time, so that only one batch is held in memory however many documents there are. Entities deleted
+ * since they were indexed are skipped.
+ *
+ * @param <D> the type of the documents
+ * @param <T> the type of the entities
+ */
+public class ScrollingIterator<D, T> implements CloseableIterator<T> {
+
+    private final CloseableIterator<D> documents;
+    private final Function<D, Long> toId;
+    private final Function<List<Long>, List<T>> reader;
+    private final int batchSize;
+    private Iterator<T> batch = new ArrayList<T>().iterator();
+
+    /**
+     * @param documents the scrolled documents
+     * @param toId the id of the entity of a document
+     * @param reader reads the entities with the given ids, in their order
+     * @param batchSize the number of entities read at a time
+     */
+    public ScrollingIterator(CloseableIterator<D> documents, Function<D, Long> toId,
+                             Function<List<Long>, List<T>> reader, int batchSize) {
+        this.documents = documents;
+        this.toId = toId;
+        this.reader = reader;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!batch.hasNext() && documents.hasNext()) {
+            List<Long> ids = new ArrayList<>(batchSize);
+            while (ids.size() < batchSize && documents.hasNext()) {
+                ids.add(toId.apply(documents.next()));
+            }
+            batch = reader.apply(ids).iterator();
+        }
+        return batch.hasNext();
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return batch.next();
+    }
+
+    @Override
+    public void close() {
+        documents.close();
+    }
+}
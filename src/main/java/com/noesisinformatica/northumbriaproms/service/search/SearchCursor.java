@@ -0,0 +1,177 @@
+package com.noesisinformatica.northumbriaproms.service.search;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.query.RangeQueryBuilder;
+import org.elasticsearch.search.sort.SortBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A position in the hits of a search sorted on a field, and then on id to order the hits with the same value.
+ * <p>
+ * The next page of hits is searched for with a filter matching only the hits after the last one read, rather than
+ * by skipping the hits of the pages before it, so that a page deep into the hits costs no more than the first one.
+ * Hits without a value for the field are sorted after the others, whatever the order. The position is handed to
+ * clients as an opaque token.
+ */
+public final class SearchCursor {
+
+    private static final String ID = "id";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String sortField;
+    private final boolean ascending;
+    private final Object lastValue;
+    private final Long lastId;
+
+    private SearchCursor(String sortField, boolean ascending, Object lastValue, Long lastId) {
+        this.sortField = sortField;
+        this.ascending = ascending;
+        this.lastValue = lastValue;
+        this.lastId = lastId;
+    }
+
+    /**
+     * Get the position before the first hit of a search.
+     *
+     * @param sortField the field to sort the hits on
+     * @param ascending whether the hits are sorted in ascending order
+     * @return the cursor
+     */
+    public static SearchCursor first(String sortField, boolean ascending) {
+        return new SearchCursor(sortField, ascending, null, null);
+    }
+
+    /**
+     * Get the position after a hit.
+     *
+     * @param value the value of the sort field of the hit, or null if it has none
+     * @param id the id of the hit
+     * @return the cursor
+     */
+    public SearchCursor after(Object value, Long id) {
+        return new SearchCursor(sortField, ascending, value, id);
+    }
+
+    /**
+     * Read a cursor from its token.
+     *
+     * @param token the token given to the client
+     * @return the cursor
+     * @throws IllegalArgumentException if the token is not a cursor
+     */
+    public static SearchCursor decode(String token) {
+        try {
+            Map<String, Object> values = MAPPER.readValue(Base64.getUrlDecoder().decode(token),
+                new TypeReference<Map<String, Object>>() {});
+            Object sortField = values.get("field");
+            Object lastId = values.get("id");
+            if (!(sortField instanceof String) || !(lastId instanceof Number)) {
+                throw new IllegalArgumentException("Invalid cursor " + token);
+            }
+            return new SearchCursor((String) sortField, Boolean.TRUE.equals(values.get("asc")), values.get("value"),
+                ((Number) lastId).longValue());
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor " + token, e);
+        }
+    }
+
+    /**
+     * Write the cursor as a token to give to the client.
+     *
+     * @return the token
+     */
+    public String encode() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("field", sortField);
+        values.put("asc", ascending);
+        values.put("value", lastValue);
+        values.put("id", lastId);
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(MAPPER.writeValueAsBytes(values));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write cursor", e);
+        }
+    }
+
+    /**
+     * Get the filter matching the hits after this position.
+     *
+     * @return the filter, or null if the position is before the first hit
+     */
+    public QueryBuilder filter() {
+        if (lastId == null) {
+            return null;
+        }
+        RangeQueryBuilder idAfter = ascending
+            ? QueryBuilders.rangeQuery(ID).gt(lastId) : QueryBuilders.rangeQuery(ID).lt(lastId);
+        if (ID.equals(sortField)) {
+            return idAfter;
+        }
+        QueryBuilder withoutValue = QueryBuilders.boolQuery().mustNot(QueryBuilders.existsQuery(sortField));
+        if (lastValue == null) {
+            return QueryBuilders.boolQuery().must(withoutValue).must(idAfter);
+        }
+        RangeQueryBuilder valueAfter = ascending
+            ? QueryBuilders.rangeQuery(sortField).gt(lastValue) : QueryBuilders.rangeQuery(sortField).lt(lastValue);
+        return QueryBuilders.boolQuery()
+            .should(valueAfter)
+            .should(QueryBuilders.boolQuery().must(QueryBuilders.termQuery(sortField, lastValue)).must(idAfter))
+            .should(withoutValue)
+            .minimumNumberShouldMatch(1);
+    }
+
+    /**
+     * Get the sort of the hits, on the sort field and then on id.
+     *
+     * @return the sorts to search with, in order
+     */
+    public List<SortBuilder> sorts() {
+        SortOrder order = ascending ? SortOrder.ASC : SortOrder.DESC;
+        SortBuilder byId = SortBuilders.fieldSort(ID).order(order);
+        if (ID.equals(sortField)) {
+            return Collections.singletonList(byId);
+        }
+        return Arrays.asList(SortBuilders.fieldSort(sortField).order(order).missing("_last"), byId);
+    }
+
+    public String getSortField() {
+        return sortField;
+    }
+}
@@ -0,0 +1,60 @@
+package com.noesisinformatica.northumbriaproms.service.search;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+/**
+ * Builds a search document from an entity, for documents flattened from the entity and the entities it refers to
+ * rather than serialised from the entity itself.
+ * <p>
+ * The document is written whenever the entity is, by the {@link BulkIndexer}, and its index is rebuilt from the
+ * entities by the {@link IndexRebuilder}.
+ *
+ * @param <E> the type of the entity
+ */
+public interface SearchProjection<E> {
+
+    /**
+     * Get the type of the entity the documents are built from.
+     *
+     * @return the entity type
+     */
+    Class<E> getEntityType();
+
+    /**
+     * Get the type of the documents built, mapped to an index.
+     *
+     * @return the document type
+     */
+    Class<?> getDocumentType();
+
+    /**
+     * Build the document of an entity. Called in the transaction that read the entity, so that its associations can
+     * be loaded.
+     *
+     * @param entity the entity
+     * @return the document, with the id of the entity
+     */
+    Object project(E entity);
+}
@@ -0,0 +1,217 @@
+package com.noesisinformatica.northumbriaproms.service.search;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequestBuilder;
+import org.elasticsearch.client.IndicesAdminClient;
+import org.elasticsearch.cluster.metadata.AliasMetaData;
+import org.elasticsearch.cluster.metadata.MappingMetaData;
+import org.elasticsearch.common.collect.ImmutableOpenMap;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.indices.InvalidAliasNameException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.elasticsearch.ElasticsearchException;
+import org.springframework.data.elasticsearch.annotations.Mapping;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Manages the versions of the index of a document type. The index name of a document is served by an alias
+ * pointing to its current version, so that a new version can be built next to it and swapped in atomically.
+ * <p>
+ * Indices created before versioning, under the index name itself, are replaced by an alias when the first
+ * version is swapped in.
+ */
+@Component
+public class VersionedIndexManager {
+
+    private static final DateTimeFormatter VERSION_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS");
+
+    private static final int MAX_SWAP_ATTEMPTS = 5;
+
+    private final Logger log = LoggerFactory.getLogger(VersionedIndexManager.class);
+
+    private final ElasticsearchTemplate elasticsearchTemplate;
+
+    public VersionedIndexManager(ElasticsearchTemplate elasticsearchTemplate) {
+        this.elasticsearchTemplate = elasticsearchTemplate;
+    }
+
+    /**
+     * Create a new, empty version of the index of a document type, with settings for bulk loading: no refresh and
+     * no replicas until it is promoted. The mapping is read from the {@link Mapping} file of the document type if
+     * it has one, and copied from the current version otherwise.
+     *
+     * @param documentClass the document type
+     * @return the name of the new version
+     */
+    public String createVersion(Class<?> documentClass) {
+        ElasticsearchPersistentEntity<?> entity = elasticsearchTemplate.getPersistentEntityFor(documentClass);
+        String version = entity.getIndexName() + "_" + LocalDateTime.now().format(VERSION_FORMAT);
+        Settings settings = Settings.builder()
+            .put("index.refresh_interval", "-1")
+            .put("index.number_of_replicas", 0)
+            .build();
+        indices().prepareCreate(version).setSettings(settings).get();
+
+        String mapping = null;
+        Mapping mappingAnnotation = documentClass.getAnnotation(Mapping.class);
+        if (mappingAnnotation != null && !mappingAnnotation.mappingPath().isEmpty()) {
+            mapping = ElasticsearchTemplate.readFileFromClasspath(mappingAnnotation.mappingPath());
+        } else {
+            String current = currentIndex(entity.getIndexName());
+            MappingMetaData currentMapping = current == null ? null : indices().prepareGetMappings(current)
+                .setTypes(entity.getIndexType()).get().getMappings().get(current).get(entity.getIndexType());
+            if (currentMapping != null) {
+                try {
+                    mapping = currentMapping.source().string();
+                } catch (IOException e) {
+                    throw new ElasticsearchException("Unable to read the mapping of " + current, e);
+                }
+            }
+        }
+        if (mapping != null) {
+            indices().preparePutMapping(version).setType(entity.getIndexType()).setSource(mapping).get();
+        }
+        log.debug("Created index {} for {}", version, documentClass.getSimpleName());
+        return version;
+    }
+
+    /**
+     * Make a version the current index of a document type: restore its settings, point the alias of the document
+     * type to it in a single request, then delete the previous versions. An index created before versioning is
+     * deleted first, and deleted again should a write under its name create it before the alias is added.
+     *
+     * @param documentClass the document type
+     * @param version the name of the version
+     */
+    public void promote(Class<?> documentClass, String version) {
+        String alias = elasticsearchTemplate.getPersistentEntityFor(documentClass).getIndexName();
+        List<String> previous = currentVersions(alias);
+        String current = currentIndex(alias);
+        boolean unversioned = previous.isEmpty() && current != null;
+        String replicas = current == null ? null
+            : indices().prepareGetSettings(current).get().getSetting(current, "index.number_of_replicas");
+        indices().prepareUpdateSettings(version).setSettings(Settings.builder()
+            .put("index.refresh_interval", "1s")
+            .put("index.number_of_replicas", replicas != null ? replicas : "1")
+            .build()).get();
+        indices().prepareRefresh(version).get();
+
+        if (unversioned) {
+            log.info("Replacing index {} by an alias", alias);
+        }
+        for (int attempt = 1; ; attempt++) {
+            if (unversioned && exists(alias)) {
+                // an index created before versioning holds the name of the alias; it can only be deleted first
+                indices().prepareDelete(alias).get();
+            }
+            IndicesAliasesRequestBuilder aliases = indices().prepareAliases();
+            previous.forEach(index -> aliases.removeAlias(index, alias));
+            try {
+                aliases.addAlias(version, alias).get();
+                break;
+            } catch (InvalidAliasNameException e) {
+                // a document written under the index name in between created a plain index again; its changes are
+                // in the change log and written again once the alias is in place
+                if (!unversioned || attempt == MAX_SWAP_ATTEMPTS) {
+                    throw e;
+                }
+                log.warn("Index {} was created again before its alias, deleting it again : {}", alias,
+                    e.getMessage());
+            }
+        }
+        log.info("Alias {} now points to {}", alias, version);
+
+        previous.forEach(index -> indices().prepareDelete(index).get());
+    }
+
+    /**
+     * Check whether a version still exists, e.g. before resuming a rebuild into it.
+     *
+     * @param version the name of the version
+     * @return true if the index exists
+     */
+    public boolean exists(String version) {
+        return indices().prepareExists(version).get().isExists();
+    }
+
+    /**
+     * Delete a version that will not be promoted, e.g. the version of a rebuild that cannot be resumed. A version
+     * the alias of the document type already points to is kept.
+     *
+     * @param documentClass the document type
+     * @param version the name of the version
+     */
+    public void delete(Class<?> documentClass, String version) {
+        String alias = elasticsearchTemplate.getPersistentEntityFor(documentClass).getIndexName();
+        if (currentVersions(alias).contains(version)) {
+            log.warn("Keeping index {} as alias {} points to it", version, alias);
+            return;
+        }
+        indices().prepareDelete(version).get();
+        log.debug("Deleted index {} of {}", version, documentClass.getSimpleName());
+    }
+
+    /**
+     * Get the indices an alias points to.
+     */
+    private List<String> currentVersions(String alias) {
+        List<String> versions = new ArrayList<>();
+        ImmutableOpenMap<String, List<AliasMetaData>> aliases = indices().prepareGetAliases(alias).get().getAliases();
+        aliases.forEach(entry -> {
+            if (!entry.value.isEmpty()) {
+                versions.add(entry.key);
+            }
+        });
+        return versions;
+    }
+
+    /**
+     * Get the index currently serving a document type: the version its alias points to, or an index created
+     * before versioning under the name of the alias.
+     *
+     * @return the name of the index, or null if there is none
+     */
+    private String currentIndex(String alias) {
+        List<String> versions = currentVersions(alias);
+        if (!versions.isEmpty()) {
+            return versions.get(0);
+        }
+        return indices().prepareExists(alias).get().isExists() ? alias : null;
+    }
+
+    private IndicesAdminClient indices() {
+        return elasticsearchTemplate.getClient().admin().indices();
+    }
+}
@@ -0,0 +1,135 @@
+package com.noesisinformatica.northumbriaproms.service.util;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.noesisinformatica.northumbriaproms.domain.*;
+import com.noesisinformatica.northumbriaproms.domain.enumeration.ActionPhase;
+import com.noesisinformatica.northumbriaproms.domain.enumeration.ActionStatus;
+import com.noesisinformatica.northumbriaproms.domain.enumeration.ActionType;
+import com.noesisinformatica.northumbriaproms.domain.enumeration.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Utility class for planning the {@link FollowupAction}s of a {@link CareEvent}.
+ */
+public final class FollowupActionPlanner {
+
+    private static final Logger log = LoggerFactory.getLogger(FollowupActionPlanner.class);
+
+    private FollowupActionPlanner() {
+    }
+
+    /**
+     * Add a followup action for each questionnaire to the care event, scheduled relative to the booking.
+     *
+     * @param careEvent the care event to plan
+     * @param booking the procedure booking the care event belongs to
+     * @param questionnaires the questionnaires linked to the primary procedure of the booking
+     * @return false if the care event is not planned yet, i.e. it is an annual event
+     */
+    public static boolean planFollowupActions(CareEvent careEvent, ProcedureBooking booking, List<Questionnaire> questionnaires) {
+        Timepoint timepoint = careEvent.getTimepoint();
+        // skip annual events for now - they'll have value of -1
+        if(timepoint.getValue() < 0) {
+            return false;
+        }
+
+        // otherwise we process...
+        boolean isPreOpTimepoint = false;
+        if(timepoint.getValue() == 0 && timepoint.getUnit() == TimeUnit.DAY){
+            isPreOpTimepoint = true;
+        }
+
+        for(Questionnaire questionnaire : questionnaires) {
+            // create a new follow up action
+            FollowupAction action = new FollowupAction();
+            action.name(questionnaire.getName())
+                .type(ActionType.QUESTIONNAIRE).questionnaire(questionnaire)
+                .patient(booking.getPatient()).status(ActionStatus.UNINITIALISED);
+            // if procedure booking scheduled date is present, then we process it
+            if (isPreOpTimepoint) {
+                // update phase
+                action.phase(ActionPhase.PRE_OPERATIVE).scheduledDate(booking.getScheduledDate());
+                // now status if scheduled date is before today or today - otherwise stays as 'uninitialised'
+                if(!booking.getScheduledDate().isAfter(LocalDate.now())) {
+                    action.setStatus(ActionStatus.STARTED);
+                    careEvent.status(ActionStatus.STARTED);
+
+                    // if procedure performed date is not present, we change action status to UNKNOWN
+                    if (booking.getPerformedDate() == null) {
+                        action.status(ActionStatus.UNKNOWN);
+                        careEvent.status(ActionStatus.UNKNOWN);
+                    }
+                }
+            } else {
+                // treat as post-op
+                action.setPhase(ActionPhase.POST_OPERATIVE);
+                // if procedure performed date is not present, we change action status to UNKNOWN
+                if (booking.getPerformedDate() == null) {
+                    action.status(ActionStatus.UNKNOWN);
+                    careEvent.status(ActionStatus.UNKNOWN);
+                } else {
+                    // calculate relative date from completed date, using time point
+                    LocalDate calculatedDate = calculateDateFromTimePoint(timepoint, booking);
+                    action.setScheduledDate(calculatedDate);
+                    if(! calculatedDate.isAfter(LocalDate.now())) {
+                        action.status(ActionStatus.STARTED);
+                        careEvent.setStatus(ActionStatus.STARTED);
+                    }
+                }
+            }
+
+            if("OUTCOME".equalsIgnoreCase(questionnaire.getName()) && isPreOpTimepoint) {
+                log.debug("Skipping OUTCOME as action type for PRE-OP phase");
+            } else {
+                // add action to plan
+                careEvent.addFollowupAction(action);
+            }
+        }
+
+        return true;
+    }
+
+    private static LocalDate calculateDateFromTimePoint(Timepoint timepoint, ProcedureBooking booking) {
+        LocalDate date = LocalDate.from(booking.getPerformedDate());
+        TimeUnit unit = timepoint.getUnit();
+        if(TimeUnit.MONTH == unit) {
+            date = date.plusMonths(Long.valueOf(timepoint.getValue()));
+        } else if(TimeUnit.YEAR == unit) {
+            date = date.plusYears(Long.valueOf(timepoint.getValue()));
+        } else if(TimeUnit.WEEK == unit) {
+            date = date.plusWeeks(Long.valueOf(timepoint.getValue()));
+        } else  {
+            log.error("Unknown time unit passed : {}. Assuming day ", unit);
+            date = date.plusDays(Long.valueOf(timepoint.getValue()));
+        }
+
+        return date;
+    }
+}
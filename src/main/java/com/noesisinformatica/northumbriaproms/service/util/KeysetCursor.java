@@ -0,0 +1,238 @@
+package com.noesisinformatica.northumbriaproms.service.util;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.data.domain.Sort;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A position in the rows of a query sorted on a column, and then on id to order the rows with the same value.
+ * <p>
+ * The next page of rows is read with a condition matching only the rows after the last one read, rather than by
+ * skipping the rows of the pages before it, so that a page deep into the rows costs no more than the first one when
+ * the sort column is indexed. Rows without a value for the column are sorted after the others, whatever the order.
+ * The position is handed to clients as an opaque token.
+ *
+ * @see com.noesisinformatica.northumbriaproms.service.search.SearchCursor
+ */
+public final class KeysetCursor {
+
+    public static final String ID = "id";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String sortField;
+    private final boolean ascending;
+    private final String lastValue;
+    private final Long lastId;
+
+    private KeysetCursor(String sortField, boolean ascending, String lastValue, Long lastId) {
+        this.sortField = sortField;
+        this.ascending = ascending;
+        this.lastValue = lastValue;
+        this.lastId = lastId;
+    }
+
+    /**
+     * Get the position before the first row of a query.
+     *
+     * @param sortField the field to sort the rows on
+     * @param ascending whether the rows are sorted in ascending order
+     * @return the cursor
+     */
+    public static KeysetCursor first(String sortField, boolean ascending) {
+        return new KeysetCursor(sortField, ascending, null, null);
+    }
+
+    /**
+     * Get the position before the first row of a query, sorted on the first order of a sort.
+     *
+     * @param sort the sort requested, or null
+     * @return the cursor, sorted on ascending ids if no sort was requested
+     */
+    public static KeysetCursor first(Sort sort) {
+        Sort.Order order = sort != null && sort.iterator().hasNext() ? sort.iterator().next() : null;
+        return order != null ? first(order.getProperty(), order.isAscending()) : first(ID, true);
+    }
+
+    /**
+     * Get the position after a row.
+     *
+     * @param value the value of the sort field of the row, or null if it has none
+     * @param id the id of the row
+     * @return the cursor
+     */
+    public KeysetCursor after(Object value, Long id) {
+        return new KeysetCursor(sortField, ascending, value == null ? null : value.toString(), id);
+    }
+
+    /**
+     * Read a cursor from its token.
+     *
+     * @param token the token given to the client
+     * @return the cursor
+     * @throws IllegalArgumentException if the token is not a cursor
+     */
+    public static KeysetCursor decode(String token) {
+        try {
+            Map<String, Object> values = MAPPER.readValue(Base64.getUrlDecoder().decode(token),
+                new TypeReference<Map<String, Object>>() {});
+            Object sortField = values.get("field");
+            Object lastValue = values.get("value");
+            Object lastId = values.get("id");
+            if (!(sortField instanceof String) || !(lastId instanceof Number)
+                || (lastValue != null && !(lastValue instanceof String))) {
+                throw new IllegalArgumentException("Invalid cursor " + token);
+            }
+            return new KeysetCursor((String) sortField, Boolean.TRUE.equals(values.get("asc")), (String) lastValue,
+                ((Number) lastId).longValue());
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor " + token, e);
+        }
+    }
+
+    /**
+     * Write the cursor as a token to give to the client.
+     *
+     * @return the token
+     */
+    public String encode() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("field", sortField);
+        values.put("asc", ascending);
+        values.put("value", lastValue);
+        values.put("id", lastId);
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(MAPPER.writeValueAsBytes(values));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write cursor", e);
+        }
+    }
+
+    /**
+     * Get the condition matching the rows after this position.
+     *
+     * @param cb the criteria builder of the query
+     * @param value the sort field of the rows
+     * @param id the id of the rows
+     * @param nullable whether the sort field can be null
+     * @return the condition, or null if the position is before the first row
+     * @throws IllegalArgumentException if the value of the position cannot be read as the type of the sort field
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Predicate after(CriteriaBuilder cb, Path<? extends Comparable> value, Path<Long> id, boolean nullable) {
+        if (lastId == null) {
+            return null;
+        }
+        Predicate idAfter = ascending ? cb.greaterThan(id, lastId) : cb.lessThan(id, lastId);
+        if (ID.equals(sortField)) {
+            return idAfter;
+        }
+        if (lastValue == null) {
+            return cb.and(cb.isNull(value), idAfter);
+        }
+        Comparable last = parse(lastValue, value.getJavaType());
+        Path<Comparable> path = (Path<Comparable>) value;
+        Predicate valueAfter = ascending ? cb.greaterThan(path, last) : cb.lessThan(path, last);
+        Predicate after = cb.or(valueAfter, cb.and(cb.equal(path, last), idAfter));
+        return nullable ? cb.or(after, cb.isNull(path)) : after;
+    }
+
+    /**
+     * Get the order of the rows, on the sort field and then on id.
+     *
+     * @param cb the criteria builder of the query
+     * @param value the sort field of the rows
+     * @param id the id of the rows
+     * @param nullable whether the sort field can be null, in which case the rows without it are put last
+     * @return the orders to read the rows with
+     */
+    public List<Order> orders(CriteriaBuilder cb, Path<?> value, Path<Long> id, boolean nullable) {
+        List<Order> orders = new ArrayList<>();
+        if (!ID.equals(sortField)) {
+            if (nullable) {
+                Expression<Integer> withoutValue = cb.<Integer>selectCase().when(cb.isNull(value), 1).otherwise(0);
+                orders.add(cb.asc(withoutValue));
+            }
+            orders.add(ascending ? cb.asc(value) : cb.desc(value));
+        }
+        orders.add(ascending ? cb.asc(id) : cb.desc(id));
+        return orders;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Comparable parse(String value, Class<?> type) {
+        try {
+            if (type == String.class) {
+                return value;
+            } else if (type.isEnum()) {
+                return Enum.valueOf((Class<Enum>) type, value);
+            } else if (type == Long.class) {
+                return Long.valueOf(value);
+            } else if (type == Integer.class) {
+                return Integer.valueOf(value);
+            } else if (type == Double.class) {
+                return Double.valueOf(value);
+            } else if (type == BigDecimal.class) {
+                return new BigDecimal(value);
+            } else if (type == Boolean.class) {
+                return Boolean.valueOf(value);
+            } else if (type == LocalDate.class) {
+                return LocalDate.parse(value);
+            } else if (type == LocalDateTime.class) {
+                return LocalDateTime.parse(value);
+            } else if (type == ZonedDateTime.class) {
+                return ZonedDateTime.parse(value);
+            } else if (type == Instant.class) {
+                return Instant.parse(value);
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor value " + value, e);
+        }
+        throw new IllegalArgumentException("Cannot page after a value of type " + type.getSimpleName());
+    }
+
+    public String getSortField() {
+        return sortField;
+    }
+}
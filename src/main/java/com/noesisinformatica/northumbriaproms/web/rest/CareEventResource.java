@@ -29,6 +29,7 @@ import com.noesisinformatica.northumbriaproms.domain.CareEvent;
 import com.noesisinformatica.northumbriaproms.service.CareEventQueryService;
 import com.noesisinformatica.northumbriaproms.service.CareEventService;
 import com.noesisinformatica.northumbriaproms.service.dto.CareEventCriteria;
+import com.noesisinformatica.northumbriaproms.service.search.CursorPage;
 import com.noesisinformatica.northumbriaproms.web.rest.errors.BadRequestAlertException;
 import com.noesisinformatica.northumbriaproms.web.rest.util.HeaderUtil;
 import com.noesisinformatica.northumbriaproms.web.rest.util.PaginationUtil;
@@ -43,6 +44,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -127,6 +129,36 @@ public class CareEventResource {
         return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
     }
 
+    /**
+     * GET  /care-events/cursor : get a page of the careEvents after the cursor of the previous page, which costs no more
+     * however deep the page is. The cursor of the next page is returned in the headers.
+     *
+     * @param criteria the criterias which the requested entities should match
+     * @param cursor the cursor returned with the previous page, or none for the first page
+     * @param count whether to count all the matching careEvents, returned in the X-Total-Count header
+     * @param pageable the size of the page, and the sort of the first page
+     * @param request the request, whose parameters are kept in the links to the other pages
+     * @return the ResponseEntity with status 200 (OK) and the list of careEvents in body,
+     * or with status 400 (Bad Request) if the cursor is invalid
+     */
+    @GetMapping("/care-events/cursor")
+    @Timed
+    public ResponseEntity<List<CareEvent>> getCareEventsAfter(CareEventCriteria criteria,
+                                                              @RequestParam(required = false) String cursor,
+                                                              @RequestParam(defaultValue = "false") boolean count,
+                                                              Pageable pageable, HttpServletRequest request) {
+        log.debug("REST request to get CareEvents by criteria: {} after {}", criteria, cursor);
+        CursorPage<CareEvent> page;
+        try {
+            page = careEventQueryService.findByCriteriaAfter(criteria, cursor, pageable, count);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "invalidcursor");
+        }
+        HttpHeaders headers = PaginationUtil.generateCursorPaginationHttpHeaders(page.getNextCursor(),
+            page.getTotalElements(), pageable.getPageSize(), "/api/care-events/cursor", request.getQueryString());
+        return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
+    }
+
     /**
      * GET  /care-events/:id : get the "id" careEvent.
      *
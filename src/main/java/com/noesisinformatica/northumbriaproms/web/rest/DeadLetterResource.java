@@ -0,0 +1,112 @@
+package com.noesisinformatica.northumbriaproms.web.rest;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.codahale.metrics.annotation.Timed;
+import com.noesisinformatica.northumbriaproms.service.dto.DeadLetterDTO;
+import com.noesisinformatica.northumbriaproms.service.dto.DeadLetterQueueDTO;
+import com.noesisinformatica.northumbriaproms.service.messaging.DeadLetterService;
+import com.noesisinformatica.northumbriaproms.web.rest.errors.BadRequestAlertException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Controller for inspecting and replaying the messages quarantined in the dead letter queues.
+ */
+@RestController
+@RequestMapping("/management")
+public class DeadLetterResource {
+
+    private final Logger log = LoggerFactory.getLogger(DeadLetterResource.class);
+
+    private static final String ENTITY_NAME = "deadLetter";
+
+    private static final int MAX_COUNT = 1000;
+
+    private final DeadLetterService deadLetterService;
+
+    public DeadLetterResource(DeadLetterService deadLetterService) {
+        this.deadLetterService = deadLetterService;
+    }
+
+    /**
+     * GET  /dead-letters : get the dead letter queues with their message counts.
+     *
+     * @return the ResponseEntity with status 200 (OK) and the list of dead letter queues in body
+     */
+    @GetMapping("/dead-letters")
+    @Timed
+    public List<DeadLetterQueueDTO> getDeadLetterQueues() {
+        log.debug("REST request to get dead letter queues");
+        return deadLetterService.getDeadLetterQueues();
+    }
+
+    /**
+     * GET  /dead-letters/:queue : get the first messages dead lettered from a queue, without removing them.
+     *
+     * @param queue the name of the pipeline queue
+     * @param count the maximum number of messages to get
+     * @return the ResponseEntity with status 200 (OK) and the list of messages in body
+     */
+    @GetMapping("/dead-letters/{queue}")
+    @Timed
+    public List<DeadLetterDTO> getDeadLetters(@PathVariable String queue,
+                                              @RequestParam(defaultValue = "20") int count) {
+        log.debug("REST request to get {} dead letters of queue : {}", count, queue);
+        validate(queue, count);
+        return deadLetterService.peek(queue, count);
+    }
+
+    /**
+     * POST  /dead-letters/:queue/replay : move messages dead lettered from a queue back onto the queue.
+     *
+     * @param queue the name of the pipeline queue
+     * @param count the maximum number of messages to replay
+     * @return the ResponseEntity with status 200 (OK) and the number of messages replayed in body
+     */
+    @PostMapping("/dead-letters/{queue}/replay")
+    @Timed
+    public ResponseEntity<Integer> replayDeadLetters(@PathVariable String queue,
+                                                     @RequestParam(defaultValue = "100") int count) {
+        log.debug("REST request to replay {} dead letters of queue : {}", count, queue);
+        validate(queue, count);
+        return ResponseEntity.ok(deadLetterService.replay(queue, count));
+    }
+
+    private void validate(String queue, int count) {
+        try {
+            DeadLetterService.deadLetterQueueOf(queue);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "unknownqueue");
+        }
+        if (count < 1 || count > MAX_COUNT) {
+            throw new BadRequestAlertException("Count must be between 1 and " + MAX_COUNT, ENTITY_NAME, "invalidcount");
+        }
+    }
+}
@@ -26,21 +26,24 @@ package com.noesisinformatica.northumbriaproms.web.rest;
 
 import com.codahale.metrics.annotation.Timed;
 import com.noesisinformatica.northumbriaproms.domain.FollowupAction;
+import com.noesisinformatica.northumbriaproms.service.FollowupActionExportService;
 import com.noesisinformatica.northumbriaproms.service.FollowupActionQueryService;
 import com.noesisinformatica.northumbriaproms.service.FollowupActionService;
+import com.noesisinformatica.northumbriaproms.service.dto.ExportFormat;
+import com.noesisinformatica.northumbriaproms.service.dto.ExportJobDTO;
 import com.noesisinformatica.northumbriaproms.service.dto.FollowupActionCriteria;
+import com.noesisinformatica.northumbriaproms.service.dto.ReindexStatusDTO;
+import com.noesisinformatica.northumbriaproms.service.search.CursorPage;
 import com.noesisinformatica.northumbriaproms.web.rest.errors.BadRequestAlertException;
 import com.noesisinformatica.northumbriaproms.web.rest.util.HeaderUtil;
 import com.noesisinformatica.northumbriaproms.web.rest.util.PaginationUtil;
 import com.noesisinformatica.northumbriaproms.web.rest.util.QueryModel;
-import com.opencsv.CSVWriter;
-import com.opencsv.bean.ColumnPositionMappingStrategy;
-import com.opencsv.exceptions.CsvDataTypeMismatchException;
-import com.opencsv.exceptions.CsvRequiredFieldEmptyException;
 import io.github.jhipster.service.filter.LongFilter;
 import io.github.jhipster.web.util.ResponseUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.elasticsearch.core.FacetedPage;
@@ -48,17 +51,19 @@ import org.springframework.data.elasticsearch.core.facet.result.Term;
 import org.springframework.data.elasticsearch.core.facet.result.TermResult;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.time.format.DateTimeFormatter;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * REST controller for managing FollowupAction.
@@ -75,9 +80,13 @@ public class FollowupActionResource {
 
     private final FollowupActionQueryService followupActionQueryService;
 
-    public FollowupActionResource(FollowupActionService followupActionService, FollowupActionQueryService followupActionQueryService) {
+    private final FollowupActionExportService followupActionExportService;
+
+    public FollowupActionResource(FollowupActionService followupActionService, FollowupActionQueryService followupActionQueryService,
+                                  FollowupActionExportService followupActionExportService) {
         this.followupActionService = followupActionService;
         this.followupActionQueryService = followupActionQueryService;
+        this.followupActionExportService = followupActionExportService;
     }
 
     /**
@@ -138,6 +147,36 @@ public class FollowupActionResource {
         return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
     }
 
+    /**
+     * GET  /followup-actions/cursor : get a page of the followupActions after the cursor of the previous page, which costs no more
+     * however deep the page is. The cursor of the next page is returned in the headers.
+     *
+     * @param criteria the criterias which the requested entities should match
+     * @param cursor the cursor returned with the previous page, or none for the first page
+     * @param count whether to count all the matching followupActions, returned in the X-Total-Count header
+     * @param pageable the size of the page, and the sort of the first page
+     * @param request the request, whose parameters are kept in the links to the other pages
+     * @return the ResponseEntity with status 200 (OK) and the list of followupActions in body,
+     * or with status 400 (Bad Request) if the cursor is invalid
+     */
+    @GetMapping("/followup-actions/cursor")
+    @Timed
+    public ResponseEntity<List<FollowupAction>> getFollowupActionsAfter(FollowupActionCriteria criteria,
+                                                                        @RequestParam(required = false) String cursor,
+                                                                        @RequestParam(defaultValue = "false") boolean count,
+                                                                        Pageable pageable, HttpServletRequest request) {
+        log.debug("REST request to get FollowupActions by criteria: {} after {}", criteria, cursor);
+        CursorPage<FollowupAction> page;
+        try {
+            page = followupActionQueryService.findByCriteriaAfter(criteria, cursor, pageable, count);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "invalidcursor");
+        }
+        HttpHeaders headers = PaginationUtil.generateCursorPaginationHttpHeaders(page.getNextCursor(),
+            page.getTotalElements(), pageable.getPageSize(), "/api/followup-actions/cursor", request.getQueryString());
+        return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
+    }
+
     /**
      * GET  /patient/:id/followup-actions : get all the followupActions for patient id
      *
@@ -210,85 +249,182 @@ public class FollowupActionResource {
      *
      * @param query the query of the followupAction search
      * @param pageable the pagination information
+     * @param categories whether to return the categories of the search, which can be left out when paging
      * @return the result of the search
      */
     @PostMapping("/_search/followup-actions")
     @Timed
-    public ResponseEntity<Map<String, Object>> searchFollowupActions(@RequestBody QueryModel query, Pageable pageable) {
+    public ResponseEntity<Map<String, Object>> searchFollowupActions(@RequestBody QueryModel query, Pageable pageable,
+                                                                     @RequestParam(defaultValue = "true") boolean categories) {
         log.debug("REST request to search for a page of FollowupActions for query {}", query);
-        FacetedPage<FollowupAction> page = followupActionService.search(query, pageable);
+        FacetedPage<FollowupAction> page = followupActionService.search(query, pageable, categories);
         HttpHeaders headers = PaginationUtil.generateSearchPaginationHttpHeaders(query.toString(), page, "/api/_search/followup-actions");
         // wrap results page in a response entity with faceted results turned into a map
-        return new ResponseEntity<>(getResultMapMapForResults(page), headers, HttpStatus.OK);
+        Map<String, Object> resultsMap = new HashMap<>();
+        resultsMap.put("results", page.getContent());
+        if (categories) {
+            resultsMap.put("categories", getCategories(page));
+        }
+        return new ResponseEntity<>(resultsMap, headers, HttpStatus.OK);
     }
 
     /**
-     * Download  /_export/followup-actions : export the followup action corresponding to the query.
+     * SEARCH  /_search/followup-actions/categories : get the categories of the followupActions corresponding
+     * to the query, without the actions.
      *
      * @param query the query of the followupAction search
-     * @param pageable the pagination information
-     * @return the result of the search
+     * @return the categories and the number of followupActions found
+     */
+    @PostMapping("/_search/followup-actions/categories")
+    @Timed
+    public ResponseEntity<Map<String, Object>> searchFollowupActionCategories(@RequestBody QueryModel query) {
+        log.debug("REST request to search for the categories of FollowupActions for query {}", query);
+        FacetedPage<FollowupAction> page = followupActionService.searchCategories(query);
+        Map<String, Object> resultsMap = new HashMap<>();
+        resultsMap.put("total", page.getTotalElements());
+        resultsMap.put("categories", getCategories(page));
+        return ResponseEntity.ok(resultsMap);
+    }
+
+    /**
+     * SEARCH  /_search/followup-actions/cursor : search for a page of the followupActions corresponding to the query,
+     * after the cursor of the previous page. The cursor of the next page is returned in the headers.
+     *
+     * @param query the query of the followupAction search
+     * @param cursor the cursor returned with the previous page, or none for the first page
+     * @param pageable the size of the page, and the sort of the first page
+     * @return the page of followupActions
+     */
+    @PostMapping("/_search/followup-actions/cursor")
+    @Timed
+    public ResponseEntity<List<FollowupAction>> searchFollowupActionsAfter(@RequestBody QueryModel query,
+                                                                           @RequestParam(required = false) String cursor,
+                                                                           Pageable pageable) {
+        log.debug("REST request to search for a page of FollowupActions for query {} after {}", query, cursor);
+        CursorPage<FollowupAction> page;
+        try {
+            page = followupActionService.searchAfter(query, cursor, pageable);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "invalidcursor");
+        }
+        HttpHeaders headers = PaginationUtil.generateCursorPaginationHttpHeaders(page.getNextCursor(),
+            page.getTotalElements(), pageable.getPageSize(), "/api/_search/followup-actions/cursor");
+        return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * Download  /_export/followup-actions : export all the followup actions corresponding to the query, streamed
+     * while they are read. The export stops if the client goes away.
+     *
+     * @param query the query of the followupAction search
+     * @param format the format of the export, CSV or ARROW
+     * @param gzip whether to compress the export
+     * @param response the response the export is written to
+     * @throws IOException if the export could not be written
      */
     @PostMapping("/_export/followup-actions")
     @Timed
-    public void exportFollowupActions(@RequestBody QueryModel query, Pageable pageable,
-                                                                     HttpServletResponse response) throws IOException, CsvDataTypeMismatchException, CsvRequiredFieldEmptyException {
-        log.debug("REST request to search for a page of FollowupActions for query {}", query);
-        FacetedPage<FollowupAction> page = followupActionService.search(query, pageable);
-        response.setContentType("text/csv");
-        response.setHeader("content-disposition","attachment;filename=export.csv");
-        // wrap results page in a response entity with faceted results turned into a map
-        ColumnPositionMappingStrategy mapStrategy = new ColumnPositionMappingStrategy();
-        mapStrategy.setType(FollowupAction.class);
-
-        String[] columns = new String[]{"id","last_name", "first_name", "nhs_number", "gender", "age",
-            "consultant_name", "hospital_name", "primary_procedure", "performed_date",
-            "name", "time_point", "outcomeScore", "completed_date",  "phase", "outcome_comment",
-            };
-        mapStrategy.setColumnMapping(columns);
-
-        OutputStreamWriter osw = new OutputStreamWriter(response.getOutputStream(), "UTF-8");
-        DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern("dd/MM/yyyy");
-        CSVWriter csvWriter = new CSVWriter(osw);
-        csvWriter.writeNext(columns);
-        page.getContent().forEach(action -> {
-            List<String> row = new ArrayList<>();
-            row.add(action.getId().toString());
-            row.add(action.getCareEvent().getFollowupPlan().getProcedureBooking().getPatient().getFamilyName());
-            row.add(action.getCareEvent().getFollowupPlan().getProcedureBooking().getPatient().getGivenName());
-            row.add(action.getCareEvent().getFollowupPlan().getProcedureBooking().getPatient().getNhsNumber().toString());
-            row.add(action.getCareEvent().getFollowupPlan().getProcedureBooking().getPatient().getGender().name());
-            row.add(action.getCareEvent().getFollowupPlan().getProcedureBooking().getPatientAge().toString());
-            row.add(action.getCareEvent().getFollowupPlan().getProcedureBooking().getConsultantName());
-            row.add(action.getCareEvent().getFollowupPlan().getProcedureBooking().getHospitalSite());
-            row.add(action.getCareEvent().getFollowupPlan().getProcedureBooking().getPrimaryProcedure());
-            row.add(action.getCareEvent().getFollowupPlan().getProcedureBooking().getPerformedDate().format(dateFormat));
-            row.add(action.getName());
-            row.add(action.getCareEvent().getTimepoint().getName());
-            row.add(action.getOutcomeScore().toString());
-            if (action.getCompletedDate() != null) {
-                row.add(action.getCompletedDate().format(dateFormat));
-            } else {
-                row.add("");
-            }
-            row.add(action.getPhase().name());
-            row.add(action.getOutcomeComment());
-            // write to csv
-            csvWriter.writeNext(row.toArray(new String[columns.length]));
-        });
-
-        csvWriter.close();
-        osw.close();
+    public void exportFollowupActions(@RequestBody QueryModel query,
+                                      @RequestParam(defaultValue = "CSV") ExportFormat format,
+                                      @RequestParam(defaultValue = "false") boolean gzip,
+                                      HttpServletResponse response) throws IOException {
+        log.debug("REST request to export FollowupActions for query {} as {}", query, format);
+        response.setHeader("content-disposition", "attachment;filename=" + exportFileName(format, gzip));
+        if (gzip) {
+            response.setContentType("application/gzip");
+            GZIPOutputStream out = new GZIPOutputStream(response.getOutputStream());
+            followupActionExportService.export(query, format, out, () -> false);
+            out.finish();
+        } else {
+            response.setContentType(format.getContentType());
+            followupActionExportService.export(query, format, response.getOutputStream(), () -> false);
+        }
         response.flushBuffer();
     }
 
     /**
-     * Utility private method for transforming a {@link FacetedPage} into a {@link Map} object with results
-     * and categories.
+     * POST  /_export/followup-actions?async=true : start exporting the followup actions corresponding to the query to
+     * a file, in the background. An identical export still running, or finished and not expired, is reused.
+     *
+     * @param query the query of the followupAction search
+     * @param format the format of the export, CSV or ARROW
+     * @param gzip whether to compress the export
+     * @return the ResponseEntity with status 202 (Accepted), the progress of the export in body and its url in the
+     * Location header
+     * @throws URISyntaxException if the Location URI syntax is incorrect
+     */
+    @PostMapping(value = "/_export/followup-actions", params = "async=true")
+    @Timed
+    public ResponseEntity<ExportJobDTO> submitFollowupActionsExport(@RequestBody QueryModel query,
+                                                                    @RequestParam(defaultValue = "CSV") ExportFormat format,
+                                                                    @RequestParam(defaultValue = "false") boolean gzip)
+        throws URISyntaxException {
+        log.debug("REST request to export FollowupActions for query {} as {} in the background", query, format);
+        ExportJobDTO job = followupActionExportService.submit(query, format, gzip);
+        return ResponseEntity.accepted().location(new URI("/api/_export/followup-actions/" + job.getId())).body(job);
+    }
+
+    /**
+     * GET  /_export/followup-actions/:id : get the progress of an export.
+     *
+     * @param id the id of the export
+     * @return the ResponseEntity with status 200 (OK) and the progress in body, or with status 404 (Not Found)
+     */
+    @GetMapping("/_export/followup-actions/{id}")
+    @Timed
+    public ResponseEntity<ExportJobDTO> getFollowupActionsExport(@PathVariable String id) {
+        log.debug("REST request to get the progress of export {}", id);
+        return ResponseUtil.wrapOrNotFound(Optional.ofNullable(followupActionExportService.getJob(id)));
+    }
+
+    /**
+     * GET  /_export/followup-actions/:id/file : download the file of a completed export.
+     *
+     * @param id the id of the export
+     * @return the ResponseEntity with status 200 (OK) and the file in body, with status 409 (Conflict) if the export
+     * has not completed, or with status 404 (Not Found)
+     */
+    @GetMapping("/_export/followup-actions/{id}/file")
+    @Timed
+    public ResponseEntity<Resource> downloadFollowupActionsExport(@PathVariable String id) {
+        log.debug("REST request to download export {}", id);
+        ExportJobDTO job = followupActionExportService.getJob(id);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        Path file = followupActionExportService.getFile(id);
+        if (file == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(job.isGzip() ? "application/gzip" : job.getFormat().getContentType()))
+            .header("content-disposition", "attachment;filename=" + exportFileName(job.getFormat(), job.isGzip()))
+            .body(new FileSystemResource(file.toFile()));
+    }
+
+    /**
+     * DELETE  /_export/followup-actions/:id : cancel an export that has not finished yet.
+     *
+     * @param id the id of the export
+     * @return the ResponseEntity with status 200 (OK) and the progress in body, or with status 404 (Not Found)
+     */
+    @DeleteMapping("/_export/followup-actions/{id}")
+    @Timed
+    public ResponseEntity<ExportJobDTO> cancelFollowupActionsExport(@PathVariable String id) {
+        log.debug("REST request to cancel export {}", id);
+        return ResponseUtil.wrapOrNotFound(Optional.ofNullable(followupActionExportService.cancel(id)));
+    }
+
+    private static String exportFileName(ExportFormat format, boolean gzip) {
+        return "export" + format.getExtension() + (gzip ? ".gz" : "");
+    }
+
+    /**
+     * Utility private method for transforming the facets of a {@link FacetedPage} into a {@link Map} of categories.
      * @param page the page of results
-     * @return results as a Map
+     * @return categories as a Map
      */
-    private Map<String, Object> getResultMapMapForResults(FacetedPage<FollowupAction> page) {
+    private Map<String, Set<Map<String, Object>>> getCategories(FacetedPage<FollowupAction> page) {
 
         Set<String> items = new HashSet<>();
         items.add("types");
@@ -317,29 +453,33 @@ public class FollowupActionResource {
             facetsMap.put(key, mapSet);
         }
         log.debug("facetsMap {}", facetsMap);
-        Map<String, Object> resultsMap = new HashMap<>();
-        resultsMap.put("results", page.getContent());
-        resultsMap.put("categories", facetsMap);
+        return facetsMap;
+    }
 
-        return resultsMap;
+    /**
+     * POST  /_index/followup-actions : rebuild the index of all the followup-actions in the background.
+     *
+     * @return the ResponseEntity with status 202 (Accepted) and with body the progress of the rebuild
+     */
+    @PostMapping("/_index/followup-actions")
+    @Timed
+    public ResponseEntity<ReindexStatusDTO> indexFollowupActions() {
+        log.debug("REST request to bulk index all followup actions");
+        return ResponseEntity.accepted().body(followupActionService.indexAll());
     }
 
     /**
-     * INDEX  /_index/followup-actions : index all followup-actions
+     * GET  /_index/followup-actions : get the progress and throughput of the last rebuild of the index of the
+     * followup-actions.
      *
-     * @return the result of the index action
-     * @throws URISyntaxException if there is an error to generate the pagination HTTP headers
+     * @return the ResponseEntity with status 200 (OK) and with body the progress of the rebuild, or with status
+     * 404 (Not Found) if the index has not been rebuilt
      */
     @GetMapping("/_index/followup-actions")
     @Timed
-    public ResponseEntity<Boolean> indexFollowupActions() throws URISyntaxException {
-        log.debug("REST request to bulk index all followup actions");
-        Boolean result = followupActionService.indexAll();
-        if (result) {
-            return ResponseEntity.ok().body(true);
-        } else {
-            return ResponseEntity.badRequest().body(result);
-        }
+    public ResponseEntity<ReindexStatusDTO> getFollowupActionsIndexStatus() {
+        log.debug("REST request to get the progress of the index of followup actions");
+        return ResponseUtil.wrapOrNotFound(Optional.ofNullable(followupActionService.getIndexStatus()));
     }
 
 }
@@ -31,6 +31,7 @@ import com.noesisinformatica.northumbriaproms.web.rest.errors.BadRequestAlertExc
 import com.noesisinformatica.northumbriaproms.web.rest.util.HeaderUtil;
 import com.noesisinformatica.northumbriaproms.web.rest.util.PaginationUtil;
 import com.noesisinformatica.northumbriaproms.service.dto.PatientCriteria;
+import com.noesisinformatica.northumbriaproms.service.search.CursorPage;
 import com.noesisinformatica.northumbriaproms.service.PatientQueryService;
 import io.github.jhipster.web.util.ResponseUtil;
 import org.slf4j.Logger;
@@ -42,6 +43,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -130,6 +132,36 @@ public class PatientResource {
         return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
     }
 
+    /**
+     * GET  /patients/cursor : get a page of the patients after the cursor of the previous page, which costs no more
+     * however deep the page is. The cursor of the next page is returned in the headers.
+     *
+     * @param criteria the criterias which the requested entities should match
+     * @param cursor the cursor returned with the previous page, or none for the first page
+     * @param count whether to count all the matching patients, returned in the X-Total-Count header
+     * @param pageable the size of the page, and the sort of the first page
+     * @param request the request, whose parameters are kept in the links to the other pages
+     * @return the ResponseEntity with status 200 (OK) and the list of patients in body,
+     * or with status 400 (Bad Request) if the cursor is invalid
+     */
+    @GetMapping("/patients/cursor")
+    @Timed
+    public ResponseEntity<List<Patient>> getPatientsAfter(PatientCriteria criteria,
+                                                          @RequestParam(required = false) String cursor,
+                                                          @RequestParam(defaultValue = "false") boolean count,
+                                                          Pageable pageable, HttpServletRequest request) {
+        log.debug("REST request to get Patients by criteria: {} after {}", criteria, cursor);
+        CursorPage<Patient> page;
+        try {
+            page = patientQueryService.findByCriteriaAfter(criteria, cursor, pageable, count);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "invalidcursor");
+        }
+        HttpHeaders headers = PaginationUtil.generateCursorPaginationHttpHeaders(page.getNextCursor(),
+            page.getTotalElements(), pageable.getPageSize(), "/api/patients/cursor", request.getQueryString());
+        return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
+    }
+
     /**
      * GET  /patients/:id : get the "id" patient.
      *
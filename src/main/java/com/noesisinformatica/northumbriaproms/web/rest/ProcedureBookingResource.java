@@ -29,9 +29,12 @@ import com.noesisinformatica.northumbriaproms.domain.FollowupPlan;
 import com.noesisinformatica.northumbriaproms.domain.Patient;
 import com.noesisinformatica.northumbriaproms.domain.ProcedureBooking;
 import com.noesisinformatica.northumbriaproms.service.PatientService;
+import com.noesisinformatica.northumbriaproms.service.ProcedureBookingImportService;
 import com.noesisinformatica.northumbriaproms.service.ProcedureBookingQueryService;
 import com.noesisinformatica.northumbriaproms.service.ProcedureBookingService;
+import com.noesisinformatica.northumbriaproms.service.dto.BulkImportResultDTO;
 import com.noesisinformatica.northumbriaproms.service.dto.ProcedureBookingCriteria;
+import com.noesisinformatica.northumbriaproms.service.search.CursorPage;
 import com.noesisinformatica.northumbriaproms.web.rest.errors.BadRequestAlertException;
 import com.noesisinformatica.northumbriaproms.web.rest.util.HeaderUtil;
 import com.noesisinformatica.northumbriaproms.web.rest.util.PaginationUtil;
@@ -45,8 +48,13 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Optional;
 
@@ -65,13 +73,16 @@ public class ProcedureBookingResource {
 
     private final ProcedureBookingQueryService procedureBookingQueryService;
     private final PatientService patientService;
+    private final ProcedureBookingImportService procedureBookingImportService;
 
     public ProcedureBookingResource(ProcedureBookingService procedureBookingService,
                                     ProcedureBookingQueryService procedureBookingQueryService,
-                                    PatientService patientService) {
+                                    PatientService patientService,
+                                    ProcedureBookingImportService procedureBookingImportService) {
         this.procedureBookingService = procedureBookingService;
         this.procedureBookingQueryService = procedureBookingQueryService;
         this.patientService = patientService;
+        this.procedureBookingImportService = procedureBookingImportService;
     }
 
     /**
@@ -93,7 +104,6 @@ public class ProcedureBookingResource {
         if(existingPatient != null) {
             procedureBooking.setPatient(existingPatient);
             ProcedureBooking result = procedureBookingService.save(procedureBooking);
-            existingPatient.addProcedureBookings(result);
             patientService.save(existingPatient);
             return ResponseEntity.created(new URI("/api/procedure-bookings/" + result.getId()))
                 .headers(HeaderUtil.createEntityCreationAlert(ENTITY_NAME, result.getId().toString()))
@@ -123,7 +133,6 @@ public class ProcedureBookingResource {
         Patient existingPatient = patientService.findOne(patientId);
         if(existingPatient != null) {
             ProcedureBooking result = procedureBookingService.save(procedureBooking);
-            existingPatient.addProcedureBookings(result);
             patientService.save(existingPatient);
             return ResponseEntity.ok()
                 .headers(HeaderUtil.createEntityUpdateAlert(ENTITY_NAME, procedureBooking.getId().toString()))
@@ -149,6 +158,36 @@ public class ProcedureBookingResource {
         return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
     }
 
+    /**
+     * GET  /procedure-bookings/cursor : get a page of the procedureBookings after the cursor of the previous page, which costs no more
+     * however deep the page is. The cursor of the next page is returned in the headers.
+     *
+     * @param criteria the criterias which the requested entities should match
+     * @param cursor the cursor returned with the previous page, or none for the first page
+     * @param count whether to count all the matching procedureBookings, returned in the X-Total-Count header
+     * @param pageable the size of the page, and the sort of the first page
+     * @param request the request, whose parameters are kept in the links to the other pages
+     * @return the ResponseEntity with status 200 (OK) and the list of procedureBookings in body,
+     * or with status 400 (Bad Request) if the cursor is invalid
+     */
+    @GetMapping("/procedure-bookings/cursor")
+    @Timed
+    public ResponseEntity<List<ProcedureBooking>> getProcedureBookingsAfter(ProcedureBookingCriteria criteria,
+                                                                            @RequestParam(required = false) String cursor,
+                                                                            @RequestParam(defaultValue = "false") boolean count,
+                                                                            Pageable pageable, HttpServletRequest request) {
+        log.debug("REST request to get ProcedureBookings by criteria: {} after {}", criteria, cursor);
+        CursorPage<ProcedureBooking> page;
+        try {
+            page = procedureBookingQueryService.findByCriteriaAfter(criteria, cursor, pageable, count);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "invalidcursor");
+        }
+        HttpHeaders headers = PaginationUtil.generateCursorPaginationHttpHeaders(page.getNextCursor(),
+            page.getTotalElements(), pageable.getPageSize(), "/api/procedure-bookings/cursor", request.getQueryString());
+        return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
+    }
+
     /**
      * GET  /procedure-bookings/:id : get the "id" procedureBooking.
      *
@@ -236,4 +275,45 @@ public class ProcedureBookingResource {
         return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
     }
 
+    /**
+     * POST  /_bulk/procedure-bookings : Create new procedureBookings in bulk.
+     *
+     * @param procedureBookings the procedureBookings to create, each referencing an existing patient by id or NHS number
+     * @param chunkSize the number of bookings written, indexed and published together (optional)
+     * @return the ResponseEntity with status 200 (OK) and with body the result of the import, including the rows that failed
+     */
+    @PostMapping("/_bulk/procedure-bookings")
+    @Timed
+    public ResponseEntity<BulkImportResultDTO> bulkCreateProcedureBookings(@RequestBody List<ProcedureBooking> procedureBookings,
+                                                                           @RequestParam(required = false) Integer chunkSize) {
+        log.debug("REST request to bulk save {} ProcedureBookings", procedureBookings.size());
+        BulkImportResultDTO result = procedureBookingImportService.importBookings(procedureBookings, chunkSize);
+        return ResponseEntity.ok().body(result);
+    }
+
+    /**
+     * POST  /_import/procedure-bookings : Import procedureBookings from a CSV body, which is read as a stream.
+     * <p>
+     * The first row must be a header naming the columns; see
+     * {@link com.noesisinformatica.northumbriaproms.service.mapper.ProcedureBookingCsvMapper} for the supported columns.
+     *
+     * @param body the CSV content
+     * @param chunkSize the number of bookings written, indexed and published together (optional)
+     * @return the ResponseEntity with status 200 (OK) and with body the result of the import, including the rows that failed
+     * @throws IOException if the request body could not be read
+     */
+    @PostMapping(value = "/_import/procedure-bookings", consumes = "text/csv")
+    @Timed
+    public ResponseEntity<BulkImportResultDTO> importProcedureBookings(InputStream body,
+                                                                       @RequestParam(required = false) Integer chunkSize) throws IOException {
+        log.debug("REST request to import ProcedureBookings from CSV");
+        try {
+            BulkImportResultDTO result = procedureBookingImportService.importCsv(
+                new InputStreamReader(body, StandardCharsets.UTF_8), chunkSize);
+            return ResponseEntity.ok().body(result);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "invalidcsv");
+        }
+    }
+
 }
@@ -0,0 +1,104 @@
+package com.noesisinformatica.northumbriaproms.web.rest;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.codahale.metrics.annotation.Timed;
+import com.noesisinformatica.northumbriaproms.service.ReindexService;
+import com.noesisinformatica.northumbriaproms.service.dto.ReindexStatusDTO;
+import io.github.jhipster.web.util.ResponseUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * REST controller for rebuilding the search indices from the database.
+ */
+@RestController
+@RequestMapping("/api")
+public class ReindexResource {
+
+    private final Logger log = LoggerFactory.getLogger(ReindexResource.class);
+
+    private final ReindexService reindexService;
+
+    public ReindexResource(ReindexService reindexService) {
+        this.reindexService = reindexService;
+    }
+
+    /**
+     * GET  /_index : get the progress of the last rebuild of the index of each document type.
+     *
+     * @return the ResponseEntity with status 200 (OK) and the list of progresses in body
+     */
+    @GetMapping("/_index")
+    @Timed
+    public List<ReindexStatusDTO> getIndexStatuses() {
+        log.debug("REST request to get the progress of all indices");
+        return reindexService.getStatuses();
+    }
+
+    /**
+     * POST  /_index : rebuild the indices of all the document types in the background.
+     *
+     * @return the ResponseEntity with status 202 (Accepted) and the list of progresses in body
+     */
+    @PostMapping("/_index")
+    @Timed
+    public ResponseEntity<List<ReindexStatusDTO>> reindexAll() {
+        log.debug("REST request to reindex all document types");
+        return ResponseEntity.accepted().body(reindexService.reindexAll());
+    }
+
+    /**
+     * GET  /_index/:documentType : get the progress of the last rebuild of the index of a document type.
+     *
+     * @param documentType the name of the document type or of its index
+     * @return the ResponseEntity with status 200 (OK) and the progress in body, or with status 404 (Not Found)
+     */
+    @GetMapping("/_index/{documentType}")
+    @Timed
+    public ResponseEntity<ReindexStatusDTO> getIndexStatus(@PathVariable String documentType) {
+        log.debug("REST request to get the progress of the index of {}", documentType);
+        return ResponseUtil.wrapOrNotFound(Optional.ofNullable(reindexService.getStatus(documentType)));
+    }
+
+    /**
+     * POST  /_index/:documentType : rebuild the index of a document type in the background.
+     *
+     * @param documentType the name of the document type or of its index
+     * @return the ResponseEntity with status 202 (Accepted) and the progress in body, or with status 404 (Not Found)
+     */
+    @PostMapping("/_index/{documentType}")
+    @Timed
+    public ResponseEntity<ReindexStatusDTO> reindex(@PathVariable String documentType) {
+        log.debug("REST request to reindex {}", documentType);
+        ReindexStatusDTO status = reindexService.reindex(documentType);
+        return status != null ? ResponseEntity.accepted().body(status) : ResponseEntity.notFound().build();
+    }
+}
@@ -66,6 +66,58 @@ public final class PaginationUtil {
         return headers;
     }
 
+    /**
+     * Generate the headers of a page read after a cursor: the link to the next page, which carries the opaque cursor
+     * of the next page rather than a page number, and the link to the first page.
+     *
+     * @param nextCursor the cursor of the next page, or null if this is the last page
+     * @param totalElements the total number of elements, or null if it is not known
+     * @param size the size of the pages
+     * @param baseUrl the url of the pages
+     * @return the headers
+     */
+    public static HttpHeaders generateCursorPaginationHttpHeaders(String nextCursor, Long totalElements, int size,
+                                                                  String baseUrl) {
+        return generateCursorPaginationHttpHeaders(nextCursor, totalElements, size, baseUrl, null);
+    }
+
+    /**
+     * Generate the headers of a page read after a cursor, with links which keep the other parameters of the request,
+     * such as the criteria of the page.
+     *
+     * @param nextCursor the cursor of the next page, or null if this is the last page
+     * @param totalElements the total number of elements, or null if it is not known
+     * @param size the size of the pages
+     * @param baseUrl the url of the pages
+     * @param queryString the encoded query string of the request, or null if it has none
+     * @return the headers
+     */
+    public static HttpHeaders generateCursorPaginationHttpHeaders(String nextCursor, Long totalElements, int size,
+                                                                  String baseUrl, String queryString) {
+        HttpHeaders headers = new HttpHeaders();
+        if (totalElements != null) {
+            headers.add("X-Total-Count", Long.toString(totalElements));
+        }
+        String link = "";
+        if (nextCursor != null) {
+            headers.add("X-Next-Cursor", nextCursor);
+            link = "<" + generateCursorUri(baseUrl, queryString, nextCursor, size) + ">; rel=\"next\",";
+        }
+        link += "<" + generateCursorUri(baseUrl, queryString, null, size) + ">; rel=\"first\"";
+        headers.add(HttpHeaders.LINK, link);
+        return headers;
+    }
+
+    private static String generateCursorUri(String baseUrl, String queryString, String cursor, int size) {
+        UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(baseUrl).query(queryString)
+            .replaceQueryParam("cursor").replaceQueryParam("size");
+        if (cursor != null) {
+            builder.queryParam("cursor", cursor);
+        }
+        // the query string is already encoded, and cursors are url safe
+        return builder.queryParam("size", size).build(true).toUriString();
+    }
+
     private static String generateUri(String baseUrl, int page, int size) {
         return UriComponentsBuilder.fromUriString(baseUrl).queryParam("page", page).queryParam("size", size).toUriString();
     }
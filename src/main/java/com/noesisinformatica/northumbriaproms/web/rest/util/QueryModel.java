@@ -25,7 +25,10 @@ package com.noesisinformatica.northumbriaproms.web.rest.util;
  */
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 /**
  * A wrapper for query model with various attributes on {@link com.noesisinformatica.northumbriaproms.domain.FollowupAction}.
@@ -158,6 +161,63 @@ public class QueryModel {
             && sides.isEmpty() && careEvents.isEmpty() && (token == null);
     }
 
+    /**
+     * Get the query searched for this query: the same values in a set order, without duplicates and without the
+     * token when it is too short to be searched. Queries searching the same actions, in any order, are equal once
+     * normalised.
+     *
+     * @return the normalised query
+     */
+    public QueryModel normalised() {
+        QueryModel normalised = new QueryModel();
+        if (isEmpty()) {
+            return normalised;
+        }
+        normalised.procedures = normalise(procedures);
+        normalised.consultants = normalise(consultants);
+        normalised.locations = normalise(locations);
+        normalised.patientIds = normalise(patientIds);
+        normalised.phases = normalise(phases);
+        normalised.types = normalise(types);
+        normalised.genders = normalise(genders);
+        normalised.sides = normalise(sides);
+        normalised.statuses = normalise(statuses);
+        normalised.careEvents = normalise(careEvents);
+        normalised.minAge = minAge;
+        normalised.maxAge = maxAge;
+        normalised.token = token != null && token.length() > 2 && !"null".equalsIgnoreCase(token) ? token : null;
+        return normalised;
+    }
+
+    private static List<String> normalise(List<String> values) {
+        return values.stream().distinct().sorted(Comparator.nullsFirst(Comparator.naturalOrder()))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        QueryModel that = (QueryModel) o;
+        return Objects.equals(procedures, that.procedures) && Objects.equals(consultants, that.consultants)
+            && Objects.equals(locations, that.locations) && Objects.equals(patientIds, that.patientIds)
+            && Objects.equals(phases, that.phases) && Objects.equals(types, that.types)
+            && Objects.equals(genders, that.genders) && Objects.equals(sides, that.sides)
+            && Objects.equals(statuses, that.statuses) && Objects.equals(careEvents, that.careEvents)
+            && Objects.equals(minAge, that.minAge) && Objects.equals(maxAge, that.maxAge)
+            && Objects.equals(token, that.token);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(procedures, consultants, locations, patientIds, phases, types, genders, sides, statuses,
+            careEvents, minAge, maxAge, token);
+    }
+
     @Override
     public String toString() {
         final StringBuffer sb = new StringBuffer("QueryModel{");
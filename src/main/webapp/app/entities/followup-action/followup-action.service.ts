@@ -65,9 +65,12 @@ export class FollowupActionService {
         return this.http.delete(`${this.resourceUrl}/${id}`);
     }
 
-    indexAll(): Observable<ResponseWrapper> {
-        return this.http.get(this.resourceIndexUrl)
-            .map((res: Response) => this.convertResponse(res));
+    indexAll(): Observable<Response> {
+        return this.http.post(this.resourceIndexUrl, {});
+    }
+
+    indexStatus(): Observable<Response> {
+        return this.http.get(this.resourceIndexUrl);
     }
 
     search(req?: any): Observable<ResponseWrapper> {
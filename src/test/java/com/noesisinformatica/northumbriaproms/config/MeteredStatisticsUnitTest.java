@@ -0,0 +1,99 @@
+package com.noesisinformatica.northumbriaproms.config;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Test class for the MeteredStatistics.
+ *
+ * @see MeteredStatistics
+ */
+public class MeteredStatisticsUnitTest {
+
+    private MeteredStatistics statistics;
+
+    @Before
+    public void setup() {
+        statistics = new MeteredStatistics(mock(SessionFactoryImplementor.class));
+        statistics.setStatisticsEnabled(true);
+        statistics.setSlowQueryThreshold(100);
+        statistics.setSlowQuerySamples(2);
+    }
+
+    @Test
+    public void testEveryQueryIsTimed() {
+        statistics.queryExecuted("select p from Patient p", 3, 5);
+        statistics.queryExecuted("select p from Patient p", 3, 150);
+
+        assertThat(statistics.getQueryTimer().getCount()).isEqualTo(2);
+        assertThat(statistics.getQueryExecutionCount()).isEqualTo(2);
+        assertThat(statistics.getQueryExecutionMaxTime()).isEqualTo(150);
+    }
+
+    @Test
+    public void testOnlySlowQueriesAreSampled() {
+        statistics.queryExecuted("select p from Patient p where p.id = :id", 1, 5);
+        statistics.queryExecuted("select p from Patient p where p.nhsNumber = ?1 and p.id > ?2", 1, 100);
+
+        assertThat(statistics.getSlowQueries()).hasSize(1);
+        MeteredStatistics.SlowQuery slowQuery = statistics.getSlowQueries().get(0);
+        assertThat(slowQuery.getTime()).isEqualTo(100);
+        assertThat(slowQuery.getRows()).isEqualTo(1);
+        assertThat(slowQuery.getBindParameters()).isEqualTo(2);
+    }
+
+    @Test
+    public void testSlowQuerySamplesAreBoundedMostRecentFirst() {
+        statistics.queryExecuted("first", 0, 200);
+        statistics.queryExecuted("second", 0, 300);
+        statistics.queryExecuted("third", 0, 400);
+
+        assertThat(statistics.getSlowQueries()).extracting(MeteredStatistics.SlowQuery::getQuery)
+            .containsExactly("third", "second");
+
+        statistics.clear();
+        assertThat(statistics.getSlowQueries()).isEmpty();
+    }
+
+    @Test
+    public void testCountBindParameters() {
+        assertThat(MeteredStatistics.countBindParameters(null)).isEqualTo(0);
+        assertThat(MeteredStatistics.countBindParameters("select 1")).isEqualTo(0);
+        assertThat(MeteredStatistics.countBindParameters("select * from patient where id = ? and nhs_number = ?"))
+            .isEqualTo(2);
+        assertThat(MeteredStatistics.countBindParameters("from Patient p where p.familyName = :name or p.id in (:ids)"))
+            .isEqualTo(2);
+        assertThat(MeteredStatistics.countBindParameters("select * from patient where family_name = 'a?b:c' and id = ?"))
+            .isEqualTo(1);
+        assertThat(MeteredStatistics.countBindParameters("select cast(id as text)::varchar from patient"))
+            .isEqualTo(0);
+    }
+}
@@ -0,0 +1,119 @@
+package com.noesisinformatica.northumbriaproms.config;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.setCurrentTransactionReadOnly;
+
+/**
+ * Test class for the ReplicaRoutingDataSource.
+ *
+ * @see ReplicaRoutingDataSource
+ */
+public class ReplicaRoutingDataSourceUnitTest {
+
+    private final Connection primaryConnection = mock(Connection.class);
+    private final Connection firstReplicaConnection = mock(Connection.class);
+    private final Connection secondReplicaConnection = mock(Connection.class);
+
+    private DataSource secondReplica;
+
+    private ReplicaRoutingDataSource routingDataSource;
+
+    @Before
+    public void setup() throws SQLException {
+        DataSource primary = mock(DataSource.class);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        DataSource firstReplica = mock(DataSource.class);
+        when(firstReplica.getConnection()).thenReturn(firstReplicaConnection);
+        secondReplica = mock(DataSource.class);
+        when(secondReplica.getConnection()).thenReturn(secondReplicaConnection);
+        routingDataSource = new ReplicaRoutingDataSource(primary, Arrays.asList(firstReplica, secondReplica), 60000);
+        routingDataSource.afterPropertiesSet();
+    }
+
+    @After
+    public void tearDown() {
+        setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    public void sendReadWriteTransactionsToPrimary() throws SQLException {
+        assertThat(routingDataSource.getConnection()).isSameAs(primaryConnection);
+    }
+
+    @Test
+    public void sendReadOnlyTransactionsToReplicasInTurn() throws SQLException {
+        setCurrentTransactionReadOnly(true);
+
+        assertThat(routingDataSource.getConnection()).isSameAs(firstReplicaConnection);
+        assertThat(routingDataSource.getConnection()).isSameAs(secondReplicaConnection);
+        assertThat(routingDataSource.getConnection()).isSameAs(firstReplicaConnection);
+    }
+
+    @Test
+    public void sendReadOnlyTransactionsToPrimaryAfterWrite() throws SQLException {
+        setCurrentTransactionReadOnly(true);
+        routingDataSource.recordWrite();
+
+        assertThat(routingDataSource.getConnection()).isSameAs(primaryConnection);
+    }
+
+    @Test
+    public void sendReadOnlyTransactionsToPrimaryWhenReadingFromPrimary() throws SQLException {
+        setCurrentTransactionReadOnly(true);
+
+        Connection connection = ReplicaRoutingDataSource.readFromPrimary(() -> {
+            try {
+                return routingDataSource.getConnection();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertThat(connection).isSameAs(primaryConnection);
+        assertThat(routingDataSource.getConnection()).isSameAs(firstReplicaConnection);
+    }
+
+    @Test
+    public void fallBackToPrimaryWhenReplicaIsUnavailable() throws SQLException {
+        when(secondReplica.getConnection()).thenThrow(new SQLException("Connection refused"));
+        setCurrentTransactionReadOnly(true);
+
+        assertThat(routingDataSource.getConnection()).isSameAs(firstReplicaConnection);
+        assertThat(routingDataSource.getConnection()).isSameAs(primaryConnection);
+    }
+}
@@ -0,0 +1,56 @@
+package com.noesisinformatica.northumbriaproms.config;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Counts the SQL statements Hibernate prepares on the current thread, so that a test can tell the statements of the
+ * request it sends from those of the scheduled jobs running beside it.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<Long> COUNT = ThreadLocal.withInitial(() -> 0L);
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.set(COUNT.get() + 1);
+        return sql;
+    }
+
+    /**
+     * Reset the count of the current thread.
+     */
+    public static void reset() {
+        COUNT.remove();
+    }
+
+    /**
+     * @return the number of statements prepared on the current thread since it was last reset
+     */
+    public static long count() {
+        return COUNT.get();
+    }
+}
@@ -0,0 +1,159 @@
+package com.noesisinformatica.northumbriaproms.service;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.noesisinformatica.northumbriaproms.NorthumbriapromsApp;
+import com.noesisinformatica.northumbriaproms.config.ApplicationProperties;
+import com.noesisinformatica.northumbriaproms.domain.CareEvent;
+import com.noesisinformatica.northumbriaproms.domain.FollowupAction;
+import com.noesisinformatica.northumbriaproms.domain.JobCheckpoint;
+import com.noesisinformatica.northumbriaproms.domain.enumeration.ActionStatus;
+import com.noesisinformatica.northumbriaproms.repository.CareEventRepository;
+import com.noesisinformatica.northumbriaproms.repository.FollowupActionRepository;
+import com.noesisinformatica.northumbriaproms.repository.JobCheckpointRepository;
+import com.noesisinformatica.northumbriaproms.web.rest.CareEventResourceIntTest;
+import com.noesisinformatica.northumbriaproms.web.rest.ProcedureBookingResourceIntTest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the ActionStatusTransitionService.
+ *
+ * @see ActionStatusTransitionService
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = NorthumbriapromsApp.class)
+@Transactional
+public class ActionStatusTransitionServiceIntTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2018, 3, 1);
+
+    @Autowired
+    private ActionStatusTransitionService actionStatusTransitionService;
+
+    @Autowired
+    private FollowupActionRepository followupActionRepository;
+
+    @Autowired
+    private CareEventRepository careEventRepository;
+
+    @Autowired
+    private JobCheckpointRepository jobCheckpointRepository;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private EntityManager em;
+
+    private int chunkSize;
+
+    private CareEvent careEvent;
+
+    @Before
+    public void init() {
+        chunkSize = applicationProperties.getStatusTransition().getChunkSize();
+        careEvent = createCareEvent(LocalDate.of(2018, 1, 10));
+    }
+
+    @After
+    public void restoreChunkSize() {
+        applicationProperties.getStatusTransition().setChunkSize(chunkSize);
+    }
+
+    @Test
+    public void startDueActionsInChunks() {
+        applicationProperties.getStatusTransition().setChunkSize(1);
+        FollowupAction due = createAction(careEvent, TODAY.minusDays(3));
+        FollowupAction dueToday = createAction(careEvent, TODAY);
+        FollowupAction notDue = createAction(careEvent, TODAY.plusDays(1));
+
+        int started = actionStatusTransitionService.startDueActions(TODAY);
+
+        assertThat(started).isEqualTo(2);
+        assertThat(statusOf(due)).isEqualTo(ActionStatus.STARTED);
+        assertThat(statusOf(dueToday)).isEqualTo(ActionStatus.STARTED);
+        assertThat(statusOf(notDue)).isEqualTo(ActionStatus.UNINITIALISED);
+        assertThat(careEventRepository.findOne(careEvent.getId()).getStatus()).isEqualTo(ActionStatus.STARTED);
+        JobCheckpoint checkpoint = jobCheckpointRepository.findOne("action-status-transition");
+        assertThat(checkpoint.getCheckpointDate()).isEqualTo(TODAY);
+        assertThat(checkpoint.getCheckpointId()).isEqualTo(dueToday.getId());
+    }
+
+    @Test
+    public void markDueActionsOfUnperformedProceduresAsUnknown() {
+        CareEvent unperformed = createCareEvent(null);
+        FollowupAction due = createAction(unperformed, TODAY.minusDays(1));
+
+        actionStatusTransitionService.startDueActions(TODAY);
+
+        assertThat(statusOf(due)).isEqualTo(ActionStatus.UNKNOWN);
+        assertThat(careEventRepository.findOne(unperformed.getId()).getStatus()).isEqualTo(ActionStatus.UNKNOWN);
+    }
+
+    @Test
+    public void startOnlyActionsDueSinceThePreviousRun() {
+        FollowupAction due = createAction(careEvent, TODAY.minusDays(1));
+        FollowupAction notDue = createAction(careEvent, TODAY.plusDays(2));
+        actionStatusTransitionService.startDueActions(TODAY);
+        FollowupAction beforeCheckpoint = createAction(careEvent, TODAY.minusDays(2));
+
+        int started = actionStatusTransitionService.startDueActions(TODAY.plusDays(2));
+
+        assertThat(started).isEqualTo(1);
+        assertThat(statusOf(due)).isEqualTo(ActionStatus.STARTED);
+        assertThat(statusOf(notDue)).isEqualTo(ActionStatus.STARTED);
+        assertThat(statusOf(beforeCheckpoint)).isEqualTo(ActionStatus.UNINITIALISED);
+    }
+
+    private CareEvent createCareEvent(LocalDate performedDate) {
+        return CareEventResourceIntTest.createBookedEntity(em,
+            ProcedureBookingResourceIntTest.createEntity(em).performedDate(performedDate));
+    }
+
+    private FollowupAction createAction(CareEvent careEvent, LocalDate scheduledDate) {
+        FollowupAction action = new FollowupAction().name("PROMS").careEvent(careEvent)
+            .patient(careEvent.getPatient()).scheduledDate(scheduledDate).status(ActionStatus.UNINITIALISED);
+        em.persist(action);
+        em.flush();
+        return action;
+    }
+
+    private ActionStatus statusOf(FollowupAction action) {
+        em.clear();
+        return followupActionRepository.findOne(action.getId()).getStatus();
+    }
+}
@@ -0,0 +1,259 @@
+package com.noesisinformatica.northumbriaproms.service;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.noesisinformatica.northumbriaproms.NorthumbriapromsApp;
+import com.noesisinformatica.northumbriaproms.config.ApplicationProperties;
+import com.noesisinformatica.northumbriaproms.domain.*;
+import com.noesisinformatica.northumbriaproms.domain.enumeration.GenderType;
+import com.noesisinformatica.northumbriaproms.domain.enumeration.TimeUnit;
+import com.noesisinformatica.northumbriaproms.repository.*;
+import com.noesisinformatica.northumbriaproms.service.dto.BulkImportResultDTO;
+import com.noesisinformatica.northumbriaproms.service.messaging.PipelineTransport;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Throughput benchmark comparing the queue and direct modes of followup plan generation for 10k bookings.
+ * <p>
+ * Both modes import the bookings through the bulk import and are timed until all followup actions exist. The
+ * generation of the plans alone is also measured, in rows written per second: the bookings are saved a chunk at a
+ * time, as the bulk import does, and only the generation of their plans, care events and followup actions is timed.
+ * Their documents are written by the index writer in the background, as in production.
+ * Point the test datasource at a MariaDB database to measure the effect of JDBC batching there.
+ * The benchmark only runs when the "benchmark" system property is set, e.g.
+ * {@code ./mvnw test -Dtest=PipelineThroughputBenchmarkIntTest -Dbenchmark=true}. The queue mode also needs
+ * a running RabbitMQ broker and is skipped otherwise, unless the in process transport is used by adding
+ * {@code -Dspring.profiles.active=in-memory-pipeline}.
+ *
+ * @see PlanMaterialisationService
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = NorthumbriapromsApp.class)
+public class PipelineThroughputBenchmarkIntTest {
+
+    private final Logger log = LoggerFactory.getLogger(PipelineThroughputBenchmarkIntTest.class);
+
+    private static final int BOOKINGS = 10000;
+
+    private static final int BOOKINGS_PER_PATIENT = 10;
+
+    // one pre-operative action (OUTCOME is skipped) and two actions for each of the two post-operative events
+    private static final int ACTIONS_PER_BOOKING = 5;
+
+    private static final int CHUNK_SIZE = 500;
+
+    // one plan, three care events and five followup actions (OUTCOME is skipped) for each booking
+    private static final int ROWS_PER_BOOKING = 9;
+
+    private static final int PROCEDURE_LOCAL_CODE = 90210;
+
+    private static final long QUEUE_DRAIN_TIMEOUT_MINUTES = 30;
+
+    @Autowired
+    private ProcedureBookingImportService procedureBookingImportService;
+
+    @Autowired
+    private PlanMaterialisationService planMaterialisationService;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private ProcedureBookingRepository procedureBookingRepository;
+
+    @Autowired
+    private ProcedureRepository procedureRepository;
+
+    @Autowired
+    private TimepointRepository timepointRepository;
+
+    @Autowired
+    private QuestionnaireRepository questionnaireRepository;
+
+    @Autowired
+    private ProcedureTimepointRepository procedureTimepointRepository;
+
+    @Autowired
+    private ProcedurelinkRepository procedurelinkRepository;
+
+    @Autowired
+    private FollowupActionRepository followupActionRepository;
+
+    @Autowired
+    private PipelineTransport pipelineTransport;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private ApplicationProperties.Pipeline.Mode originalMode;
+
+    private boolean originalSynchronousIndexing;
+
+    // the procedure and patients are created once for all the cases, as they are not rolled back
+    private static List<Patient> patients;
+
+    @Before
+    public void setup() {
+        Assume.assumeTrue("Set the benchmark system property to run", Boolean.getBoolean("benchmark"));
+        originalMode = applicationProperties.getPipeline().getMode();
+        originalSynchronousIndexing = applicationProperties.getIndexWriter().isSynchronous();
+        // documents are written in the background once their rows are committed, as in production
+        applicationProperties.getIndexWriter().setSynchronous(false);
+        if (patients != null) {
+            return;
+        }
+
+        Procedure procedure = procedureRepository.save(new Procedure().name("Benchmark knee replacement")
+            .externalCode("BENCH").localCode(PROCEDURE_LOCAL_CODE));
+        for (Timepoint timepoint : new Timepoint[]{
+            new Timepoint().name("Pre-op").value(0).unit(TimeUnit.DAY),
+            new Timepoint().name("6 months").value(6).unit(TimeUnit.MONTH),
+            new Timepoint().name("1 year").value(1).unit(TimeUnit.YEAR)}) {
+            ProcedureTimepoint procedureTimepoint = new ProcedureTimepoint();
+            procedureTimepoint.setProcedure(procedure);
+            procedureTimepoint.setTimepoint(timepointRepository.save(timepoint));
+            procedureTimepointRepository.save(procedureTimepoint);
+        }
+        for (String name : new String[]{"Oxford Knee Score", "Outcome"}) {
+            Procedurelink procedurelink = new Procedurelink();
+            procedurelink.setProcedure(procedure);
+            procedurelink.setQuestionnaire(questionnaireRepository.save(new Questionnaire().name(name)));
+            procedurelinkRepository.save(procedurelink);
+        }
+
+        List<Patient> newPatients = new ArrayList<>();
+        for (int i = 0; i < BOOKINGS / BOOKINGS_PER_PATIENT; i++) {
+            newPatients.add(new Patient().familyName("Benchmark").givenName("Patient " + i)
+                .birthDate(LocalDate.of(1950, 1, 1).plusDays(i)).gender(GenderType.FEMALE)
+                .nhsNumber(9000000000L + i));
+        }
+        patients = patientRepository.save(newPatients);
+    }
+
+    @After
+    public void restoreSettings() {
+        if (originalMode != null) {
+            applicationProperties.getPipeline().setMode(originalMode);
+            applicationProperties.getIndexWriter().setSynchronous(originalSynchronousIndexing);
+        }
+    }
+
+    @Test
+    public void directMode() throws Exception {
+        run(ApplicationProperties.Pipeline.Mode.DIRECT);
+    }
+
+    @Test
+    public void queueMode() throws Exception {
+        Assume.assumeTrue("Pipeline transport is not available", pipelineTransport.isAvailable());
+        run(ApplicationProperties.Pipeline.Mode.QUEUE);
+    }
+
+    @Test
+    public void materialisationOnly() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        List<ProcedureBooking> bookings = createBookings();
+        long rows = 0;
+        long elapsed = 0;
+        for (int offset = 0; offset < BOOKINGS; offset += CHUNK_SIZE) {
+            List<ProcedureBooking> chunk = bookings.subList(offset, offset + CHUNK_SIZE);
+            List<ProcedureBooking> saved = transactionTemplate.execute(status -> procedureBookingRepository.save(chunk));
+
+            long start = System.nanoTime();
+            List<FollowupPlan> plans = planMaterialisationService.materialiseAll(saved);
+            elapsed += System.nanoTime() - start;
+
+            for (FollowupPlan plan : plans) {
+                rows += 1 + plan.getCareEvents().size();
+                rows += plan.getCareEvents().stream().mapToInt(careEvent -> careEvent.getFollowupActions().size()).sum();
+            }
+        }
+
+        assertThat(rows).isEqualTo((long) BOOKINGS * ROWS_PER_BOOKING);
+        double seconds = elapsed / 1e9;
+        log.info("{} followup plans generated in chunks of {} : {} rows in {} ms ({} rows/s, {} bookings/s)",
+            BOOKINGS, CHUNK_SIZE, rows, NANOSECONDS.toMillis(elapsed),
+            String.format("%.1f", rows / seconds), String.format("%.1f", BOOKINGS / seconds));
+    }
+
+    private void run(ApplicationProperties.Pipeline.Mode mode) throws InterruptedException {
+        applicationProperties.getPipeline().setMode(mode);
+        List<ProcedureBooking> bookings = createBookings();
+        long expectedActions = followupActionRepository.count() + (long) BOOKINGS * ACTIONS_PER_BOOKING;
+
+        long start = System.nanoTime();
+        BulkImportResultDTO result = procedureBookingImportService.importBookings(bookings, null);
+        long imported = System.nanoTime();
+        long deadline = imported + MINUTES.toNanos(QUEUE_DRAIN_TIMEOUT_MINUTES);
+        long actions = followupActionRepository.count();
+        while (actions < expectedActions && System.nanoTime() < deadline) {
+            Thread.sleep(250);
+            actions = followupActionRepository.count();
+        }
+        long end = System.nanoTime();
+
+        assertThat(result.getImported()).isEqualTo(BOOKINGS);
+        assertThat(actions).isGreaterThanOrEqualTo(expectedActions);
+        double seconds = (end - start) / 1e9;
+        log.info("{} mode : {} bookings imported in {} ms, all followup actions created after {} ms ({} bookings/s)",
+            mode, BOOKINGS, NANOSECONDS.toMillis(imported - start), NANOSECONDS.toMillis(end - start),
+            String.format("%.1f", BOOKINGS / seconds));
+    }
+
+    private List<ProcedureBooking> createBookings() {
+        LocalDate performedDate = LocalDate.now().minusMonths(3);
+        List<ProcedureBooking> bookings = new ArrayList<>(BOOKINGS);
+        for (int i = 0; i < BOOKINGS; i++) {
+            ProcedureBooking booking = new ProcedureBooking().consultantName("Consultant " + (i % 20))
+                .hospitalSite("Site " + (i % 3)).primaryProcedure(String.valueOf(PROCEDURE_LOCAL_CODE))
+                .scheduledDate(performedDate).performedDate(performedDate);
+            booking.setPatient(patients.get(i / BOOKINGS_PER_PATIENT));
+            bookings.add(booking);
+        }
+        return bookings;
+    }
+}
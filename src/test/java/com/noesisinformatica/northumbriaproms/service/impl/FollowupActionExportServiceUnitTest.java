@@ -0,0 +1,267 @@
+package com.noesisinformatica.northumbriaproms.service.impl;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.noesisinformatica.northumbriaproms.config.ApplicationProperties;
+import com.noesisinformatica.northumbriaproms.domain.FollowupAction;
+import com.noesisinformatica.northumbriaproms.repository.FollowupActionRepository;
+import com.noesisinformatica.northumbriaproms.service.FollowupActionService;
+import com.noesisinformatica.northumbriaproms.service.dto.ExportFormat;
+import com.noesisinformatica.northumbriaproms.service.dto.ExportJobDTO;
+import com.noesisinformatica.northumbriaproms.web.rest.util.QueryModel;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.data.elasticsearch.core.aggregation.impl.AggregatedPageImpl;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the exports of followup actions run in the background.
+ *
+ * @see FollowupActionExportServiceImpl
+ */
+public class FollowupActionExportServiceUnitTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Runnable> queued = new ArrayList<>();
+
+    private boolean queue;
+
+    private ApplicationProperties applicationProperties;
+
+    private FollowupActionExportServiceImpl exportService;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        FollowupActionService followupActionService = mock(FollowupActionService.class);
+        when(followupActionService.streamIds(any(QueryModel.class))).thenAnswer(invocation -> ids(1L, 2L));
+        when(followupActionService.searchCategories(any(QueryModel.class))).thenReturn(
+            new AggregatedPageImpl<FollowupAction>(Collections.emptyList(), null, 2, InternalAggregations.EMPTY));
+        FollowupActionRepository followupActionRepository = mock(FollowupActionRepository.class);
+        when(followupActionRepository.findExportValuesByIdIn(anyCollectionOf(Long.class)))
+            .thenAnswer(invocation -> ((Collection<Long>) invocation.getArguments()[0]).stream()
+                .map(id -> new Object[]{id, "Smith"})
+                .collect(Collectors.toList()));
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getExport().setDirectory(folder.getRoot().getPath());
+        login("user");
+        exportService = new FollowupActionExportServiceImpl(followupActionService, followupActionRepository,
+            task -> {
+                if (queue) {
+                    queued.add(task);
+                } else {
+                    task.run();
+                }
+            }, applicationProperties);
+    }
+
+    @After
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void testWritesExportToFile() throws IOException {
+        ExportJobDTO job = exportService.submit(query("Knee"), ExportFormat.CSV, false);
+
+        assertThat(job.getState()).isEqualTo(ExportJobDTO.State.COMPLETED);
+        assertThat(job.getTotal()).isEqualTo(2);
+        assertThat(job.getExported()).isEqualTo(2);
+        assertThat(job.getExpiresDate()).isNotNull();
+        Path file = exportService.getFile(job.getId());
+        assertThat(Files.readAllLines(file, StandardCharsets.UTF_8)).hasSize(3)
+            .element(1).asString().startsWith("\"1\",\"Smith\"");
+    }
+
+    @Test
+    public void testWritesGzippedExport() throws IOException {
+        ExportJobDTO job = exportService.submit(query("Knee"), ExportFormat.CSV, true);
+
+        Path file = exportService.getFile(job.getId());
+        assertThat(file.getFileName().toString()).endsWith(".csv.gz");
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+            new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            assertThat(reader.lines().count()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    public void testWritesArrowExport() throws IOException {
+        ExportJobDTO job = exportService.submit(query("Knee"), ExportFormat.ARROW, false);
+
+        assertThat(job.getState()).isEqualTo(ExportJobDTO.State.COMPLETED);
+        assertThat(job.getFormat()).isEqualTo(ExportFormat.ARROW);
+        Path file = exportService.getFile(job.getId());
+        assertThat(file.getFileName().toString()).endsWith(".arrow");
+        try (BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+             ArrowStreamReader reader = new ArrowStreamReader(Files.newInputStream(file), allocator)) {
+            assertThat(reader.loadNextBatch()).isTrue();
+            assertThat(reader.getVectorSchemaRoot().getRowCount()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void testReusesExportOfIdenticalQuery() {
+        ExportJobDTO job = exportService.submit(query("Knee", "Hip"), ExportFormat.CSV, false);
+
+        assertThat(exportService.submit(query("Hip", "Knee"), ExportFormat.CSV, false).getId()).isEqualTo(job.getId());
+        assertThat(exportService.submit(query("Hip", "Knee"), ExportFormat.CSV, true).getId()).isNotEqualTo(job.getId());
+        assertThat(exportService.submit(query("Hip"), ExportFormat.CSV, false).getId()).isNotEqualTo(job.getId());
+        assertThat(exportService.submit(query("Hip", "Knee"), ExportFormat.ARROW, false).getId())
+            .isNotEqualTo(job.getId());
+    }
+
+    @Test
+    public void testKeepsExportToItsUser() {
+        ExportJobDTO job = exportService.submit(query("Knee"), ExportFormat.CSV, false);
+
+        login("other");
+
+        assertThat(exportService.getJob(job.getId())).isNull();
+        assertThat(exportService.getFile(job.getId())).isNull();
+        assertThat(exportService.cancel(job.getId())).isNull();
+        assertThat(exportService.submit(query("Knee"), ExportFormat.CSV, false).getId()).isNotEqualTo(job.getId());
+    }
+
+    @Test
+    public void testWritesExportReadableByOwnerOnly() throws IOException {
+        Assume.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        applicationProperties.getExport().setDirectory(folder.getRoot().toPath().resolve("exports").toString());
+
+        ExportJobDTO job = exportService.submit(query("Knee"), ExportFormat.CSV, false);
+
+        Path file = exportService.getFile(job.getId());
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(file))).isEqualTo("rw-------");
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(file.getParent())))
+            .isEqualTo("rwx------");
+    }
+
+    @Test
+    public void testCancelsQueuedExport() {
+        queue = true;
+        ExportJobDTO job = exportService.submit(query("Knee"), ExportFormat.CSV, false);
+        assertThat(job.getState()).isEqualTo(ExportJobDTO.State.QUEUED);
+
+        assertThat(exportService.cancel(job.getId()).getState()).isEqualTo(ExportJobDTO.State.CANCELLED);
+        queued.forEach(Runnable::run);
+
+        assertThat(exportService.getJob(job.getId()).getState()).isEqualTo(ExportJobDTO.State.CANCELLED);
+        assertThat(exportService.getFile(job.getId())).isNull();
+        assertThat(folder.getRoot().list()).isEmpty();
+        assertThat(exportService.submit(query("Knee"), ExportFormat.CSV, false).getId()).isNotEqualTo(job.getId());
+    }
+
+    @Test
+    public void testRemovesExpiredExports() {
+        applicationProperties.getExport().setTtl(0);
+        ExportJobDTO job = exportService.submit(query("Knee"), ExportFormat.CSV, false);
+        assertThat(folder.getRoot().list()).hasSize(1);
+
+        exportService.removeExpiredJobs();
+
+        assertThat(exportService.getJob(job.getId())).isNull();
+        assertThat(folder.getRoot().list()).isEmpty();
+    }
+
+    @Test
+    public void testLeavesOtherFilesOfDirectory() throws IOException {
+        applicationProperties.getExport().setTtl(0);
+        Path other = folder.newFile("notes.csv").toPath();
+        Files.setLastModifiedTime(other, FileTime.from(Instant.now().minusSeconds(60)));
+
+        exportService.removeExpiredJobs();
+
+        assertThat(Files.exists(other)).isTrue();
+    }
+
+    private static void login(String login) {
+        SecurityContext securityContext = SecurityContextHolder.createEmptyContext();
+        securityContext.setAuthentication(new UsernamePasswordAuthenticationToken(login, login));
+        SecurityContextHolder.setContext(securityContext);
+    }
+
+    private static QueryModel query(String... procedures) {
+        QueryModel query = new QueryModel();
+        query.setProcedures(Arrays.asList(procedures));
+        return query;
+    }
+
+    private static CloseableIterator<Long> ids(Long... ids) {
+        Iterator<Long> iterator = Arrays.asList(ids).iterator();
+        return new CloseableIterator<Long>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Long next() {
+                return iterator.next();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -0,0 +1,89 @@
+package com.noesisinformatica.northumbriaproms.service.mapper;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.noesisinformatica.northumbriaproms.domain.enumeration.ActionPhase;
+import com.noesisinformatica.northumbriaproms.domain.enumeration.GenderType;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the FollowupActionArrowWriter.
+ *
+ * @see FollowupActionArrowWriter
+ */
+public class FollowupActionArrowWriterUnitTest {
+
+    @Test
+    public void writeTypedColumnsInBatches() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (FollowupActionArrowWriter writer = new FollowupActionArrowWriter(out, 2)) {
+            writer.write(new Object[]{1L, "Smith", "Jane", 1234567890L, GenderType.FEMALE, 64, "Mr Jones", "RVI",
+                "Knee", LocalDate.of(2017, 3, 9), "OKS", "6 months", 42, LocalDate.of(2017, 9, 1),
+                ActionPhase.POST_OPERATIVE, "Fine"});
+            writer.write(new Object[]{2L});
+            writer.write(new Object[]{3L, "Brown"});
+            writer.finish();
+        }
+
+        try (BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+             ArrowStreamReader reader = new ArrowStreamReader(new ByteArrayInputStream(out.toByteArray()), allocator)) {
+            VectorSchemaRoot root = reader.getVectorSchemaRoot();
+            assertThat(root.getSchema()).isEqualTo(FollowupActionArrowWriter.SCHEMA);
+
+            assertThat(reader.loadNextBatch()).isTrue();
+            assertThat(root.getRowCount()).isEqualTo(2);
+            assertThat(((BigIntVector) root.getVector("id")).get(0)).isEqualTo(1L);
+            assertThat(((BigIntVector) root.getVector("nhs_number")).get(0)).isEqualTo(1234567890L);
+            assertThat(((IntVector) root.getVector("outcomeScore")).get(0)).isEqualTo(42);
+            assertThat(((DateDayVector) root.getVector("performed_date")).get(0))
+                .isEqualTo((int) LocalDate.of(2017, 3, 9).toEpochDay());
+            assertThat(((VarCharVector) root.getVector("phase")).getObject(0).toString()).isEqualTo("POST_OPERATIVE");
+            assertThat(root.getVector("last_name").isNull(1)).isTrue();
+            assertThat(root.getVector("completed_date").isNull(1)).isTrue();
+
+            assertThat(reader.loadNextBatch()).isTrue();
+            assertThat(root.getRowCount()).isEqualTo(1);
+            assertThat(((BigIntVector) root.getVector("id")).get(0)).isEqualTo(3L);
+            assertThat(((VarCharVector) root.getVector("last_name")).getObject(0).toString()).isEqualTo("Brown");
+
+            assertThat(reader.loadNextBatch()).isFalse();
+        }
+    }
+}
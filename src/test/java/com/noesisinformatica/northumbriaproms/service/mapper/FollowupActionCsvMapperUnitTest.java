@@ -0,0 +1,69 @@
+package com.noesisinformatica.northumbriaproms.service.mapper;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.noesisinformatica.northumbriaproms.domain.enumeration.ActionPhase;
+import com.noesisinformatica.northumbriaproms.domain.enumeration.GenderType;
+import org.junit.Test;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the FollowupActionCsvMapper.
+ *
+ * @see FollowupActionCsvMapper
+ */
+public class FollowupActionCsvMapperUnitTest {
+
+    private final FollowupActionCsvMapper mapper = new FollowupActionCsvMapper();
+
+    @Test
+    public void mapValuesInHeaderOrder() {
+        Object[] values = {1L, "Smith", "Jane", 1234567890L, GenderType.FEMALE, 64, "Mr Jones", "RVI", "Knee",
+            LocalDate.of(2017, 3, 9), "OKS", "6 months", 42, LocalDate.of(2017, 9, 1), ActionPhase.POST_OPERATIVE,
+            "Fine"};
+
+        String[] row = mapper.toRow(values);
+
+        assertThat(row).hasSize(FollowupActionCsvMapper.HEADER.length);
+        assertThat(row).containsExactly("1", "Smith", "Jane", "1234567890", "FEMALE", "64", "Mr Jones", "RVI", "Knee",
+            "09/03/2017", "OKS", "6 months", "42", "01/09/2017", "POST_OPERATIVE", "Fine");
+    }
+
+    @Test
+    public void mapMissingValuesToEmptyCells() {
+        Object[] values = new Object[FollowupActionCsvMapper.HEADER.length];
+        values[0] = 2L;
+
+        String[] row = mapper.toRow(values);
+
+        assertThat(row[0]).isEqualTo("2");
+        for (int i = 1; i < row.length; i++) {
+            assertThat(row[i]).isEmpty();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.noesisinformatica.northumbriaproms.service.mapper;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.noesisinformatica.northumbriaproms.domain.ProcedureBooking;
+import com.noesisinformatica.northumbriaproms.domain.enumeration.Laterality;
+import org.junit.Test;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the ProcedureBookingCsvMapper.
+ *
+ * @see ProcedureBookingCsvMapper
+ */
+public class ProcedureBookingCsvMapperUnitTest {
+
+    private static final String[] HEADER = {"nhs_number", "Consultant_Name", "hospital_site", "primary_procedure",
+        "scheduled_date", "performed_date", "side"};
+
+    @Test
+    public void mapsColumnsByHeaderName() {
+        ProcedureBookingCsvMapper mapper = new ProcedureBookingCsvMapper(HEADER);
+
+        ProcedureBooking booking = mapper.toProcedureBooking(
+            new String[]{"9999999060", " Mr Reed ", "Wansbeck", "256", "17/03/2018", "2018-03-20", "left"});
+
+        assertThat(booking.getPatient().getNhsNumber()).isEqualTo(9999999060L);
+        assertThat(booking.getPatient().getId()).isNull();
+        assertThat(booking.getConsultantName()).isEqualTo("Mr Reed");
+        assertThat(booking.getHospitalSite()).isEqualTo("Wansbeck");
+        assertThat(booking.getPrimaryProcedure()).isEqualTo("256");
+        assertThat(booking.getScheduledDate()).isEqualTo(LocalDate.of(2018, 3, 17));
+        assertThat(booking.getPerformedDate()).isEqualTo(LocalDate.of(2018, 3, 20));
+        assertThat(booking.getSide()).isEqualTo(Laterality.LEFT);
+        assertThat(booking.getId()).isNull();
+    }
+
+    @Test
+    public void treatsBlankAndMissingValuesAsNull() {
+        ProcedureBookingCsvMapper mapper = new ProcedureBookingCsvMapper(HEADER);
+
+        ProcedureBooking booking = mapper.toProcedureBooking(new String[]{"9999999060", "Mr Reed", "Wansbeck", "256", ""});
+
+        assertThat(booking.getScheduledDate()).isNull();
+        assertThat(booking.getPerformedDate()).isNull();
+        assertThat(booking.getSide()).isNull();
+        assertThat(booking.getOtherProcedures()).isNull();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidDate() {
+        new ProcedureBookingCsvMapper(HEADER).toProcedureBooking(
+            new String[]{"9999999060", "Mr Reed", "Wansbeck", "256", "31/31/2018"});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsRowWithoutPatient() {
+        new ProcedureBookingCsvMapper(HEADER).toProcedureBooking(new String[]{"", "Mr Reed", "Wansbeck", "256"});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsHeaderWithoutPatientColumn() {
+        new ProcedureBookingCsvMapper(new String[]{"consultant_name", "hospital_site"});
+    }
+}
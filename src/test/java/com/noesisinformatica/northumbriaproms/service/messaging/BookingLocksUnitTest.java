@@ -0,0 +1,60 @@
+package com.noesisinformatica.northumbriaproms.service.messaging;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the BookingLocks.
+ *
+ * @see BookingLocks
+ */
+public class BookingLocksUnitTest {
+
+    @Test
+    public void usesSameLockForMessagesOfOneBooking() {
+        BookingLocks locks = new BookingLocks(16);
+
+        assertThat(locks.lockFor(new PipelineMessage(PipelineEventType.BOOKING_SAVED, 7L, 7L, 1L)))
+            .isSameAs(locks.lockFor(new PipelineMessage(PipelineEventType.CARE_EVENT_SAVED, 12L, 7L, 1L)));
+        assertThat(locks.lockFor(new PipelineMessage(PipelineEventType.BOOKING_SAVED, 7L, 7L, 1L)))
+            .isNotSameAs(locks.lockFor(new PipelineMessage(PipelineEventType.BOOKING_SAVED, 8L, 8L, 1L)));
+    }
+
+    @Test
+    public void stripesMessagesWithoutBookingByEntity() {
+        BookingLocks locks = new BookingLocks(16);
+
+        assertThat(locks.lockFor(new PipelineMessage(PipelineEventType.CARE_EVENT_SAVED, 3L, null, 1L)))
+            .isSameAs(locks.lockFor(new PipelineMessage(PipelineEventType.CARE_EVENT_SAVED, 3L, null, 2L)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveStripes() {
+        new BookingLocks(0);
+    }
+}
@@ -0,0 +1,202 @@
+package com.noesisinformatica.northumbriaproms.service.messaging;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+
+import com.codahale.metrics.MetricRegistry;
+import com.noesisinformatica.northumbriaproms.config.ApplicationProperties;
+import com.noesisinformatica.northumbriaproms.config.Constants;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.amqp.AmqpException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the InMemoryPipelineTransport.
+ *
+ * @see InMemoryPipelineTransport
+ */
+public class InMemoryPipelineTransportUnitTest {
+
+    private static final String QUEUE = Constants.PLANS_QUEUE;
+
+    private ApplicationProperties applicationProperties;
+
+    private MetricRegistry metricRegistry;
+
+    private InMemoryPipelineTransport transport;
+
+    @Before
+    public void setup() {
+        applicationProperties = new ApplicationProperties();
+        ApplicationProperties.Pipeline.Retry retry = applicationProperties.getPipeline().getRetry();
+        retry.setMaxAttempts(3);
+        retry.setInitialInterval(1);
+        retry.setMaxInterval(1);
+        metricRegistry = new MetricRegistry();
+        transport = new InMemoryPipelineTransport(applicationProperties, metricRegistry);
+    }
+
+    @After
+    public void tearDown() {
+        transport.shutdown();
+    }
+
+    @Test
+    public void testDeliversMessagesToSubscriber() throws Exception {
+        List<PipelineMessage> received = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(3);
+        transport.subscribe(QUEUE, message -> {
+            received.add(message);
+            latch.countDown();
+        });
+
+        transport.send(QUEUE, message(1L));
+        transport.sendAll(QUEUE, Arrays.asList(message(2L), message(3L)), 1000);
+
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(received).extracting("entityId").containsOnly(1L, 2L, 3L);
+        assertThat(transport.isAvailable()).isTrue();
+    }
+
+    @Test
+    public void testRetriesThenDeadLettersFailingMessage() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(3);
+        transport.subscribe(QUEUE, message -> {
+            attempts.incrementAndGet();
+            latch.countDown();
+            throw new IllegalStateException("boom");
+        });
+
+        transport.send(QUEUE, message(1L));
+
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (metricRegistry.meter("pipeline.messages.dead-lettered").getCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(attempts.get()).isEqualTo(3);
+        assertThat(metricRegistry.meter("pipeline.messages.retries").getCount()).isEqualTo(3);
+        assertThat(metricRegistry.meter("pipeline.messages.dead-lettered").getCount()).isEqualTo(1);
+        assertThat(transport.getDeadLetterCount(QUEUE)).isEqualTo(1);
+        InMemoryPipelineTransport.DeadLetter deadLetter = transport.getDeadLetters(QUEUE, 10).get(0);
+        assertThat(deadLetter.getMessage().getEntityId()).isEqualTo(1L);
+        assertThat(deadLetter.getExceptionMessage()).isEqualTo("boom");
+    }
+
+    @Test
+    public void testReplaysDeadLetters() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch replayed = new CountDownLatch(1);
+        transport.subscribe(QUEUE, message -> {
+            if (attempts.incrementAndGet() <= 3) {
+                throw new IllegalStateException("boom");
+            }
+            replayed.countDown();
+        });
+        transport.send(QUEUE, message(1L));
+        awaitDeadLetters(1);
+
+        assertThat(transport.replayDeadLetters(QUEUE, 10)).isEqualTo(1);
+
+        assertThat(replayed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(transport.getDeadLetterCount(QUEUE)).isZero();
+    }
+
+    @Test
+    public void testDropsOldestDeadLettersWhenFull() throws Exception {
+        transport.shutdown();
+        applicationProperties.getPipeline().getInMemory().setDeadLetterCapacity(2);
+        applicationProperties.getPipeline().getRetry().setMaxAttempts(1);
+        applicationProperties.getPipeline().getPlans().setConcurrentConsumers(1);
+        transport = new InMemoryPipelineTransport(applicationProperties, metricRegistry);
+        transport.subscribe(QUEUE, message -> {
+            throw new IllegalStateException("boom");
+        });
+
+        transport.sendAll(QUEUE, Arrays.asList(message(1L), message(2L), message(3L)), 1000);
+        awaitDeadLetters(3);
+
+        assertThat(transport.getDeadLetterCount(QUEUE)).isEqualTo(2);
+        assertThat(transport.getDeadLetters(QUEUE, 10)).extracting("message.entityId").containsOnly(2L, 3L);
+    }
+
+    @Test
+    public void testSendFailsWhenQueueStaysFull() throws Exception {
+        transport.shutdown();
+        applicationProperties.getPipeline().getInMemory().setQueueCapacity(1);
+        applicationProperties.getPipeline().getPlans().setConcurrentConsumers(1);
+        transport = new InMemoryPipelineTransport(applicationProperties, metricRegistry);
+        CountDownLatch consuming = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        transport.subscribe(QUEUE, message -> {
+            consuming.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        transport.send(QUEUE, message(1L));
+        assertThat(consuming.await(5, TimeUnit.SECONDS)).isTrue();
+        transport.send(QUEUE, message(2L));
+
+        assertThatThrownBy(() -> transport.sendAll(QUEUE, Collections.singletonList(message(3L)), 10))
+            .isInstanceOf(AmqpException.class);
+        assertThat(transport.getDepth(QUEUE)).isEqualTo(1);
+        release.countDown();
+    }
+
+    @Test
+    public void testSetConsumers() {
+        transport.setConsumers(QUEUE, 4);
+        assertThat(transport.getActiveConsumers(QUEUE)).isEqualTo(4);
+
+        assertThatThrownBy(() -> transport.getDepth("unknown")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private void awaitDeadLetters(long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (metricRegistry.meter("pipeline.messages.dead-lettered").getCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private PipelineMessage message(Long id) {
+        return new PipelineMessage(PipelineEventType.PLAN_SAVED, id, id, id);
+    }
+}
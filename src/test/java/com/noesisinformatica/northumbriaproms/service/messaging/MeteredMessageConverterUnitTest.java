@@ -0,0 +1,83 @@
+package com.noesisinformatica.northumbriaproms.service.messaging;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.codahale.metrics.MetricRegistry;
+import com.noesisinformatica.northumbriaproms.domain.ProcedureBooking;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the MeteredMessageConverter.
+ *
+ * @see MeteredMessageConverter
+ */
+public class MeteredMessageConverterUnitTest {
+
+    private MetricRegistry metricRegistry;
+
+    private MeteredMessageConverter converter;
+
+    @Before
+    public void setup() {
+        metricRegistry = new MetricRegistry();
+        converter = new MeteredMessageConverter(new Jackson2JsonMessageConverter(), metricRegistry);
+    }
+
+    @Test
+    public void roundTripsPipelineMessage() {
+        ProcedureBooking booking = new ProcedureBooking();
+        booking.setId(42L);
+        PipelineMessage message = PipelineMessage.bookingSaved(booking);
+
+        Object result = converter.fromMessage(converter.toMessage(message, new MessageProperties()));
+
+        assertThat(result).isInstanceOf(PipelineMessage.class);
+        PipelineMessage received = (PipelineMessage) result;
+        assertThat(received.getMessageId()).isEqualTo(message.getMessageId());
+        assertThat(received.getType()).isEqualTo(PipelineEventType.BOOKING_SAVED);
+        assertThat(received.getEntityId()).isEqualTo(42L);
+        assertThat(received.getBookingId()).isEqualTo(42L);
+        assertThat(received.getVersion()).isEqualTo(message.getVersion());
+    }
+
+    @Test
+    public void recordsSizeAndConversionTime() {
+        Message message = converter.toMessage(new PipelineMessage(PipelineEventType.PLAN_SAVED, 1L, 2L, 3L),
+            new MessageProperties());
+        converter.fromMessage(message);
+
+        assertThat(metricRegistry.histogram("pipeline.messages.size").getCount()).isEqualTo(1);
+        assertThat(metricRegistry.histogram("pipeline.messages.size").getSnapshot().getMax())
+            .isEqualTo(message.getBody().length);
+        assertThat(metricRegistry.timer("pipeline.messages.serialisation").getCount()).isEqualTo(1);
+        assertThat(metricRegistry.timer("pipeline.messages.deserialisation").getCount()).isEqualTo(1);
+    }
+}
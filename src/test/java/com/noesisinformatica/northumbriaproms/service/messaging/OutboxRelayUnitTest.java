@@ -0,0 +1,141 @@
+package com.noesisinformatica.northumbriaproms.service.messaging;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+
+import com.noesisinformatica.northumbriaproms.config.ApplicationProperties;
+import com.noesisinformatica.northumbriaproms.domain.OutboxEvent;
+import com.noesisinformatica.northumbriaproms.repository.OutboxEventRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.AmqpException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for the OutboxRelay.
+ *
+ * @see OutboxRelay
+ */
+public class OutboxRelayUnitTest {
+
+    private OutboxEventRepository outboxEventRepository;
+
+    private PipelineTransport pipelineTransport;
+
+    private OutboxRelay outboxRelay;
+
+    @Before
+    public void setup() {
+        outboxEventRepository = mock(OutboxEventRepository.class);
+        pipelineTransport = mock(PipelineTransport.class);
+        outboxRelay = new OutboxRelay(outboxEventRepository, pipelineTransport,
+            mock(PlatformTransactionManager.class), new ApplicationProperties());
+    }
+
+    @After
+    public void tearDown() {
+        outboxRelay.shutdown();
+    }
+
+    @Test
+    public void testRecordsMessage() {
+        PipelineMessage message = new PipelineMessage(PipelineEventType.PLAN_SAVED, 2L, 1L, 42L);
+
+        outboxRelay.record("plans", message);
+
+        ArgumentCaptor<OutboxEvent> event = ArgumentCaptor.forClass(OutboxEvent.class);
+        verify(outboxEventRepository).save(event.capture());
+        assertThat(event.getValue().getQueueName()).isEqualTo("plans");
+        assertThat(event.getValue().getMessageId()).isEqualTo(message.getMessageId());
+        assertThat(event.getValue().getEventType()).isEqualTo("PLAN_SAVED");
+        assertThat(event.getValue().getEntityId()).isEqualTo(2L);
+        assertThat(event.getValue().getBookingId()).isEqualTo(1L);
+        assertThat(event.getValue().getMessageVersion()).isEqualTo(42L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRelaysMessagesByQueueAndDeletesThem() {
+        List<OutboxEvent> events = Arrays.asList(
+            event(1L, "bookings", "BOOKING_SAVED"),
+            event(2L, "plans", "PLAN_SAVED"),
+            event(3L, "bookings", "BOOKING_SAVED"));
+        when(outboxEventRepository.findOldestForUpdate(any(Pageable.class))).thenReturn(events);
+
+        assertThat(outboxRelay.relayAll()).isEqualTo(3);
+
+        ArgumentCaptor<List> bookings = ArgumentCaptor.forClass(List.class);
+        verify(pipelineTransport).sendAll(eq("bookings"), bookings.capture(), anyLong());
+        assertThat(bookings.getValue()).extracting("entityId").containsExactly(1L, 3L);
+        verify(pipelineTransport).sendAll(eq("plans"), anyListOf(PipelineMessage.class), anyLong());
+        verify(outboxEventRepository).deleteInBatch(events);
+    }
+
+    @Test
+    public void testKeepsMessagesWhenPublishFails() {
+        when(outboxEventRepository.findOldestForUpdate(any(Pageable.class)))
+            .thenReturn(Collections.singletonList(event(1L, "bookings", "BOOKING_SAVED")));
+        doThrow(new AmqpException("broker down"))
+            .when(pipelineTransport).sendAll(anyString(), anyListOf(PipelineMessage.class), anyLong());
+
+        assertThatThrownBy(() -> outboxRelay.relayAll()).isInstanceOf(AmqpException.class);
+
+        verify(outboxEventRepository, never()).deleteInBatch(anyListOf(OutboxEvent.class));
+    }
+
+    @Test
+    public void testRelaysNothingWhenOutboxIsEmpty() {
+        when(outboxEventRepository.findOldestForUpdate(any(Pageable.class))).thenReturn(Collections.emptyList());
+
+        assertThat(outboxRelay.relayAll()).isEqualTo(0);
+
+        verifyZeroInteractions(pipelineTransport);
+    }
+
+    private OutboxEvent event(Long id, String queue, String type) {
+        return new OutboxEvent()
+            .queueName(queue)
+            .messageId("message-" + id)
+            .eventType(type)
+            .entityId(id)
+            .messageVersion(id);
+    }
+}
@@ -0,0 +1,124 @@
+package com.noesisinformatica.northumbriaproms.service.messaging;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+
+import com.codahale.metrics.MetricRegistry;
+import com.noesisinformatica.northumbriaproms.config.ApplicationProperties;
+import com.noesisinformatica.northumbriaproms.config.Constants;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for the PipelineBackpressureMonitor.
+ *
+ * @see PipelineBackpressureMonitor
+ */
+public class PipelineBackpressureMonitorUnitTest {
+
+    private PipelineTransport pipelineTransport;
+
+    private ApplicationProperties applicationProperties;
+
+    private PipelineBackpressureMonitor monitor;
+
+    @Before
+    public void setup() {
+        pipelineTransport = mock(PipelineTransport.class);
+
+        applicationProperties = new ApplicationProperties();
+        ApplicationProperties.Pipeline.Backpressure backpressure = applicationProperties.getPipeline().getBackpressure();
+        backpressure.setBacklogPerConsumer(100);
+        backpressure.setHighWaterMark(1000);
+        backpressure.setLowWaterMark(200);
+        backpressure.setMaxThrottleWait(10);
+        backpressure.setSampleInterval(5);
+        monitor = new PipelineBackpressureMonitor(pipelineTransport, new MetricRegistry(), applicationProperties);
+    }
+
+    @Test
+    public void testTargetConsumers() {
+        assertThat(PipelineBackpressureMonitor.targetConsumers(0, 100, 3, 10)).isEqualTo(3);
+        assertThat(PipelineBackpressureMonitor.targetConsumers(450, 100, 3, 10)).isEqualTo(5);
+        assertThat(PipelineBackpressureMonitor.targetConsumers(100000, 100, 3, 10)).isEqualTo(10);
+    }
+
+    @Test
+    public void testThrottlingHasHysteresis() {
+        assertThat(PipelineBackpressureMonitor.isThrottled(false, 999, 1000, 200)).isFalse();
+        assertThat(PipelineBackpressureMonitor.isThrottled(false, 1000, 1000, 200)).isTrue();
+        assertThat(PipelineBackpressureMonitor.isThrottled(true, 500, 1000, 200)).isTrue();
+        assertThat(PipelineBackpressureMonitor.isThrottled(true, 200, 1000, 200)).isFalse();
+    }
+
+    @Test
+    public void testSampleScalesConsumersAndThrottles() {
+        when(pipelineTransport.getDepth(anyString())).thenReturn(0);
+        when(pipelineTransport.getDepth(Constants.ACTIONS_QUEUE)).thenReturn(1500);
+
+        monitor.sample();
+
+        verify(pipelineTransport).setConsumers(Constants.ACTIONS_QUEUE, 10);
+        assertThat(monitor.isThrottled()).isTrue();
+        assertThat(monitor.getState().getTotalDepth()).isEqualTo(1500);
+        assertThat(monitor.getState().getQueues()).hasSize(Constants.PIPELINE_QUEUES.size());
+        assertThat(monitor.awaitCapacity()).isFalse();
+
+        when(pipelineTransport.getDepth(Constants.ACTIONS_QUEUE)).thenReturn(150);
+        monitor.sample();
+
+        verify(pipelineTransport).setConsumers(Constants.ACTIONS_QUEUE, 3);
+        assertThat(monitor.isThrottled()).isFalse();
+        assertThat(monitor.awaitCapacity()).isTrue();
+    }
+
+    @Test
+    public void testKeepsThrottlingWhenBrokerUnavailable() {
+        when(pipelineTransport.getDepth(anyString())).thenReturn(5000);
+        monitor.sample();
+        assertThat(monitor.isThrottled()).isTrue();
+
+        when(pipelineTransport.getDepth(anyString())).thenReturn(null);
+        monitor.sample();
+
+        assertThat(monitor.isThrottled()).isTrue();
+        verify(pipelineTransport, times(1)).setConsumers(eq(Constants.ACTIONS_QUEUE), anyInt());
+    }
+
+    @Test
+    public void testDoesNothingInDirectMode() {
+        applicationProperties.getPipeline().setMode(ApplicationProperties.Pipeline.Mode.DIRECT);
+
+        monitor.sample();
+
+        verifyZeroInteractions(pipelineTransport);
+    }
+}
@@ -0,0 +1,171 @@
+package com.noesisinformatica.northumbriaproms.service.messaging;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.noesisinformatica.northumbriaproms.config.ApplicationProperties;
+import com.noesisinformatica.northumbriaproms.repository.CareEventRepository;
+import com.noesisinformatica.northumbriaproms.repository.FollowupActionRepository;
+import com.noesisinformatica.northumbriaproms.repository.FollowupPlanRepository;
+import com.noesisinformatica.northumbriaproms.repository.ProcedureBookingRepository;
+import com.noesisinformatica.northumbriaproms.service.CareEventService;
+import com.noesisinformatica.northumbriaproms.service.FollowupActionService;
+import com.noesisinformatica.northumbriaproms.service.FollowupPlanService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test class for the PipelineMessageListener.
+ *
+ * @see PipelineMessageListener
+ */
+public class PipelineMessageListenerUnitTest {
+
+    private static final Long BOOKING_ID = 7L;
+
+    private final FollowupActionRepository followupActionRepository = mock(FollowupActionRepository.class);
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    private final CountDownLatch handled = new CountDownLatch(1);
+
+    private final CountDownLatch complete = new CountDownLatch(1);
+
+    private TransactionTemplate batchTransaction;
+
+    private PipelineMessageListener listener;
+
+    @Before
+    public void setup() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getPipeline().setLockTimeout(100);
+        TestTransactionManager transactionManager = new TestTransactionManager();
+        batchTransaction = new TransactionTemplate(transactionManager);
+        listener = new PipelineMessageListener(mock(ProcedureBookingRepository.class),
+            mock(FollowupPlanRepository.class), mock(CareEventRepository.class), followupActionRepository,
+            mock(FollowupPlanService.class), mock(CareEventService.class), mock(FollowupActionService.class),
+            transactionManager, mock(PipelineTransport.class), applicationProperties);
+    }
+
+    @After
+    public void tearDown() {
+        complete.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void holdLockOfBatchedMessageUntilBatchCompletes() throws Exception {
+        executor.submit(() -> handleInBatch(actionSaved(1L)));
+        assertThat(handled.await(5, TimeUnit.SECONDS)).isTrue();
+
+        Future<?> next = executor.submit(() -> listener.onActionSaved(actionSaved(2L)));
+
+        assertThatThrownBy(() -> next.get(300, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+        complete.countDown();
+        next.get(5, TimeUnit.SECONDS);
+        verify(followupActionRepository).findOne(2L);
+    }
+
+    @Test
+    public void rollBackBatchTimingOutOnLock() throws Exception {
+        executor.submit(() -> handleInBatch(actionSaved(1L)));
+        assertThat(handled.await(5, TimeUnit.SECONDS)).isTrue();
+
+        Future<?> next = executor.submit(() -> batchTransaction.execute(status -> {
+            listener.onActionSaved(actionSaved(2L));
+            return null;
+        }));
+
+        assertThatThrownBy(() -> next.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class)
+            .hasCauseInstanceOf(CannotAcquireLockException.class);
+    }
+
+    private void handleInBatch(PipelineMessage message) {
+        batchTransaction.execute(status -> {
+            listener.onActionSaved(message);
+            handled.countDown();
+            try {
+                complete.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        });
+    }
+
+    private static PipelineMessage actionSaved(Long actionId) {
+        return new PipelineMessage(PipelineEventType.ACTION_SAVED, actionId, BOOKING_ID, 1L);
+    }
+
+    /**
+     * A transaction manager without resources, whose transactions join the transaction already active.
+     */
+    private static class TestTransactionManager extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected boolean isExistingTransaction(Object transaction) {
+            return TransactionSynchronizationManager.isActualTransactionActive();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+            // nothing to begin
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+            // nothing to commit
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+            // nothing to roll back
+        }
+    }
+}
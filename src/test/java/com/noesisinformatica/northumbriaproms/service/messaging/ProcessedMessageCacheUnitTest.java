@@ -0,0 +1,73 @@
+package com.noesisinformatica.northumbriaproms.service.messaging;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the ProcessedMessageCache.
+ *
+ * @see ProcessedMessageCache
+ */
+public class ProcessedMessageCacheUnitTest {
+
+    @Test
+    public void skipsRedeliveredMessage() {
+        ProcessedMessageCache cache = new ProcessedMessageCache(10);
+        PipelineMessage message = new PipelineMessage(PipelineEventType.BOOKING_SAVED, 1L, 1L, 100L);
+
+        assertThat(cache.isProcessed(message)).isFalse();
+        cache.markProcessed(message);
+
+        assertThat(cache.isProcessed(message)).isTrue();
+    }
+
+    @Test
+    public void processesEveryMessageOfSameEntityWhateverItsVersion() {
+        ProcessedMessageCache cache = new ProcessedMessageCache(10);
+        cache.markProcessed(new PipelineMessage(PipelineEventType.PLAN_SAVED, 1L, 1L, 200L));
+
+        assertThat(cache.isProcessed(new PipelineMessage(PipelineEventType.PLAN_SAVED, 1L, 1L, 100L))).isFalse();
+        assertThat(cache.isProcessed(new PipelineMessage(PipelineEventType.PLAN_SAVED, 1L, 1L, 300L))).isFalse();
+    }
+
+    @Test
+    public void forgetsLeastRecentlyUsedMessagesWhenFull() {
+        ProcessedMessageCache cache = new ProcessedMessageCache(2);
+        PipelineMessage first = new PipelineMessage(PipelineEventType.ACTION_SAVED, 1L, 1L, 100L);
+        PipelineMessage second = new PipelineMessage(PipelineEventType.ACTION_SAVED, 2L, 1L, 100L);
+        PipelineMessage third = new PipelineMessage(PipelineEventType.ACTION_SAVED, 3L, 1L, 100L);
+        cache.markProcessed(first);
+        cache.markProcessed(second);
+        cache.markProcessed(third);
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.isProcessed(first)).isFalse();
+        assertThat(cache.isProcessed(second)).isTrue();
+        assertThat(cache.isProcessed(third)).isTrue();
+    }
+}
@@ -0,0 +1,245 @@
+package com.noesisinformatica.northumbriaproms.service.search;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.codahale.metrics.MetricRegistry;
+import com.noesisinformatica.northumbriaproms.config.ApplicationProperties;
+import com.noesisinformatica.northumbriaproms.domain.FollowupAction;
+import com.noesisinformatica.northumbriaproms.domain.FollowupActionDocument;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.elasticsearch.ElasticsearchException;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for the BulkIndexer.
+ *
+ * @see BulkIndexer
+ */
+public class BulkIndexerUnitTest {
+
+    private ElasticsearchTemplate elasticsearchTemplate;
+
+    private EntityDocuments entityDocuments;
+
+    private ChangePropagator changePropagator;
+
+    private MetricRegistry metricRegistry;
+
+    private ApplicationProperties applicationProperties;
+
+    private BulkIndexer bulkIndexer;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        elasticsearchTemplate = mock(ElasticsearchTemplate.class);
+        ElasticsearchPersistentEntity entity = mock(ElasticsearchPersistentEntity.class);
+        when(entity.getIndexName()).thenReturn("followupaction");
+        when(entity.getIndexType()).thenReturn("followupaction");
+        when(elasticsearchTemplate.getPersistentEntityFor(FollowupAction.class)).thenReturn(entity);
+        entityDocuments = mock(EntityDocuments.class);
+        when(entityDocuments.findAll(eq(FollowupAction.class), anyCollectionOf(Long.class), eq("followupaction")))
+            .thenAnswer(invocation -> ((Collection<Long>) invocation.getArguments()[1]).stream()
+                .map(id -> new IndexQueryBuilder().withId(id.toString()).build())
+                .collect(Collectors.toList()));
+        changePropagator = mock(ChangePropagator.class);
+        metricRegistry = new MetricRegistry();
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getIndexWriter().setMaxAttempts(2);
+        bulkIndexer = new BulkIndexer(elasticsearchTemplate, entityDocuments, Collections.emptyList(), changePropagator,
+            metricRegistry, applicationProperties);
+    }
+
+    @After
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.unbindResourceIfPossible(bulkIndexer);
+    }
+
+    @Test
+    public void testIndexesStraightAwayWhenSynchronous() {
+        applicationProperties.getIndexWriter().setSynchronous(true);
+        TransactionSynchronizationManager.initSynchronization();
+
+        bulkIndexer.index(action(1L), 1L);
+        bulkIndexer.delete(FollowupAction.class, 2L);
+
+        verify(elasticsearchTemplate).index(any(IndexQuery.class));
+        verify(elasticsearchTemplate).delete(FollowupAction.class, "2");
+        assertThat(bulkIndexer.getPendingCount()).isZero();
+    }
+
+    @Test
+    public void testQueuesOutsideOfTransaction() {
+        bulkIndexer.index(action(1L), 1L);
+
+        verifyZeroInteractions(elasticsearchTemplate);
+        assertThat(bulkIndexer.getPendingCount()).isEqualTo(1);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testWritesEachIdOnceInOneBulkRequestAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        bulkIndexer.index(action(1L), 1L);
+        bulkIndexer.index(action(2L), 2L);
+        bulkIndexer.index(action(1L), 1L);
+        completeTransaction(true);
+        bulkIndexer.indexAll(FollowupAction.class, Arrays.asList(2L, 3L));
+        assertThat(bulkIndexer.getPendingCount()).isEqualTo(3);
+        verifyZeroInteractions(elasticsearchTemplate);
+
+        assertThat(bulkIndexer.flushAll()).isEqualTo(3);
+
+        ArgumentCaptor<List> queries = ArgumentCaptor.forClass(List.class);
+        verify(elasticsearchTemplate).bulkIndex(queries.capture());
+        assertThat(queries.getValue()).extracting("id").containsOnly("1", "2", "3");
+        assertThat(bulkIndexer.getPendingCount()).isZero();
+        assertThat(metricRegistry.meter("search.index-writer.written").getCount()).isEqualTo(3);
+        assertThat(metricRegistry.meter("search.index-writer.coalesced").getCount()).isEqualTo(2);
+        assertThat(TransactionSynchronizationManager.hasResource(bulkIndexer)).isFalse();
+    }
+
+    @Test
+    public void testQueuesNothingOnRollback() {
+        TransactionSynchronizationManager.initSynchronization();
+        bulkIndexer.index(action(1L), 1L);
+
+        completeTransaction(false);
+
+        assertThat(bulkIndexer.getPendingCount()).isZero();
+        assertThat(TransactionSynchronizationManager.hasResource(bulkIndexer)).isFalse();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDeletesEntitiesRemovedOrNoLongerFound() {
+        when(entityDocuments.findAll(eq(FollowupAction.class), anyCollectionOf(Long.class), eq("followupaction")))
+            .thenReturn(Collections.singletonList(new IndexQueryBuilder().withId("1").build()));
+        bulkIndexer.indexAll(FollowupAction.class, Arrays.asList(1L, 2L));
+        bulkIndexer.delete(FollowupAction.class, 3L);
+
+        bulkIndexer.flushAll();
+
+        verify(elasticsearchTemplate).bulkIndex(anyListOf(IndexQuery.class));
+        verify(elasticsearchTemplate, never()).delete("followupaction", "followupaction", "1");
+        verify(elasticsearchTemplate).delete("followupaction", "followupaction", "2");
+        verify(elasticsearchTemplate).delete("followupaction", "followupaction", "3");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testWritesProjectedDocumentsWithEntity() {
+        SearchProjection<FollowupAction> projection = mock(SearchProjection.class);
+        when(projection.getEntityType()).thenReturn(FollowupAction.class);
+        when(projection.getDocumentType()).thenReturn((Class) FollowupActionDocument.class);
+        ElasticsearchPersistentEntity entity = mock(ElasticsearchPersistentEntity.class);
+        when(entity.getIndexName()).thenReturn("followupactiondocument");
+        when(entity.getIndexType()).thenReturn("followupactiondocument");
+        when(elasticsearchTemplate.getPersistentEntityFor(FollowupActionDocument.class)).thenReturn(entity);
+        when(entityDocuments.findAll(eq(projection), anyCollectionOf(Long.class), eq("followupactiondocument")))
+            .thenReturn(Collections.singletonList(new IndexQueryBuilder().withId("1").build()));
+        bulkIndexer = new BulkIndexer(elasticsearchTemplate, entityDocuments, Collections.singletonList(projection),
+            changePropagator, metricRegistry, applicationProperties);
+        bulkIndexer.index(action(1L), 1L);
+
+        bulkIndexer.flushAll();
+
+        verify(entityDocuments).findAll(eq(FollowupAction.class), anyCollectionOf(Long.class), eq("followupaction"));
+        verify(entityDocuments).findAll(eq(projection), anyCollectionOf(Long.class), eq("followupactiondocument"));
+        verify(elasticsearchTemplate, times(2)).bulkIndex(anyListOf(IndexQuery.class));
+    }
+
+    @Test
+    public void testPropagatesIndexedEntitiesToTheirCopies() {
+        bulkIndexer.indexAll(FollowupAction.class, Arrays.asList(1L, 2L));
+        bulkIndexer.delete(FollowupAction.class, 3L);
+
+        bulkIndexer.flushAll();
+
+        verify(changePropagator).propagate(FollowupAction.class, Arrays.asList(1L, 2L));
+    }
+
+    @Test
+    public void testRetriesPropagationThatFails() {
+        when(changePropagator.propagate(eq(FollowupAction.class), anyCollectionOf(Long.class)))
+            .thenThrow(new ElasticsearchException("unavailable"));
+        bulkIndexer.index(action(1L), 1L);
+
+        assertThat(bulkIndexer.flushAll()).isZero();
+        assertThat(bulkIndexer.getPendingCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testRetriesFailedWritesThenGivesUp() {
+        doThrow(new ElasticsearchException("unavailable")).when(elasticsearchTemplate).bulkIndex(anyListOf(IndexQuery.class));
+        bulkIndexer.index(action(1L), 1L);
+
+        assertThat(bulkIndexer.flushAll()).isZero();
+        assertThat(bulkIndexer.getPendingCount()).isEqualTo(1);
+
+        assertThat(bulkIndexer.flushAll()).isZero();
+        assertThat(bulkIndexer.getPendingCount()).isZero();
+        verify(elasticsearchTemplate, times(2)).bulkIndex(anyListOf(IndexQuery.class));
+        assertThat(metricRegistry.meter("search.index-writer.failed").getCount()).isEqualTo(1);
+    }
+
+    private void completeTransaction(boolean commit) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        if (commit) {
+            TransactionSynchronizationUtils.invokeAfterCommit(synchronizations);
+        }
+        TransactionSynchronizationUtils.invokeAfterCompletion(synchronizations, commit
+            ? TransactionSynchronization.STATUS_COMMITTED : TransactionSynchronization.STATUS_ROLLED_BACK);
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    private FollowupAction action(Long id) {
+        FollowupAction action = new FollowupAction();
+        action.setId(id);
+        return action;
+    }
+}
@@ -0,0 +1,161 @@
+package com.noesisinformatica.northumbriaproms.service.search;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.codahale.metrics.MetricRegistry;
+import com.noesisinformatica.northumbriaproms.NorthumbriapromsApp;
+import com.noesisinformatica.northumbriaproms.config.ApplicationProperties;
+import com.noesisinformatica.northumbriaproms.domain.*;
+import com.noesisinformatica.northumbriaproms.domain.enumeration.ActionStatus;
+import com.noesisinformatica.northumbriaproms.repository.search.CareEventSearchRepository;
+import com.noesisinformatica.northumbriaproms.repository.search.FollowupActionDocumentSearchRepository;
+import com.noesisinformatica.northumbriaproms.repository.search.FollowupActionSearchRepository;
+import com.noesisinformatica.northumbriaproms.repository.search.FollowupPlanSearchRepository;
+import com.noesisinformatica.northumbriaproms.service.FollowupActionService;
+import com.noesisinformatica.northumbriaproms.web.rest.CareEventResourceIntTest;
+import com.noesisinformatica.northumbriaproms.web.rest.ProcedureBookingResourceIntTest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the propagation of changes to the documents holding copies of an entity.
+ *
+ * @see ChangePropagator
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = NorthumbriapromsApp.class)
+@Transactional
+public class ChangePropagatorIntTest {
+
+    private static final String CONSULTANT_NAME = "Jane Smith";
+    private static final String UPDATED_CONSULTANT_NAME = "John Jones";
+
+    @Autowired
+    private FollowupActionService followupActionService;
+
+    @Autowired
+    private BulkIndexer bulkIndexer;
+
+    @Autowired
+    private FollowupActionDocumentSearchRepository followupActionDocumentSearchRepository;
+
+    @Autowired
+    private FollowupActionSearchRepository followupActionSearchRepository;
+
+    @Autowired
+    private CareEventSearchRepository careEventSearchRepository;
+
+    @Autowired
+    private FollowupPlanSearchRepository followupPlanSearchRepository;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private MetricRegistry metricRegistry;
+
+    @Autowired
+    private EntityManager em;
+
+    private ProcedureBooking procedureBooking;
+
+    private FollowupAction action;
+
+    private int maxFanOut;
+
+    @Before
+    public void init() {
+        maxFanOut = applicationProperties.getIndexWriter().getMaxFanOut();
+        procedureBooking = ProcedureBookingResourceIntTest.createEntity(em).consultantName(CONSULTANT_NAME);
+        CareEvent careEvent = CareEventResourceIntTest.createBookedEntity(em, procedureBooking);
+        FollowupPlan followupPlan = careEvent.getFollowupPlan();
+        bulkIndexer.index(followupPlan, followupPlan.getId());
+        bulkIndexer.index(careEvent, careEvent.getId());
+        action = followupActionService.save(new FollowupAction().name("PROMS").careEvent(careEvent)
+            .patient(careEvent.getPatient()).status(ActionStatus.UNINITIALISED));
+    }
+
+    @After
+    public void cleanUp() {
+        applicationProperties.getIndexWriter().setMaxFanOut(maxFanOut);
+        followupActionDocumentSearchRepository.delete(action.getId());
+        followupActionSearchRepository.delete(action.getId());
+        careEventSearchRepository.delete(action.getCareEvent().getId());
+        followupPlanSearchRepository.delete(action.getCareEvent().getFollowupPlan().getId());
+    }
+
+    @Test
+    public void propagateBookingToFlatAndNestedDocuments() {
+        long changes = metricRegistry.meter("search.propagation.changes").getCount();
+        long updated = metricRegistry.meter("search.propagation.updated").getCount();
+
+        bulkIndexer.index(procedureBooking.consultantName(UPDATED_CONSULTANT_NAME), procedureBooking.getId());
+
+        assertThat(followupActionDocumentSearchRepository.findOne(action.getId()).getConsultantName())
+            .isEqualTo(UPDATED_CONSULTANT_NAME);
+        assertThat(followupActionSearchRepository.findOne(action.getId()).getCareEvent().getFollowupPlan()
+            .getProcedureBooking().getConsultantName()).isEqualTo(UPDATED_CONSULTANT_NAME);
+        assertThat(careEventSearchRepository.findOne(action.getCareEvent().getId()).getFollowupPlan()
+            .getProcedureBooking().getConsultantName()).isEqualTo(UPDATED_CONSULTANT_NAME);
+        assertThat(followupPlanSearchRepository.findOne(action.getCareEvent().getFollowupPlan().getId())
+            .getProcedureBooking().getConsultantName()).isEqualTo(UPDATED_CONSULTANT_NAME);
+        // the nested action, care event and plan, and the flat action
+        assertThat(metricRegistry.meter("search.propagation.changes").getCount()).isEqualTo(changes + 1);
+        assertThat(metricRegistry.meter("search.propagation.updated").getCount()).isEqualTo(updated + 4);
+    }
+
+    @Test
+    public void leaveDocumentsOverMaxFanOutForRebuild() {
+        applicationProperties.getIndexWriter().setMaxFanOut(1);
+        long overLimit = metricRegistry.meter("search.propagation.over-limit").getCount();
+
+        bulkIndexer.index(procedureBooking.consultantName(UPDATED_CONSULTANT_NAME), procedureBooking.getId());
+
+        assertThat(followupActionDocumentSearchRepository.findOne(action.getId()).getConsultantName())
+            .isEqualTo(CONSULTANT_NAME);
+        assertThat(metricRegistry.meter("search.propagation.over-limit").getCount()).isEqualTo(overLimit + 1);
+    }
+
+    @Test
+    public void skipDocumentsNotIndexedYet() {
+        followupActionDocumentSearchRepository.delete(action.getId());
+
+        bulkIndexer.index(procedureBooking.consultantName(UPDATED_CONSULTANT_NAME), procedureBooking.getId());
+
+        assertThat(followupActionDocumentSearchRepository.exists(action.getId())).isFalse();
+        assertThat(followupActionSearchRepository.findOne(action.getId()).getCareEvent().getFollowupPlan()
+            .getProcedureBooking().getConsultantName()).isEqualTo(UPDATED_CONSULTANT_NAME);
+    }
+}
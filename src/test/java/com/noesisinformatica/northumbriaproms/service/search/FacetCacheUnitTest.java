@@ -0,0 +1,121 @@
+package com.noesisinformatica.northumbriaproms.service.search;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.codahale.metrics.MetricRegistry;
+import com.noesisinformatica.northumbriaproms.config.ApplicationProperties;
+import com.noesisinformatica.northumbriaproms.domain.FollowupActionDocument;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the FacetCache.
+ *
+ * @see FacetCache
+ */
+public class FacetCacheUnitTest {
+
+    private static final Class<?> TYPE = FollowupActionDocument.class;
+
+    private IndexChangeLog indexChangeLog;
+
+    private MetricRegistry metricRegistry;
+
+    private ApplicationProperties applicationProperties;
+
+    private FacetCache facetCache;
+
+    @Before
+    public void setup() {
+        ElasticsearchTemplate elasticsearchTemplate = mock(ElasticsearchTemplate.class);
+        ElasticsearchPersistentEntity entity = mock(ElasticsearchPersistentEntity.class);
+        when(entity.getIndexName()).thenReturn("followupactiondocument");
+        when(elasticsearchTemplate.getPersistentEntityFor(TYPE)).thenReturn(entity);
+        indexChangeLog = new IndexChangeLog();
+        metricRegistry = new MetricRegistry();
+        applicationProperties = new ApplicationProperties();
+        facetCache = new FacetCache(elasticsearchTemplate, indexChangeLog, metricRegistry, applicationProperties);
+    }
+
+    @Test
+    public void testReturnsCachedFacets() {
+        facetCache.put(TYPE, "query", facetCache.stamp(TYPE), InternalAggregations.EMPTY, 3);
+
+        FacetCache.Facets facets = facetCache.get(TYPE, "query");
+
+        assertThat(facets.getAggregations()).isSameAs(InternalAggregations.EMPTY);
+        assertThat(facets.getTotal()).isEqualTo(3);
+        assertThat(facetCache.get(TYPE, "other query")).isNull();
+        assertThat(metricRegistry.meter("search.facet-cache.hits").getCount()).isEqualTo(1);
+        assertThat(metricRegistry.meter("search.facet-cache.misses").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testDropsFacetsWhenIndexIsWritten() {
+        facetCache.put(TYPE, "query", facetCache.stamp(TYPE), InternalAggregations.EMPTY, 3);
+
+        indexChangeLog.record("followupactiondocument", "1");
+
+        assertThat(facetCache.get(TYPE, "query")).isNull();
+    }
+
+    @Test
+    public void testDropsFacetsOfIndexWrittenWhileSearching() {
+        long stamp = facetCache.stamp(TYPE);
+        indexChangeLog.record("followupactiondocument", "1");
+
+        facetCache.put(TYPE, "query", stamp, InternalAggregations.EMPTY, 3);
+
+        assertThat(facetCache.get(TYPE, "query")).isNull();
+    }
+
+    @Test
+    public void testDropsExpiredFacets() throws InterruptedException {
+        applicationProperties.getSearch().setFacetCacheTtl(1);
+        facetCache.put(TYPE, "query", facetCache.stamp(TYPE), InternalAggregations.EMPTY, 3);
+
+        Thread.sleep(5);
+
+        assertThat(facetCache.get(TYPE, "query")).isNull();
+    }
+
+    @Test
+    public void testCachesNoMoreThanMaximumSize() {
+        applicationProperties.getSearch().setFacetCacheSize(1);
+        facetCache.put(TYPE, "query", facetCache.stamp(TYPE), InternalAggregations.EMPTY, 3);
+
+        facetCache.put(TYPE, "other query", facetCache.stamp(TYPE), InternalAggregations.EMPTY, 5);
+
+        assertThat(facetCache.get(TYPE, "query")).isNotNull();
+        assertThat(facetCache.get(TYPE, "other query")).isNull();
+    }
+}
@@ -0,0 +1,320 @@
+package com.noesisinformatica.northumbriaproms.service.search;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.codahale.metrics.MetricRegistry;
+import com.noesisinformatica.northumbriaproms.NorthumbriapromsApp;
+import com.noesisinformatica.northumbriaproms.config.ApplicationProperties;
+import com.noesisinformatica.northumbriaproms.domain.*;
+import com.noesisinformatica.northumbriaproms.domain.enumeration.ActionStatus;
+import com.noesisinformatica.northumbriaproms.domain.enumeration.GenderType;
+import com.noesisinformatica.northumbriaproms.domain.enumeration.TimeUnit;
+import com.noesisinformatica.northumbriaproms.repository.search.FollowupActionDocumentSearchRepository;
+import com.noesisinformatica.northumbriaproms.service.FollowupActionExportService;
+import com.noesisinformatica.northumbriaproms.service.FollowupActionService;
+import com.noesisinformatica.northumbriaproms.service.PatientService;
+import com.noesisinformatica.northumbriaproms.service.ProcedureBookingService;
+import com.noesisinformatica.northumbriaproms.service.dto.ExportFormat;
+import com.noesisinformatica.northumbriaproms.web.rest.CareEventResourceIntTest;
+import com.noesisinformatica.northumbriaproms.web.rest.ProcedureBookingResourceIntTest;
+import com.noesisinformatica.northumbriaproms.web.rest.util.QueryModel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.core.FacetedPage;
+import org.springframework.data.elasticsearch.core.facet.result.TermResult;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the search of followup actions in their flat documents.
+ *
+ * @see FollowupActionProjection
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = NorthumbriapromsApp.class)
+@Transactional
+public class FollowupActionSearchIntTest {
+
+    private static final String CONSULTANT_NAME = "Jane Smith";
+
+    private static final String DIRECT_MODE_CONSULTANT_NAME = "John Doe";
+
+    private static final int DIRECT_MODE_PROCEDURE_LOCAL_CODE = 90299;
+
+    @Autowired
+    private FollowupActionService followupActionService;
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private ProcedureBookingService procedureBookingService;
+
+    @Autowired
+    private FollowupActionExportService followupActionExportService;
+
+    @Autowired
+    private FollowupActionDocumentSearchRepository followupActionDocumentSearchRepository;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private MetricRegistry metricRegistry;
+
+    @Autowired
+    private EntityManager em;
+
+    private FollowupAction action;
+
+    @Before
+    public void init() {
+        CareEvent careEvent = CareEventResourceIntTest.createBookedEntity(em,
+            ProcedureBookingResourceIntTest.createEntity(em).consultantName(CONSULTANT_NAME));
+        action = followupActionService.save(new FollowupAction().name("PROMS").careEvent(careEvent)
+            .patient(careEvent.getPatient()).status(ActionStatus.UNINITIALISED));
+    }
+
+    @After
+    public void cleanUp() {
+        applicationProperties.getSearch().setFlatFollowupActions(true);
+        applicationProperties.getPipeline().setMode(ApplicationProperties.Pipeline.Mode.QUEUE);
+        followupActionDocumentSearchRepository.delete(action.getId());
+    }
+
+    @Test
+    public void writeFlatDocumentWithAction() {
+        FollowupActionDocument document = followupActionDocumentSearchRepository.findOne(action.getId());
+
+        assertThat(document.getConsultantName()).isEqualTo(CONSULTANT_NAME);
+        assertThat(document.getCareEventId()).isEqualTo(action.getCareEvent().getId());
+        assertThat(document.getPatientId()).isEqualTo(action.getPatient().getId());
+        assertThat(document.getStatus()).isEqualTo(ActionStatus.UNINITIALISED);
+    }
+
+    @Test
+    public void searchFlatDocumentsWithWholeValueFacets() {
+        QueryModel query = new QueryModel();
+        query.setConsultants(Collections.singletonList(CONSULTANT_NAME));
+
+        FacetedPage<FollowupAction> page = followupActionService.search(query, new PageRequest(0, 20, Sort.Direction.ASC, "id"));
+
+        assertThat(page.getContent()).extracting("id").containsExactly(action.getId());
+        assertThat(((TermResult) page.getFacet("consultants")).getTerms()).extracting("term")
+            .containsExactly(CONSULTANT_NAME);
+    }
+
+    @Test
+    public void searchNestedIndexAsFallback() {
+        applicationProperties.getSearch().setFlatFollowupActions(false);
+        QueryModel query = new QueryModel();
+        query.setCareEvents(Collections.singletonList(action.getCareEvent().getId().toString()));
+
+        FacetedPage<FollowupAction> page = followupActionService.search(query, new PageRequest(0, 20, Sort.Direction.ASC, "id"));
+
+        assertThat(page.getContent()).extracting("id").containsExactly(action.getId());
+    }
+
+    @Test
+    public void searchCategoriesWithoutResults() {
+        QueryModel query = new QueryModel();
+        query.setConsultants(Collections.singletonList(CONSULTANT_NAME));
+
+        FacetedPage<FollowupAction> page = followupActionService.search(query, new PageRequest(0, 20, Sort.Direction.ASC, "id"), false);
+        FacetedPage<FollowupAction> categories = followupActionService.searchCategories(query);
+
+        assertThat(page.getContent()).extracting("id").containsExactly(action.getId());
+        assertThat(page.getFacet("consultants")).isNull();
+        assertThat(categories.getContent()).isEmpty();
+        assertThat(categories.getTotalElements()).isEqualTo(1);
+        assertThat(((TermResult) categories.getFacet("consultants")).getTerms()).extracting("term")
+            .containsExactly(CONSULTANT_NAME);
+    }
+
+    @Test
+    public void searchCachedCategoriesUntilIndexIsWritten() {
+        QueryModel query = new QueryModel();
+        query.setCareEvents(Collections.singletonList(action.getCareEvent().getId().toString()));
+        long hits = metricRegistry.meter("search.facet-cache.hits").getCount();
+
+        followupActionService.searchCategories(query);
+        FacetedPage<FollowupAction> cached = followupActionService.search(query, new PageRequest(0, 20, Sort.Direction.ASC, "id"));
+        FollowupAction other = followupActionService.save(new FollowupAction().name("PROMS 2").careEvent(action.getCareEvent())
+            .patient(action.getPatient()).status(ActionStatus.UNINITIALISED));
+        FacetedPage<FollowupAction> categories = followupActionService.searchCategories(query);
+        followupActionDocumentSearchRepository.delete(other.getId());
+
+        assertThat(metricRegistry.meter("search.facet-cache.hits").getCount()).isEqualTo(hits + 1);
+        assertThat(((TermResult) cached.getFacet("consultants")).getTerms()).extracting("count").containsExactly(1L);
+        assertThat(((TermResult) categories.getFacet("consultants")).getTerms()).extracting("count").containsExactly(2L);
+    }
+
+    @Test
+    public void searchPagesAfterCursor() {
+        FollowupAction second = followupActionService.save(new FollowupAction().name("PROMS")
+            .careEvent(action.getCareEvent()).patient(action.getPatient()).status(ActionStatus.UNINITIALISED));
+        FollowupAction third = followupActionService.save(new FollowupAction().name("PROMS")
+            .careEvent(action.getCareEvent()).patient(action.getPatient()).status(ActionStatus.UNINITIALISED));
+        QueryModel query = new QueryModel();
+        query.setCareEvents(Collections.singletonList(action.getCareEvent().getId().toString()));
+        try {
+            PageRequest pageable = new PageRequest(0, 2, Sort.Direction.ASC, "name");
+            CursorPage<FollowupAction> first = followupActionService.searchAfter(query, null, pageable);
+            assertThat(first.getContent()).extracting(FollowupAction::getId)
+                .containsExactly(action.getId(), second.getId());
+            assertThat(first.getTotalElements()).isEqualTo(3);
+            assertThat(first.getNextCursor()).isNotNull();
+
+            CursorPage<FollowupAction> next = followupActionService.searchAfter(query, first.getNextCursor(), pageable);
+            assertThat(next.getContent()).extracting(FollowupAction::getId).containsExactly(third.getId());
+            assertThat(next.getNextCursor()).isNull();
+        } finally {
+            followupActionDocumentSearchRepository.delete(second.getId());
+            followupActionDocumentSearchRepository.delete(third.getId());
+        }
+    }
+
+    @Test
+    public void streamAllMatchingActions() {
+        QueryModel query = new QueryModel();
+        query.setConsultants(Collections.singletonList(CONSULTANT_NAME));
+
+        List<FollowupAction> actions = new ArrayList<>();
+        try (CloseableIterator<FollowupAction> iterator = followupActionService.streamAll(query)) {
+            iterator.forEachRemaining(actions::add);
+        }
+
+        assertThat(actions).extracting(FollowupAction::getId).contains(action.getId());
+    }
+
+    @Test
+    public void pageAndStreamNestedIndexAsFallback() {
+        applicationProperties.getSearch().setFlatFollowupActions(false);
+        QueryModel query = new QueryModel();
+        query.setCareEvents(Collections.singletonList(action.getCareEvent().getId().toString()));
+
+        CursorPage<FollowupAction> page = followupActionService.searchAfter(query, null,
+            new PageRequest(0, 2, Sort.Direction.ASC, "name"));
+        List<Long> ids = new ArrayList<>();
+        try (CloseableIterator<Long> iterator = followupActionService.streamIds(query)) {
+            iterator.forEachRemaining(ids::add);
+        }
+
+        assertThat(page.getContent()).extracting(FollowupAction::getId).containsExactly(action.getId());
+        assertThat(page.getNextCursor()).isNull();
+        assertThat(ids).containsExactly(action.getId());
+        assertThatThrownBy(() -> followupActionService.searchAfter(query, null,
+            new PageRequest(0, 2, Sort.Direction.ASC, "consultantName")))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void exportMatchingActionsAsCsv() throws IOException {
+        QueryModel query = new QueryModel();
+        query.setCareEvents(Collections.singletonList(action.getCareEvent().getId().toString()));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long count = followupActionExportService.export(query, ExportFormat.CSV, out, () -> false);
+
+        assertThat(count).isEqualTo(1);
+        String[] lines = out.toString("UTF-8").split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).startsWith("\"id\",\"last_name\"");
+        assertThat(lines[1]).startsWith("\"" + action.getId() + "\"").contains(CONSULTANT_NAME);
+    }
+
+    @Test
+    public void stopExportWhenCancelled() {
+        QueryModel query = new QueryModel();
+        query.setCareEvents(Collections.singletonList(action.getCareEvent().getId().toString()));
+
+        assertThatThrownBy(() -> followupActionExportService.export(query, ExportFormat.CSV, new ByteArrayOutputStream(),
+            () -> true))
+            .isInstanceOf(CancellationException.class);
+    }
+
+    @Test
+    public void updateFlatDocumentWhenPatientChanges() {
+        patientService.save(action.getPatient().gender(GenderType.FEMALE));
+
+        assertThat(followupActionDocumentSearchRepository.findOne(action.getId()).getPatientGender())
+            .isEqualTo(GenderType.FEMALE);
+    }
+
+    @Test
+    public void searchActionsOfPlanGeneratedInDirectMode() {
+        applicationProperties.getPipeline().setMode(ApplicationProperties.Pipeline.Mode.DIRECT);
+        Procedure procedure = new Procedure().name("Direct mode procedure").externalCode("DIRECT")
+            .localCode(DIRECT_MODE_PROCEDURE_LOCAL_CODE);
+        em.persist(procedure);
+        ProcedureTimepoint procedureTimepoint = new ProcedureTimepoint();
+        procedureTimepoint.setProcedure(procedure);
+        procedureTimepoint.setTimepoint(new Timepoint().name("6 months").value(6).unit(TimeUnit.MONTH));
+        em.persist(procedureTimepoint.getTimepoint());
+        em.persist(procedureTimepoint);
+        Procedurelink procedurelink = new Procedurelink();
+        procedurelink.setProcedure(procedure);
+        procedurelink.setQuestionnaire(new Questionnaire().name("Oxford Knee Score"));
+        em.persist(procedurelink.getQuestionnaire());
+        em.persist(procedurelink);
+        em.flush();
+
+        ProcedureBooking booking = procedureBookingService.save(ProcedureBookingResourceIntTest.createEntity(em)
+            .consultantName(DIRECT_MODE_CONSULTANT_NAME).primaryProcedure(String.valueOf(DIRECT_MODE_PROCEDURE_LOCAL_CODE)));
+        List<Long> actionIds = booking.getFollowupPlan().getCareEvents().stream()
+            .flatMap(careEvent -> careEvent.getFollowupActions().stream())
+            .map(FollowupAction::getId)
+            .collect(Collectors.toList());
+        QueryModel query = new QueryModel();
+        query.setConsultants(Collections.singletonList(DIRECT_MODE_CONSULTANT_NAME));
+        try {
+            FacetedPage<FollowupAction> page = followupActionService.search(query, new PageRequest(0, 20, Sort.Direction.ASC, "id"));
+
+            assertThat(actionIds).hasSize(1);
+            assertThat(page.getContent()).extracting("id").containsExactlyElementsOf(actionIds);
+        } finally {
+            actionIds.forEach(followupActionDocumentSearchRepository::delete);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.noesisinformatica.northumbriaproms.service.search;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.noesisinformatica.northumbriaproms.NorthumbriapromsApp;
+import com.noesisinformatica.northumbriaproms.domain.FollowupActionDocument;
+import com.noesisinformatica.northumbriaproms.domain.JobCheckpoint;
+import com.noesisinformatica.northumbriaproms.domain.Procedure;
+import com.noesisinformatica.northumbriaproms.domain.User;
+import com.noesisinformatica.northumbriaproms.repository.JobCheckpointRepository;
+import com.noesisinformatica.northumbriaproms.repository.ProcedureRepository;
+import com.noesisinformatica.northumbriaproms.repository.UserRepository;
+import com.noesisinformatica.northumbriaproms.repository.search.ProcedureSearchRepository;
+import com.noesisinformatica.northumbriaproms.repository.search.UserSearchRepository;
+import com.noesisinformatica.northumbriaproms.service.dto.ReindexStatusDTO;
+import com.noesisinformatica.northumbriaproms.web.rest.UserResourceIntTest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the IndexRebuilder.
+ *
+ * @see IndexRebuilder
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = NorthumbriapromsApp.class)
+public class IndexRebuilderIntTest {
+
+    @Autowired
+    private IndexRebuilder indexRebuilder;
+
+    @Autowired
+    private ProcedureRepository procedureRepository;
+
+    @Autowired
+    private ProcedureSearchRepository procedureSearchRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserSearchRepository userSearchRepository;
+
+    @Autowired
+    private JobCheckpointRepository jobCheckpointRepository;
+
+    @Autowired
+    private VersionedIndexManager versionedIndexManager;
+
+    @Autowired
+    private ElasticsearchTemplate elasticsearchTemplate;
+
+    private final List<Procedure> procedures = new ArrayList<>();
+
+    @Before
+    public void init() {
+        for (int i = 0; i < 5; i++) {
+            procedures.add(procedureRepository.saveAndFlush(new Procedure().name("Procedure " + i).localCode(i)));
+        }
+    }
+
+    @After
+    public void cleanUp() {
+        procedureRepository.delete(procedures);
+        procedureSearchRepository.deleteAll();
+    }
+
+    @Test
+    public void rebuildIntoNewVersionBehindAlias() throws InterruptedException {
+        ReindexStatusDTO status = awaitRebuild(Procedure.class);
+
+        assertThat(status.getState()).isEqualTo(ReindexStatusDTO.State.COMPLETED);
+        assertThat(status.getIndexed()).isEqualTo(procedureRepository.count());
+        assertThat(status.getTotal()).isEqualTo(status.getIndexed());
+        assertThat(status.getIndex()).startsWith("procedure_");
+        assertThat(aliasedIndices("procedure")).containsExactly(status.getIndex());
+        for (Procedure procedure : procedures) {
+            assertThat(procedureSearchRepository.findOne(procedure.getId())).isNotNull();
+        }
+    }
+
+    @Test
+    public void deletePreviousVersionOnceReplaced() throws InterruptedException {
+        String previous = awaitRebuild(Procedure.class).getIndex();
+
+        ReindexStatusDTO status = awaitRebuild(Procedure.class);
+
+        assertThat(status.getIndex()).isNotEqualTo(previous);
+        assertThat(aliasedIndices("procedure")).containsExactly(status.getIndex());
+        assertThat(elasticsearchTemplate.indexExists(previous)).isFalse();
+    }
+
+    @Test
+    public void resumeInterruptedRebuildFromCheckpoint() throws InterruptedException {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            users.add(userRepository.saveAndFlush(UserResourceIntTest.createEntity(null)));
+        }
+        String version = versionedIndexManager.createVersion(User.class);
+        Long indexedUpTo = users.get(1).getId();
+        jobCheckpointRepository.save(new JobCheckpoint().name(IndexRebuilder.CHECKPOINT_PREFIX + "user")
+            .checkpointValue(version).checkpointId(indexedUpTo).lastRunDate(Instant.now()));
+        Thread.sleep(10);
+        // updated after being indexed, while the rebuild was interrupted
+        User updated = users.get(0);
+        updated.setFirstName("Updated");
+        userRepository.saveAndFlush(updated);
+        try {
+            ReindexStatusDTO status = awaitRebuild(User.class);
+
+            assertThat(status.getState()).isEqualTo(ReindexStatusDTO.State.COMPLETED);
+            assertThat(status.getIndex()).isEqualTo(version);
+            assertThat(status.getIndexed()).isEqualTo(userRepository.count());
+            assertThat(aliasedIndices("user")).containsExactly(version);
+            assertThat(userSearchRepository.findOne(updated.getId()).getFirstName()).isEqualTo("Updated");
+            assertThat(userSearchRepository.findOne(users.get(1).getId())).isNull();
+            assertThat(userSearchRepository.findOne(users.get(2).getId())).isNotNull();
+            JobCheckpoint checkpoint = jobCheckpointRepository.findOne(IndexRebuilder.CHECKPOINT_PREFIX + "user");
+            assertThat(checkpoint.getCheckpointValue()).isNull();
+            assertThat(checkpoint.getCheckpointId()).isNull();
+        } finally {
+            userRepository.delete(users);
+            users.forEach(user -> userSearchRepository.delete(user.getId()));
+        }
+    }
+
+    @Test
+    public void startInterruptedRebuildAgainWithoutModifiedDates() throws InterruptedException {
+        String version = versionedIndexManager.createVersion(Procedure.class);
+        jobCheckpointRepository.save(new JobCheckpoint().name(IndexRebuilder.CHECKPOINT_PREFIX + "procedure")
+            .checkpointValue(version).checkpointId(procedures.get(2).getId()).lastRunDate(Instant.now()));
+
+        ReindexStatusDTO status = awaitRebuild(Procedure.class);
+
+        assertThat(status.getState()).isEqualTo(ReindexStatusDTO.State.COMPLETED);
+        assertThat(status.getIndex()).isNotEqualTo(version);
+        assertThat(elasticsearchTemplate.indexExists(version)).isFalse();
+        assertThat(aliasedIndices("procedure")).containsExactly(status.getIndex());
+        for (Procedure procedure : procedures) {
+            assertThat(procedureSearchRepository.findOne(procedure.getId())).isNotNull();
+        }
+    }
+
+    @Test
+    public void listEntitiesMappedToAnIndex() {
+        assertThat(indexRebuilder.getDocumentTypes()).contains(Procedure.class, FollowupActionDocument.class)
+            .doesNotContain(JobCheckpoint.class);
+    }
+
+    private ReindexStatusDTO awaitRebuild(Class<?> documentClass) throws InterruptedException {
+        ReindexStatusDTO status = indexRebuilder.rebuild(documentClass);
+        for (int i = 0; i < 300 && status.getState() == ReindexStatusDTO.State.RUNNING; i++) {
+            Thread.sleep(100);
+            status = indexRebuilder.getStatus(documentClass);
+        }
+        return status;
+    }
+
+    private List<String> aliasedIndices(String alias) {
+        List<String> indices = new ArrayList<>();
+        elasticsearchTemplate.getClient().admin().indices().prepareGetAliases(alias).get().getAliases()
+            .forEach(entry -> {
+                if (!entry.value.isEmpty()) {
+                    indices.add(entry.key);
+                }
+            });
+        return indices;
+    }
+}
@@ -0,0 +1,75 @@
+package com.noesisinformatica.northumbriaproms.service.search;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.RangeQueryBuilder;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the SearchCursor.
+ *
+ * @see SearchCursor
+ */
+public class SearchCursorUnitTest {
+
+    @Test
+    public void decodeEncodedCursor() {
+        SearchCursor cursor = SearchCursor.first("patientFamilyName", false).after("Smith", 42L);
+
+        SearchCursor decoded = SearchCursor.decode(cursor.encode());
+
+        assertThat(decoded.getSortField()).isEqualTo("patientFamilyName");
+        assertThat(decoded.encode()).isEqualTo(cursor.encode());
+        assertThat(decoded.filter()).isInstanceOf(BoolQueryBuilder.class);
+    }
+
+    @Test
+    public void rejectInvalidToken() {
+        assertThatThrownBy(() -> SearchCursor.decode("not a cursor"))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SearchCursor.decode("e30"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void filterNothingBeforeFirstHit() {
+        SearchCursor cursor = SearchCursor.first("name", true);
+
+        assertThat(cursor.filter()).isNull();
+        assertThat(cursor.sorts()).hasSize(2);
+    }
+
+    @Test
+    public void filterOnIdOnlyWhenSortedById() {
+        SearchCursor cursor = SearchCursor.first("id", true).after(7L, 7L);
+
+        assertThat(cursor.filter()).isInstanceOf(RangeQueryBuilder.class);
+        assertThat(cursor.sorts()).hasSize(1);
+    }
+}
@@ -0,0 +1,107 @@
+package com.noesisinformatica.northumbriaproms.service.util;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.noesisinformatica.northumbriaproms.domain.*;
+import com.noesisinformatica.northumbriaproms.domain.enumeration.ActionPhase;
+import com.noesisinformatica.northumbriaproms.domain.enumeration.ActionStatus;
+import com.noesisinformatica.northumbriaproms.domain.enumeration.TimeUnit;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the FollowupActionPlanner utility class.
+ *
+ * @see FollowupActionPlanner
+ */
+public class FollowupActionPlannerUnitTest {
+
+    private static final List<Questionnaire> QUESTIONNAIRES = Arrays.asList(
+        new Questionnaire().name("Oxford Knee Score"), new Questionnaire().name("Outcome"));
+
+    @Test
+    public void plansPreOperativeActionsWithoutOutcome() {
+        ProcedureBooking booking = new ProcedureBooking().scheduledDate(LocalDate.now().minusDays(1))
+            .performedDate(LocalDate.now());
+        CareEvent careEvent = careEventAt(0, TimeUnit.DAY);
+
+        assertThat(FollowupActionPlanner.planFollowupActions(careEvent, booking, QUESTIONNAIRES)).isTrue();
+
+        assertThat(careEvent.getFollowupActions()).hasSize(1);
+        FollowupAction action = careEvent.getFollowupActions().iterator().next();
+        assertThat(action.getName()).isEqualTo("Oxford Knee Score");
+        assertThat(action.getPhase()).isEqualTo(ActionPhase.PRE_OPERATIVE);
+        assertThat(action.getScheduledDate()).isEqualTo(booking.getScheduledDate());
+        assertThat(action.getStatus()).isEqualTo(ActionStatus.STARTED);
+        assertThat(careEvent.getStatus()).isEqualTo(ActionStatus.STARTED);
+    }
+
+    @Test
+    public void schedulesPostOperativeActionsFromPerformedDate() {
+        LocalDate performedDate = LocalDate.now().plusDays(7);
+        ProcedureBooking booking = new ProcedureBooking().scheduledDate(performedDate).performedDate(performedDate);
+        CareEvent careEvent = careEventAt(6, TimeUnit.MONTH);
+
+        assertThat(FollowupActionPlanner.planFollowupActions(careEvent, booking, QUESTIONNAIRES)).isTrue();
+
+        assertThat(careEvent.getFollowupActions()).hasSize(2);
+        assertThat(careEvent.getFollowupActions()).allSatisfy(action -> {
+            assertThat(action.getPhase()).isEqualTo(ActionPhase.POST_OPERATIVE);
+            assertThat(action.getScheduledDate()).isEqualTo(performedDate.plusMonths(6));
+            assertThat(action.getStatus()).isEqualTo(ActionStatus.UNINITIALISED);
+        });
+        assertThat(careEvent.getStatus()).isEqualTo(ActionStatus.UNINITIALISED);
+    }
+
+    @Test
+    public void marksPostOperativeActionsUnknownWithoutPerformedDate() {
+        ProcedureBooking booking = new ProcedureBooking().scheduledDate(LocalDate.now());
+        CareEvent careEvent = careEventAt(1, TimeUnit.YEAR);
+
+        FollowupActionPlanner.planFollowupActions(careEvent, booking, QUESTIONNAIRES);
+
+        assertThat(careEvent.getFollowupActions()).extracting(FollowupAction::getStatus)
+            .containsOnly(ActionStatus.UNKNOWN);
+        assertThat(careEvent.getStatus()).isEqualTo(ActionStatus.UNKNOWN);
+    }
+
+    @Test
+    public void skipsAnnualCareEvents() {
+        ProcedureBooking booking = new ProcedureBooking().scheduledDate(LocalDate.now()).performedDate(LocalDate.now());
+        CareEvent careEvent = careEventAt(-1, TimeUnit.YEAR);
+
+        assertThat(FollowupActionPlanner.planFollowupActions(careEvent, booking, QUESTIONNAIRES)).isFalse();
+        assertThat(careEvent.getFollowupActions()).isEmpty();
+    }
+
+    private static CareEvent careEventAt(int value, TimeUnit unit) {
+        return new CareEvent().timepoint(new Timepoint().value(value).unit(unit)).status(ActionStatus.UNINITIALISED);
+    }
+}
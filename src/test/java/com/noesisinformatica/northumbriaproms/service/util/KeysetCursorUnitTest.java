@@ -0,0 +1,91 @@
+package com.noesisinformatica.northumbriaproms.service.util;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import org.junit.Test;
+import org.springframework.data.domain.Sort;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Path;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the KeysetCursor.
+ *
+ * @see KeysetCursor
+ */
+public class KeysetCursorUnitTest {
+
+    @Test
+    public void decodeEncodedCursor() {
+        KeysetCursor cursor = KeysetCursor.first("birthDate", false).after(LocalDate.of(1970, 1, 2), 42L);
+
+        KeysetCursor decoded = KeysetCursor.decode(cursor.encode());
+
+        assertThat(decoded.getSortField()).isEqualTo("birthDate");
+        assertThat(decoded.encode()).isEqualTo(cursor.encode());
+    }
+
+    @Test
+    public void sortFirstPageOnFirstOrderOrId() {
+        assertThat(KeysetCursor.first(new Sort(Sort.Direction.DESC, "familyName", "givenName")).getSortField())
+            .isEqualTo("familyName");
+        assertThat(KeysetCursor.first((Sort) null).getSortField()).isEqualTo(KeysetCursor.ID);
+    }
+
+    @Test
+    public void rejectInvalidToken() {
+        assertThatThrownBy(() -> KeysetCursor.decode("not a cursor"))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> KeysetCursor.decode("e30"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void matchEverythingBeforeFirstRow() {
+        CriteriaBuilder cb = mock(CriteriaBuilder.class);
+
+        assertThat(KeysetCursor.first("familyName", true).after(cb, mock(Path.class), mock(Path.class), true)).isNull();
+        verifyZeroInteractions(cb);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void rejectValueOfAnotherType() {
+        KeysetCursor cursor = KeysetCursor.decode(KeysetCursor.first("birthDate", true).after("Smith", 42L).encode());
+        Path<LocalDate> birthDate = mock(Path.class);
+        when(birthDate.getJavaType()).thenReturn((Class) LocalDate.class);
+
+        assertThatThrownBy(() -> cursor.after(mock(CriteriaBuilder.class), birthDate, mock(Path.class), false))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -26,6 +26,7 @@ package com.noesisinformatica.northumbriaproms.web.rest;
 
 import com.noesisinformatica.northumbriaproms.NorthumbriapromsApp;
 import com.noesisinformatica.northumbriaproms.domain.*;
+import com.noesisinformatica.northumbriaproms.domain.enumeration.ActionStatus;
 import com.noesisinformatica.northumbriaproms.domain.enumeration.EventType;
 import com.noesisinformatica.northumbriaproms.repository.CareEventRepository;
 import com.noesisinformatica.northumbriaproms.repository.search.CareEventSearchRepository;
@@ -127,6 +128,22 @@ public class CareEventResourceIntTest {
         return careEvent;
     }
 
+    /**
+     * Create an uninitialised entity for a booking, with the followup plan of the booking, and persist them.
+     *
+     * This is a static method, as tests of the followup actions planned for a booking need it.
+     */
+    public static CareEvent createBookedEntity(EntityManager em, ProcedureBooking procedureBooking) {
+        CareEvent careEvent = createEntity(em).status(ActionStatus.UNINITIALISED);
+        FollowupPlan followupPlan = careEvent.getFollowupPlan();
+        procedureBooking.setFollowupPlan(followupPlan);
+        em.persist(procedureBooking);
+        followupPlan.setProcedureBooking(procedureBooking);
+        em.persist(careEvent);
+        em.flush();
+        return careEvent;
+    }
+
     @Before
     public void initTest() {
         careEventSearchRepository.deleteAll();
@@ -0,0 +1,140 @@
+package com.noesisinformatica.northumbriaproms.web.rest;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+
+import com.noesisinformatica.northumbriaproms.NorthumbriapromsApp;
+import com.noesisinformatica.northumbriaproms.config.Constants;
+import com.noesisinformatica.northumbriaproms.service.dto.DeadLetterDTO;
+import com.noesisinformatica.northumbriaproms.service.dto.DeadLetterQueueDTO;
+import com.noesisinformatica.northumbriaproms.service.messaging.DeadLetterService;
+import com.noesisinformatica.northumbriaproms.web.rest.errors.ExceptionTranslator;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Test class for the DeadLetterResource REST controller.
+ *
+ * @see DeadLetterResource
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = NorthumbriapromsApp.class)
+public class DeadLetterResourceIntTest {
+
+    private static final String QUEUE = Constants.PIPELINE_QUEUES.get(0);
+
+    @Mock
+    private DeadLetterService deadLetterService;
+
+    @Autowired
+    private ExceptionTranslator exceptionTranslator;
+
+    private MockMvc restDeadLetterMockMvc;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+
+        DeadLetterResource deadLetterResource = new DeadLetterResource(deadLetterService);
+        this.restDeadLetterMockMvc = MockMvcBuilders
+            .standaloneSetup(deadLetterResource)
+            .setControllerAdvice(exceptionTranslator)
+            .build();
+    }
+
+    @Test
+    public void getDeadLetterQueues() throws Exception {
+        when(deadLetterService.getDeadLetterQueues()).thenReturn(Collections.singletonList(
+            new DeadLetterQueueDTO(QUEUE, DeadLetterService.deadLetterQueueOf(QUEUE), 2)));
+
+        restDeadLetterMockMvc.perform(get("/management/dead-letters"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(jsonPath("$.[*].queue").value(hasItem(QUEUE)))
+            .andExpect(jsonPath("$.[*].messageCount").value(hasItem(2)));
+    }
+
+    @Test
+    public void getDeadLetters() throws Exception {
+        DeadLetterDTO deadLetter = new DeadLetterDTO();
+        deadLetter.setMessageId("id-1");
+        deadLetter.setPayload("{}");
+        deadLetter.setExceptionMessage("boom");
+        when(deadLetterService.peek(QUEUE, 5)).thenReturn(Collections.singletonList(deadLetter));
+
+        restDeadLetterMockMvc.perform(get("/management/dead-letters/{queue}?count=5", QUEUE))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].messageId").value(hasItem("id-1")))
+            .andExpect(jsonPath("$.[*].exceptionMessage").value(hasItem("boom")));
+    }
+
+    @Test
+    public void getDeadLettersOfUnknownQueue() throws Exception {
+        restDeadLetterMockMvc.perform(get("/management/dead-letters/{queue}", "not_a_queue"))
+            .andExpect(status().isBadRequest());
+
+        verify(deadLetterService, never()).peek(anyString(), anyInt());
+    }
+
+    @Test
+    public void replayDeadLetters() throws Exception {
+        when(deadLetterService.replay(QUEUE, 100)).thenReturn(3);
+
+        restDeadLetterMockMvc.perform(post("/management/dead-letters/{queue}/replay", QUEUE))
+            .andExpect(status().isOk())
+            .andExpect(content().string("3"));
+    }
+
+    @Test
+    public void replayDeadLettersWithInvalidCount() throws Exception {
+        restDeadLetterMockMvc.perform(post("/management/dead-letters/{queue}/replay?count=0", QUEUE))
+            .andExpect(status().isBadRequest());
+
+        verify(deadLetterService, never()).replay(anyString(), anyInt());
+    }
+}
@@ -0,0 +1,182 @@
+package com.noesisinformatica.northumbriaproms.web.rest;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.noesisinformatica.northumbriaproms.NorthumbriapromsApp;
+import com.noesisinformatica.northumbriaproms.config.SqlStatementCounter;
+import com.noesisinformatica.northumbriaproms.domain.*;
+import com.noesisinformatica.northumbriaproms.domain.enumeration.ActionStatus;
+import com.noesisinformatica.northumbriaproms.web.rest.errors.ExceptionTranslator;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+
+import static com.noesisinformatica.northumbriaproms.web.rest.TestUtil.createFormattingConversionService;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Test class for the fetch plans the endpoints read their entities with, counting the SQL statements each endpoint
+ * sends for a patient with several care events and followup actions.
+ *
+ * @see SqlStatementCounter
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = NorthumbriapromsApp.class)
+@Transactional
+public class EntityFetchPlanIntTest {
+
+    private static final int CARE_EVENTS = 3;
+    private static final int ACTIONS_PER_CARE_EVENT = 2;
+
+    @Autowired
+    private FollowupActionResource followupActionResource;
+
+    @Autowired
+    private CareEventResource careEventResource;
+
+    @Autowired
+    private PatientResource patientResource;
+
+    @Autowired
+    private MappingJackson2HttpMessageConverter jacksonMessageConverter;
+
+    @Autowired
+    private PageableHandlerMethodArgumentResolver pageableArgumentResolver;
+
+    @Autowired
+    private ExceptionTranslator exceptionTranslator;
+
+    @Autowired
+    private EntityManager em;
+
+    private MockMvc restMockMvc;
+
+    private Patient patient;
+
+    private FollowupAction action;
+
+    @Before
+    public void setup() {
+        this.restMockMvc = MockMvcBuilders.standaloneSetup(followupActionResource, careEventResource, patientResource)
+            .setCustomArgumentResolvers(pageableArgumentResolver)
+            .setControllerAdvice(exceptionTranslator)
+            .setConversionService(createFormattingConversionService())
+            .setMessageConverters(jacksonMessageConverter).build();
+    }
+
+    @Before
+    public void initTest() {
+        FollowupPlan followupPlan = FollowupPlanResourceIntTest.createEntity(em);
+        patient = followupPlan.getPatient();
+        em.persist(followupPlan);
+        ProcedureBooking procedureBooking = ProcedureBookingResourceIntTest.createEntity(em).followupPlan(followupPlan);
+        procedureBooking.setPatient(patient);
+        em.persist(procedureBooking);
+        followupPlan.setProcedureBooking(procedureBooking);
+        for (int i = 0; i < CARE_EVENTS; i++) {
+            CareEvent careEvent = CareEventResourceIntTest.createEntity(em).status(ActionStatus.UNINITIALISED);
+            careEvent.setPatient(patient);
+            careEvent.setFollowupPlan(followupPlan);
+            em.persist(careEvent);
+            for (int j = 0; j < ACTIONS_PER_CARE_EVENT; j++) {
+                action = new FollowupAction().name("PROMS").careEvent(careEvent).patient(patient)
+                    .status(ActionStatus.UNINITIALISED);
+                ResponseItem responseItem = new ResponseItem();
+                responseItem.setValue(j);
+                responseItem.setLocalId("q" + j);
+                responseItem.setFollowupAction(action);
+                action.getResponseItems().add(responseItem);
+                em.persist(action);
+            }
+        }
+        em.flush();
+        em.clear();
+        SqlStatementCounter.reset();
+    }
+
+    @Test
+    public void getFollowupActionsWithListFetchPlan() throws Exception {
+        restMockMvc.perform(get("/api/followup-actions?patientId.equals={id}&sort=id,asc", patient.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(CARE_EVENTS * ACTIONS_PER_CARE_EVENT)));
+
+        assertThat(SqlStatementCounter.count()).isEqualTo(1);
+    }
+
+    @Test
+    public void getFollowupActionsAfterCursorWithoutCounting() throws Exception {
+        restMockMvc.perform(get("/api/followup-actions/cursor?patientId.equals={id}&sort=scheduledDate,asc&size=2",
+            patient.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(2)))
+            .andExpect(header().string("X-Next-Cursor", notNullValue()))
+            .andExpect(header().doesNotExist("X-Total-Count"));
+
+        assertThat(SqlStatementCounter.count()).isEqualTo(1);
+    }
+
+    @Test
+    public void getFollowupActionWithDetailFetchPlan() throws Exception {
+        restMockMvc.perform(get("/api/followup-actions/{id}", action.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.responseItems", hasSize(1)));
+
+        assertThat(SqlStatementCounter.count()).isEqualTo(1);
+    }
+
+    @Test
+    public void getCareEventsWithListFetchPlan() throws Exception {
+        restMockMvc.perform(get("/api/care-events?patientId.equals={id}&sort=id,asc", patient.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(CARE_EVENTS)));
+
+        assertThat(SqlStatementCounter.count()).isEqualTo(1);
+    }
+
+    @Test
+    public void getPatientsWithListFetchPlan() throws Exception {
+        restMockMvc.perform(get("/api/patients?id.equals={id}", patient.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(1)));
+
+        assertThat(SqlStatementCounter.count()).isEqualTo(1);
+    }
+}
@@ -30,6 +30,7 @@ import com.noesisinformatica.northumbriaproms.domain.enumeration.ActionPhase;
 import com.noesisinformatica.northumbriaproms.domain.enumeration.ActionType;
 import com.noesisinformatica.northumbriaproms.repository.FollowupActionRepository;
 import com.noesisinformatica.northumbriaproms.repository.search.FollowupActionSearchRepository;
+import com.noesisinformatica.northumbriaproms.service.FollowupActionExportService;
 import com.noesisinformatica.northumbriaproms.service.FollowupActionQueryService;
 import com.noesisinformatica.northumbriaproms.service.FollowupActionService;
 import com.noesisinformatica.northumbriaproms.web.rest.errors.ExceptionTranslator;
@@ -99,6 +100,9 @@ public class FollowupActionResourceIntTest {
     @Autowired
     private FollowupActionQueryService followupActionQueryService;
 
+    @Autowired
+    private FollowupActionExportService followupActionExportService;
+
     @Autowired
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
@@ -118,7 +122,7 @@ public class FollowupActionResourceIntTest {
     @Before
     public void setup() {
         MockitoAnnotations.initMocks(this);
-        final FollowupActionResource followupActionResource = new FollowupActionResource(followupActionService, followupActionQueryService);
+        final FollowupActionResource followupActionResource = new FollowupActionResource(followupActionService, followupActionQueryService, followupActionExportService);
         this.restFollowupActionMockMvc = MockMvcBuilders.standaloneSetup(followupActionResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
             .setControllerAdvice(exceptionTranslator)
@@ -0,0 +1,181 @@
+package com.noesisinformatica.northumbriaproms.web.rest;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.noesisinformatica.northumbriaproms.NorthumbriapromsApp;
+import com.noesisinformatica.northumbriaproms.domain.Patient;
+import com.noesisinformatica.northumbriaproms.domain.enumeration.GenderType;
+import com.noesisinformatica.northumbriaproms.web.rest.errors.ExceptionTranslator;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.noesisinformatica.northumbriaproms.web.rest.TestUtil.createFormattingConversionService;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Test class for paging through the entities matching a criteria after a cursor, by following the cursors of the
+ * pages until the last one.
+ *
+ * @see com.noesisinformatica.northumbriaproms.service.KeysetQueryService
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = NorthumbriapromsApp.class)
+@Transactional
+public class KeysetPaginationIntTest {
+
+    private static final String FAMILY_NAME = "KEYSET";
+
+    @Autowired
+    private PatientResource patientResource;
+
+    @Autowired
+    private MappingJackson2HttpMessageConverter jacksonMessageConverter;
+
+    @Autowired
+    private PageableHandlerMethodArgumentResolver pageableArgumentResolver;
+
+    @Autowired
+    private ExceptionTranslator exceptionTranslator;
+
+    @Autowired
+    private EntityManager em;
+
+    private MockMvc restMockMvc;
+
+    private List<Patient> patients;
+
+    @Before
+    public void setup() {
+        this.restMockMvc = MockMvcBuilders.standaloneSetup(patientResource)
+            .setCustomArgumentResolvers(pageableArgumentResolver)
+            .setControllerAdvice(exceptionTranslator)
+            .setConversionService(createFormattingConversionService())
+            .setMessageConverters(jacksonMessageConverter).build();
+    }
+
+    @Before
+    public void initTest() {
+        patients = new ArrayList<>();
+        // names and genders shared by several patients, and patients without a gender
+        String[] names = {"B", "A", "B", "C", "A", "B", "A"};
+        GenderType[] genders = {GenderType.MALE, null, GenderType.FEMALE, null, GenderType.MALE, null, GenderType.OTHER};
+        for (int i = 0; i < names.length; i++) {
+            Patient patient = new Patient()
+                .familyName(FAMILY_NAME + names[i])
+                .givenName("Given")
+                .birthDate(LocalDate.ofEpochDay(i))
+                .gender(genders[i]);
+            em.persist(patient);
+            patients.add(patient);
+        }
+        em.flush();
+    }
+
+    @Test
+    public void pageThroughPatientsById() throws Exception {
+        List<Long> expected = patients.stream().map(Patient::getId).sorted().collect(Collectors.toList());
+
+        assertThat(pageThrough("sort=id,asc")).isEqualTo(expected);
+    }
+
+    @Test
+    public void pageThroughPatientsByFamilyNameDescending() throws Exception {
+        List<Long> expected = patients.stream()
+            .sorted(Comparator.comparing(Patient::getFamilyName).thenComparing(Patient::getId).reversed())
+            .map(Patient::getId).collect(Collectors.toList());
+
+        assertThat(pageThrough("sort=familyName,desc")).isEqualTo(expected);
+    }
+
+    @Test
+    public void pageThroughPatientsByGenderWithoutGenderLast() throws Exception {
+        List<Long> expected = patients.stream()
+            // genders are stored, and so sorted, by name
+            .sorted(Comparator.comparing((Patient patient) -> patient.getGender() != null ? patient.getGender().name() : null,
+                Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(Patient::getId))
+            .map(Patient::getId).collect(Collectors.toList());
+
+        assertThat(pageThrough("sort=gender,asc")).isEqualTo(expected);
+    }
+
+    @Test
+    public void countPatientsOnRequest() throws Exception {
+        restMockMvc.perform(get("/api/patients/cursor?familyName.startsWith={name}&size=2", FAMILY_NAME))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist("X-Total-Count"));
+
+        restMockMvc.perform(get("/api/patients/cursor?familyName.startsWith={name}&size=2&count=true", FAMILY_NAME))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count", Integer.toString(patients.size())));
+    }
+
+    @Test
+    public void rejectInvalidCursors() throws Exception {
+        restMockMvc.perform(get("/api/patients/cursor?cursor=notacursor"))
+            .andExpect(status().isBadRequest());
+
+        restMockMvc.perform(get("/api/patients/cursor?sort=email,asc"))
+            .andExpect(status().isBadRequest());
+    }
+
+    private List<Long> pageThrough(String sort) throws Exception {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            String url = "/api/patients/cursor?familyName.startsWith=" + FAMILY_NAME + "&size=2&" + sort
+                + (cursor != null ? "&cursor=" + cursor : "");
+            MvcResult result = restMockMvc.perform(get(url)).andExpect(status().isOk()).andReturn();
+            Patient[] page = jacksonMessageConverter.getObjectMapper()
+                .readValue(result.getResponse().getContentAsByteArray(), Patient[].class);
+            Arrays.stream(page).map(Patient::getId).forEach(ids::add);
+            cursor = result.getResponse().getHeader("X-Next-Cursor");
+            assertThat(++pages).isLessThanOrEqualTo(patients.size());
+        } while (cursor != null);
+        return ids;
+    }
+}
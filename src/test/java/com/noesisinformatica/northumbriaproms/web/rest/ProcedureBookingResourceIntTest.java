@@ -31,6 +31,7 @@ import com.noesisinformatica.northumbriaproms.domain.ProcedureBooking;
 import com.noesisinformatica.northumbriaproms.repository.ProcedureBookingRepository;
 import com.noesisinformatica.northumbriaproms.repository.search.ProcedureBookingSearchRepository;
 import com.noesisinformatica.northumbriaproms.service.PatientService;
+import com.noesisinformatica.northumbriaproms.service.ProcedureBookingImportService;
 import com.noesisinformatica.northumbriaproms.service.ProcedureBookingQueryService;
 import com.noesisinformatica.northumbriaproms.service.ProcedureBookingService;
 import com.noesisinformatica.northumbriaproms.web.rest.errors.ExceptionTranslator;
@@ -51,6 +52,7 @@ import org.springframework.transaction.annotation.Transactional;
 import javax.persistence.EntityManager;
 import java.time.LocalDate;
 import java.time.ZoneId;
+import java.util.Arrays;
 import java.util.List;
 
 import static com.noesisinformatica.northumbriaproms.web.rest.TestUtil.createFormattingConversionService;
@@ -101,6 +103,9 @@ public class ProcedureBookingResourceIntTest {
     @Autowired
     private PatientService patientService;
 
+    @Autowired
+    private ProcedureBookingImportService procedureBookingImportService;
+
     @Autowired
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
@@ -121,7 +126,7 @@ public class ProcedureBookingResourceIntTest {
     public void setup() {
         MockitoAnnotations.initMocks(this);
         final ProcedureBookingResource procedureBookingResource = new ProcedureBookingResource(procedureBookingService,
-            procedureBookingQueryService, patientService);
+            procedureBookingQueryService, patientService, procedureBookingImportService);
         this.restProcedureBookingMockMvc = MockMvcBuilders.standaloneSetup(procedureBookingResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
             .setControllerAdvice(exceptionTranslator)
@@ -203,6 +208,37 @@ public class ProcedureBookingResourceIntTest {
         assertThat(procedureBookingList).hasSize(databaseSizeBeforeCreate);
     }
 
+    @Test
+    @Transactional
+    public void bulkCreateProcedureBookings() throws Exception {
+        int databaseSizeBeforeCreate = procedureBookingRepository.findAll().size();
+
+        // One valid booking, one without a consultant and one with an unknown patient
+        ProcedureBooking invalidBooking = createEntity(em).consultantName(null);
+        ProcedureBooking orphanBooking = createEntity(em);
+        orphanBooking.setPatient(new Patient());
+        orphanBooking.getPatient().setId(Long.MAX_VALUE);
+
+        restProcedureBookingMockMvc.perform(post("/api/_bulk/procedure-bookings?chunkSize=2")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(Arrays.asList(procedureBooking, invalidBooking, orphanBooking))))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.received").value(3))
+            .andExpect(jsonPath("$.imported").value(1))
+            .andExpect(jsonPath("$.failed").value(2))
+            .andExpect(jsonPath("$.chunks").value(2));
+
+        // Validate the ProcedureBooking in the database
+        List<ProcedureBooking> procedureBookingList = procedureBookingRepository.findAll();
+        assertThat(procedureBookingList).hasSize(databaseSizeBeforeCreate + 1);
+        ProcedureBooking testProcedureBooking = procedureBookingList.get(procedureBookingList.size() - 1);
+        assertThat(testProcedureBooking.getConsultantName()).isEqualTo(DEFAULT_CONSULTANT_NAME);
+
+        // Validate the ProcedureBooking in Elasticsearch
+        ProcedureBooking procedureBookingEs = procedureBookingSearchRepository.findOne(testProcedureBooking.getId());
+        assertThat(procedureBookingEs).isNotNull();
+    }
+
     @Test
     @Transactional
     public void checkConsultantNameIsRequired() throws Exception {
@@ -0,0 +1,90 @@
+package com.noesisinformatica.northumbriaproms.web.rest;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import com.noesisinformatica.northumbriaproms.NorthumbriapromsApp;
+import com.noesisinformatica.northumbriaproms.service.ReindexService;
+import com.noesisinformatica.northumbriaproms.web.rest.errors.ExceptionTranslator;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.hamcrest.Matchers.hasItems;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Test class for the ReindexResource REST controller.
+ *
+ * @see ReindexResource
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = NorthumbriapromsApp.class)
+public class ReindexResourceIntTest {
+
+    @Autowired
+    private ReindexService reindexService;
+
+    @Autowired
+    private ExceptionTranslator exceptionTranslator;
+
+    private MockMvc restReindexMockMvc;
+
+    @Before
+    public void setup() {
+        ReindexResource reindexResource = new ReindexResource(reindexService);
+        this.restReindexMockMvc = MockMvcBuilders.standaloneSetup(reindexResource)
+            .setControllerAdvice(exceptionTranslator).build();
+    }
+
+    @Test
+    public void getIndexStatuses() throws Exception {
+        restReindexMockMvc.perform(get("/api/_index"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(jsonPath("$.[*].documentType").value(hasItems("FollowupAction", "Patient", "User")));
+    }
+
+    @Test
+    public void getIndexStatusOfUnknownType() throws Exception {
+        restReindexMockMvc.perform(get("/api/_index/unknown"))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void reindexUnknownType() throws Exception {
+        restReindexMockMvc.perform(post("/api/_index/unknown"))
+            .andExpect(status().isNotFound());
+    }
+}
@@ -65,6 +65,38 @@ public class PaginationUtilUnitTest {
         assertTrue(Long.valueOf(xTotalCountHeaders.get(0)).equals(400L));
     }
 
+    @Test
+    public void generateCursorPaginationHttpHeadersTest() {
+        String baseUrl = "/api/_search/example";
+        HttpHeaders headers = PaginationUtil.generateCursorPaginationHttpHeaders("abc-_1", 400L, 50, baseUrl);
+        List<String> strHeaders = headers.get(HttpHeaders.LINK);
+        assertNotNull(strHeaders);
+        assertTrue(strHeaders.size() == 1);
+        String expectedData = "</api/_search/example?cursor=abc-_1&size=50>; rel=\"next\","
+                + "</api/_search/example?size=50>; rel=\"first\"";
+        assertEquals(expectedData, strHeaders.get(0));
+        assertEquals("abc-_1", headers.getFirst("X-Next-Cursor"));
+        assertEquals("400", headers.getFirst("X-Total-Count"));
+
+        // last page, without a total
+        headers = PaginationUtil.generateCursorPaginationHttpHeaders(null, null, 50, baseUrl);
+        assertEquals("</api/_search/example?size=50>; rel=\"first\"", headers.getFirst(HttpHeaders.LINK));
+        assertTrue(!headers.containsKey("X-Next-Cursor"));
+        assertTrue(!headers.containsKey("X-Total-Count"));
+    }
+
+    @Test
+    public void generateCursorPaginationHttpHeadersWithQueryStringTest() {
+        String baseUrl = "/api/example/cursor";
+        String queryString = "name.contains=a%20b&cursor=old&size=20&count=true";
+        HttpHeaders headers = PaginationUtil.generateCursorPaginationHttpHeaders("abc-_1", null, 20, baseUrl,
+            queryString);
+        String expectedData = "</api/example/cursor?name.contains=a%20b&count=true&cursor=abc-_1&size=20>; rel=\"next\","
+                + "</api/example/cursor?name.contains=a%20b&count=true&size=20>; rel=\"first\"";
+        assertEquals(expectedData, headers.getFirst(HttpHeaders.LINK));
+        assertTrue(!headers.containsKey("X-Total-Count"));
+    }
+
     @Test
     public void commaTest() {
         String baseUrl = "/api/_search/example";
@@ -0,0 +1,84 @@
+package com.noesisinformatica.northumbriaproms.web.rest.util;
+
+/*-
+ * #%L
+ * Proms Platform
+ * %%
+ * Copyright (C) 2017 - 2018 Termlex
+ * %%
+ * This software is Copyright and Intellectual Property of Termlex Inc Limited.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation as version 3 of the
+ * License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program.  If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.en.html>.
+ * #L%
+ */
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the normalisation of the QueryModel.
+ *
+ * @see QueryModel
+ */
+public class QueryModelUnitTest {
+
+    @Test
+    public void testNormalisedQueriesOfSameSearchAreEqual() {
+        QueryModel query = new QueryModel();
+        query.setConsultants(Arrays.asList("Jane Smith", "John Jones", "Jane Smith"));
+        query.setToken("Newcastle");
+        QueryModel reordered = new QueryModel();
+        reordered.setConsultants(Arrays.asList("John Jones", "Jane Smith"));
+        reordered.setToken("Newcastle");
+
+        assertThat(query.normalised()).isEqualTo(reordered.normalised());
+        assertThat(query.normalised().hashCode()).isEqualTo(reordered.normalised().hashCode());
+        assertThat(query.normalised().getConsultants()).containsExactly("Jane Smith", "John Jones");
+    }
+
+    @Test
+    public void testNormalisedQueryLeavesOutTokenNotSearched() {
+        QueryModel query = new QueryModel();
+        query.setLocations(Arrays.asList("RVI"));
+        query.setToken("ab");
+
+        assertThat(query.normalised().getToken()).isNull();
+        query.setToken("null");
+        assertThat(query.normalised().getToken()).isNull();
+    }
+
+    @Test
+    public void testNormalisedQueriesOfDifferentSearchesDiffer() {
+        QueryModel query = new QueryModel();
+        query.setMinAge(40);
+        QueryModel other = new QueryModel();
+        other.setMinAge(50);
+
+        assertThat(query.normalised()).isNotEqualTo(other.normalised());
+        assertThat(query.normalised()).isNotEqualTo(new QueryModel());
+    }
+
+    @Test
+    public void testEmptyQueriesAreNormalisedToMatchAll() {
+        QueryModel query = new QueryModel();
+        query.setStatuses(Arrays.asList("PENDING"));
+
+        // statuses alone do not restrict the search
+        assertThat(query.normalised()).isEqualTo(new QueryModel());
+    }
+}